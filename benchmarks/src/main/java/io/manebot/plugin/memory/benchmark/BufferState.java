@@ -0,0 +1,73 @@
+package io.manebot.plugin.memory.benchmark;
+
+import io.manebot.plugin.memory.buffer.LoopbackSink;
+import io.manebot.plugin.memory.buffer.MemoryRing;
+import io.manebot.plugin.memory.buffer.MemorySink;
+import io.manebot.plugin.memory.buffer.MemorySnapshot;
+import io.manebot.plugin.memory.buffer.SampleEncoding;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.Random;
+
+/**
+ * A memory ring filled with speech-like audio (bursts of noise separated by near-silence) at 48 kHz stereo.
+ */
+@State(Scope.Benchmark)
+public class BufferState {
+    public static final float SAMPLE_RATE = 48000f;
+    public static final int CHANNELS = 2;
+
+    /**
+     * Samples per mixer cycle: 20 ms at 48 kHz stereo
+     */
+    public static final int MIXER_BUFFER_SIZE = (int) (SAMPLE_RATE * 0.02f) * CHANNELS;
+
+    @Param({"10", "30", "300"})
+    public int seconds;
+
+    @Param({"FLOAT32", "PCM16", "MULAW"})
+    public SampleEncoding encoding;
+
+    public MemoryRing ring;
+    public MemorySnapshot snapshot;
+    public float[] mixerBuffer;
+
+    /**
+     * Mixer-to-ring path of a memorizer: the parent mixer's loopback, and the sink of the memorizer mixer
+     */
+    public LoopbackSink loopback;
+    public MemorySink sink;
+    public float[] mixBuffer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ring = new MemoryRing(encoding.createStorage((int) (SAMPLE_RATE * seconds) * CHANNELS));
+        mixerBuffer = new float[MIXER_BUFFER_SIZE];
+
+        Random random = new Random(0L);
+        long cycles = (long) ring.getCapacity() / MIXER_BUFFER_SIZE + 1;
+        for (long cycle = 0; cycle < cycles; cycle ++) {
+            fill(random, mixerBuffer, cycle);
+            ring.write(mixerBuffer, mixerBuffer.length);
+        }
+
+        snapshot = ring.snapshot();
+
+        AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, CHANNELS, true, false);
+        loopback = new LoopbackSink(format, MIXER_BUFFER_SIZE, 0.25f);
+        sink = new MemorySink(format, encoding.createStorage(ring.getCapacity()));
+        mixBuffer = new float[MIXER_BUFFER_SIZE];
+    }
+
+    /**
+     * Fills a mixer buffer: two seconds of "speech" every five seconds, dither otherwise, and digital silence at the
+     * very start and end of the ring.
+     */
+    static void fill(Random random, float[] buffer, long cycle) {
+        boolean speech = (cycle % 250) >= 50 && (cycle % 250) < 150;
+        float amplitude = speech ? 0.3f : 0.0005f;
+        for (int i = 0; i < buffer.length; i ++)
+            buffer[i] = (random.nextFloat() * 2f - 1f) * amplitude;
+    }
+}
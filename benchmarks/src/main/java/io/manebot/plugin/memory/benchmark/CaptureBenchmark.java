@@ -0,0 +1,70 @@
+package io.manebot.plugin.memory.benchmark;
+
+import io.manebot.plugin.memory.buffer.MemorySnapshot;
+import io.manebot.plugin.memory.save.MemoryWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the capture hot paths: the mixer thread writing into the ring, and saves snapshotting it.
+ *
+ * Run with the GC profiler to see allocation rates, e.g.
+ * <code>java -jar target/benchmarks.jar CaptureBenchmark -prof gc</code>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class CaptureBenchmark {
+    /**
+     * One mixer cycle (20 ms at 48 kHz stereo) written into the ring.
+     */
+    @Benchmark
+    public void ringWrite(BufferState state) {
+        state.ring.write(state.mixerBuffer, state.mixerBuffer.length);
+    }
+
+    /**
+     * One full mixer cycle of a memorizer: the parent mixer writing into the loopback, the memorizer mixer reading it
+     * back and writing its mix into the ring.  Should allocate nothing (gc.alloc.rate.norm of ~0 B/op).
+     */
+    @Benchmark
+    public long mixerCycle(BufferState state) throws IOException {
+        state.loopback.write(state.mixerBuffer, state.mixerBuffer.length);
+        int len = state.loopback.getChannel().read(state.mixBuffer, 0, state.mixBuffer.length);
+        state.sink.write(state.mixBuffer, len);
+        return state.sink.getRing().getPosition();
+    }
+
+    /**
+     * Ordered snapshot of the whole ring, as taken by a save in snapshot mode.
+     */
+    @Benchmark
+    public MemorySnapshot snapshot(BufferState state) {
+        return state.ring.snapshot();
+    }
+
+    /**
+     * Ordered copy of the whole ring trimmed to its valid length, as returned by Memorizer.copyBuffer().
+     */
+    @Benchmark
+    public float[] copyBuffer(BufferState state) {
+        MemorySnapshot snapshot = state.ring.snapshot();
+        float[] samples = snapshot.getSamples();
+        if (snapshot.getLength() == samples.length)
+            return samples;
+
+        float[] copy = new float[snapshot.getLength()];
+        System.arraycopy(samples, 0, copy, 0, copy.length);
+        return copy;
+    }
+
+    @Benchmark
+    public float timeInSeconds(BufferState state) {
+        return MemoryWriter.getTimeInSeconds(state.ring.getCapacity(), BufferState.SAMPLE_RATE,
+                BufferState.CHANNELS);
+    }
+}
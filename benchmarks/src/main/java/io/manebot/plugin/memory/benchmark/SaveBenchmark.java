@@ -0,0 +1,95 @@
+package io.manebot.plugin.memory.benchmark;
+
+import io.manebot.plugin.audio.mixer.output.AudioConsumer;
+import io.manebot.plugin.memory.buffer.MemorySource;
+import io.manebot.plugin.memory.save.MemoryWriter;
+import io.manebot.plugin.memory.trim.ThresholdTrimmer;
+import io.manebot.plugin.memory.trim.TrimRegion;
+import io.manebot.plugin.memory.trim.Trimmer;
+import io.manebot.plugin.memory.trim.ZeroTrimmer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the save path: trimming and streaming a memory to an encoder.  The encoder is a local stub that only
+ * consumes the samples, so results measure this plugin's overhead rather than the codec's.
+ *
+ * Run with the GC profiler to see allocation per save, e.g.
+ * <code>java -jar target/benchmarks.jar SaveBenchmark -prof gc</code>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class SaveBenchmark {
+    @State(Scope.Benchmark)
+    public static class TrimmerState {
+        @Param({"zero", "threshold"})
+        public String trimMode;
+
+        public Trimmer trimmer;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            trimmer = "zero".equals(trimMode) ? new ZeroTrimmer() : new ThresholdTrimmer(-50f, 0.01f, 0.25f);
+        }
+    }
+
+    /**
+     * Trimming a snapshot taken ahead of time.
+     */
+    @Benchmark
+    public TrimRegion trim(BufferState buffer, TrimmerState trimmer) {
+        float[] chunk = MemoryWriter.createChunk(BufferState.SAMPLE_RATE, BufferState.CHANNELS);
+        return trimmer.trimmer.trim(buffer.snapshot, BufferState.SAMPLE_RATE, BufferState.CHANNELS, chunk);
+    }
+
+    /**
+     * Full save from a snapshot: snapshot, trim, stream to the encoder.
+     */
+    @Benchmark
+    public long saveSnapshot(BufferState buffer, TrimmerState trimmer, Blackhole blackhole) throws IOException {
+        return save(buffer.ring.snapshot(), trimmer.trimmer, blackhole);
+    }
+
+    /**
+     * Full save streamed from the live ring: trim and stream to the encoder without copying the ring.
+     */
+    @Benchmark
+    public long saveStreaming(BufferState buffer, TrimmerState trimmer, Blackhole blackhole) throws IOException {
+        return save(buffer.ring.window(0), trimmer.trimmer, blackhole);
+    }
+
+    private static long save(MemorySource source, Trimmer trimmer, Blackhole blackhole) throws IOException {
+        float[] chunk = MemoryWriter.createChunk(BufferState.SAMPLE_RATE, BufferState.CHANNELS);
+        TrimRegion region = trimmer.trim(source, BufferState.SAMPLE_RATE, BufferState.CHANNELS, chunk);
+        try (StubConsumer consumer = new StubConsumer(blackhole)) {
+            return MemoryWriter.stream(source, region.getStart(), region.getEnd(), chunk, consumer);
+        }
+    }
+
+    /**
+     * Encoder stand-in that consumes every sample written to it.
+     */
+    private static final class StubConsumer implements AudioConsumer {
+        private final Blackhole blackhole;
+
+        private StubConsumer(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(float[] buffer, int len) {
+            blackhole.consume(buffer);
+            blackhole.consume(len);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
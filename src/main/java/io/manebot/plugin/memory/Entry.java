@@ -22,6 +22,8 @@ public class Entry implements PluginEntry {
                     .findFirst().orElseThrow());
             modelConstructor.registerEntity(io.manebot.plugin.memory.database.model.Memory.class);
             modelConstructor.registerEntity(Participant.class);
+            modelConstructor.registerEntity(Segment.class);
+            modelConstructor.registerEntity(Landmark.class);
         });
 
         builder.setInstance(Memory.class, (plugin) -> {
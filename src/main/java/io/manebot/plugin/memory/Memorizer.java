@@ -1,28 +1,75 @@
 package io.manebot.plugin.memory;
 
-import io.manebot.plugin.Plugin;
+import io.manebot.platform.PlatformUser;
 import io.manebot.plugin.audio.Audio;
 import io.manebot.plugin.audio.api.AudioConnection;
 import io.manebot.plugin.audio.api.AudioRegistration;
 import io.manebot.plugin.audio.channel.AudioChannel;
 import io.manebot.plugin.audio.mixer.Mixer;
-import io.manebot.plugin.audio.mixer.filter.MuxedMultiChannelFilter;
-import io.manebot.plugin.audio.mixer.filter.type.FilterGain;
-import io.manebot.plugin.audio.mixer.filter.type.FilterLimiter;
 import io.manebot.plugin.audio.mixer.input.*;
-import io.manebot.plugin.audio.mixer.output.PipedMixerSink;
-import io.manebot.plugin.audio.mixer.output.RingBufferSink;
-import io.manebot.plugin.audio.resample.FFmpegResampler;
+import io.manebot.plugin.audio.mixer.output.MixerSink;
+import io.manebot.plugin.memory.buffer.LoopbackSink;
+import io.manebot.plugin.memory.buffer.MemorySink;
+import io.manebot.plugin.memory.buffer.MemorySnapshot;
+import io.manebot.plugin.memory.buffer.MemoryRing;
+import io.manebot.plugin.memory.buffer.MemorySource;
+import io.manebot.plugin.memory.buffer.RingBackend;
+import io.manebot.plugin.memory.buffer.RingBudget;
+import io.manebot.plugin.memory.buffer.RingStorage;
+import io.manebot.plugin.memory.buffer.SampleEncoding;
+import io.manebot.plugin.memory.dsp.DspChain;
+import io.manebot.plugin.memory.dsp.DspConfig;
+import io.manebot.plugin.memory.encode.PreEncoder;
+import io.manebot.plugin.memory.history.ColdTier;
+import io.manebot.plugin.memory.history.HeapHistoryStore;
+import io.manebot.plugin.memory.history.HistoryArchiver;
+import io.manebot.plugin.memory.history.HistoryCodec;
+import io.manebot.plugin.memory.history.HistoryStore;
+import io.manebot.plugin.memory.history.TieredSource;
+import io.manebot.plugin.memory.metrics.MemorizerMetrics;
+import io.manebot.plugin.memory.resample.ResamplerPool;
+import io.manebot.plugin.memory.save.MemoryWriter;
+import io.manebot.plugin.memory.save.SaveCoalescer;
+import io.manebot.plugin.memory.resample.ResamplingMixerSink;
+import io.manebot.plugin.memory.stem.StemRecorder;
+import io.manebot.plugin.memory.stem.StemTap;
+import io.manebot.plugin.memory.stem.StemView;
+import io.manebot.plugin.memory.vad.VoiceIndex;
+import io.manebot.plugin.memory.vad.VoiceOptions;
+import io.manebot.plugin.memory.vad.VoiceSegment;
 import io.manebot.plugin.music.source.AudioProtocol;
 
 import javax.sound.sampled.AudioFormat;
-import java.util.Arrays;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Memorizes the audio of a single channel.  Channel events (speakers beginning and ending, the parent mixer starting
+ * and stopping) are serialized per memorizer, so events on different channels never contend with each other.
+ */
 public class Memorizer {
+    /**
+     * Maximum number of speech segments the voice index remembers
+     */
+    private static final int VOICE_INDEX_CAPACITY = 4096;
+
+    /**
+     * Gain the channel's own playback is mixed into the memory at, under the speakers
+     */
+    private static final float LOOPBACK_GAIN = 0.25f;
+
     private final Audio audio;
 
     /**
@@ -31,19 +78,25 @@ public class Memorizer {
     private final AudioChannel channel;
 
     /**
-     * The static format of the entire processing chain
+     * The static format of the entire processing chain: the capture format, which may be a lower rate or channel
+     * count than the parent mixer's
      */
     private final AudioFormat format;
 
+    /**
+     * The format memories are saved in
+     */
+    private final AudioFormat saveFormat;
+
     /**
      * The target ring buffer, master sink all samples go to
      */
-    private final RingBufferSink sink;
+    private final MemorySink sink;
 
     /**
      * The mixer we use to mix all providers (speakers; members) the parent channel will throw our way
      */
-    private Mixer mixer;
+    private volatile Mixer mixer;
 
     /**
      * The map of providers the channel is offering, to the virtual mixer channels we keep of them
@@ -51,27 +104,211 @@ public class Memorizer {
     private final Map<AudioProvider, MixerChannel> channelMap = new LinkedHashMap<>();
 
     /**
-     * The pipe responsible for collecting audio from the channel being memorized
+     * The loopback collecting audio from the channel being memorized, and the sink installed on the parent mixer to
+     * feed it (converting to the capture format, if it differs from the parent mixer's)
      */
-    private final PipedMixerSink pipedMixerSink;
+    private final LoopbackSink loopback;
+    private final MixerSink loopbackSink;
     private final SilentMixerChannel silentMixerChannel;
 
     private final MixerChannel loopbackPipe;
 
-    private boolean registered = false;
+    /**
+     * How the memory ring is created, and re-created after the memorizer resumes from idle
+     */
+    private final float seconds;
+    private final SampleEncoding encoding;
+    private final RingBackend backend;
+
+    /**
+     * Global budget rings are admitted against, and the smallest ring admission may shrink them to; null if every ring
+     * gets its full size
+     */
+    private final RingBudget ringBudget;
+    private final float minSeconds;
+
+    /**
+     * Shared pool resamplers for speakers with a format different from the mixer's are borrowed from
+     */
+    private final ResamplerPool resamplerPool;
+
+    /**
+     * Voice detection settings for per-speaker stems; null if multitrack capture is disabled
+     */
+    private final VoiceOptions stemOptions;
+
+    /**
+     * Shared DSP chain configuration of the memorizer mixer; may change at any time
+     */
+    private final Supplier<DspConfig> dsp;
+
+    /**
+     * Stems of speakers with voiced audio still inside the memory ring, including speakers who have since left
+     */
+    private final Map<PlatformUser, StemRecorder> stems = new LinkedHashMap<>();
+
+    /**
+     * When each provider in the channel map began speaking, for providers whose user is known
+     */
+    private final Map<AudioProvider, Presence> speakers = new LinkedHashMap<>();
+
+    /**
+     * Speaking intervals that may still overlap the memory ring, oldest first; open intervals end at Long.MAX_VALUE
+     */
+    private final ArrayDeque<Presence> presences = new ArrayDeque<>();
 
-    public Memorizer(Audio audio, AudioChannel channel, float seconds) {
-        this.format = channel.getMixer().getAudioFormat();
+    /**
+     * Providers in the channel map that are resampled into the mixer format
+     */
+    private final Set<AudioProvider> resampledProviders = new HashSet<>();
+
+    private final MemorizerMetrics metrics = new MemorizerMetrics();
+
+    /**
+     * Compressed history reaching further back than the memory ring, and the archiver feeding it; null if history is
+     * not kept beyond the ring
+     */
+    private final ColdTier history;
+    private final HistoryArchiver historyArchiver;
+
+    /**
+     * Coalesces saves of this memorizer taken at the same ring position
+     */
+    private final SaveCoalescer saveCoalescer;
+
+    /**
+     * Background encoder of the memory ring; null if memories are encoded when saved
+     */
+    private volatile PreEncoder preEncoder = null;
+
+    private volatile boolean registered = false;
+    private volatile boolean suspended = false;
+
+    /**
+     * Last time (in milliseconds) a speaker began or ended, or the parent mixer started
+     */
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    /**
+     * Write position of the ring when it was last released, to tell whether a re-created ring picks up its timeline
+     */
+    private long releasedPosition = 0L;
+
+    public Memorizer(Audio audio, AudioChannel channel, MemorizerOptions options) {
+        AudioFormat parentFormat = channel.getMixer().getAudioFormat();
+        this.format = deriveFormat(parentFormat, options.getCaptureSampleRate(), options.getCaptureChannels());
+        this.saveFormat = deriveFormat(parentFormat, options.getSaveSampleRate(), options.getSaveChannels());
         this.channel = channel;
         this.audio = audio;
-        this.sink = new RingBufferSink(format, seconds);
+        this.seconds = options.getSeconds();
+        this.encoding = options.getEncoding();
+        this.backend = options.getBackend();
+        this.ringBudget = options.getRingBudget();
+        this.minSeconds = Math.min(options.getMinSeconds(), options.getSeconds());
+        this.resamplerPool = options.getResamplerPool();
+        this.stemOptions = options.getStemOptions();
+        this.dsp = options.getDsp();
+
+        this.saveCoalescer = new SaveCoalescer();
+
+        VoiceOptions voiceOptions = options.getVoiceOptions();
+        this.sink = new MemorySink(format, createStorage(),
+                voiceOptions != null ? new VoiceIndex(format, voiceOptions, VOICE_INDEX_CAPACITY) : null,
+                metrics);
         this.silentMixerChannel = new SilentMixerChannel(getFormat().getSampleRate(), getFormat().getChannels());
-        this.pipedMixerSink = new PipedMixerSink(format, channel.getMixer().getBufferSize());
-        this.loopbackPipe = new FilteredMixerChannel(pipedMixerSink.getPipe(),
-                new FilterGain(pipedMixerSink.getAudioFormat().getSampleRate(), 0.25f));
+        if (isSameFormat(parentFormat, format)) {
+            this.loopback = new LoopbackSink(format, channel.getMixer().getBufferSize(), LOOPBACK_GAIN);
+            this.loopbackSink = loopback;
+        } else {
+            // Convert once, at the boundary with the parent mixer
+            int bufferSize = channel.getMixer().getBufferSize();
+            this.loopback = new LoopbackSink(format,
+                    (int) Math.ceil((double) bufferSize * format.getSampleRate() * format.getChannels()
+                            / (parentFormat.getSampleRate() * parentFormat.getChannels())),
+                    LOOPBACK_GAIN);
+            this.loopbackSink = new ResamplingMixerSink(parentFormat, bufferSize, loopback, resamplerPool);
+        }
+
+        this.loopbackPipe = loopback.getChannel();
+
+        if (options.getHistorySeconds() > seconds && options.getHistoryBudget() != null) {
+            int blockSize = MemorySink.getCapacity(format, options.getHistoryBlockSeconds());
+            this.history = new ColdTier("history-" + channel.getId(),
+                    createHistoryStore(options),
+                    new HistoryCodec(options.getHistoryEncoding()),
+                    options.getHistoryBudget(),
+                    blockSize,
+                    MemorySink.getCapacity(format, options.getHistorySeconds()));
+            this.historyArchiver = new HistoryArchiver(sink::getRing, history,
+                    new HistoryCodec(options.getHistoryEncoding()));
+        } else {
+            this.history = null;
+            this.historyArchiver = null;
+        }
     }
 
-    public void onParentMixerStart() {
+    /**
+     * Derives a format from another with a different sample rate and channel count.
+     * @param format format to derive from.
+     * @param sampleRate sample rate; 0 to keep the format's.
+     * @param channels channel count; 0 to keep the format's.
+     * @return derived format.
+     */
+    private static AudioFormat deriveFormat(AudioFormat format, float sampleRate, int channels) {
+        if (sampleRate <= 0f)
+            sampleRate = format.getSampleRate();
+        if (channels <= 0)
+            channels = format.getChannels();
+
+        if (sampleRate == format.getSampleRate() && channels == format.getChannels())
+            return format;
+
+        int frameSize = format.getSampleSizeInBits() / 8 * channels;
+        return new AudioFormat(format.getEncoding(), sampleRate, format.getSampleSizeInBits(), channels, frameSize,
+                sampleRate, format.isBigEndian());
+    }
+
+    private static boolean isSameFormat(AudioFormat a, AudioFormat b) {
+        return a.getSampleRate() == b.getSampleRate() && a.getChannels() == b.getChannels();
+    }
+
+    private RingStorage createStorage() {
+        int capacity = MemorySink.getCapacity(format, seconds);
+        if (ringBudget != null) {
+            int wanted = capacity;
+            capacity = ringBudget.admit(this, capacity, MemorySink.getCapacity(format, minSeconds),
+                    format.getChannels(), encoding);
+            if (capacity < wanted)
+                Logger.getGlobal().fine("Memory ring for channel " + channel.getId() + " admitted at "
+                        + capacity + " of " + wanted + " samples");
+        }
+
+        try {
+            return backend.create("memory-" + channel.getId(), format, encoding, capacity);
+        } catch (IOException e) {
+            Logger.getGlobal().log(Level.WARNING, "Problem creating memory ring storage for channel "
+                    + channel.getId() + "; falling back to heap storage", e);
+            return encoding.createStorage(capacity);
+        }
+    }
+
+    private HistoryStore createHistoryStore(MemorizerOptions options) {
+        try {
+            return options.getHistoryBackend().create("history-" + channel.getId());
+        } catch (IOException e) {
+            Logger.getGlobal().log(Level.WARNING, "Problem creating memory history store for channel "
+                    + channel.getId() + "; falling back to heap storage", e);
+            return new HeapHistoryStore();
+        }
+    }
+
+    public synchronized void onParentMixerStart() {
+        lastActivity = System.currentTimeMillis();
+        if (suspended) {
+            resume();
+            return;
+        }
+
         mixer.removeChannel(loopbackPipe);
         mixer.removeChannel(silentMixerChannel);
 
@@ -80,31 +317,244 @@ public class Memorizer {
         mixer.setRunning(true);
 
         if (mixer.isPlaying()) {
-            getParentMixer().removeSink(pipedMixerSink);
-            getParentMixer().addSink(pipedMixerSink);
+            getParentMixer().removeSink(loopbackSink);
+            getParentMixer().addSink(loopbackSink);
         }
     }
 
-    public void onParentMixerStop() {
+    public synchronized void onParentMixerStop() {
+        if (suspended)
+            return;
+
         mixer.removeChannel(loopbackPipe);
         mixer.removeChannel(silentMixerChannel);
 
         if (!mixer.isPlaying()) {
             silentMixerChannel.reset();
             mixer.addChannel(silentMixerChannel);
-            getParentMixer().removeSink(pipedMixerSink);
+            getParentMixer().removeSink(loopbackSink);
         }
 
         mixer.setRunning(true);
     }
 
-    public float[] copyBuffer() {
-        float[] src = sink.getBuffer();
-        synchronized (src) {
-            float[] copy = new float[src.length];
-            System.arraycopy(src, 0, copy, 0, src.length);
-            return copy;
+    /**
+     * Waits until audio the channel has produced up to now has reached the memory ring: everything buffered in the
+     * loopback pipe, and the buffer the memorizer mixer may be in the middle of.  Returns at once if the memorizer is
+     * suspended or its mixer is not running, as nothing is in flight then.
+     * @param timeoutMillis longest time to wait, in milliseconds.
+     * @throws TimeoutException if the memorizer mixer did not get there in time, e.g. because it is stalled.
+     * @throws InterruptedException if the waiting thread was interrupted.
+     */
+    public void flush(long timeoutMillis) throws TimeoutException, InterruptedException {
+        MemoryRing ring = sink.getRing();
+        Mixer mixer = this.mixer;
+        if (ring == null || suspended || mixer == null || !mixer.isRunning())
+            return;
+
+        long inFlight = loopback.getBuffered()
+                + mixer.getBufferSize();
+        long started = System.nanoTime();
+        if (!sink.awaitPosition(ring, ring.getPosition() + inFlight, timeoutMillis * 1_000_000L))
+            throw new TimeoutException("Memorizer mixer for channel " + channel.getId()
+                    + " did not flush within " + timeoutMillis + "ms");
+
+        metrics.getFlushNanos().record(System.nanoTime() - started);
+    }
+
+    /**
+     * Takes an ordered (oldest to newest) snapshot of the memory ring without blocking the mixer thread.
+     * @return memory snapshot.
+     */
+    public MemorySnapshot snapshot() {
+        MemoryRing ring = sink.getRing();
+        if (ring == null)
+            return new MemorySnapshot(new float[0], 0, 0L);
+
+        long started = System.nanoTime();
+        MemorySnapshot snapshot = ring.snapshot();
+        metrics.getSnapshotNanos().record(System.nanoTime() - started);
+        return snapshot;
+    }
+
+    /**
+     * Opens a live window over the memory ring, for streaming it out without copying.
+     * @param guardSeconds seconds at the oldest end of the ring to leave out, giving the reader a head start over
+     *                     the mixer thread.
+     * @return live ring window.
+     */
+    public MemorySource window(float guardSeconds) {
+        MemoryRing ring = sink.getRing();
+        if (ring == null)
+            return snapshot();
+
+        int guard = (int) Math.ceil(guardSeconds * format.getSampleRate()) * format.getChannels();
+        return ring.window(guard);
+    }
+
+    /**
+     * Opens a live window over the newest audio, reaching past the memory ring into the compressed history.
+     * @param seconds seconds of audio wanted.
+     * @return live source of at most the given length, or null if history is not kept beyond the memory ring.
+     */
+    public MemorySource history(float seconds) {
+        if (history == null)
+            return null;
+
+        history.touch();
+
+        MemoryRing ring = sink.getRing();
+        long end = ring != null ? ring.getPosition() : history.getEndPosition();
+        long length = (long) Math.ceil(seconds * format.getSampleRate()) * format.getChannels();
+        long oldest = ring != null ? Math.min(history.getStartPosition(), ring.getStartPosition())
+                : history.getStartPosition();
+        return new TieredSource(history, ring, Math.max(oldest, end - length), end);
+    }
+
+    /**
+     * Gets the length of history kept beyond the memory ring.
+     * @return seconds of history that can be saved; 0 if history is not kept beyond the ring.
+     */
+    public float getHistorySeconds() {
+        if (history == null)
+            return 0f;
+
+        return MemoryWriter.getTimeInSeconds(history.getEndPosition() - history.getStartPosition(),
+                format.getSampleRate(), format.getChannels());
+    }
+
+    /**
+     * Gets the compressed history kept beyond the memory ring.
+     * @return cold tier, or null if history is not kept beyond the ring.
+     */
+    public ColdTier getHistory() {
+        return history;
+    }
+
+    /**
+     * Gets the archiver compressing the memory ring into the history; run periodically by the plugin.
+     * @return history archiver, or null if history is not kept beyond the ring.
+     */
+    HistoryArchiver getHistoryArchiver() {
+        return historyArchiver;
+    }
+
+    /**
+     * Finds the most recent speech within a region of the memory ring, from the voice index.
+     * @param start absolute ring position of the start of the region.
+     * @param end absolute ring position of the end of the region.
+     * @param seconds seconds of speech wanted.
+     * @return speech segments, oldest first; null if speech is not indexed.
+     */
+    public List<VoiceSegment> getSpeech(long start, long end, float seconds) {
+        VoiceIndex voiceIndex = sink.getVoiceIndex();
+        if (voiceIndex == null)
+            return null;
+
+        long length = (long) Math.ceil(seconds * format.getSampleRate()) * format.getChannels();
+        return voiceIndex.getLatestSpeech(start, end, length);
+    }
+
+    /**
+     * Captures the voiced audio of each speaker within a region of the memory ring.
+     * @param start absolute ring position of the start of the region.
+     * @param end absolute ring position of the end of the region.
+     * @return stems of the speakers who spoke within the region; empty if multitrack capture is disabled.
+     */
+    public synchronized List<StemView> getStems(long start, long end) {
+        pruneStems();
+
+        List<StemView> views = new ArrayList<>(stems.size());
+        for (StemRecorder recorder : stems.values()) {
+            StemView view = recorder.view(start, end);
+            if (view != null)
+                views.add(view);
         }
+
+        return views;
+    }
+
+    /**
+     * Forgets voiced audio that has aged out of the memory ring, and the stems of absent speakers left empty by it.
+     */
+    private void pruneStems() {
+        MemoryRing ring = sink.getRing();
+        long start = ring != null ? ring.getStartPosition() : Long.MAX_VALUE;
+
+        Iterator<StemRecorder> iterator = stems.values().iterator();
+        while (iterator.hasNext()) {
+            StemRecorder recorder = iterator.next();
+            if (recorder.prune(start) && !isSpeaking(recorder.getUser()))
+                iterator.remove();
+        }
+    }
+
+    private boolean isSpeaking(PlatformUser user) {
+        for (Presence presence : speakers.values())
+            if (presence.user.equals(user))
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Finds the users who had an active provider at any point within a region of the memory ring.
+     * @param start absolute ring position of the start of the region.
+     * @param end absolute ring position of the end of the region.
+     * @return participating users, in the order they began speaking.
+     */
+    public synchronized Set<PlatformUser> getParticipants(long start, long end) {
+        prunePresences();
+
+        Set<PlatformUser> participants = new LinkedHashSet<>();
+        for (Presence presence : presences)
+            if (presence.start < end && presence.end > start)
+                participants.add(presence.user);
+
+        return participants;
+    }
+
+    /**
+     * Forgets speaking intervals that ended before the oldest audio in the memory ring.
+     */
+    private void prunePresences() {
+        MemoryRing ring = sink.getRing();
+        long ringStart = ring != null ? ring.getStartPosition() : Long.MAX_VALUE;
+        long start = history != null ? Math.min(ringStart, history.getStartPosition()) : ringStart;
+
+        presences.removeIf(presence -> presence.end <= start);
+    }
+
+    /**
+     * Gets the memory ring.
+     * @return memory ring, or null while it is released.
+     */
+    MemoryRing getRing() {
+        return sink.getRing();
+    }
+
+    /**
+     * Gets the ring position audio mixed right now lands at.
+     * @return absolute ring position; 0 if the ring is released.
+     */
+    public long getPosition() {
+        MemoryRing ring = sink.getRing();
+        return ring != null ? ring.getPosition() : 0L;
+    }
+
+    /**
+     * Copies the valid region of the memory ring, ordered oldest to newest.
+     * @return copy of the memory ring.
+     */
+    public float[] copyBuffer() {
+        MemorySnapshot snapshot = snapshot();
+        float[] samples = snapshot.getSamples();
+        if (snapshot.getLength() == samples.length)
+            return samples;
+
+        float[] copy = new float[snapshot.getLength()];
+        System.arraycopy(samples, 0, copy, 0, copy.length);
+        return copy;
     }
 
     public boolean isRegistered() {
@@ -115,6 +565,69 @@ public class Memorizer {
         return mixer.isRunning();
     }
 
+    public MemorizerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public SaveCoalescer getSaveCoalescer() {
+        return saveCoalescer;
+    }
+
+    /**
+     * Gets the background encoder of the memory ring.
+     * @return pre-encoder, or null if memories are encoded when saved.
+     */
+    public PreEncoder getPreEncoder() {
+        return preEncoder;
+    }
+
+    void setPreEncoder(PreEncoder preEncoder) {
+        this.preEncoder = preEncoder;
+    }
+
+    /**
+     * Gets the number of providers currently mixed into the memory.
+     * @return active provider count.
+     */
+    public synchronized int getProviderCount() {
+        return channelMap.size();
+    }
+
+    /**
+     * Gets the number of providers currently resampled into the mixer format.
+     * @return active resampler count.
+     */
+    public synchronized int getResamplerCount() {
+        return resampledProviders.size();
+    }
+
+    /**
+     * Finds how full the memory ring is.
+     * @return fraction of the ring holding memorized audio, between 0 and 1.
+     */
+    public float getFillLevel() {
+        MemoryRing ring = sink.getRing();
+        if (ring == null)
+            return 0f;
+
+        return (float) (ring.getPosition() - ring.getStartPosition()) / ring.getCapacity();
+    }
+
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    /**
+     * Finds how long this memorizer has had no speakers and a stopped parent mixer.
+     * @return idle time, in milliseconds; 0 if the memorizer is active.
+     */
+    public synchronized long getIdleMillis() {
+        if (!channelMap.isEmpty() || getParentMixer().isPlaying())
+            return 0L;
+
+        return Math.max(0L, System.currentTimeMillis() - lastActivity);
+    }
+
     public AudioChannel getChannel() {
         return channel;
     }
@@ -127,28 +640,16 @@ public class Memorizer {
         return getChannel().getMixer();
     }
 
-    public void register() {
+    public synchronized void register() {
         this.mixer = this.audio.createMixer(
                 "memory:" + channel.getId(),
                 (builder) -> {
-                    builder.setFormat(channel.getMixer().getAudioSampleRate(), channel.getMixer().getAudioChannels());
+                    builder.setFormat(format.getSampleRate(), format.getChannels());
                     builder.setBufferTime(channel.getMixer().getBufferSize() /
                             (channel.getMixer().getAudioChannels() * channel.getMixer().getAudioSampleRate()));
                     builder.addSink(sink);
 
-                    builder.addFilter(mixer -> {
-                        Plugin plugin = audio.getPlugin();
-                        int channels = mixer.getAudioChannels();
-                        float sampleRate = mixer.getAudioSampleRate();
-
-                        float limiterThreshold = Float.parseFloat(plugin.getProperty("limiterThreshold", "0.7"));
-                        float limiterAttack = Float.parseFloat(plugin.getProperty("limiterAttack", "1"));
-                        float limiterRelease = Float.parseFloat(plugin.getProperty("limiterRelease", "0.0001"));
-                        float limiterSlope = Float.parseFloat(plugin.getProperty("limiterSlope", "0.5"));
-                        return MuxedMultiChannelFilter.from(channels, (ch) -> new FilterLimiter(
-                                sampleRate, limiterThreshold, limiterAttack, limiterRelease, limiterSlope
-                        ));
-                    });
+                    builder.addFilter(mixer -> new DspChain(dsp, mixer.getAudioSampleRate(), mixer.getAudioChannels()));
                 }
         );
 
@@ -174,13 +675,153 @@ public class Memorizer {
         registered = true;
     }
 
-    public void unregister() {
+    public synchronized void unregister() {
         this.mixer.empty();
 
+        // Flushes persistent (mapped) storage so the ring can be restored on the next load
+        try {
+            sink.close();
+        } catch (Exception e) {
+            Logger.getGlobal().log(Level.WARNING, "Problem closing memory sink for Memorizer", e);
+        }
+
+        if (ringBudget != null)
+            ringBudget.release(this);
+
+        if (history != null)
+            history.close();
+
+        // Hands the loopback resampler back to the pool
+        if (loopbackSink != loopback) {
+            getParentMixer().removeSink(loopbackSink);
+            try {
+                loopbackSink.close();
+            } catch (Exception e) {
+                Logger.getGlobal().log(Level.WARNING, "Problem closing loopback sink for Memorizer", e);
+            }
+        }
+
         registered = false;
     }
 
-    public void onUserBegin(AudioProvider provider) {
+    /**
+     * Suspends an idle memorizer: stops its mixer, detaches it from the parent mixer and optionally releases the
+     * memory ring.  The memorizer resumes on the next speaker or when the parent mixer starts.
+     * @param releaseRing true to release the ring; heap rings are discarded, persistent rings are flushed to disk and
+     *                    restored on resume.
+     * @return true if the memorizer was suspended, false if it was busy or already suspended.
+     */
+    public synchronized boolean suspend(boolean releaseRing) {
+        if (suspended || !registered || !channelMap.isEmpty() || getParentMixer().isPlaying())
+            return false;
+
+        mixer.removeChannel(loopbackPipe);
+        mixer.removeChannel(silentMixerChannel);
+        getParentMixer().removeSink(loopbackSink);
+        mixer.setRunning(false);
+
+        if (releaseRing)
+            releaseStorage();
+
+        suspended = true;
+
+        Logger.getGlobal().fine("Memorizer for channel " + channel.getId() + " suspended");
+        return true;
+    }
+
+    /**
+     * Releases the memory ring of a suspended memorizer, giving its storage back to the ring budget.
+     * @return true if the ring was released, false if the memorizer is not suspended or has no ring.
+     */
+    public synchronized boolean releaseRing() {
+        if (!suspended || sink.getRing() == null)
+            return false;
+
+        releaseStorage();
+
+        Logger.getGlobal().fine("Memory ring of channel " + channel.getId() + " released");
+        return true;
+    }
+
+    private void releaseStorage() {
+        MemoryRing ring = sink.getRing();
+        if (ring != null)
+            releasedPosition = ring.getPosition();
+
+        sink.release();
+        if (ringBudget != null)
+            ringBudget.release(this);
+    }
+
+    /**
+     * Gets the last time a speaker began or ended, or the parent mixer started.
+     * @return time, in milliseconds.
+     */
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    /**
+     * Gets how much audio the memory ring holds.
+     * @return seconds of audio the ring can hold; 0 if the ring is released.
+     */
+    public float getRingSeconds() {
+        MemoryRing ring = sink.getRing();
+        if (ring == null)
+            return 0f;
+
+        return MemoryWriter.getTimeInSeconds(ring.getCapacity(), format.getSampleRate(), format.getChannels());
+    }
+
+    /**
+     * Gets the size of the memory ring's storage.
+     * @return bytes of ring storage; 0 if the ring is released.
+     */
+    public long getRingBytes() {
+        MemoryRing ring = sink.getRing();
+        if (ring == null)
+            return 0L;
+
+        return (long) ring.getCapacity() * encoding.getBytesPerSample();
+    }
+
+    /**
+     * Resumes a suspended memorizer, re-creating its memory ring if it was released.
+     */
+    public synchronized void resume() {
+        if (!suspended)
+            return;
+
+        suspended = false;
+
+        if (sink.getRing() == null) {
+            sink.attach(createStorage());
+
+            // Heap rings start a new timeline; speaking intervals and stems recorded against the old one would line up
+            // with audio their speakers were never part of
+            if (sink.getRing().getPosition() != releasedPosition) {
+                presences.clear();
+                stems.clear();
+            }
+        }
+
+        if (!getParentMixer().isPlaying())
+            onParentMixerStop();
+        else
+            onParentMixerStart();
+
+        Logger.getGlobal().fine("Memorizer for channel " + channel.getId() + " resumed");
+    }
+
+    /**
+     * Starts mixing a speaker into the memory.
+     * @param user speaking user, or null if unknown; stems are only recorded for known users.
+     * @param provider audio of the speaker.
+     */
+    public synchronized void onUserBegin(PlatformUser user, AudioProvider provider) {
+        lastActivity = System.currentTimeMillis();
+        resume();
+
         final AudioProvider originalProvider = provider;
 
         if (provider.getFormat().getSampleRate() != mixer.getAudioSampleRate() ||
@@ -188,11 +829,17 @@ public class Memorizer {
             Logger.getGlobal().fine("Resampling provider " + provider.toString() + "...");
 
             int bufferSize = (int)mixer.getAudioSampleRate() * mixer.getAudioChannels();
-            provider = new ResampledAudioProvider(provider, bufferSize, new FFmpegResampler(
+            provider = new ResampledAudioProvider(provider, bufferSize, resamplerPool.acquire(
                     provider.getFormat(),
                     mixer.getAudioFormat(),
                     bufferSize
             ));
+            resampledProviders.add(originalProvider);
+        }
+
+        if (stemOptions != null && user != null) {
+            StemRecorder recorder = stems.computeIfAbsent(user, (key) -> new StemRecorder(key, format, stemOptions));
+            provider = new StemTap(provider, recorder, sink::getRing);
         }
 
         MixerChannel mixerChannel = new BasicMixerChannel(provider);
@@ -208,6 +855,11 @@ public class Memorizer {
             mixer.setRunning(true);
 
             channelMap.put(originalProvider, mixerChannel);
+            if (user != null) {
+                Presence presence = new Presence(user, getPosition());
+                speakers.put(originalProvider, presence);
+                presences.addLast(presence);
+            }
 
             Logger.getGlobal().fine(
                     "Memorizer Channel " + mixerChannel.toString()
@@ -217,7 +869,18 @@ public class Memorizer {
         }
     }
 
-    public void onUserEnd(AudioProvider provider) {
+    public synchronized void onUserEnd(AudioProvider provider) {
+        lastActivity = System.currentTimeMillis();
+
+        resampledProviders.remove(provider);
+
+        Presence presence = speakers.remove(provider);
+        if (presence != null)
+            presence.end = getPosition();
+
+        pruneStems();
+        prunePresences();
+
         MixerChannel mixerChannel;
         if ((mixerChannel = channelMap.remove(provider)) != null && mixer != null) {
             mixer.removeChannel(mixerChannel);
@@ -247,7 +910,38 @@ public class Memorizer {
         return format;
     }
 
+    /**
+     * Gets the format memories are saved in; audio is converted from the capture format when saving if they differ.
+     * @return save format.
+     */
+    public AudioFormat getSaveFormat() {
+        return saveFormat;
+    }
+
+    public SampleEncoding getEncoding() {
+        return encoding;
+    }
+
     public void reset() {
-        Arrays.fill(sink.getBuffer(), 0f);
+        MemoryRing ring = sink.getRing();
+        if (ring != null)
+            ring.reset();
+        if (history != null)
+            history.clear();
+    }
+
+    /**
+     * An interval of the memory ring during which a user had an active provider.  Positions are only read on channel
+     * events, never on the mixer thread.
+     */
+    private static final class Presence {
+        private final PlatformUser user;
+        private final long start;
+        private long end = Long.MAX_VALUE;
+
+        private Presence(PlatformUser user, long start) {
+            this.user = user;
+            this.start = start;
+        }
     }
 }
@@ -0,0 +1,224 @@
+package io.manebot.plugin.memory;
+
+import io.manebot.plugin.memory.buffer.RingBackend;
+import io.manebot.plugin.memory.buffer.RingBudget;
+import io.manebot.plugin.memory.buffer.SampleEncoding;
+import io.manebot.plugin.memory.dsp.DspConfig;
+import io.manebot.plugin.memory.history.HistoryBackend;
+import io.manebot.plugin.memory.history.HistoryBudget;
+import io.manebot.plugin.memory.resample.ResamplerPool;
+import io.manebot.plugin.memory.vad.VoiceOptions;
+
+import java.util.function.Supplier;
+
+/**
+ * Settings every memorizer is created with.  Built once when the plugin loads and shared by all memorizers.
+ */
+public final class MemorizerOptions {
+    private float seconds = 30f;
+    private SampleEncoding encoding = SampleEncoding.FLOAT32;
+    private RingBackend backend = RingBackend.HEAP;
+    private ResamplerPool resamplerPool;
+    private VoiceOptions stemOptions = null;
+    private VoiceOptions voiceOptions = null;
+    private Supplier<DspConfig> dsp = () -> DspConfig.EMPTY;
+    private float captureSampleRate = 0f;
+    private int captureChannels = 0;
+    private float saveSampleRate = 0f;
+    private int saveChannels = 0;
+    private float historySeconds = 0f;
+    private float historyBlockSeconds = 1f;
+    private SampleEncoding historyEncoding = SampleEncoding.MULAW;
+    private HistoryBackend historyBackend = HistoryBackend.HEAP;
+    private HistoryBudget historyBudget = null;
+    private RingBudget ringBudget = null;
+    private float minSeconds = 0f;
+
+    public float getSeconds() {
+        return seconds;
+    }
+
+    /**
+     * Sets how much audio each memorizer remembers.
+     * @param seconds seconds of audio in the memory ring.
+     * @return these options.
+     */
+    public MemorizerOptions setSeconds(float seconds) {
+        this.seconds = seconds;
+        return this;
+    }
+
+    public SampleEncoding getEncoding() {
+        return encoding;
+    }
+
+    public MemorizerOptions setEncoding(SampleEncoding encoding) {
+        this.encoding = encoding;
+        return this;
+    }
+
+    public RingBackend getBackend() {
+        return backend;
+    }
+
+    public MemorizerOptions setBackend(RingBackend backend) {
+        this.backend = backend;
+        return this;
+    }
+
+    public ResamplerPool getResamplerPool() {
+        return resamplerPool;
+    }
+
+    public MemorizerOptions setResamplerPool(ResamplerPool resamplerPool) {
+        this.resamplerPool = resamplerPool;
+        return this;
+    }
+
+    /**
+     * Gets the voice detection settings of per-speaker stems.
+     * @return stem settings, or null if multitrack capture is disabled.
+     */
+    public VoiceOptions getStemOptions() {
+        return stemOptions;
+    }
+
+    public MemorizerOptions setStemOptions(VoiceOptions stemOptions) {
+        this.stemOptions = stemOptions;
+        return this;
+    }
+
+    /**
+     * Gets the voice detection settings of the voice index.
+     * @return voice index settings, or null if speech is not indexed.
+     */
+    public VoiceOptions getVoiceOptions() {
+        return voiceOptions;
+    }
+
+    public MemorizerOptions setVoiceOptions(VoiceOptions voiceOptions) {
+        this.voiceOptions = voiceOptions;
+        return this;
+    }
+
+    /**
+     * Gets the current DSP chain configuration of memory mixers.
+     * @return supplier of the current configuration; read by every mixer on every buffer.
+     */
+    public Supplier<DspConfig> getDsp() {
+        return dsp;
+    }
+
+    public MemorizerOptions setDsp(Supplier<DspConfig> dsp) {
+        this.dsp = dsp;
+        return this;
+    }
+
+    public float getCaptureSampleRate() {
+        return captureSampleRate;
+    }
+
+    public int getCaptureChannels() {
+        return captureChannels;
+    }
+
+    /**
+     * Sets the format memorizer mixers and rings run at.  Audio is converted into it once, where it enters the
+     * memorizer mixer.
+     * @param sampleRate capture sample rate; 0 for the parent mixer's.
+     * @param channels capture channel count; 0 for the parent mixer's.
+     * @return these options.
+     */
+    public MemorizerOptions setCaptureFormat(float sampleRate, int channels) {
+        this.captureSampleRate = sampleRate;
+        this.captureChannels = channels;
+        return this;
+    }
+
+    public float getSaveSampleRate() {
+        return saveSampleRate;
+    }
+
+    public int getSaveChannels() {
+        return saveChannels;
+    }
+
+    /**
+     * Sets the format memories are handed to the repository encoder in.
+     * @param sampleRate save sample rate; 0 for the parent mixer's.
+     * @param channels save channel count; 0 for the parent mixer's.
+     * @return these options.
+     */
+    public MemorizerOptions setSaveFormat(float sampleRate, int channels) {
+        this.saveSampleRate = sampleRate;
+        this.saveChannels = channels;
+        return this;
+    }
+
+    public float getHistorySeconds() {
+        return historySeconds;
+    }
+
+    public float getHistoryBlockSeconds() {
+        return historyBlockSeconds;
+    }
+
+    public SampleEncoding getHistoryEncoding() {
+        return historyEncoding;
+    }
+
+    public HistoryBackend getHistoryBackend() {
+        return historyBackend;
+    }
+
+    /**
+     * Gets the global budget of compressed history.
+     * @return history budget, or null if history is not kept beyond the memory ring.
+     */
+    public HistoryBudget getHistoryBudget() {
+        return historyBudget;
+    }
+
+    /**
+     * Keeps compressed history reaching further back than the memory ring.
+     * @param seconds seconds of history each memorizer may keep, including what is still in the ring.
+     * @param blockSeconds seconds of audio compressed at a time.
+     * @param encoding encoding samples are quantized to before compressing; PCM16 or MULAW.
+     * @param backend where compressed blocks are kept.
+     * @param budget global budget all memorizers' history counts against.
+     * @return these options.
+     */
+    public MemorizerOptions setHistory(float seconds, float blockSeconds, SampleEncoding encoding,
+                                       HistoryBackend backend, HistoryBudget budget) {
+        this.historySeconds = seconds;
+        this.historyBlockSeconds = blockSeconds;
+        this.historyEncoding = encoding;
+        this.historyBackend = backend;
+        this.historyBudget = budget;
+        return this;
+    }
+
+    /**
+     * Gets the global budget memory rings are admitted against.
+     * @return ring budget, or null if every ring gets its full size.
+     */
+    public RingBudget getRingBudget() {
+        return ringBudget;
+    }
+
+    public float getMinSeconds() {
+        return minSeconds;
+    }
+
+    /**
+     * Admits memory rings against a global budget, shrinking them when the budget runs short.
+     * @param ringBudget global ring budget.
+     * @param minSeconds seconds of audio every ring holds, even if the budget is exhausted.
+     * @return these options.
+     */
+    public MemorizerOptions setRingBudget(RingBudget ringBudget, float minSeconds) {
+        this.ringBudget = ringBudget;
+        this.minSeconds = minSeconds;
+        return this;
+    }
+}
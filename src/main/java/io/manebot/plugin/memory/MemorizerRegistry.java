@@ -0,0 +1,116 @@
+package io.manebot.plugin.memory;
+
+import io.manebot.plugin.audio.channel.AudioChannel;
+import io.manebot.plugin.audio.mixer.Mixer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Concurrent registry of memorizers, indexed by the channel they memorize and by that channel's (parent) mixer.
+ *
+ * Lookups never lock.  Creation locks only the slot of the channel being created, so a slow
+ * <code>Memorizer.register()</code> on one channel never holds up events or creation on any other channel.
+ */
+public final class MemorizerRegistry {
+    private final ConcurrentMap<AudioChannel, Slot> byChannel = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Mixer, Memorizer> byParentMixer = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the memorizer for a channel, if one was created.
+     * @param channel audio channel.
+     * @return memorizer, or null if none exists for the channel.
+     */
+    public Memorizer get(AudioChannel channel) {
+        Slot slot = byChannel.get(channel);
+        return slot != null ? slot.memorizer : null;
+    }
+
+    /**
+     * Gets the memorizer whose parent mixer is the given mixer.
+     * @param parentMixer mixer of a memorized channel.
+     * @return memorizer, or null if no memorized channel uses the mixer.
+     */
+    public Memorizer get(Mixer parentMixer) {
+        return byParentMixer.get(parentMixer);
+    }
+
+    /**
+     * Gets the memorizer for a channel, creating (and registering) it if necessary.
+     * @param channel audio channel.
+     * @param constructor creates and registers a memorizer for the channel, or returns null to leave the channel
+     *                    without one; called at most once at a time per channel, and never while holding a
+     *                    registry-wide lock.
+     * @return memorizer, or null if the constructor declined the channel.
+     */
+    public Memorizer getOrCreate(AudioChannel channel, Function<AudioChannel, Memorizer> constructor) {
+        Slot slot = byChannel.computeIfAbsent(channel, (ch) -> new Slot());
+
+        Memorizer memorizer = slot.memorizer;
+        if (memorizer != null)
+            return memorizer;
+
+        synchronized (slot) {
+            if (slot.memorizer == null) {
+                try {
+                    memorizer = constructor.apply(channel);
+                } catch (RuntimeException ex) {
+                    byChannel.remove(channel, slot);
+                    throw ex;
+                }
+
+                if (memorizer == null) {
+                    byChannel.remove(channel, slot);
+                    return null;
+                }
+
+                byParentMixer.put(memorizer.getParentMixer(), memorizer);
+                slot.memorizer = memorizer;
+            }
+
+            return slot.memorizer;
+        }
+    }
+
+    /**
+     * Gets all memorizers currently registered.
+     * @return unmodifiable snapshot of the registered memorizers.
+     */
+    public Collection<Memorizer> getMemorizers() {
+        Collection<Memorizer> memorizers = new ArrayList<>(byChannel.size());
+        for (Slot slot : byChannel.values()) {
+            Memorizer memorizer = slot.memorizer;
+            if (memorizer != null)
+                memorizers.add(memorizer);
+        }
+
+        return Collections.unmodifiableCollection(memorizers);
+    }
+
+    /**
+     * Removes a channel's memorizer from the registry.
+     * @param channel audio channel.
+     * @return removed memorizer, or null if there was none.
+     */
+    public Memorizer remove(AudioChannel channel) {
+        Slot slot = byChannel.remove(channel);
+        if (slot == null)
+            return null;
+
+        synchronized (slot) {
+            Memorizer memorizer = slot.memorizer;
+            if (memorizer != null)
+                byParentMixer.remove(memorizer.getParentMixer(), memorizer);
+
+            return memorizer;
+        }
+    }
+
+    private static final class Slot {
+        private volatile Memorizer memorizer;
+    }
+}
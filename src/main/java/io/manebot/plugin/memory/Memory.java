@@ -1,7 +1,10 @@
 package io.manebot.plugin.memory;
 
+import io.manebot.command.exception.CommandArgumentException;
+import io.manebot.command.exception.CommandExecutionException;
 import io.manebot.conversation.Conversation;
 import io.manebot.database.Database;
+import io.manebot.database.model.User;
 import io.manebot.event.EventHandler;
 import io.manebot.event.EventListener;
 
@@ -13,9 +16,58 @@ import io.manebot.plugin.audio.event.channel.AudioChannelUserBeginEvent;
 import io.manebot.plugin.audio.event.channel.AudioChannelUserEndEvent;
 import io.manebot.plugin.audio.event.mixer.MixerStateChangedEvent;
 import io.manebot.plugin.audio.mixer.Mixer;
+import io.manebot.platform.PlatformUser;
+import io.manebot.plugin.memory.buffer.MappedRingBackend;
+import io.manebot.plugin.memory.buffer.MemorySource;
+import io.manebot.plugin.memory.buffer.RingBackend;
+import io.manebot.plugin.memory.buffer.RingBudget;
+import io.manebot.plugin.memory.buffer.SampleEncoding;
+import io.manebot.plugin.memory.cluster.ChannelCoordinator;
+import io.manebot.plugin.memory.cluster.FileChannelCoordinator;
+import io.manebot.plugin.memory.cluster.ForwardedSave;
+import io.manebot.plugin.memory.cluster.LocalChannelCoordinator;
 import io.manebot.plugin.memory.database.model.MemoryManager;
+import io.manebot.plugin.memory.dsp.DspConfig;
+import io.manebot.plugin.memory.encode.PreEncoder;
+import io.manebot.plugin.memory.history.FileHistoryStore;
+import io.manebot.plugin.memory.history.HistoryBackend;
+import io.manebot.plugin.memory.history.HistoryBudget;
+import io.manebot.plugin.memory.metrics.MetricsRegistry;
+import io.manebot.plugin.memory.resample.ResamplerPool;
+import io.manebot.plugin.memory.save.MemoryWriter;
+import io.manebot.plugin.memory.save.RejectionPolicy;
+import io.manebot.plugin.memory.save.SaveCoalescer;
+import io.manebot.plugin.memory.save.SaveExecutor;
+import io.manebot.plugin.memory.save.SaveRequest;
+import io.manebot.plugin.memory.save.SaveResult;
+import io.manebot.plugin.memory.stem.StemView;
+import io.manebot.plugin.memory.trim.TrimRegion;
+import io.manebot.plugin.memory.trim.ThresholdTrimmer;
+import io.manebot.plugin.memory.trim.Trimmer;
+import io.manebot.plugin.memory.trim.ZeroTrimmer;
+import io.manebot.plugin.memory.vad.SpeechSource;
+import io.manebot.plugin.memory.vad.VoiceOptions;
+import io.manebot.plugin.memory.vad.VoiceSegment;
+import io.manebot.plugin.music.Music;
+import io.manebot.plugin.music.database.model.Community;
+import io.manebot.plugin.music.database.model.TrackRepository;
+import io.manebot.plugin.music.repository.NullRepository;
+import io.manebot.user.UserAssociation;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
 public class Memory implements PluginReference, EventListener {
@@ -25,58 +77,638 @@ public class Memory implements PluginReference, EventListener {
 
     private final MemoryManager memoryManager;
 
-    private final Map<AudioChannel, Memorizer> memorizerMap = new HashMap<>();
+    private final MemorizerRegistry registry = new MemorizerRegistry();
+    private final MetricsRegistry metrics = new MetricsRegistry();
 
-    private float seconds;
+    private MemorizerOptions memorizerOptions;
+    private volatile DspConfig dspConfig = DspConfig.EMPTY;
+
+    private SaveExecutor saveExecutor;
+    private ScheduledExecutorService idleExecutor;
+    private ScheduledExecutorService backgroundExecutor;
+    private boolean preEncode;
+    private float preEncodeChunkSeconds;
+    private HistoryBudget historyBudget;
+    private RingBudget ringBudget;
+    private final AtomicBoolean reclaimPending = new AtomicBoolean(false);
+    private ResamplerPool resamplerPool;
+    private MemoryWriter writer;
+    private boolean streamingSaves;
+    private float streamingGuardSeconds;
+    private long flushTimeoutMillis;
+
+    /**
+     * Coordinator assigning channels to the nodes sharing them; null if this node memorizes every channel it sees
+     */
+    private ChannelCoordinator coordinator;
+
+    /**
+     * Owners of channels other nodes memorize, looked up at most once per cache period so channel events on them stay
+     * cheap
+     */
+    private final ConcurrentMap<String, RemoteOwner> remoteOwners = new ConcurrentHashMap<>();
+    private long coordinatorCacheMillis;
+
+    /**
+     * Background tasks (pre-encoding, history archiving) scheduled for each memorizer
+     */
+    private final ConcurrentMap<Memorizer, List<ScheduledFuture<?>>> backgroundTasks = new ConcurrentHashMap<>();
 
     public Memory(Plugin plugin, Plugin audioPlugin, Plugin musicPlugin, Database memoryDatabase) {
         this.plugin = plugin;
         this.audioPlugin = audioPlugin;
         this.musicPlugin = musicPlugin;
 
-        this.memoryManager = new MemoryManager(memoryDatabase);
+        this.memoryManager = new MemoryManager(memoryDatabase,
+                Integer.parseInt(plugin.getProperty("memoryCacheSize", "256")));
     }
 
     public MemoryManager getMemoryManager() {
         return memoryManager;
     }
 
+    public SaveExecutor getSaveExecutor() {
+        return saveExecutor;
+    }
+
+    public ResamplerPool getResamplerPool() {
+        return resamplerPool;
+    }
+
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the global budget of compressed history.
+     * @return history budget, or null if history is not kept beyond the memory rings.
+     */
+    public HistoryBudget getHistoryBudget() {
+        return historyBudget;
+    }
+
+    /**
+     * Gets the global budget memory rings are admitted against.
+     * @return ring budget, or null if every ring gets its full size.
+     */
+    public RingBudget getRingBudget() {
+        return ringBudget;
+    }
+
+    public MemoryWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Finds if memories are streamed straight out of the live ring instead of a snapshot copy.
+     * @return true if saves stream from the live ring.
+     */
+    public boolean isStreamingSaves() {
+        return streamingSaves;
+    }
+
+    public float getStreamingGuardSeconds() {
+        return streamingGuardSeconds;
+    }
+
+    /**
+     * Gets how long a save waits for in-flight audio to reach the memory ring before giving up.
+     * @return flush timeout, in milliseconds.
+     */
+    public long getFlushTimeoutMillis() {
+        return flushTimeoutMillis;
+    }
+
+    /**
+     * Gets the coordinator assigning channels to the nodes sharing them.
+     * @return channel coordinator, or null if channels are not coordinated.
+     */
+    public ChannelCoordinator getCoordinator() {
+        return coordinator;
+    }
+
+    /**
+     * Gets the DSP chain configuration memory mixers currently run.
+     * @return DSP chain configuration.
+     */
+    public DspConfig getDspConfig() {
+        return dspConfig;
+    }
+
+    /**
+     * Swaps the DSP chain of every memory mixer.  Each mixer rebuilds its filters on its next buffer; nothing is
+     * re-registered.
+     * @param dspConfig new DSP chain configuration.
+     */
+    public void setDspConfig(DspConfig dspConfig) {
+        this.dspConfig = dspConfig;
+    }
+
     @Override
     public void load(Plugin.Future future) {
-        seconds = Float.parseFloat(future.getPlugin().getProperty("memorySeconds", "30"));
+        float seconds = Float.parseFloat(future.getPlugin().getProperty("memorySeconds", "30"));
+        SampleEncoding encoding = SampleEncoding.fromName(future.getPlugin().getProperty("memoryEncoding", "float32"));
+
+        RingBackend backend;
+        String backendName = future.getPlugin().getProperty("memoryBackend", "heap");
+        switch (backendName.toLowerCase()) {
+            case "heap":
+                backend = RingBackend.HEAP;
+                break;
+            case "mapped":
+                backend = new MappedRingBackend(Paths.get(future.getPlugin().getProperty("memoryDirectory", "memory")));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown memory backend: " + backendName);
+        }
+
+        saveExecutor = new SaveExecutor(
+                Integer.parseInt(future.getPlugin().getProperty("saveThreads", "2")),
+                Integer.parseInt(future.getPlugin().getProperty("saveQueueDepth", "16")),
+                RejectionPolicy.fromName(future.getPlugin().getProperty("saveRejectionPolicy", "abort"))
+        );
+
+        String saveMode = future.getPlugin().getProperty("saveMode", "snapshot");
+        switch (saveMode.toLowerCase()) {
+            case "snapshot":
+                streamingSaves = false;
+                break;
+            case "streaming":
+                streamingSaves = true;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown save mode: " + saveMode);
+        }
+        streamingGuardSeconds = Float.parseFloat(future.getPlugin().getProperty("streamingGuardSeconds", "1"));
+        flushTimeoutMillis = Long.parseLong(future.getPlugin().getProperty("flushTimeoutMillis", "2000"));
+
+        VoiceOptions stemOptions = null;
+        if (Boolean.parseBoolean(future.getPlugin().getProperty("multitrack", "false"))) {
+            stemOptions = new VoiceOptions(
+                    Float.parseFloat(future.getPlugin().getProperty("stemThreshold", "-45")),
+                    Float.parseFloat(future.getPlugin().getProperty("stemWindowSeconds", "0.01")),
+                    Float.parseFloat(future.getPlugin().getProperty("stemHoldSeconds", "0.25"))
+            );
+        }
+
+        VoiceOptions voiceOptions = null;
+        if (Boolean.parseBoolean(future.getPlugin().getProperty("voiceIndex", "true"))) {
+            voiceOptions = new VoiceOptions(
+                    Float.parseFloat(future.getPlugin().getProperty("voiceThreshold", "-50")),
+                    Float.parseFloat(future.getPlugin().getProperty("voiceWindowSeconds", "0.02")),
+                    Float.parseFloat(future.getPlugin().getProperty("voiceHoldSeconds", "0.3"))
+            );
+        }
+
+        dspConfig = DspConfig.parse(future.getPlugin().getProperty("memoryDsp", getDefaultDsp()));
+
+        resamplerPool = new ResamplerPool(
+                Integer.parseInt(future.getPlugin().getProperty("resamplerPoolSize", "32")),
+                (long) (Float.parseFloat(future.getPlugin().getProperty("resamplerIdleSeconds", "300")) * 1000L)
+        );
+
+        writer = new MemoryWriter(musicPlugin, memoryManager, resamplerPool, createTrimmer(future.getPlugin()),
+                Boolean.parseBoolean(future.getPlugin().getProperty("fingerprints", "true")));
+
+        memorizerOptions = new MemorizerOptions()
+                .setSeconds(seconds)
+                .setEncoding(encoding)
+                .setBackend(backend)
+                .setResamplerPool(resamplerPool)
+                .setStemOptions(stemOptions)
+                .setVoiceOptions(voiceOptions)
+                .setDsp(this::getDspConfig)
+                .setCaptureFormat(
+                        Float.parseFloat(future.getPlugin().getProperty("captureSampleRate", "0")),
+                        Integer.parseInt(future.getPlugin().getProperty("captureChannels", "0"))
+                )
+                .setSaveFormat(
+                        Float.parseFloat(future.getPlugin().getProperty("saveSampleRate", "0")),
+                        Integer.parseInt(future.getPlugin().getProperty("saveChannels", "0"))
+                );
+
+        float historySeconds = Float.parseFloat(future.getPlugin().getProperty("historySeconds", "0"));
+        if (historySeconds > seconds) {
+            HistoryBackend historyBackend;
+            String historyBackendName = future.getPlugin().getProperty("historyBackend", "heap");
+            switch (historyBackendName.toLowerCase()) {
+                case "heap":
+                    historyBackend = HistoryBackend.HEAP;
+                    break;
+                case "file":
+                    Path historyDirectory = Paths.get(future.getPlugin().getProperty("memoryDirectory", "memory"));
+                    historyBackend = (name) -> new FileHistoryStore(historyDirectory.resolve(name));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown history backend: " + historyBackendName);
+            }
+
+            SampleEncoding historyEncoding =
+                    SampleEncoding.fromName(future.getPlugin().getProperty("historyEncoding", "mulaw"));
+            if (historyEncoding == SampleEncoding.FLOAT32)
+                throw new IllegalArgumentException("History cannot be kept as " + historyEncoding);
+
+            historyBudget = new HistoryBudget((long) (Float.parseFloat(
+                    future.getPlugin().getProperty("historyBudgetMegabytes", "256")) * 1024L * 1024L));
+
+            memorizerOptions.setHistory(
+                    historySeconds,
+                    Float.parseFloat(future.getPlugin().getProperty("historyBlockSeconds", "1")),
+                    historyEncoding,
+                    historyBackend,
+                    historyBudget
+            );
+        }
+
+        float budgetMegabytes = Float.parseFloat(future.getPlugin().getProperty("memoryBudgetMegabytes", "0"));
+        if (budgetMegabytes > 0) {
+            ringBudget = new RingBudget((long) (budgetMegabytes * 1024L * 1024L), this::requestReclaim);
+            memorizerOptions.setRingBudget(ringBudget,
+                    Float.parseFloat(future.getPlugin().getProperty("memoryMinSeconds", "5")));
+        }
+
+        preEncode = Boolean.parseBoolean(future.getPlugin().getProperty("preEncode", "false"));
+        preEncodeChunkSeconds = Float.parseFloat(future.getPlugin().getProperty("preEncodeChunkSeconds", "2"));
+        if (preEncode || memorizerOptions.getHistoryBudget() != null) {
+            backgroundExecutor = Executors.newScheduledThreadPool(
+                    Integer.parseInt(future.getPlugin().getProperty("backgroundThreads", "1")),
+                    (runnable) -> {
+                        Thread thread = new Thread(runnable, "memory-background");
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    }
+            );
+        }
+
+        coordinator = createCoordinator(future.getPlugin());
+        coordinatorCacheMillis = (long) (Float.parseFloat(
+                future.getPlugin().getProperty("coordinatorCacheSeconds", "30")) * 1000f);
+        if (coordinator != null)
+            coordinator.setSaveHandler(this::saveForwarded);
+
+        float idleSuspendMinutes = Float.parseFloat(future.getPlugin().getProperty("idleSuspendMinutes", "10"));
+        if (idleSuspendMinutes > 0 || ringBudget != null) {
+            idleExecutor = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+                Thread thread = new Thread(runnable, "memory-idle");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        if (idleSuspendMinutes > 0) {
+            long idleMillis = (long) (idleSuspendMinutes * 60_000L);
+            long checkSeconds = Long.parseLong(future.getPlugin().getProperty("idleCheckSeconds", "30"));
+            boolean releaseRing = Boolean.parseBoolean(future.getPlugin().getProperty("idleReleaseRing", "true"));
+
+            idleExecutor.scheduleWithFixedDelay(
+                    () -> suspendIdle(idleMillis, releaseRing),
+                    checkSeconds, checkSeconds, TimeUnit.SECONDS
+            );
+        }
+    }
+
+    private static ChannelCoordinator createCoordinator(Plugin plugin) {
+        String nodeId = plugin.getProperty("nodeId", UUID.randomUUID().toString());
+        String coordinatorName = plugin.getProperty("coordinator", "none");
+        switch (coordinatorName.toLowerCase()) {
+            case "none":
+                return null;
+            case "local":
+                return new LocalChannelCoordinator(
+                        LocalChannelCoordinator.getGroup(plugin.getProperty("coordinatorGroup", "memory")),
+                        nodeId
+                );
+            case "file":
+                Path directory = Paths.get(plugin.getProperty("coordinatorDirectory",
+                        Paths.get(plugin.getProperty("memoryDirectory", "memory")).resolve("cluster").toString()));
+                try {
+                    return new FileChannelCoordinator(
+                            directory,
+                            nodeId,
+                            Long.parseLong(plugin.getProperty("coordinatorPollMillis", "250")),
+                            (long) (Float.parseFloat(plugin.getProperty("forwardTimeoutSeconds", "30")) * 1000f)
+                    );
+                } catch (IOException e) {
+                    throw new IllegalArgumentException("Cannot coordinate through " + directory, e);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown coordinator: " + coordinatorName);
+        }
+    }
+
+    /**
+     * Suspends every memorizer that has been idle for at least the given time.
+     * @param idleMillis idle time, in milliseconds, after which a memorizer is suspended.
+     * @param releaseRing true to release the memory rings of suspended memorizers.
+     */
+    private void suspendIdle(long idleMillis, boolean releaseRing) {
+        for (Memorizer memorizer : registry.getMemorizers()) {
+            try {
+                if (!memorizer.isSuspended() && memorizer.getIdleMillis() >= idleMillis)
+                    suspend(memorizer, releaseRing);
+            } catch (RuntimeException ex) {
+                plugin.getLogger().log(Level.WARNING, "Problem suspending idle memorizer", ex);
+            }
+        }
+    }
+
+    /**
+     * Schedules a reclaim of ring storage, unless one is already pending.  Called by ring admissions, which may hold a
+     * memorizer's lock, so the reclaim itself runs on the idle thread.
+     */
+    private void requestReclaim() {
+        ScheduledExecutorService executor = idleExecutor;
+        if (executor == null || !reclaimPending.compareAndSet(false, true))
+            return;
+
+        try {
+            executor.execute(this::reclaim);
+        } catch (RejectedExecutionException ex) {
+            reclaimPending.set(false);
+        }
+    }
+
+    /**
+     * Releases the rings of the least recently active memorizers that are not in use, until ring storage is back
+     * under the budget's watermark.  Active memorizers keep their rings.
+     */
+    private void reclaim() {
+        reclaimPending.set(false);
+
+        List<Memorizer> candidates = new ArrayList<>(registry.getMemorizers());
+        candidates.sort(Comparator.comparingLong(Memorizer::getLastActivity));
+
+        for (Memorizer memorizer : candidates) {
+            if (ringBudget.getUsedBytes() <= ringBudget.getReclaimBytes())
+                break;
+
+            try {
+                boolean released = memorizer.isSuspended()
+                        ? memorizer.releaseRing()
+                        : memorizer.getIdleMillis() > 0L && suspend(memorizer, true);
+                if (released)
+                    plugin.getLogger().fine("Reclaimed memory ring of channel " + memorizer.getChannel().getId());
+            } catch (RuntimeException ex) {
+                plugin.getLogger().log(Level.WARNING, "Problem reclaiming memory ring", ex);
+            }
+        }
+    }
+
+    /**
+     * Builds the default DSP chain: the limiter memory mixers have always run, from the audio plugin's settings.
+     */
+    private String getDefaultDsp() {
+        return "limiter"
+                + ":" + audioPlugin.getProperty("limiterThreshold", "0.7")
+                + ":" + audioPlugin.getProperty("limiterAttack", "1")
+                + ":" + audioPlugin.getProperty("limiterRelease", "0.0001")
+                + ":" + audioPlugin.getProperty("limiterSlope", "0.5");
+    }
+
+    private static Trimmer createTrimmer(Plugin plugin) {
+        String trimMode = plugin.getProperty("trimMode", "zero");
+        switch (trimMode.toLowerCase()) {
+            case "zero":
+                return new ZeroTrimmer();
+            case "threshold":
+                return new ThresholdTrimmer(
+                        Float.parseFloat(plugin.getProperty("trimThreshold", "-50")),
+                        Float.parseFloat(plugin.getProperty("trimWindowSeconds", "0.01")),
+                        Float.parseFloat(plugin.getProperty("trimHoldSeconds", "0.25"))
+                );
+            default:
+                throw new IllegalArgumentException("Unknown trim mode: " + trimMode);
+        }
     }
 
     @Override
     public void unload(Plugin.Future future) {
-        synchronized (memorizerMap) {
-            Set<AudioChannel> registeredChannels = new HashSet<>(memorizerMap.keySet());
-            registeredChannels.forEach(channel -> {
-                Memorizer removed = memorizerMap.remove(channel);
-                if (removed == null) {
-                    return;
-                }
+        if (idleExecutor != null) {
+            idleExecutor.shutdownNow();
+            idleExecutor = null;
+        }
 
-                removed.unregister();
-            });
+        if (backgroundExecutor != null) {
+            backgroundExecutor.shutdownNow();
+            backgroundExecutor = null;
+        }
+
+        if (saveExecutor != null) {
+            saveExecutor.close();
+            saveExecutor = null;
+        }
+
+        registry.getMemorizers().forEach(this::remove);
+
+        if (resamplerPool != null) {
+            resamplerPool.close();
+            resamplerPool = null;
+        }
+
+        if (coordinator != null) {
+            coordinator.close();
+            coordinator = null;
         }
     }
 
+    /**
+     * Suspends an idle memorizer, giving up this node's claim on its channel so another node may take it over.
+     * @param memorizer memorizer to suspend.
+     * @param releaseRing true to release the memory ring.
+     * @return true if the memorizer was suspended.
+     */
+    private boolean suspend(Memorizer memorizer, boolean releaseRing) {
+        if (!memorizer.suspend(releaseRing))
+            return false;
+
+        ChannelCoordinator coordinator = this.coordinator;
+        if (coordinator != null)
+            coordinator.release(memorizer.getChannel().getId());
+
+        return true;
+    }
+
+    /**
+     * Removes a memorizer from the registry and unregisters it.
+     * @param memorizer memorizer to remove.
+     */
+    private void remove(Memorizer memorizer) {
+        Memorizer removed = registry.remove(memorizer.getChannel());
+        if (removed == null) {
+            return;
+        }
+
+        List<ScheduledFuture<?>> tasks = backgroundTasks.remove(removed);
+        if (tasks != null)
+            tasks.forEach(task -> task.cancel(false));
+
+        removed.unregister();
+        metrics.unregister(removed.getChannel().getId());
+    }
+
+    /**
+     * Finds the node memorizing a channel in place of this one.  Lookups are cached, so the answer may be up to a cache
+     * period old.
+     * @param channel audio channel.
+     * @return identifier of the owning node, or null if this node memorizes the channel, no node does, or channels are
+     * not coordinated.
+     */
+    public String getRemoteOwner(AudioChannel channel) {
+        ChannelCoordinator coordinator = this.coordinator;
+        if (coordinator == null)
+            return null;
+
+        Memorizer memorizer = registry.get(channel);
+        if (memorizer != null && !memorizer.isSuspended())
+            return null;
+
+        RemoteOwner cached = remoteOwners.get(channel.getId());
+        long now = System.currentTimeMillis();
+        if (cached != null && cached.expires > now)
+            return cached.nodeId;
+
+        String owner = coordinator.getOwner(channel.getId());
+        if (owner == null || owner.equals(coordinator.getNodeId())) {
+            remoteOwners.remove(channel.getId());
+            return null;
+        }
+
+        remoteOwners.put(channel.getId(), new RemoteOwner(owner, now + coordinatorCacheMillis));
+        return owner;
+    }
+
+    /**
+     * Gets the memorizer of a channel, creating it if this node may memorize the channel.
+     * @param channel audio channel.
+     * @return memorizer, or null if the channel is null or another node memorizes it.
+     */
     public Memorizer getMemorizer(AudioChannel channel) {
         if (channel == null) {
             return null;
         }
 
-        return memorizerMap.computeIfAbsent(channel, (ch) -> {
-            Conversation conversation = ch.getConversation();
-            if (conversation != null) {
-                ch.getConversation().checkPermission("memory.listen");
+        Memorizer memorizer = registry.get(channel);
+        if (memorizer != null) {
+            return reclaimOwnership(memorizer);
+        }
+
+        // Channels owned by another node are left to it
+        if (getRemoteOwner(channel) != null) {
+            return null;
+        }
+
+        return registry.getOrCreate(channel, this::createMemorizer);
+    }
+
+    /**
+     * Creates and registers a memorizer, claiming its channel for this node once it is up.
+     * @param channel audio channel.
+     * @return memorizer, or null if another node claimed the channel first.
+     */
+    private Memorizer createMemorizer(AudioChannel channel) {
+        Conversation conversation = channel.getConversation();
+        if (conversation != null) {
+            conversation.checkPermission("memory.listen");
+        }
+
+        Audio audio = audioPlugin.getInstance(Audio.class);
+        Memorizer m = new Memorizer(audio, channel, memorizerOptions);
+        m.register();
+
+        ChannelCoordinator coordinator = this.coordinator;
+        if (coordinator != null) {
+            String owner = coordinator.acquire(channel.getId());
+            if (!owner.equals(coordinator.getNodeId())) {
+                m.unregister();
+                remoteOwners.put(channel.getId(), new RemoteOwner(owner,
+                        System.currentTimeMillis() + coordinatorCacheMillis));
+                return null;
+            }
+
+            remoteOwners.remove(channel.getId());
+        }
+
+        try {
+            metrics.register(channel.getId(), m.getMetrics());
+
+            List<ScheduledFuture<?>> tasks = new ArrayList<>();
+            if (preEncode) {
+                ScheduledFuture<?> task = startPreEncoder(m);
+                if (task != null)
+                    tasks.add(task);
+            }
+            if (m.getHistoryArchiver() != null) {
+                long periodMillis = Math.max(100L, (long) (memorizerOptions.getHistoryBlockSeconds() * 500f));
+                tasks.add(backgroundExecutor.scheduleWithFixedDelay(m.getHistoryArchiver(),
+                        periodMillis, periodMillis, TimeUnit.MILLISECONDS));
             }
+            if (!tasks.isEmpty())
+                backgroundTasks.put(m, tasks);
+        } catch (RuntimeException ex) {
+            if (coordinator != null)
+                coordinator.release(channel.getId());
+            m.unregister();
+            throw ex;
+        }
+
+        return m;
+    }
 
-            Audio audio = audioPlugin.getInstance(Audio.class);
-            Memorizer m = new Memorizer(audio, ch, seconds);
-            m.register();
-            return m;
-        });
+    /**
+     * Makes sure this node still owns the channel of a suspended memorizer, which gave up its claim when it was
+     * suspended.  If another node took the channel over in the meantime, the memorizer is removed.
+     * @param memorizer memorizer.
+     * @return memorizer, or null if another node now memorizes its channel.
+     */
+    private Memorizer reclaimOwnership(Memorizer memorizer) {
+        ChannelCoordinator coordinator = this.coordinator;
+        if (coordinator == null || !memorizer.isSuspended())
+            return memorizer;
+
+        String channelId = memorizer.getChannel().getId();
+        String owner = coordinator.acquire(channelId);
+        if (owner.equals(coordinator.getNodeId()))
+            return memorizer;
+
+        plugin.getLogger().fine("Channel " + channelId + " was taken over by node " + owner);
+        remove(memorizer);
+        remoteOwners.put(channelId, new RemoteOwner(owner, System.currentTimeMillis() + coordinatorCacheMillis));
+        return null;
+    }
+
+    /**
+     * Starts encoding a memorizer's ring in the background, if its community's repository format can be saved by
+     * concatenating chunks.
+     * @param memorizer memorizer to pre-encode.
+     * @return scheduled pre-encoding task, or null if the memory is not pre-encoded.
+     */
+    private ScheduledFuture<?> startPreEncoder(Memorizer memorizer) {
+        Conversation conversation = memorizer.getChannel().getConversation();
+        Community community = conversation != null
+                ? musicPlugin.getInstance(Music.class).getCommunity(conversation)
+                : null;
+        if (community == null || community.getRepository() == null
+                || community.getRepository().getInstance() instanceof NullRepository)
+            return null;
+
+        String containerFormat = community.getRepository().getFormat().getContainerFormat();
+        if (!PreEncoder.isConcatenable(containerFormat)) {
+            plugin.getLogger().fine("Not pre-encoding memory of channel " + memorizer.getChannel().getId()
+                    + ": " + containerFormat + " chunks cannot be concatenated");
+            return null;
+        }
+
+        int chunkSize = Math.max(1, (int) (memorizer.getFormat().getSampleRate() * preEncodeChunkSeconds))
+                * memorizer.getFormat().getChannels();
+        PreEncoder preEncoder = new PreEncoder(memorizer::getRing,
+                writer.createChunkEncoder(community, memorizer.getFormat(), memorizer.getSaveFormat()),
+                chunkSize);
+        memorizer.setPreEncoder(preEncoder);
+
+        long periodMillis = Math.max(100L, (long) (preEncodeChunkSeconds * 500f));
+        return backgroundExecutor.scheduleWithFixedDelay(preEncoder, periodMillis, periodMillis,
+                TimeUnit.MILLISECONDS);
     }
 
     public Memorizer getMemorizer(Mixer mixer) {
@@ -84,20 +716,205 @@ public class Memory implements PluginReference, EventListener {
             return null;
         }
 
-        return memorizerMap.values().stream()
-                .filter(m -> m.getParentMixer() == mixer)
-                .findFirst().orElse(null);
+        Memorizer memorizer = registry.get(mixer);
+        return memorizer != null ? reclaimOwnership(memorizer) : null;
+    }
+
+    public Collection<Memorizer> getMemorizers() {
+        return registry.getMemorizers();
+    }
+
+    /**
+     * Saves a memory of a memorizer's channel.
+     * @param memorizer memorizer of the channel.
+     * @param user user saving the memory.
+     * @param association association to take ownership of the channel as while the save is set up; null to leave
+     *                    ownership alone (e.g. for saves forwarded by another node).
+     * @param speechSeconds seconds of speech to save, with the silence between speech collapsed; 0 to save the whole
+     *                      memory.
+     * @param historySeconds seconds of history to save, reaching past the memory ring; 0 to save the memory ring.
+     * @return future completing once the memory is saved.
+     * @throws CommandArgumentException if the channel cannot be saved as asked.
+     * @throws CommandExecutionException if the save could not be started right now.
+     */
+    public CompletableFuture<SaveResult> save(Memorizer memorizer, User user, UserAssociation association,
+                                              float speechSeconds, float historySeconds) throws Exception {
+        AudioChannel channel = memorizer.getChannel();
+
+        Music music = musicPlugin.getInstance(Music.class);
+        Community community = music.getCommunity(memorizer.getChannel().getConversation());
+        if (community == null) {
+            throw new CommandArgumentException("There is no music community associated with this conversation.");
+        }
+
+        TrackRepository trackRepository = community.getRepository();
+        if (trackRepository == null) {
+            throw new CommandArgumentException("There is no track repository associated with this music community.");
+        } else if (trackRepository.getInstance() instanceof NullRepository) {
+            throw new CommandArgumentException("This music community does not support saving new tracks.");
+        }
+
+        checkSaveable(memorizer.isSuspended(), memorizer.isRunning(), memorizer.getRingBytes() > 0L,
+                historySeconds > 0F);
+
+        float sampleRate = memorizer.getMixer().getAudioSampleRate();
+        int channels = memorizer.getMixer().getAudioChannels();
+
+        MemorySource source;
+        List<VoiceSegment> speech;
+        Set<PlatformUser> participants;
+        List<StemView> stems;
+        SaveCoalescer.Slot slot = null;
+        CompletableFuture<SaveResult> future;
+        try (AudioChannel.Ownership ownership = association != null ? channel.obtainChannel(association) : null) {
+            try {
+                memorizer.flush(flushTimeoutMillis);
+            } catch (TimeoutException ex) {
+                plugin.getLogger().log(Level.WARNING, "Problem flushing memorizer before saving", ex);
+                throw new CommandExecutionException("The memorizer is not keeping up with the audio channel; "
+                        + "try again later.");
+            }
+
+            // Only whole memories are coalesced; speech and history saves are shaped by what was asked for
+            if (speechSeconds <= 0F && historySeconds <= 0F) {
+                slot = memorizer.getSaveCoalescer().claim(memorizer.getPosition());
+                if (slot.isReference()) {
+                    MemorySource window = memorizer.window(0F);
+                    long start = window.getPosition();
+                    long end = window.getEndPosition();
+                    Set<PlatformUser> referenceParticipants = memorizer.getParticipants(start, end);
+
+                    future = slot.getFuture().thenCompose(previous -> saveExecutor.submit(() ->
+                            writer.writeReference(previous, start, end, sampleRate, channels,
+                                    referenceParticipants, memorizer.getMetrics())));
+                    return future;
+                }
+            }
+
+            if (historySeconds > 0F) {
+                source = memorizer.history(historySeconds);
+                if (source == null)
+                    throw new CommandArgumentException("History is not kept beyond the memory ring on this bot.");
+            } else {
+                // The ring budget may release a suspended memorizer's ring at any time, so it is copied, not streamed
+                source = streamingSaves && !memorizer.isSuspended()
+                        ? memorizer.window(streamingGuardSeconds)
+                        : memorizer.snapshot();
+            }
+
+            if (speechSeconds > 0F) {
+                speech = memorizer.getSpeech(source.getPosition(), source.getEndPosition(), speechSeconds);
+                if (speech == null)
+                    throw new CommandArgumentException("Speech is not indexed on this bot.");
+                else if (speech.isEmpty())
+                    throw new CommandArgumentException("There is nothing to remember.");
+
+                // Stems follow the ring timeline, which collapsing the silence breaks; speech saves go without them
+                participants = memorizer.getParticipants(speech.get(0).getStart(), source.getEndPosition());
+                stems = Collections.emptyList();
+            } else {
+                speech = null;
+                participants = memorizer.getParticipants(source.getPosition(), source.getEndPosition());
+                stems = memorizer.getStems(source.getPosition(), source.getEndPosition());
+            }
+
+            long samples = source.getEndPosition() - source.getPosition();
+            if (MemoryWriter.getTimeInSeconds(samples, sampleRate, channels) < 1F)
+                throw new CommandArgumentException("Ring buffer too small.");
+
+            SaveRequest request;
+            if (speech != null) {
+                SpeechSource speechSource = new SpeechSource(source, speech);
+                request = new SaveRequest(user, speechSource, sampleRate, channels, community)
+                        .setRegion(new TrimRegion(speechSource.getPosition(), speechSource.getEndPosition()));
+            } else {
+                request = new SaveRequest(user, source, sampleRate, channels, community);
+            }
+
+            request.setParticipants(participants)
+                    .setStems(stems)
+                    .setMetrics(memorizer.getMetrics())
+                    .setTargetFormat(memorizer.getSaveFormat());
+
+            // Collapsed speech no longer lines up with the chunks, so only whole memories reuse them
+            PreEncoder preEncoder = memorizer.getPreEncoder();
+            if (speech == null && preEncoder != null
+                    && preEncoder.getContainerFormat().equals(trackRepository.getFormat().getContainerFormat()))
+                request.setChunks(preEncoder.getChunks(source.getPosition(), source.getEndPosition()));
+
+            try {
+                future = saveExecutor.submit(() -> writer.write(request));
+            } catch (RejectedExecutionException ex) {
+                throw new CommandExecutionException("Too many memories are being saved right now; try again later.");
+            }
+        } catch (Exception ex) {
+            // Saves coalesced into this one fail with it, and the next save is written again
+            if (slot != null && !slot.isReference())
+                slot.getFuture().completeExceptionally(ex);
+            throw ex;
+        }
+
+        if (slot != null)
+            slot.complete(future);
+
+        return future;
+    }
+
+    /**
+     * Checks that a memorizer has audio to save.  A memorizer suspended while idle has stopped mixing, but the ring it
+     * kept still holds the audio from before it went quiet; nothing is in flight, so it is saved as it is.
+     * @param suspended true if the memorizer is suspended.
+     * @param running true if the memorizer mixer is running.
+     * @param ringHeld true if the memorizer holds its memory ring.
+     * @param history true if the save reaches into the history kept beyond the ring, which outlives the ring.
+     * @throws CommandArgumentException if there is nothing to save.
+     */
+    static void checkSaveable(boolean suspended, boolean running, boolean ringHeld, boolean history)
+            throws CommandArgumentException {
+        if (suspended) {
+            if (!ringHeld && !history)
+                throw new CommandArgumentException("Nothing is memorized in this audio channel right now; "
+                        + "it was released after going quiet.");
+        } else if (!running) {
+            throw new CommandArgumentException("Memorizer is not running.");
+        }
+    }
+
+    /**
+     * Carries out a save another node forwarded to this one, as the owner of the channel.
+     * @param save forwarded save.
+     * @return future completing with the name of the saved track.
+     */
+    private CompletableFuture<String> saveForwarded(ForwardedSave save) {
+        try {
+            Memorizer memorizer = null;
+            for (Memorizer candidate : registry.getMemorizers())
+                if (candidate.getChannel().getId().equals(save.getChannelId()))
+                    memorizer = candidate;
+            if (memorizer == null)
+                throw new CommandArgumentException("The audio channel is not memorized by node "
+                        + coordinator.getNodeId() + ".");
+
+            User user = memoryManager.getUser(save.getUserId());
+            if (user == null)
+                throw new CommandArgumentException("Unknown user.");
+
+            return save(memorizer, user, null, save.getSpeechSeconds(), save.getHistorySeconds())
+                    .thenApply(result -> result.getTrack().getName());
+        } catch (Exception ex) {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            future.completeExceptionally(ex);
+            return future;
+        }
     }
 
     @EventHandler()
     public void onUserBegin(AudioChannelUserBeginEvent userBeginEvent) {
         try {
-            synchronized (memorizerMap) {
-                Memorizer memorizer = getMemorizer(userBeginEvent.getChannel());
-                if (memorizer == null)
-                    return;
-                memorizer.onUserBegin(userBeginEvent.getProvider());
-            }
+            Memorizer memorizer = getMemorizer(userBeginEvent.getChannel());
+            if (memorizer == null)
+                return;
+            memorizer.onUserBegin(userBeginEvent.getUser(), userBeginEvent.getProvider());
         } catch (SecurityException ex) {
             plugin.getLogger().log(Level.FINE, "Security exception encountered when setting up mixer", ex);
         }
@@ -106,12 +923,10 @@ public class Memory implements PluginReference, EventListener {
     @EventHandler()
     public void onUserEnd(AudioChannelUserEndEvent userEndEvent) {
         try {
-            synchronized (memorizerMap) {
-                Memorizer memorizer = getMemorizer(userEndEvent.getChannel());
-                if (memorizer == null)
-                    return;
-                memorizer.onUserEnd(userEndEvent.getProvider());
-            }
+            Memorizer memorizer = getMemorizer(userEndEvent.getChannel());
+            if (memorizer == null)
+                return;
+            memorizer.onUserEnd(userEndEvent.getProvider());
         } catch (SecurityException ex) {
             plugin.getLogger().log(Level.FINE, "Security exception encountered when setting up mixer", ex);
         }
@@ -122,20 +937,28 @@ public class Memory implements PluginReference, EventListener {
         try {
             Mixer mixer = stateChangedEvent.getMixer();
 
-            synchronized (memorizerMap) {
-                Memorizer memorizer = getMemorizer(mixer);
-                if (memorizer == null) {
-                    return;
-                }
+            Memorizer memorizer = getMemorizer(mixer);
+            if (memorizer == null) {
+                return;
+            }
 
-                if (mixer.isPlaying()) {
-                    memorizer.onParentMixerStart();
-                } else {
-                    memorizer.onParentMixerStop();
-                }
+            if (mixer.isPlaying()) {
+                memorizer.onParentMixerStart();
+            } else {
+                memorizer.onParentMixerStop();
             }
         } catch (SecurityException ex) {
             plugin.getLogger().log(Level.FINE, "Security exception encountered when setting up mixer", ex);
         }
     }
+
+    private static final class RemoteOwner {
+        private final String nodeId;
+        private final long expires;
+
+        private RemoteOwner(String nodeId, long expires) {
+            this.nodeId = nodeId;
+            this.expires = expires;
+        }
+    }
 }
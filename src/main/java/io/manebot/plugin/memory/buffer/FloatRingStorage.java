@@ -0,0 +1,32 @@
+package io.manebot.plugin.memory.buffer;
+
+/**
+ * Ring storage keeping samples as 32-bit floats.
+ */
+public final class FloatRingStorage implements RingStorage {
+    private final float[] buffer;
+
+    public FloatRingStorage(int capacity) {
+        this.buffer = new float[capacity];
+    }
+
+    @Override
+    public SampleEncoding getEncoding() {
+        return SampleEncoding.FLOAT32;
+    }
+
+    @Override
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    @Override
+    public void write(int index, float[] samples, int offs, int len) {
+        System.arraycopy(samples, offs, buffer, index, len);
+    }
+
+    @Override
+    public void read(int index, float[] samples, int offs, int len) {
+        System.arraycopy(buffer, index, samples, offs, len);
+    }
+}
@@ -0,0 +1,196 @@
+package io.manebot.plugin.memory.buffer;
+
+import io.manebot.plugin.audio.mixer.input.MixerChannel;
+import io.manebot.plugin.audio.mixer.output.MixerSink;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Carries the mix of the parent mixer over to the memorizer mixer.  The parent mixer thread writes into a preallocated
+ * single-producer, single-consumer ring and the memorizer mixer thread reads it back through {@link #getChannel()},
+ * applying the loopback gain as it copies.  Both sides copy in at most two segments around the wrap and never lock or
+ * allocate, so the hop costs one copy each way per mixer cycle.
+ *
+ * Audio written while the ring is full is dropped and counted as an overflow; reads that find less than was asked for
+ * count as underflows.
+ */
+public class LoopbackSink implements MixerSink {
+    private final AudioFormat format;
+    private final float[] buffer;
+    private final int capacity;
+    private final float gain;
+    private final MixerChannel channel = new Channel();
+
+    /**
+     * Total samples written by the parent mixer thread, and read by the memorizer mixer thread
+     */
+    private volatile long head = 0L;
+    private volatile long tail = 0L;
+
+    private volatile boolean running = false;
+    private volatile boolean closed = false;
+
+    private volatile int underflows = 0;
+    private volatile int overflows = 0;
+
+    /**
+     * @param format format of the audio carried.
+     * @param capacity number of samples the loopback can hold; rounded up to whole frames.
+     * @param gain linear gain applied to the audio on its way to the memorizer mixer.
+     */
+    public LoopbackSink(AudioFormat format, int capacity, float gain) {
+        int channels = Math.max(1, format.getChannels());
+        this.format = format;
+        this.capacity = Math.max(1, (capacity + channels - 1) / channels) * channels;
+        this.buffer = new float[this.capacity];
+        this.gain = gain;
+    }
+
+    /**
+     * Gets the mixer channel the memorizer mixer reads the loopback through.
+     * @return loopback channel.
+     */
+    public MixerChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Gets the number of samples written but not yet read.
+     * @return buffered samples.
+     */
+    public int getBuffered() {
+        return (int) (head - tail);
+    }
+
+    @Override
+    public AudioFormat getAudioFormat() {
+        return format;
+    }
+
+    @Override
+    public int availableInput() {
+        return capacity - getBuffered();
+    }
+
+    @Override
+    public int getBufferSize() {
+        return capacity;
+    }
+
+    @Override
+    public void write(float[] samples, int len) {
+        long head = this.head;
+        int free = capacity - (int) (head - tail);
+        if (len > free) {
+            // Keep frames whole; the rest is lost
+            int channels = format.getChannels();
+            len = free - free % channels;
+            overflows++;
+        }
+
+        if (len <= 0)
+            return;
+
+        int index = (int) (head % capacity);
+        int first = Math.min(len, capacity - index);
+        System.arraycopy(samples, 0, buffer, index, first);
+        if (first < len)
+            System.arraycopy(samples, first, buffer, 0, len - first);
+
+        // Publishes the copy above to the reader
+        this.head = head + len;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean start() {
+        if (running)
+            return false;
+
+        running = true;
+        return true;
+    }
+
+    @Override
+    public boolean stop() {
+        if (!running)
+            return false;
+
+        running = false;
+        return true;
+    }
+
+    @Override
+    public int getUnderflows() {
+        return underflows;
+    }
+
+    @Override
+    public int getOverflows() {
+        return overflows;
+    }
+
+    @Override
+    public void close() {
+        stop();
+        closed = true;
+    }
+
+    /**
+     * Reading end of the loopback, owned by the memorizer mixer thread.
+     */
+    private final class Channel implements MixerChannel {
+        @Override
+        public int available() {
+            return getBuffered();
+        }
+
+        @Override
+        public int read(float[] samples, int offs, int len) {
+            long tail = LoopbackSink.this.tail;
+            int buffered = (int) (head - tail);
+            if (buffered < len) {
+                if (running)
+                    underflows++;
+                len = buffered;
+            }
+
+            if (len <= 0)
+                return 0;
+
+            int index = (int) (tail % capacity);
+            int first = Math.min(len, capacity - index);
+            copy(index, samples, offs, first);
+            if (first < len)
+                copy(0, samples, offs + first, len - first);
+
+            // Hands the slots read above back to the writer
+            LoopbackSink.this.tail = tail + len;
+            return len;
+        }
+
+        private void copy(int index, float[] samples, int offs, int len) {
+            if (gain == 1f) {
+                System.arraycopy(buffer, index, samples, offs, len);
+                return;
+            }
+
+            for (int i = 0; i < len; i ++)
+                samples[offs + i] = buffer[index + i] * gain;
+        }
+
+        @Override
+        public boolean isPlaying() {
+            return !closed;
+        }
+
+        @Override
+        public void close() {
+            LoopbackSink.this.close();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package io.manebot.plugin.memory.buffer;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Keeps rings in per-channel memory-mapped files, off the Java heap.  Rings restore their contents and write cursor
+ * when the plugin is reloaded, as long as the format, encoding and capacity are unchanged.
+ */
+public final class MappedRingBackend implements RingBackend {
+    private final Path directory;
+
+    public MappedRingBackend(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public RingStorage create(String name, AudioFormat format, SampleEncoding encoding, int capacity)
+            throws IOException {
+        Files.createDirectories(directory);
+        return MappedRingStorage.open(directory.resolve(toFileName(name)), format, encoding, capacity);
+    }
+
+    private static String toFileName(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_") + ".ring";
+    }
+}
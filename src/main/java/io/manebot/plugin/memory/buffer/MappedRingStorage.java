@@ -0,0 +1,193 @@
+package io.manebot.plugin.memory.buffer;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Ring storage backed by a memory-mapped file.
+ *
+ * The file starts with a fixed header describing the format of the ring, its claim/write cursors and its reset floor,
+ * followed by the encoded samples.  The cursors are updated on every write, so a restored ring knows exactly which
+ * samples are intact, and the floor on every reset, so audio forgotten before a restart stays forgotten.
+ */
+public final class MappedRingStorage implements RingStorage {
+    private static final int MAGIC = 0x4D4D5259; // "MMRY"
+    private static final int VERSION = 1;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int ENCODING_OFFSET = 8;
+    private static final int SAMPLE_RATE_OFFSET = 12;
+    private static final int CHANNELS_OFFSET = 16;
+    private static final int CAPACITY_OFFSET = 20;
+    private static final int CLAIM_OFFSET = 24;
+    private static final int CURSOR_OFFSET = 32;
+    private static final int FLOOR_OFFSET = 40;
+
+    private static final int HEADER_SIZE = 64;
+
+    private final MappedByteBuffer data;
+    private final SampleEncoding encoding;
+    private final int capacity;
+
+    private final long position;
+    private final long startPosition;
+
+    private MappedRingStorage(MappedByteBuffer data, SampleEncoding encoding, int capacity,
+                              long position, long startPosition) {
+        this.data = data;
+        this.encoding = encoding;
+        this.capacity = capacity;
+        this.position = position;
+        this.startPosition = startPosition;
+    }
+
+    /**
+     * Opens a mapped ring file, restoring it if its header matches the requested layout and re-initializing it
+     * otherwise.
+     * @param file ring file.
+     * @param format audio format of the ring.
+     * @param encoding sample encoding.
+     * @param capacity capacity, in samples.
+     * @return mapped ring storage.
+     * @throws IOException if the file could not be mapped.
+     */
+    public static MappedRingStorage open(Path file, AudioFormat format, SampleEncoding encoding, int capacity)
+            throws IOException {
+        long size = HEADER_SIZE + (long) capacity * encoding.getBytesPerSample();
+
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            boolean restorable = channel.size() == size;
+            if (channel.size() > size)
+                channel.truncate(size);
+
+            data = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            data.order(ByteOrder.nativeOrder());
+
+            restorable = restorable
+                    && data.getInt(MAGIC_OFFSET) == MAGIC
+                    && data.getInt(VERSION_OFFSET) == VERSION
+                    && data.getInt(ENCODING_OFFSET) == encoding.ordinal()
+                    && data.getFloat(SAMPLE_RATE_OFFSET) == format.getSampleRate()
+                    && data.getInt(CHANNELS_OFFSET) == format.getChannels()
+                    && data.getInt(CAPACITY_OFFSET) == capacity;
+
+            if (restorable) {
+                long claim = data.getLong(CLAIM_OFFSET);
+                long cursor = data.getLong(CURSOR_OFFSET);
+                if (cursor >= 0 && claim >= cursor) {
+                    // A write interrupted mid-way (claim ahead of cursor) may have clobbered the oldest samples
+                    long start = claim > cursor ? Math.max(0L, claim - capacity) : 0L;
+                    // Files written before the floor was kept have zero there, which is no floor at all
+                    start = Math.max(start, Math.min(cursor, data.getLong(FLOOR_OFFSET)));
+                    return new MappedRingStorage(data, encoding, capacity, cursor, start);
+                }
+            }
+        }
+
+        initialize(data, format, encoding, capacity);
+        return new MappedRingStorage(data, encoding, capacity, 0L, 0L);
+    }
+
+    private static void initialize(MappedByteBuffer data, AudioFormat format, SampleEncoding encoding, int capacity) {
+        byte silence = encoding == SampleEncoding.MULAW ? SampleCodec.MULAW_SILENCE : 0;
+        for (int i = HEADER_SIZE; i < data.capacity(); i ++)
+            data.put(i, silence);
+
+        data.putInt(VERSION_OFFSET, VERSION);
+        data.putInt(ENCODING_OFFSET, encoding.ordinal());
+        data.putFloat(SAMPLE_RATE_OFFSET, format.getSampleRate());
+        data.putInt(CHANNELS_OFFSET, format.getChannels());
+        data.putInt(CAPACITY_OFFSET, capacity);
+        data.putLong(CLAIM_OFFSET, 0L);
+        data.putLong(CURSOR_OFFSET, 0L);
+        data.putLong(FLOOR_OFFSET, 0L);
+
+        // Magic last, so a half-initialized file is never mistaken for a valid one
+        data.putInt(MAGIC_OFFSET, MAGIC);
+        data.force();
+    }
+
+    @Override
+    public SampleEncoding getEncoding() {
+        return encoding;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public long getStartPosition() {
+        return startPosition;
+    }
+
+    @Override
+    public void claim(long position) {
+        data.putLong(CLAIM_OFFSET, position);
+    }
+
+    @Override
+    public void commit(long position) {
+        data.putLong(CURSOR_OFFSET, position);
+    }
+
+    @Override
+    public void reset(long position) {
+        data.putLong(FLOOR_OFFSET, position);
+    }
+
+    @Override
+    public void write(int index, float[] samples, int offs, int len) {
+        switch (encoding) {
+            case FLOAT32:
+                for (int i = 0, at = HEADER_SIZE + index * 4; i < len; i ++, at += 4)
+                    data.putFloat(at, samples[offs + i]);
+                break;
+            case PCM16:
+                for (int i = 0, at = HEADER_SIZE + index * 2; i < len; i ++, at += 2)
+                    data.putShort(at, SampleCodec.toPcm16(samples[offs + i]));
+                break;
+            case MULAW:
+                for (int i = 0, at = HEADER_SIZE + index; i < len; i ++, at ++)
+                    data.put(at, SampleCodec.toMuLaw(samples[offs + i]));
+                break;
+        }
+    }
+
+    @Override
+    public void read(int index, float[] samples, int offs, int len) {
+        switch (encoding) {
+            case FLOAT32:
+                for (int i = 0, at = HEADER_SIZE + index * 4; i < len; i ++, at += 4)
+                    samples[offs + i] = data.getFloat(at);
+                break;
+            case PCM16:
+                for (int i = 0, at = HEADER_SIZE + index * 2; i < len; i ++, at += 2)
+                    samples[offs + i] = SampleCodec.fromPcm16(data.getShort(at));
+                break;
+            case MULAW:
+                for (int i = 0, at = HEADER_SIZE + index; i < len; i ++, at ++)
+                    samples[offs + i] = SampleCodec.fromMuLaw(data.get(at));
+                break;
+        }
+    }
+
+    @Override
+    public void close() {
+        data.force();
+    }
+}
@@ -0,0 +1,259 @@
+package io.manebot.plugin.memory.buffer;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * Single-writer, multi-reader ring of interleaved samples.
+ *
+ * The writer (the memorizer mixer thread) never blocks: before touching the ring it publishes a claim covering the
+ * samples it is about to write, and after writing it publishes the new write cursor.  Readers copy the region they
+ * want without locking and then compare against the claim to find out which part of their copy may have been
+ * overwritten while they were reading; only that part is discarded or re-read.
+ *
+ * Samples are encoded into the ring storage on write and decoded back to floats on snapshot.
+ *
+ * All positions are absolute sample positions (the total number of samples ever written), so the generation of a
+ * position is simply <code>position / capacity</code>.
+ */
+public final class MemoryRing {
+    /**
+     * Maximum number of times a snapshot re-reads the segment the writer advanced over during the copy
+     */
+    private static final int MAX_SNAPSHOT_RETRIES = 4;
+
+    private final RingStorage storage;
+    private final int capacity;
+
+    /**
+     * End of the region the writer may currently be touching; always &gt;= cursor
+     */
+    private volatile long claim = 0L;
+
+    /**
+     * End of the committed region; total number of samples ever written
+     */
+    private volatile long cursor = 0L;
+
+    /**
+     * Readers ignore anything before this position (see reset())
+     */
+    private volatile long floor = 0L;
+
+    public MemoryRing(RingStorage storage) {
+        if (storage.getCapacity() <= 0)
+            throw new IllegalArgumentException("capacity must be positive: " + storage.getCapacity());
+
+        this.storage = storage;
+        this.capacity = storage.getCapacity();
+
+        // Pick up where persistent storage left off
+        this.cursor = this.claim = storage.getPosition();
+        this.floor = storage.getStartPosition();
+    }
+
+    public MemoryRing(int capacity) {
+        this(SampleEncoding.FLOAT32.createStorage(capacity));
+    }
+
+    /**
+     * Gets the storage backing this ring.
+     * @return ring storage.
+     */
+    public RingStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Gets the number of samples this ring holds.
+     * @return capacity, in samples.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the committed write cursor.
+     * @return total number of samples written to this ring.
+     */
+    public long getPosition() {
+        return cursor;
+    }
+
+    /**
+     * Gets the number of times the writer has wrapped around the ring.
+     * @return write generation.
+     */
+    public long getGeneration() {
+        return cursor / capacity;
+    }
+
+    /**
+     * Gets the oldest position still readable from this ring.
+     * @return oldest readable absolute position.
+     */
+    public long getStartPosition() {
+        return Math.max(floor, Math.max(0L, cursor - capacity));
+    }
+
+    /**
+     * Gets the oldest position the writer cannot have touched yet, regardless of reset().
+     * @return oldest intact absolute position.
+     */
+    public long getValidPosition() {
+        return Math.max(0L, claim - capacity);
+    }
+
+    /**
+     * Creates a live window over the newest audio in the ring, leaving a guard band at the old end so a reader
+     * streaming through the window has time to stay ahead of the writer.
+     * @param guard number of samples at the old end of the ring to leave out of the window.
+     * @return ring window.
+     */
+    public RingWindow window(int guard) {
+        long end = cursor;
+        long start = Math.max(floor, Math.max(0L, end - capacity + Math.max(0, guard)));
+        return new RingWindow(this, Math.min(start, end), end);
+    }
+
+    /**
+     * Reads samples in place without blocking the writer.
+     * @param position absolute position of the first sample to read.
+     * @param samples destination array.
+     * @param offs offset into the destination array.
+     * @param len maximum number of samples to read.
+     * @return number of samples read (only committed samples are read), or -1 if any of the requested samples were
+     * overwritten.
+     */
+    public int read(long position, float[] samples, int offs, int len) {
+        len = (int) Math.max(0L, Math.min(len, cursor - position));
+        if (position < getValidPosition())
+            return -1;
+
+        int index = (int) (position % capacity);
+        int first = Math.min(len, capacity - index);
+        storage.read(index, samples, offs, first);
+        if (first < len)
+            storage.read(0, samples, offs + first, len - first);
+
+        // Sample loads above must complete before we look at how far the writer got
+        VarHandle.loadLoadFence();
+        return position < getValidPosition() ? -1 : len;
+    }
+
+    /**
+     * Writes samples into the ring.  Must only be called from a single writer thread.
+     * @param samples samples to write.
+     * @param len number of samples to write from the start of the array.
+     */
+    public void write(float[] samples, int len) {
+        if (len <= 0)
+            return;
+
+        long position = cursor;
+        long end = position + len;
+
+        // Only the newest "capacity" samples can survive this write anyway
+        int offs = 0;
+        if (len > capacity) {
+            offs = len - capacity;
+            position += offs;
+            len = capacity;
+        }
+
+        claim = end;
+        storage.claim(end);
+        // Data stores below must not become visible before the claim does
+        VarHandle.storeStoreFence();
+
+        int index = (int) (position % capacity);
+        int first = Math.min(len, capacity - index);
+        storage.write(index, samples, offs, first);
+        if (first < len)
+            storage.write(0, samples, offs + first, len - first);
+
+        cursor = end;
+        storage.commit(end);
+    }
+
+    /**
+     * Forgets everything written so far, without touching the writer.  Subsequent snapshots only contain samples
+     * written after this call.
+     */
+    public void reset() {
+        long position = cursor;
+        floor = position;
+        storage.reset(position);
+    }
+
+    /**
+     * Takes a consistent, ordered snapshot (oldest to newest) of the valid region of this ring without blocking the
+     * writer.
+     * @return snapshot of the ring.
+     */
+    public MemorySnapshot snapshot() {
+        float[] copy = new float[capacity];
+
+        long end = cursor;
+        long start = Math.max(floor, Math.max(0L, end - capacity));
+        copySlots(start, end, copy);
+
+        for (int retry = 0; ; retry++) {
+            // Sample loads above must complete before we look at how far the writer got
+            VarHandle.loadLoadFence();
+            long lost = claim - capacity;
+            if (lost <= start)
+                break;
+
+            // The oldest samples were (possibly) overwritten mid-copy; drop them
+            start = Math.min(lost, end);
+            if (retry >= MAX_SNAPSHOT_RETRIES)
+                break;
+
+            // Re-read only the overlapped segment: the samples that replaced the ones we dropped; at most a whole ring
+            // of them, if the writer lapped us
+            long newEnd = cursor;
+            if (newEnd <= end)
+                break;
+            copySlots(Math.max(end, newEnd - capacity), newEnd, copy);
+            start = Math.max(start, newEnd - capacity);
+            end = newEnd;
+        }
+
+        int length = (int) (end - start);
+        rotateLeft(copy, (int) (start % capacity));
+
+        return new MemorySnapshot(copy, length, end - length);
+    }
+
+    /**
+     * Decodes [start, end) into the destination array at the same slot indices the ring uses.
+     */
+    private void copySlots(long start, long end, float[] destination) {
+        int len = (int) (end - start);
+        int index = (int) (start % capacity);
+        int first = Math.min(len, capacity - index);
+        storage.read(index, destination, index, first);
+        if (first < len)
+            storage.read(0, destination, 0, len - first);
+    }
+
+    /**
+     * Rotates an array left in place, so that element <code>distance</code> becomes element 0.
+     */
+    private static void rotateLeft(float[] array, int distance) {
+        if (distance == 0)
+            return;
+
+        reverse(array, 0, distance);
+        reverse(array, distance, array.length);
+        reverse(array, 0, array.length);
+    }
+
+    private static void reverse(float[] array, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            float tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package io.manebot.plugin.memory.buffer;
+
+import io.manebot.plugin.audio.mixer.output.MixerSink;
+import io.manebot.plugin.memory.metrics.MemorizerMetrics;
+import io.manebot.plugin.memory.vad.VoiceIndex;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Mixer sink that writes the memorizer mix into a lock-free memory ring.  The ring can be released while the
+ * memorizer is idle; writes are dropped until a new ring is attached.  Everything written is also measured by the
+ * voice index, if there is one.
+ */
+public class MemorySink implements MixerSink {
+    private final AudioFormat format;
+    private volatile MemoryRing ring;
+
+    /**
+     * Index of the speech in the ring; null if speech is not indexed
+     */
+    private final VoiceIndex voiceIndex;
+
+    /**
+     * Metrics samples written and dropped are counted into; null if not measured
+     */
+    private final MemorizerMetrics metrics;
+
+    private volatile boolean running = false;
+
+    /**
+     * Threads waiting for the ring to reach a position; the writer only takes the lock to wake them when there are any
+     */
+    private final Object flushLock = new Object();
+    private volatile int flushWaiters = 0;
+
+    public MemorySink(AudioFormat format, RingStorage storage, VoiceIndex voiceIndex, MemorizerMetrics metrics) {
+        this.format = format;
+        this.ring = new MemoryRing(storage);
+        this.voiceIndex = voiceIndex;
+        this.metrics = metrics;
+    }
+
+    public MemorySink(AudioFormat format, RingStorage storage) {
+        this(format, storage, null, null);
+    }
+
+    /**
+     * Finds the ring capacity needed to hold the given amount of audio.
+     * @param format audio format of the ring.
+     * @param seconds seconds of audio to hold.
+     * @return capacity, in whole frames' worth of samples.
+     */
+    public static int getCapacity(AudioFormat format, float seconds) {
+        return Math.max(1, (int) Math.ceil(format.getSampleRate() * seconds)) * format.getChannels();
+    }
+
+    /**
+     * Gets the ring this sink writes to.
+     * @return memory ring, or null if the ring was released.
+     */
+    public MemoryRing getRing() {
+        return ring;
+    }
+
+    /**
+     * Gets the index of the speech in the ring.
+     * @return voice index, or null if speech is not indexed.
+     */
+    public VoiceIndex getVoiceIndex() {
+        return voiceIndex;
+    }
+
+    /**
+     * Attaches a new ring to this sink, releasing the previous one.
+     * @param storage storage of the new ring.
+     */
+    public void attach(RingStorage storage) {
+        MemoryRing previous = ring;
+        ring = new MemoryRing(storage);
+        wakeFlushWaiters();
+        if (voiceIndex != null)
+            voiceIndex.clear();
+        if (previous != null)
+            previous.getStorage().close();
+    }
+
+    /**
+     * Releases the ring this sink writes to.  Heap storage becomes garbage; persistent storage is flushed and can be
+     * restored by attaching it again.
+     */
+    public void release() {
+        MemoryRing previous = ring;
+        ring = null;
+        wakeFlushWaiters();
+        if (voiceIndex != null)
+            voiceIndex.clear();
+        if (previous != null)
+            previous.getStorage().close();
+    }
+
+    private void wakeFlushWaiters() {
+        synchronized (flushLock) {
+            flushLock.notifyAll();
+        }
+    }
+
+    @Override
+    public AudioFormat getAudioFormat() {
+        return format;
+    }
+
+    @Override
+    public int availableInput() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int getBufferSize() {
+        MemoryRing ring = this.ring;
+        return ring != null ? ring.getCapacity() : 0;
+    }
+
+    @Override
+    public void write(float[] buffer, int len) {
+        MemoryRing ring = this.ring;
+        if (ring == null) {
+            if (metrics != null)
+                metrics.samplesDropped(len);
+            return;
+        }
+
+        long position = ring.getPosition();
+        ring.write(buffer, len);
+        if (voiceIndex != null)
+            voiceIndex.process(position, buffer, len);
+        if (metrics != null)
+            metrics.samplesWritten(len);
+
+        if (flushWaiters > 0) {
+            synchronized (flushLock) {
+                flushLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits until the ring has been written up to a position.
+     * @param ring ring the position belongs to.
+     * @param position absolute ring position to wait for.
+     * @param timeoutNanos longest time to wait, in nanoseconds.
+     * @return true if the ring reached the position, or was released or replaced while waiting; false if the wait
+     * timed out.
+     * @throws InterruptedException if the waiting thread was interrupted.
+     */
+    public boolean awaitPosition(MemoryRing ring, long position, long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        synchronized (flushLock) {
+            flushWaiters++;
+            try {
+                while (this.ring == ring && ring.getPosition() < position) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0L)
+                        return false;
+
+                    flushLock.wait(Math.max(1L, remaining / 1_000_000L));
+                }
+
+                return true;
+            } finally {
+                flushWaiters--;
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean start() {
+        if (running)
+            return false;
+
+        running = true;
+        return true;
+    }
+
+    @Override
+    public boolean stop() {
+        if (!running)
+            return false;
+
+        running = false;
+        return true;
+    }
+
+    @Override
+    public int getUnderflows() {
+        return 0;
+    }
+
+    @Override
+    public int getOverflows() {
+        return 0;
+    }
+
+    @Override
+    public void close() throws Exception {
+        stop();
+        release();
+    }
+}
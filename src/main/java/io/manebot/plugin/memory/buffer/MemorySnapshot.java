@@ -0,0 +1,61 @@
+package io.manebot.plugin.memory.buffer;
+
+/**
+ * An ordered (oldest to newest) copy of the valid region of a memory ring.
+ */
+public final class MemorySnapshot implements MemorySource {
+    private final float[] samples;
+    private final int length;
+    private final long position;
+
+    public MemorySnapshot(float[] samples, int length, long position) {
+        if (length < 0 || length > samples.length)
+            throw new IllegalArgumentException("length out of range: " + length);
+
+        this.samples = samples;
+        this.length = length;
+        this.position = position;
+    }
+
+    /**
+     * Gets the backing sample array.  Only the first <code>getLength()</code> samples are valid.
+     * @return backing sample array.
+     */
+    public float[] getSamples() {
+        return samples;
+    }
+
+    /**
+     * Gets the number of valid samples in this snapshot.
+     * @return valid sample count.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public long getEndPosition() {
+        return position + length;
+    }
+
+    @Override
+    public long getValidPosition() {
+        return position;
+    }
+
+    @Override
+    public int read(long position, float[] samples, int offs, int len) {
+        if (position < this.position)
+            return -1;
+
+        int index = (int) (position - this.position);
+        len = Math.max(0, Math.min(len, length - index));
+        System.arraycopy(this.samples, index, samples, offs, len);
+        return len;
+    }
+}
@@ -0,0 +1,35 @@
+package io.manebot.plugin.memory.buffer;
+
+/**
+ * A readable, ordered region of memorized audio addressed by absolute ring positions.
+ */
+public interface MemorySource {
+    /**
+     * Gets the absolute position of the first sample in this source.
+     * @return absolute start position.
+     */
+    long getPosition();
+
+    /**
+     * Gets the absolute position just past the newest sample in this source.
+     * @return absolute end position.
+     */
+    long getEndPosition();
+
+    /**
+     * Gets the oldest position in this source that can still be read.  For live sources this advances as the
+     * writer overwrites old audio.
+     * @return oldest readable absolute position.
+     */
+    long getValidPosition();
+
+    /**
+     * Reads samples out of this source.
+     * @param position absolute position of the first sample to read.
+     * @param samples destination array.
+     * @param offs offset into the destination array.
+     * @param len maximum number of samples to read.
+     * @return number of samples read, or -1 if the requested region is no longer available.
+     */
+    int read(long position, float[] samples, int offs, int len);
+}
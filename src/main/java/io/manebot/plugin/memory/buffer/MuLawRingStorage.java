@@ -0,0 +1,38 @@
+package io.manebot.plugin.memory.buffer;
+
+import java.util.Arrays;
+
+/**
+ * Ring storage keeping samples as 8-bit G.711 mu-law.
+ */
+public final class MuLawRingStorage implements RingStorage {
+    private final byte[] buffer;
+
+    public MuLawRingStorage(int capacity) {
+        this.buffer = new byte[capacity];
+        // 0xFF is mu-law silence; a zeroed buffer would decode to full-scale negative samples
+        Arrays.fill(buffer, SampleCodec.MULAW_SILENCE);
+    }
+
+    @Override
+    public SampleEncoding getEncoding() {
+        return SampleEncoding.MULAW;
+    }
+
+    @Override
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    @Override
+    public void write(int index, float[] samples, int offs, int len) {
+        for (int i = 0; i < len; i ++)
+            buffer[index + i] = SampleCodec.toMuLaw(samples[offs + i]);
+    }
+
+    @Override
+    public void read(int index, float[] samples, int offs, int len) {
+        for (int i = 0; i < len; i ++)
+            samples[offs + i] = SampleCodec.fromMuLaw(buffer[index + i]);
+    }
+}
@@ -0,0 +1,34 @@
+package io.manebot.plugin.memory.buffer;
+
+/**
+ * Ring storage keeping samples as 16-bit signed PCM.
+ */
+public final class Pcm16RingStorage implements RingStorage {
+    private final short[] buffer;
+
+    public Pcm16RingStorage(int capacity) {
+        this.buffer = new short[capacity];
+    }
+
+    @Override
+    public SampleEncoding getEncoding() {
+        return SampleEncoding.PCM16;
+    }
+
+    @Override
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    @Override
+    public void write(int index, float[] samples, int offs, int len) {
+        for (int i = 0; i < len; i ++)
+            buffer[index + i] = SampleCodec.toPcm16(samples[offs + i]);
+    }
+
+    @Override
+    public void read(int index, float[] samples, int offs, int len) {
+        for (int i = 0; i < len; i ++)
+            samples[offs + i] = SampleCodec.fromPcm16(buffer[index + i]);
+    }
+}
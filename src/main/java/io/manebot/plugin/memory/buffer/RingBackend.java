@@ -0,0 +1,25 @@
+package io.manebot.plugin.memory.buffer;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+
+/**
+ * Creates the storage memory rings are kept in.
+ */
+public interface RingBackend {
+    /**
+     * Keeps rings on the Java heap; nothing survives a reload
+     */
+    RingBackend HEAP = (name, format, encoding, capacity) -> encoding.createStorage(capacity);
+
+    /**
+     * Creates (or restores) storage for a ring.
+     * @param name unique name of the ring, typically derived from the audio channel it captures.
+     * @param format audio format of the samples kept in the ring.
+     * @param encoding encoding to keep samples in.
+     * @param capacity capacity, in samples.
+     * @return ring storage.
+     * @throws IOException if the storage could not be created.
+     */
+    RingStorage create(String name, AudioFormat format, SampleEncoding encoding, int capacity) throws IOException;
+}
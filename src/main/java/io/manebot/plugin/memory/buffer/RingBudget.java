@@ -0,0 +1,105 @@
+package io.manebot.plugin.memory.buffer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Global limit on the memory ring storage of all memorizers, with admission control.
+ *
+ * Every ring is admitted before it is created.  While the budget has room, rings get the capacity they ask for; once
+ * it runs short, rings are admitted smaller, down to a floor, and the reclaimer is asked to release the rings of the
+ * least recently active memorizers.  Rings admitted small get their full size back the next time they are created.
+ *
+ * The budget counts the storage of every ring, whichever backend keeps it: heap rings take Java heap, and mapped rings
+ * take the same amount of page cache while they are written.
+ */
+public final class RingBudget {
+    /**
+     * Fraction of the budget the reclaimer brings usage back under, leaving room for the next ring
+     */
+    private static final float RECLAIM_WATERMARK = 0.9f;
+
+    private final long maxBytes;
+    private final Runnable reclaimer;
+
+    /**
+     * Bytes admitted to each owner; guarded by this
+     */
+    private final Map<Object, Long> allocations = new LinkedHashMap<>();
+    private long usedBytes = 0L;
+
+    /**
+     * @param maxBytes maximum number of bytes of ring storage across all memorizers.
+     * @param reclaimer asked to release rings when the budget runs short; must not block, as it is run by admissions.
+     */
+    public RingBudget(long maxBytes, Runnable reclaimer) {
+        this.maxBytes = maxBytes;
+        this.reclaimer = reclaimer;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Gets the number of bytes usage should be brought back under when the budget runs short.
+     * @return bytes.
+     */
+    public long getReclaimBytes() {
+        return (long) (maxBytes * RECLAIM_WATERMARK);
+    }
+
+    /**
+     * Gets the ring storage admitted to an owner.
+     * @param owner ring owner.
+     * @return bytes admitted; 0 if the owner has no ring.
+     */
+    public synchronized long getAllocation(Object owner) {
+        return allocations.getOrDefault(owner, 0L);
+    }
+
+    /**
+     * Admits a ring, replacing any ring the owner was admitted before.
+     * @param owner ring owner.
+     * @param capacity capacity wanted, in samples.
+     * @param minCapacity smallest capacity acceptable, in samples; granted even if the budget is exhausted.
+     * @param frameSize samples per frame; the capacity granted is a whole number of frames.
+     * @param encoding encoding the ring keeps its samples in.
+     * @return capacity granted, in samples.
+     */
+    public int admit(Object owner, int capacity, int minCapacity, int frameSize, SampleEncoding encoding) {
+        int bytesPerSample = encoding.getBytesPerSample();
+        int granted;
+        boolean reclaim;
+        synchronized (this) {
+            usedBytes -= allocations.getOrDefault(owner, 0L);
+
+            long available = Math.max(0L, maxBytes - usedBytes) / bytesPerSample;
+            granted = (int) Math.min(capacity, Math.max(minCapacity, available));
+            granted = Math.max(frameSize, granted - granted % frameSize);
+
+            allocations.put(owner, (long) granted * bytesPerSample);
+            usedBytes += (long) granted * bytesPerSample;
+            reclaim = granted < capacity || usedBytes > getReclaimBytes();
+        }
+
+        if (reclaim)
+            reclaimer.run();
+
+        return granted;
+    }
+
+    /**
+     * Releases the ring admitted to an owner.
+     * @param owner ring owner.
+     */
+    public synchronized void release(Object owner) {
+        Long allocation = allocations.remove(owner);
+        if (allocation != null)
+            usedBytes -= allocation;
+    }
+}
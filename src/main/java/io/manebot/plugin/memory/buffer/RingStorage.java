@@ -0,0 +1,81 @@
+package io.manebot.plugin.memory.buffer;
+
+/**
+ * Backing storage for a memory ring.  Samples are converted to the storage encoding on write and decoded back to
+ * floats on read.
+ */
+public interface RingStorage extends AutoCloseable {
+    /**
+     * Gets the encoding samples are kept in.
+     * @return sample encoding.
+     */
+    SampleEncoding getEncoding();
+
+    /**
+     * Gets the number of samples this storage holds.
+     * @return capacity, in samples.
+     */
+    int getCapacity();
+
+    /**
+     * Encodes samples into the storage.
+     * @param index first storage slot to write.
+     * @param samples source samples.
+     * @param offs offset into the source samples.
+     * @param len number of samples to write; never crosses the end of the storage.
+     */
+    void write(int index, float[] samples, int offs, int len);
+
+    /**
+     * Decodes samples out of the storage.
+     * @param index first storage slot to read.
+     * @param samples destination samples.
+     * @param offs offset into the destination samples.
+     * @param len number of samples to read; never crosses the end of the storage.
+     */
+    void read(int index, float[] samples, int offs, int len);
+
+    /**
+     * Gets the write cursor this storage was restored with.
+     * @return restored absolute write position; 0 for fresh storage.
+     */
+    default long getPosition() {
+        return 0L;
+    }
+
+    /**
+     * Gets the oldest absolute position this storage restored intact.
+     * @return oldest valid absolute position; 0 for fresh storage.
+     */
+    default long getStartPosition() {
+        return 0L;
+    }
+
+    /**
+     * Called by the ring before it writes samples up to the given position.
+     * @param position absolute position the writer is about to write up to.
+     */
+    default void claim(long position) {
+    }
+
+    /**
+     * Called by the ring once samples up to the given position are written.
+     * @param position absolute write cursor.
+     */
+    default void commit(long position) {
+    }
+
+    /**
+     * Called by the ring when it forgets everything before the given position (see MemoryRing.reset()).
+     * @param position absolute position readers start from.
+     */
+    default void reset(long position) {
+    }
+
+    /**
+     * Releases any resources held by this storage.
+     */
+    @Override
+    default void close() {
+    }
+}
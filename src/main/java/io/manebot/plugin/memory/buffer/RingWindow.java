@@ -0,0 +1,40 @@
+package io.manebot.plugin.memory.buffer;
+
+/**
+ * A fixed region of a live memory ring, read in place without copying the ring.  The oldest audio in the window may
+ * be overwritten by the writer before it is read; reads of overwritten audio fail instead of returning torn samples.
+ */
+public final class RingWindow implements MemorySource {
+    private final MemoryRing ring;
+    private final long position;
+    private final long endPosition;
+
+    public RingWindow(MemoryRing ring, long position, long endPosition) {
+        this.ring = ring;
+        this.position = position;
+        this.endPosition = endPosition;
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public long getEndPosition() {
+        return endPosition;
+    }
+
+    @Override
+    public long getValidPosition() {
+        return Math.max(position, ring.getValidPosition());
+    }
+
+    @Override
+    public int read(long position, float[] samples, int offs, int len) {
+        if (position < this.position)
+            return -1;
+
+        return ring.read(position, samples, offs, (int) Math.min(len, endPosition - position));
+    }
+}
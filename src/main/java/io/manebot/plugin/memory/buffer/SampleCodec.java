@@ -0,0 +1,64 @@
+package io.manebot.plugin.memory.buffer;
+
+/**
+ * Scalar sample conversions shared by the compact ring storages.
+ */
+public final class SampleCodec {
+    public static final byte MULAW_SILENCE = (byte) 0xFF;
+
+    private static final int MULAW_BIAS = 0x84;
+    private static final int MULAW_CLIP = 32635;
+
+    /**
+     * Decoded value of every mu-law byte, indexed by unsigned byte value
+     */
+    private static final float[] MULAW_TABLE = new float[256];
+
+    static {
+        for (int i = 0; i < 256; i ++) {
+            int value = ~i & 0xFF;
+            int sign = value & 0x80;
+            int exponent = (value >> 4) & 0x07;
+            int mantissa = value & 0x0F;
+            int magnitude = (((mantissa << 3) + MULAW_BIAS) << exponent) - MULAW_BIAS;
+            MULAW_TABLE[i] = (sign != 0 ? -magnitude : magnitude) / 32768f;
+        }
+    }
+
+    private SampleCodec() {
+    }
+
+    public static short toPcm16(float sample) {
+        if (sample >= 1f)
+            return Short.MAX_VALUE;
+        else if (sample <= -1f)
+            return Short.MIN_VALUE;
+
+        return (short) Math.round(sample * 32767f);
+    }
+
+    public static float fromPcm16(short sample) {
+        return sample / 32768f;
+    }
+
+    public static byte toMuLaw(float sample) {
+        int pcm = toPcm16(sample);
+        int sign = (pcm >> 8) & 0x80;
+        if (sign != 0)
+            pcm = -pcm;
+        if (pcm > MULAW_CLIP)
+            pcm = MULAW_CLIP;
+
+        pcm += MULAW_BIAS;
+        int exponent = 7;
+        for (int mask = 0x4000; (pcm & mask) == 0 && exponent > 0; mask >>= 1)
+            exponent--;
+
+        int mantissa = (pcm >> (exponent + 3)) & 0x0F;
+        return (byte) ~(sign | (exponent << 4) | mantissa);
+    }
+
+    public static float fromMuLaw(byte sample) {
+        return MULAW_TABLE[sample & 0xFF];
+    }
+}
@@ -0,0 +1,62 @@
+package io.manebot.plugin.memory.buffer;
+
+import java.util.function.IntFunction;
+
+/**
+ * Encodings a memory ring can keep its samples in.
+ */
+public enum SampleEncoding {
+    /**
+     * 32-bit float, lossless with respect to the mixer output
+     */
+    FLOAT32(4, FloatRingStorage::new),
+
+    /**
+     * 16-bit signed PCM; half the size of FLOAT32
+     */
+    PCM16(2, Pcm16RingStorage::new),
+
+    /**
+     * 8-bit G.711 mu-law; a quarter of the size of FLOAT32, fine for speech
+     */
+    MULAW(1, MuLawRingStorage::new);
+
+    private final int bytesPerSample;
+    private final IntFunction<RingStorage> constructor;
+
+    SampleEncoding(int bytesPerSample, IntFunction<RingStorage> constructor) {
+        this.bytesPerSample = bytesPerSample;
+        this.constructor = constructor;
+    }
+
+    /**
+     * Gets the number of bytes a single sample takes in this encoding.
+     * @return bytes per sample.
+     */
+    public int getBytesPerSample() {
+        return bytesPerSample;
+    }
+
+    /**
+     * Creates heap storage of this encoding.
+     * @param capacity capacity, in samples.
+     * @return ring storage.
+     */
+    public RingStorage createStorage(int capacity) {
+        return constructor.apply(capacity);
+    }
+
+    /**
+     * Finds an encoding by its (case-insensitive) name, as used in the plugin properties.
+     * @param name encoding name.
+     * @return sample encoding.
+     */
+    public static SampleEncoding fromName(String name) {
+        for (SampleEncoding encoding : values()) {
+            if (encoding.name().equalsIgnoreCase(name.trim()))
+                return encoding;
+        }
+
+        throw new IllegalArgumentException("Unknown sample encoding: " + name);
+    }
+}
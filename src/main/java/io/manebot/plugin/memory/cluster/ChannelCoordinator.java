@@ -0,0 +1,56 @@
+package io.manebot.plugin.memory.cluster;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Assigns each audio channel to exactly one node, so bot instances sharing channels memorize each channel once instead
+ * of every instance capturing it.  Saves requested on a node that does not own the channel are forwarded to the owner.
+ */
+public interface ChannelCoordinator extends AutoCloseable {
+    /**
+     * Gets the identifier of this node.
+     * @return node identifier.
+     */
+    String getNodeId();
+
+    /**
+     * Claims a channel for this node, unless another node already owns it.  Cheap once this node owns the channel.
+     * @param channelId audio channel identifier.
+     * @return identifier of the node owning the channel; this node's if the claim succeeded or was already held.
+     */
+    String acquire(String channelId);
+
+    /**
+     * Finds the node owning a channel, without claiming it.
+     * @param channelId audio channel identifier.
+     * @return identifier of the node owning the channel, or null if no node owns it.
+     */
+    String getOwner(String channelId);
+
+    /**
+     * Gives up this node's claim on a channel, letting another node take it over.
+     * @param channelId audio channel identifier.
+     */
+    void release(String channelId);
+
+    /**
+     * Sets how saves forwarded to this node are carried out.
+     * @param handler saves the memory described, completing with the name of the saved track.
+     */
+    void setSaveHandler(Function<ForwardedSave, CompletableFuture<String>> handler);
+
+    /**
+     * Forwards a save to another node.
+     * @param nodeId identifier of the node owning the channel.
+     * @param save save to carry out.
+     * @return future completing with the name of the saved track.
+     */
+    CompletableFuture<String> forward(String nodeId, ForwardedSave save);
+
+    /**
+     * Releases every channel this node owns and stops taking forwarded saves.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,367 @@
+package io.manebot.plugin.memory.cluster;
+
+import io.manebot.command.exception.CommandArgumentException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Coordinates nodes sharing a directory, e.g. bot processes on one host or on a shared volume.
+ *
+ * A channel belongs to whichever node holds the file lock on <code>channels/&lt;channel&gt;.lock</code>; the owner
+ * writes its node identifier into the file so other nodes know where to forward saves.  The lock goes away with the
+ * owning process, so a surviving node takes the channel over the next time it sees activity on it.
+ *
+ * Forwarded saves are spooled as files: requests go to <code>nodes/&lt;owner&gt;/inbox</code> and answers to
+ * <code>nodes/&lt;requester&gt;/replies</code>, each written aside and moved into place so pollers never see partial
+ * files.  Locks are held per process, so nodes sharing a process should use {@link LocalChannelCoordinator}.
+ */
+public final class FileChannelCoordinator implements ChannelCoordinator {
+    private static final String REQUEST_SUFFIX = ".save";
+    private static final String REPLY_SUFFIX = ".reply";
+
+    private final Path channels;
+    private final Path nodes;
+    private final String nodeId;
+    private final long timeoutMillis;
+
+    /**
+     * Lock files of the channels this node owns
+     */
+    private final ConcurrentMap<String, FileChannel> owned = new ConcurrentHashMap<>();
+
+    /**
+     * Saves forwarded by this node still waiting for an answer, by request identifier
+     */
+    private final ConcurrentMap<String, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService poller;
+    private volatile Function<ForwardedSave, CompletableFuture<String>> handler;
+
+    /**
+     * @param directory directory shared by every node.
+     * @param nodeId identifier of this node; unique among the nodes sharing the directory.
+     * @param pollMillis how often the spool is checked for requests and answers, in milliseconds.
+     * @param timeoutMillis how long a forwarded save may take before it fails, in milliseconds.
+     * @throws IOException if the directory could not be set up.
+     */
+    public FileChannelCoordinator(Path directory, String nodeId, long pollMillis, long timeoutMillis)
+            throws IOException {
+        this.channels = directory.resolve("channels");
+        this.nodes = directory.resolve("nodes");
+        this.nodeId = nodeId;
+        this.timeoutMillis = timeoutMillis;
+
+        Files.createDirectories(channels);
+        Files.createDirectories(getInbox(nodeId));
+        Files.createDirectories(getReplies(nodeId));
+
+        this.poller = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "memory-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::poll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static String toFileName(String name) {
+        return URLEncoder.encode(name, StandardCharsets.UTF_8);
+    }
+
+    private Path getInbox(String nodeId) {
+        return nodes.resolve(toFileName(nodeId)).resolve("inbox");
+    }
+
+    private Path getReplies(String nodeId) {
+        return nodes.resolve(toFileName(nodeId)).resolve("replies");
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public String acquire(String channelId) {
+        if (owned.containsKey(channelId))
+            return nodeId;
+
+        synchronized (owned) {
+            if (owned.containsKey(channelId))
+                return nodeId;
+
+            Path path = getLockFile(channelId);
+            try {
+                FileChannel file = FileChannel.open(path,
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                FileLock lock;
+                try {
+                    lock = file.tryLock();
+                } catch (OverlappingFileLockException ex) {
+                    lock = null;
+                }
+
+                if (lock == null) {
+                    file.close();
+                    return readOwner(path);
+                }
+
+                file.truncate(0L);
+                file.write(ByteBuffer.wrap(nodeId.getBytes(StandardCharsets.UTF_8)), 0L);
+                file.force(false);
+                owned.put(channelId, file);
+                return nodeId;
+            } catch (IOException e) {
+                // Capturing a channel twice beats not capturing it at all
+                Logger.getGlobal().log(Level.WARNING, "Problem claiming channel " + channelId
+                        + "; memorizing it without coordination", e);
+                return nodeId;
+            }
+        }
+    }
+
+    @Override
+    public String getOwner(String channelId) {
+        if (owned.containsKey(channelId))
+            return nodeId;
+
+        Path path = getLockFile(channelId);
+        if (!Files.exists(path))
+            return null;
+
+        synchronized (owned) {
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileLock lock;
+                try {
+                    lock = file.tryLock();
+                } catch (OverlappingFileLockException ex) {
+                    lock = null;
+                }
+
+                if (lock != null) {
+                    // Nobody holds the channel; the file only names its last owner
+                    lock.release();
+                    return null;
+                }
+
+                return readOwner(path);
+            } catch (NoSuchFileException ex) {
+                return null;
+            } catch (IOException e) {
+                Logger.getGlobal().log(Level.WARNING, "Problem looking up owner of channel " + channelId, e);
+                return null;
+            }
+        }
+    }
+
+    private Path getLockFile(String channelId) {
+        return channels.resolve(toFileName(channelId) + ".lock");
+    }
+
+    private static String readOwner(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim();
+    }
+
+    @Override
+    public void release(String channelId) {
+        FileChannel file = owned.remove(channelId);
+        if (file == null)
+            return;
+
+        try {
+            // Closing the channel releases the lock; the file stays, as another node may be locking it already
+            file.close();
+        } catch (IOException e) {
+            Logger.getGlobal().log(Level.WARNING, "Problem releasing channel " + channelId, e);
+        }
+    }
+
+    @Override
+    public void setSaveHandler(Function<ForwardedSave, CompletableFuture<String>> handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public CompletableFuture<String> forward(String nodeId, ForwardedSave save) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Path inbox = getInbox(nodeId);
+        if (nodeId.isEmpty() || !Files.isDirectory(inbox)) {
+            future.completeExceptionally(new IllegalStateException("Node " + nodeId + " is not known"));
+            return future;
+        }
+
+        String requestId = UUID.randomUUID().toString();
+        Properties request = new Properties();
+        request.setProperty("channel", save.getChannelId());
+        request.setProperty("user", Integer.toString(save.getUserId()));
+        request.setProperty("speechSeconds", Float.toString(save.getSpeechSeconds()));
+        request.setProperty("historySeconds", Float.toString(save.getHistorySeconds()));
+        request.setProperty("replyTo", this.nodeId);
+
+        pending.put(requestId, future);
+        try {
+            publish(inbox, requestId + REQUEST_SUFFIX, request);
+            poller.schedule(() -> {
+                if (pending.remove(requestId) != null)
+                    future.completeExceptionally(new TimeoutException("Node " + nodeId + " did not answer within "
+                            + timeoutMillis + "ms"));
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            pending.remove(requestId);
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    /**
+     * Writes a spool file aside and moves it into place.
+     */
+    private static void publish(Path directory, String name, Properties properties) throws IOException {
+        Path temporary = directory.resolve(name + ".tmp");
+        try (OutputStream outputStream = Files.newOutputStream(temporary)) {
+            properties.store(outputStream, null);
+        }
+
+        Files.move(temporary, directory.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads and deletes a spool file.
+     * @return file contents, or null if another poll already took the file.
+     */
+    private static Properties take(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            properties.load(inputStream);
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+
+        Files.deleteIfExists(path);
+        return properties;
+    }
+
+    private static String getRequestId(Path path, String suffix) {
+        String name = path.getFileName().toString();
+        return name.substring(0, name.length() - suffix.length());
+    }
+
+    private void poll() {
+        try {
+            try (DirectoryStream<Path> requests = Files.newDirectoryStream(getInbox(nodeId), "*" + REQUEST_SUFFIX)) {
+                for (Path path : requests)
+                    accept(getRequestId(path, REQUEST_SUFFIX), take(path));
+            }
+
+            try (DirectoryStream<Path> replies = Files.newDirectoryStream(getReplies(nodeId), "*" + REPLY_SUFFIX)) {
+                for (Path path : replies)
+                    complete(getRequestId(path, REPLY_SUFFIX), take(path));
+            }
+        } catch (Exception e) {
+            Logger.getGlobal().log(Level.WARNING, "Problem polling memory coordinator spool", e);
+        }
+    }
+
+    /**
+     * Carries out a save forwarded to this node and answers the node that forwarded it.
+     */
+    private void accept(String requestId, Properties request) {
+        if (request == null)
+            return;
+
+        String replyTo = request.getProperty("replyTo", "");
+        CompletableFuture<String> future;
+        Function<ForwardedSave, CompletableFuture<String>> handler = this.handler;
+        try {
+            if (handler == null)
+                throw new IllegalStateException("Node " + nodeId + " is not taking saves");
+
+            future = handler.apply(new ForwardedSave(
+                    request.getProperty("channel"),
+                    Integer.parseInt(request.getProperty("user")),
+                    Float.parseFloat(request.getProperty("speechSeconds", "0")),
+                    Float.parseFloat(request.getProperty("historySeconds", "0"))
+            ));
+        } catch (RuntimeException ex) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(ex);
+        }
+
+        future.whenComplete((track, ex) -> {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            Properties reply = new Properties();
+            if (cause == null) {
+                reply.setProperty("track", track);
+            } else {
+                reply.setProperty("error", String.valueOf(cause.getMessage()));
+                reply.setProperty("argument", Boolean.toString(cause instanceof CommandArgumentException));
+            }
+
+            try {
+                publish(getReplies(replyTo), requestId + REPLY_SUFFIX, reply);
+            } catch (IOException e) {
+                Logger.getGlobal().log(Level.WARNING, "Problem answering save forwarded by node " + replyTo, e);
+            }
+        });
+    }
+
+    /**
+     * Completes a save this node forwarded with the owner's answer.
+     */
+    private void complete(String requestId, Properties reply) {
+        CompletableFuture<String> future = reply != null ? pending.remove(requestId) : null;
+        if (future == null)
+            return;
+
+        String track = reply.getProperty("track");
+        if (track != null) {
+            future.complete(track);
+        } else if (Boolean.parseBoolean(reply.getProperty("argument"))) {
+            future.completeExceptionally(new CommandArgumentException(reply.getProperty("error")));
+        } else {
+            future.completeExceptionally(new IOException("Owning node could not save: " + reply.getProperty("error")));
+        }
+    }
+
+    @Override
+    public void close() {
+        poller.shutdownNow();
+        handler = null;
+
+        for (String channelId : owned.keySet())
+            release(channelId);
+
+        for (String requestId : pending.keySet()) {
+            CompletableFuture<String> future = pending.remove(requestId);
+            if (future != null)
+                future.completeExceptionally(new IllegalStateException("Memory coordinator was closed"));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package io.manebot.plugin.memory.cluster;
+
+/**
+ * A save requested on one node and carried out by the node owning the channel.
+ */
+public final class ForwardedSave {
+    private final String channelId;
+    private final int userId;
+    private final float speechSeconds;
+    private final float historySeconds;
+
+    /**
+     * @param channelId audio channel to save a memory of.
+     * @param userId user saving the memory.
+     * @param speechSeconds seconds of speech to save; 0 to save the whole memory.
+     * @param historySeconds seconds of history to save; 0 to save the memory ring.
+     */
+    public ForwardedSave(String channelId, int userId, float speechSeconds, float historySeconds) {
+        this.channelId = channelId;
+        this.userId = userId;
+        this.speechSeconds = speechSeconds;
+        this.historySeconds = historySeconds;
+    }
+
+    public String getChannelId() {
+        return channelId;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public float getSpeechSeconds() {
+        return speechSeconds;
+    }
+
+    public float getHistorySeconds() {
+        return historySeconds;
+    }
+}
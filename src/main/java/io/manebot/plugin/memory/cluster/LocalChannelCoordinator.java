@@ -0,0 +1,90 @@
+package io.manebot.plugin.memory.cluster;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Coordinates nodes living in the same process, e.g. several plugin instances under test.  Nodes of the same group
+ * share channel ownership, and forwarded saves are handed straight to the owning node's handler.
+ */
+public final class LocalChannelCoordinator implements ChannelCoordinator {
+    /**
+     * Groups by name, so separately configured nodes find each other
+     */
+    private static final ConcurrentMap<String, Group> groups = new ConcurrentHashMap<>();
+
+    private final Group group;
+    private final String nodeId;
+
+    public LocalChannelCoordinator(Group group, String nodeId) {
+        this.group = group;
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * Gets a group shared by every node asking for it by name.
+     * @param name group name.
+     * @return group.
+     */
+    public static Group getGroup(String name) {
+        return groups.computeIfAbsent(name, (n) -> new Group());
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public String acquire(String channelId) {
+        String owner = group.owners.putIfAbsent(channelId, nodeId);
+        return owner != null ? owner : nodeId;
+    }
+
+    @Override
+    public String getOwner(String channelId) {
+        return group.owners.get(channelId);
+    }
+
+    @Override
+    public void release(String channelId) {
+        group.owners.remove(channelId, nodeId);
+    }
+
+    @Override
+    public void setSaveHandler(Function<ForwardedSave, CompletableFuture<String>> handler) {
+        if (handler != null)
+            group.handlers.put(nodeId, handler);
+        else
+            group.handlers.remove(nodeId);
+    }
+
+    @Override
+    public CompletableFuture<String> forward(String nodeId, ForwardedSave save) {
+        Function<ForwardedSave, CompletableFuture<String>> handler = group.handlers.get(nodeId);
+        if (handler == null) {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException("Node " + nodeId + " is not taking saves"));
+            return future;
+        }
+
+        return handler.apply(save);
+    }
+
+    @Override
+    public void close() {
+        group.handlers.remove(nodeId);
+        group.owners.values().removeIf(nodeId::equals);
+    }
+
+    /**
+     * Channel owners and save handlers of the nodes in one process.
+     */
+    public static final class Group {
+        private final ConcurrentMap<String, String> owners = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Function<ForwardedSave, CompletableFuture<String>>> handlers =
+                new ConcurrentHashMap<>();
+    }
+}
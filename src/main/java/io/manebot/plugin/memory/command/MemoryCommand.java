@@ -5,35 +5,45 @@ import io.manebot.command.exception.CommandArgumentException;
 import io.manebot.command.exception.CommandExecutionException;
 import io.manebot.command.executor.chained.AnnotatedCommandExecutor;
 import io.manebot.command.executor.chained.argument.CommandArgumentLabel;
+import io.manebot.command.executor.chained.argument.CommandArgumentNumeric;
+import io.manebot.command.executor.chained.argument.CommandArgumentString;
 import io.manebot.database.model.User;
 import io.manebot.plugin.Plugin;
 import io.manebot.plugin.PluginRegistration;
 import io.manebot.plugin.audio.Audio;
 import io.manebot.plugin.audio.channel.AudioChannel;
-import io.manebot.plugin.audio.mixer.output.AudioConsumer;
 import io.manebot.plugin.memory.Memorizer;
 import io.manebot.plugin.memory.Memory;
+import io.manebot.plugin.memory.buffer.MemorySource;
+import io.manebot.plugin.memory.buffer.RingBudget;
+import io.manebot.plugin.memory.cluster.ForwardedSave;
+import io.manebot.plugin.memory.database.model.FingerprintMatch;
+import io.manebot.plugin.memory.dsp.DspConfig;
+import io.manebot.plugin.memory.encode.PreEncoder;
+import io.manebot.plugin.memory.fingerprint.Fingerprint;
+import io.manebot.plugin.memory.fingerprint.Fingerprinter;
+import io.manebot.plugin.memory.metrics.Histogram;
+import io.manebot.plugin.memory.metrics.MemorizerMetrics;
+import io.manebot.plugin.memory.save.SaveResult;
 import io.manebot.plugin.music.Music;
-import io.manebot.plugin.music.config.AudioDownloadFormat;
-import io.manebot.plugin.music.database.model.Community;
-import io.manebot.plugin.music.database.model.Track;
-import io.manebot.plugin.music.database.model.TrackRepository;
-import io.manebot.plugin.music.repository.NullRepository;
-import io.manebot.plugin.music.repository.Repository;
-import io.manebot.plugin.music.source.AudioProtocol;
-
-import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URI;
-import java.net.URL;
-import java.net.URLEncoder;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.UUID;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class MemoryCommand extends AnnotatedCommandExecutor {
+    /**
+     * Length of the clip searched for by default, and the aligned landmarks a memory needs to share with it
+     */
+    private static final int DEFAULT_FIND_SECONDS = 10;
+    private static final int MIN_FIND_SCORE = 8;
+    private static final int MAX_FIND_RESULTS = 10;
+
     private final PluginRegistration pluginRegistration;
     private final Plugin audioPlugin;
     private final Plugin musicPlugin;
@@ -56,166 +66,302 @@ public class MemoryCommand extends AnnotatedCommandExecutor {
         return musicPlugin.getInstance(Music.class);
     }
 
-    private Memorizer getMemorizer(CommandSender sender) throws CommandArgumentException {
-        Memory memory = getMemory();
-        Audio audio = getAudio();
-        AudioChannel channel = audio.getChannel(sender);
+    private AudioChannel getChannel(CommandSender sender) throws CommandArgumentException {
+        AudioChannel channel = getAudio().getChannel(sender);
         if (channel == null) {
             throw new CommandArgumentException("There is no audio channel associated with this conversation.");
         }
 
-        return memory.getMemorizer(channel);
+        return channel;
+    }
+
+    private Memorizer getMemorizer(CommandSender sender) throws CommandArgumentException {
+        Memory memory = getMemory();
+        AudioChannel channel = getChannel(sender);
+        Memorizer memorizer = memory.getMemorizer(channel);
+        if (memorizer == null) {
+            String owner = memory.getRemoteOwner(channel);
+            throw new CommandArgumentException(owner != null
+                    ? "This audio channel is memorized by node " + owner + "."
+                    : "This audio channel is not being memorized right now; try again later.");
+        }
+
+        return memorizer;
     }
 
     @Command(description = "Captures a memory of the audio channel", permission = "memory.save")
     public void save(CommandSender sender) throws Exception {
-        Memorizer memorizer = getMemorizer(sender);
-        AudioChannel channel = memorizer.getChannel();
+        save(sender, 0F, 0F);
+    }
 
-        Music music = getMusic();
-        Community community = music.getCommunity(memorizer.getChannel().getConversation());
-        if (community == null) {
-            throw new CommandArgumentException("There is no music community associated with this conversation.");
-        }
+    @Command(description = "Captures the last minutes of the audio channel (e.g. 90s, 10m)", permission = "memory.save")
+    public void save(CommandSender sender,
+                     @CommandArgumentLabel.Argument(label = "save") String save,
+                     @CommandArgumentLabel.Argument(label = "last") String last,
+                     @CommandArgumentString.Argument(label = "duration") String duration) throws Exception {
+        save(sender, 0F, parseDuration(duration));
+    }
 
-        TrackRepository trackRepository = community.getRepository();
-        if (trackRepository == null) {
-            throw new CommandArgumentException("There is no track repository associated with this music community.");
-        } else if (trackRepository.getInstance() instanceof NullRepository) {
-            throw new CommandArgumentException("This music community does not support saving new tracks.");
-        }
+    @Command(description = "Captures the last seconds of speech in the audio channel, skipping silence (e.g. 30)",
+            permission = "memory.save")
+    public void save(CommandSender sender,
+                     @CommandArgumentLabel.Argument(label = "save") String save,
+                     @CommandArgumentLabel.Argument(label = "speech") String speech,
+                     @CommandArgumentNumeric.Argument int seconds) throws Exception {
+        if (seconds < 1)
+            throw new CommandArgumentException("Seconds must be at least 1.");
 
-        Track memoryTrack;
-        try (AudioChannel.Ownership ownership = channel.obtainChannel(sender.getPlatformUser().getAssociation())) {
-            Thread.sleep(1000L);
+        save(sender, (float) seconds, 0F);
+    }
 
-            memoryTrack = save((User) sender.getUser(), memorizer, community);
-            memorizer.reset();
+    /**
+     * Saves a memory of the sender's audio channel, or has the node memorizing the channel save it.
+     * @param sender command sender.
+     * @param speechSeconds seconds of speech to save, with the silence between speech collapsed; 0 to save the whole
+     *                      memory.
+     * @param historySeconds seconds of history to save, reaching past the memory ring; 0 to save the memory ring.
+     */
+    private void save(CommandSender sender, float speechSeconds, float historySeconds) throws Exception {
+        Memory memory = getMemory();
+        AudioChannel channel = getChannel(sender);
+        User user = (User) sender.getUser();
+
+        String owner = memory.getRemoteOwner(channel);
+        if (owner != null) {
+            CompletableFuture<String> future = memory.getCoordinator().forward(owner,
+                    new ForwardedSave(channel.getId(), user.getUserId(), speechSeconds, historySeconds));
+            whenSaved(sender, future.thenApply(track -> "Memory saved as \"" + track + "\" by node " + owner + "."));
+            return;
         }
 
-        sender.sendMessage("Memory saved as \"" + memoryTrack.getName() + "\".");
+        CompletableFuture<SaveResult> future = memory.save(getMemorizer(sender), user,
+                sender.getPlatformUser().getAssociation(), speechSeconds, historySeconds);
+        whenSaved(sender, future.thenApply(result -> "Memory saved as \"" + result.getTrack().getName() + "\""
+                + (result.getMemory().getSource() != null ? ", shared with an earlier save." : ".")));
     }
 
-    private Track save(User user, Memorizer memorizer, Community community) throws CommandArgumentException, MalformedURLException {
-        if (!memorizer.isRunning())
-            throw new CommandArgumentException("Memorizer is not running.");
+    /**
+     * Tells the sender how a save went once it completes.
+     * @param sender command sender.
+     * @param future save, completing with the message confirming it.
+     */
+    private static void whenSaved(CommandSender sender, CompletableFuture<String> future) {
+        if (!future.isDone())
+            sender.sendMessage("Saving memory...");
+
+        future.whenComplete((message, ex) -> {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (cause == null) {
+                sender.sendMessage(message);
+            } else if (cause instanceof CancellationException) {
+                sender.sendMessage("Memory was not saved: the save was cancelled.");
+            } else if (cause instanceof RejectedExecutionException) {
+                sender.sendMessage("Memory was not saved: too many memories are being saved right now.");
+            } else if (cause instanceof TimeoutException) {
+                sender.sendMessage("Memory was not saved: the node memorizing this channel did not answer.");
+            } else if (cause instanceof CommandArgumentException) {
+                sender.sendMessage("Memory was not saved: " + cause.getMessage());
+            } else {
+                Logger.getGlobal().log(Level.WARNING, "Problem saving memory", cause);
+                sender.sendMessage("Memory was not saved: there was a problem saving the memory.");
+            }
+        });
+    }
 
-        float sampleRate = memorizer.getMixer().getAudioSampleRate();
-        int channels = memorizer.getMixer().getAudioChannels();
+    @Command
+    public void debugInfo(CommandSender sender, @CommandArgumentLabel.Argument(label = "debug-info") String label)
+            throws CommandExecutionException {
+        Memorizer memorizer = getMemorizer(sender);
+        AudioChannel channel = memorizer.getChannel();
 
-        // Copy the memorizer buffer
-        float[] buffer = memorizer.copyBuffer();
-        if (getTimeInSeconds(buffer, sampleRate, channels) < 1F)
-            throw new CommandArgumentException("Ring buffer too small.");
+        sender.sendDetails(builder -> {
+            builder.name("Channel").key(channel.getId());
+            builder.name("Mixer").key(memorizer.getMixer().getId());
+            builder.item("Format", memorizer.getFormat());
+            builder.item("Save format", memorizer.getSaveFormat());
+            builder.item("Encoding", memorizer.getEncoding());
+            builder.item("Running", memorizer.isRunning());
+            builder.item("Registered", memorizer.isRegistered());
+            builder.item("Suspended", memorizer.isSuspended());
+        });
+    }
 
-        buffer = trim(buffer, channels);
-        float time = getTimeInSeconds(buffer, sampleRate, channels);
-        if (time < 1F)
-            throw new CommandArgumentException("There is nothing to remember.");
+    @Command(description = "Shows what the memorizer of this audio channel costs")
+    public void stats(CommandSender sender, @CommandArgumentLabel.Argument(label = "stats") String label)
+            throws CommandExecutionException {
+        Memorizer memorizer = getMemorizer(sender);
+        MemorizerMetrics metrics = memorizer.getMetrics();
+        Memory memory = getMemory();
 
-        return save(user, buffer, community, time);
+        sender.sendDetails(builder -> {
+            builder.name("Memorizer").key(memorizer.getChannel().getId());
+            builder.item("Samples/s", String.format("%.0f", metrics.measureWriteRate()));
+            builder.item("Ring fill", String.format("%.1f%%", memorizer.getFillLevel() * 100f));
+            builder.item("Providers", memorizer.getProviderCount());
+            builder.item("Resamplers", memorizer.getResamplerCount() + " (pool: "
+                    + memory.getResamplerPool().getActiveCount() + " active, "
+                    + memory.getResamplerPool().getIdleCount() + " idle)");
+            builder.item("Dropped samples", metrics.getSamplesDropped());
+            builder.item("Lost samples", metrics.getSamplesLost());
+            builder.item("Flush", formatTimings(metrics.getFlushNanos()));
+            builder.item("Snapshot", formatTimings(metrics.getSnapshotNanos()));
+            builder.item("Trim", formatTimings(metrics.getTrimNanos()));
+            builder.item("Encode", formatTimings(metrics.getEncodeNanos()));
+            builder.item("Fingerprint", formatTimings(metrics.getFingerprintNanos()));
+            builder.item("Saves", metrics.getSaves() + " (" + metrics.getFailedSaves() + " failed, "
+                    + metrics.getCoalescedSaves() + " coalesced)");
+            builder.item("Bytes written", metrics.getBytesWritten());
+            PreEncoder preEncoder = memorizer.getPreEncoder();
+            builder.item("Pre-encoded bytes", preEncoder != null ? preEncoder.getEncodedBytes() : "-");
+            if (memorizer.getHistory() != null) {
+                builder.item("History", String.format("%.0fs, %d bytes",
+                        memorizer.getHistorySeconds(), memorizer.getHistory().getBytes()));
+                builder.item("History budget", memory.getHistoryBudget().getUsedBytes() + " of "
+                        + memory.getHistoryBudget().getMaxBytes() + " bytes");
+            }
+            builder.item("Save queue", memory.getSaveExecutor().getQueueSize() + " queued, "
+                    + memory.getSaveExecutor().getActiveCount() + " active");
+        });
     }
 
-    private Track save(User user, float[] buffer, Community community, float seconds) throws CommandArgumentException,
-            MalformedURLException {
-        URL url = URI.create("file:/dev/null?memory=1&community=" +
-                URLEncoder.encode(community.getName())
-                + "&time=" + System.currentTimeMillis()).toURL();
+    @Command(description = "Finds memories containing the last 10 seconds of the audio channel",
+            permission = "memory.find")
+    public void find(CommandSender sender, @CommandArgumentLabel.Argument(label = "find") String label)
+            throws CommandExecutionException {
+        find(sender, label, DEFAULT_FIND_SECONDS);
+    }
 
-        UUID uuid = Repository.toUUID(url);
+    @Command(description = "Finds memories containing the last seconds of the audio channel",
+            permission = "memory.find")
+    public void find(CommandSender sender,
+                     @CommandArgumentLabel.Argument(label = "find") String label,
+                     @CommandArgumentNumeric.Argument int seconds)
+            throws CommandExecutionException {
+        if (seconds < 1)
+            throw new CommandArgumentException("Seconds must be at least 1.");
 
-        Repository.Resource resource;
-        try {
-            resource = community.getRepository().getInstance().get(uuid);
-        } catch (IOException e) {
-            throw new CommandArgumentException("Problem generating resource with uuid=" + uuid, e);
+        Memorizer memorizer = getMemorizer(sender);
+        Memory memory = getMemory();
+        MemorySource source = memory.isStreamingSaves()
+                ? memorizer.window(memory.getStreamingGuardSeconds())
+                : memorizer.snapshot();
+
+        float sampleRate = memorizer.getFormat().getSampleRate();
+        int channels = memorizer.getFormat().getChannels();
+        long length = (long) seconds * (long) sampleRate * channels;
+        long start = Math.max(source.getPosition(), source.getEndPosition() - length);
+
+        Fingerprint clip = new Fingerprinter(sampleRate, channels).fingerprint(source, start, source.getEndPosition());
+        if (clip.size() < MIN_FIND_SCORE)
+            throw new CommandArgumentException("There is not enough audio to search for.");
+
+        List<FingerprintMatch> matches = memory.getMemoryManager().findMemories(clip, MIN_FIND_SCORE,
+                MAX_FIND_RESULTS);
+        if (matches.isEmpty()) {
+            sender.sendMessage("No memories contain that audio.");
+            return;
         }
 
-        if (resource.exists())
-            throw new CommandArgumentException("Resource already exists.");
+        sender.sendDetails(builder -> {
+            builder.name("Memories").key(matches.size() + " found");
+            for (FingerprintMatch match : matches) {
+                int position = (int) match.getPosition();
+                builder.item(match.getMemory().getTrack().getName(), String.format("at %d:%02d (score %d)",
+                        position / 60, position % 60, match.getScore()));
+            }
+        });
+    }
 
-        AudioProtocol protocol = getMusic().getProtocol();
-        AudioDownloadFormat format = community.getRepository().getFormat();
-        try (AudioConsumer consumer = protocol.openConsumer(resource.openWrite(), format)) {
-            consumer.write(buffer, buffer.length);
-        } catch (Exception ex) {
-            throw new CommandArgumentException("Problem saving memory to file", ex);
-        }
+    @Command(description = "Shows the memory every memorizer has been allocated", permission = "memory.status")
+    public void status(CommandSender sender, @CommandArgumentLabel.Argument(label = "status") String label) {
+        Memory memory = getMemory();
+        RingBudget budget = memory.getRingBudget();
 
-        // Create the track file locally
-        community.getRepository().createFile(community.getRepository(), uuid, format.getContainerFormat());
+        sender.sendDetails(builder -> {
+            builder.name("Memory").key(budget != null
+                    ? String.format("%.1f of %.1f MB", toMegabytes(budget.getUsedBytes()),
+                            toMegabytes(budget.getMaxBytes()))
+                    : "unbudgeted");
+
+            for (Memorizer memorizer : memory.getMemorizers()) {
+                String state;
+                if (!memorizer.isSuspended())
+                    state = memorizer.getIdleMillis() > 0L ? "idle" : "active";
+                else
+                    state = memorizer.getRingBytes() > 0L ? "suspended" : "released";
+
+                builder.item(memorizer.getChannel().getId(), String.format("%.1fs, %.2f MB, %s",
+                        memorizer.getRingSeconds(), toMegabytes(memorizer.getRingBytes()), state));
+            }
+        });
+    }
 
-        Date date = Calendar.getInstance().getTime();
-        DateFormat dateFormat = new SimpleDateFormat("yyyy-mm-dd hh:mm:ss");
-        String strDate = dateFormat.format(date);
+    @Command(description = "Shows the DSP chain of memory mixers")
+    public void dsp(CommandSender sender, @CommandArgumentLabel.Argument(label = "dsp") String label) {
+        DspConfig config = getMemory().getDspConfig();
+        sender.sendMessage("DSP chain: " + (config.getStages().isEmpty() ? "(none)" : config.toString()));
+    }
 
-        // Create a new track
-        return community.getOrCreateTrack(url, (builder) -> {
-            builder.setLength((double) seconds);
-            builder.setName(community.getName() + " memory from " + strDate);
-            builder.setUser(user);
-            builder.setUrl(url);
+    @Command(description = "Changes the DSP chain of every memory mixer", permission = "memory.dsp")
+    public void dsp(CommandSender sender,
+                    @CommandArgumentLabel.Argument(label = "dsp") String label,
+                    @CommandArgumentString.Argument(label = "chain") String chain)
+            throws CommandArgumentException {
+        DspConfig config;
+        try {
+            config = DspConfig.parse(chain.equalsIgnoreCase("none") ? "" : chain);
+        } catch (IllegalArgumentException ex) {
+            throw new CommandArgumentException(ex.getMessage());
+        }
 
-            builder.addTag("memory");
-            builder.addTag(community.getName());
-        });
+        getMemory().setDspConfig(config);
+        sender.sendMessage("DSP chain changed to: " + (config.getStages().isEmpty() ? "(none)" : config.toString()));
     }
 
     /**
-     * Trims an audio buffer, removing any silence in the signal from the "left" (start) or "right" (end)
-     * @param buffer buffer to trim silence from
-     * @param channels number of channels in the source audio stream
-     * @return trimmed audio buffer in the same format as the input.
+     * Parses a duration such as "90", "90s", "10m" or "1h".
+     * @param duration duration; seconds if no unit is given.
+     * @return duration, in seconds.
+     * @throws CommandArgumentException if the duration is not understood or not positive.
      */
-    private float[] trim(float[] buffer, int channels) {
-        int start = 0, end = 0;
-        int totalFrames = buffer.length / channels;
-
-        for (int frame = 0; frame < totalFrames; frame += 1) {
-            int sampleStart = frame * channels;
-            boolean noise = false;
-            for (int sampleIndex = 0; sampleIndex < channels; sampleIndex ++) {
-                float sample = buffer[sampleStart + sampleIndex];
-                if (sample != 0f) {
-                    noise = true;
-                    break;
-                }
-            }
-
-            if (noise) {
-                end = frame;
-                if (start <= 0) {
-                    start = frame;
-                }
-            }
+    private static float parseDuration(String duration) throws CommandArgumentException {
+        String value = duration.trim().toLowerCase();
+        float unit = 1F;
+        if (value.endsWith("h")) {
+            unit = 3600F;
+        } else if (value.endsWith("m")) {
+            unit = 60F;
+        } else if (!value.endsWith("s")) {
+            value = value + "s";
         }
 
-        int frameLength = end - start;
-        int sampleLength = frameLength * channels;
-        float[] trimmed = new float[sampleLength];
+        float seconds;
+        try {
+            seconds = Float.parseFloat(value.substring(0, value.length() - 1)) * unit;
+        } catch (NumberFormatException ex) {
+            throw new CommandArgumentException("Unknown duration: " + duration);
+        }
 
-        System.arraycopy(buffer, start * channels, trimmed, 0, sampleLength);
+        if (!(seconds >= 1F))
+            throw new CommandArgumentException("Duration must be at least 1 second.");
 
-        return trimmed;
+        return seconds;
     }
 
-    private float getTimeInSeconds(float[] buffer, float sampleRate, int channels) {
-        return (float)buffer.length / (sampleRate * channels);
+    private static double toMegabytes(long bytes) {
+        return bytes / (1024d * 1024d);
     }
 
-    @Command
-    public void debugInfo(CommandSender sender, @CommandArgumentLabel.Argument(label = "debug-info") String label)
-            throws CommandExecutionException {
-        Memorizer memorizer = getMemorizer(sender);
-        AudioChannel channel = memorizer.getChannel();
+    private static String formatTimings(Histogram nanos) {
+        if (nanos.getCount() == 0L)
+            return "-";
 
-        sender.sendDetails(builder -> {
-            builder.name("Channel").key(channel.getId());
-            builder.name("Mixer").key(memorizer.getMixer().getId());
-            builder.item("Format", memorizer.getFormat());
-            builder.item("Running", memorizer.isRunning());
-            builder.item("Registered", memorizer.isRegistered());
-        });
+        return String.format("n=%d mean=%.2fms p50=%.2fms p99=%.2fms max=%.2fms",
+                nanos.getCount(),
+                nanos.getMean() / 1_000_000d,
+                nanos.getPercentile(0.5d) / 1_000_000d,
+                nanos.getPercentile(0.99d) / 1_000_000d,
+                nanos.getMax() / 1_000_000d);
     }
 
 }
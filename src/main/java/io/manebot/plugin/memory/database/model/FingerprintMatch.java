@@ -0,0 +1,36 @@
+package io.manebot.plugin.memory.database.model;
+
+/**
+ * A memory found to contain a clip, by the landmarks they share.
+ */
+public final class FingerprintMatch {
+    private final Memory memory;
+    private final int score;
+    private final float position;
+
+    FingerprintMatch(Memory memory, int score, float position) {
+        this.memory = memory;
+        this.score = score;
+        this.position = position;
+    }
+
+    public Memory getMemory() {
+        return memory;
+    }
+
+    /**
+     * Gets the number of landmarks the clip and the memory share at the same offset.
+     * @return match score; higher is a closer match.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Gets where in the memory the clip was found.
+     * @return seconds into the memory.
+     */
+    public float getPosition() {
+        return position;
+    }
+}
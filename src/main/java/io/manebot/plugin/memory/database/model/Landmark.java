@@ -0,0 +1,71 @@
+package io.manebot.plugin.memory.database.model;
+
+import io.manebot.database.Database;
+
+import javax.persistence.*;
+
+/**
+ * A landmark hash of a memory's audio fingerprint, placed at the analysis frame it occurs at.  Looked up by hash to
+ * find the memories sharing a clip's landmarks.
+ *
+ * A memory has thousands of landmarks, so identifiers are handed out in blocks from a generator table rather than by
+ * the database on insert; that way the inserts of one memory can go out in JDBC batches.
+ */
+@Entity
+@Table(
+        indexes = {
+                @Index(columnList = "hash"),
+                @Index(columnList = "memoryId")
+        }
+)
+public class Landmark {
+    /**
+     * Number of identifiers reserved from the generator table at a time
+     */
+    static final int ALLOCATION_SIZE = 1024;
+
+    @Transient
+    private final Database database;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "landmarkId")
+    @TableGenerator(name = "landmarkId", allocationSize = Landmark.ALLOCATION_SIZE)
+    @Column()
+    private int landmarkId;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "memoryId")
+    private Memory memory;
+
+    @Column(nullable = false)
+    private int hash;
+
+    /**
+     * Analysis frame into the memory the landmark occurs at
+     */
+    @Column(nullable = false)
+    private int frame;
+
+    public Landmark(Database database) {
+        this.database = database;
+    }
+
+    public Landmark(Database database, Memory memory, int hash, int frame) {
+        this.database = database;
+        this.memory = memory;
+        this.hash = hash;
+        this.frame = frame;
+    }
+
+    public Memory getMemory() {
+        return memory;
+    }
+
+    public int getHash() {
+        return hash;
+    }
+
+    public int getFrame() {
+        return frame;
+    }
+}
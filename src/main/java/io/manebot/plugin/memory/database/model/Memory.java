@@ -24,6 +24,28 @@ public class Memory extends TimedRow {
     @JoinColumn(name = "trackId")
     private Track track;
 
+    /**
+     * Memory whose track this memory is a region of; null if the memory has a track of its own
+     */
+    @ManyToOne(optional = true)
+    @JoinColumn(name = "sourceMemoryId")
+    private Memory source;
+
+    /**
+     * Region of the track this memory refers to, in seconds; null if the memory is the whole track
+     */
+    @Column(nullable = true)
+    private Float position;
+
+    @Column(nullable = true)
+    private Float length;
+
+    /**
+     * Participants loaded in a batch by the memory manager; null until loaded
+     */
+    @Transient
+    private volatile Collection<Participant> participants;
+
     public Memory(Database database) {
         this.database = database;
     }
@@ -33,7 +55,14 @@ public class Memory extends TimedRow {
         this.track = track;
     }
 
-    private int getMemoryId() {
+    public Memory(Database database, Memory source, float position, float length) {
+        this(database, source.getTrack());
+        this.source = source;
+        this.position = position;
+        this.length = length;
+    }
+
+    public int getMemoryId() {
         return memoryId;
     }
 
@@ -45,16 +74,57 @@ public class Memory extends TimedRow {
         return track;
     }
 
+    /**
+     * Gets the memory this memory is a region of.
+     * @return source memory, or null if this memory has a track of its own.
+     */
+    public Memory getSource() {
+        return source;
+    }
+
+    /**
+     * Gets where in the track this memory starts.
+     * @return seconds into the track; 0 if the memory is the whole track.
+     */
+    public float getPosition() {
+        return position != null ? position : 0f;
+    }
+
+    /**
+     * Gets the length of the region of the track this memory refers to.
+     * @return length, in seconds, or null if the memory is the whole track.
+     */
+    public Float getLength() {
+        return length;
+    }
+
     /**
      * Gets an unmodifiable collections of participants of this memory.
      * @return unmodifiable collection of participants.
      */
     public Collection<Participant> getParticipants() {
-        return Collections.unmodifiableCollection(database.execute(s -> {
-            return s.createQuery(
-                    "SELECT x FROM " + Participant.class.getName() + " x where x.memoryId = :memoryId",
-                    Participant.class
-            ).setParameter("memoryId", getMemoryId()).getResultList();
-        }));
+        Collection<Participant> participants = this.participants;
+        if (participants == null) {
+            participants = database.execute(s -> {
+                return s.createQuery(
+                        "SELECT x FROM " + Participant.class.getName() + " x "
+                                + "JOIN FETCH x.user "
+                                + "WHERE x.memory = :memory",
+                        Participant.class
+                ).setParameter("memory", this).getResultList();
+            });
+
+            setParticipants(participants);
+        }
+
+        return Collections.unmodifiableCollection(participants);
+    }
+
+    boolean isParticipantsLoaded() {
+        return participants != null;
+    }
+
+    void setParticipants(Collection<Participant> participants) {
+        this.participants = participants;
     }
 }
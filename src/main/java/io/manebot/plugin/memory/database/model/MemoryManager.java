@@ -1,13 +1,379 @@
 package io.manebot.plugin.memory.database.model;
 
 import io.manebot.database.Database;
+import io.manebot.database.model.User;
+import io.manebot.plugin.memory.fingerprint.Fingerprint;
+import io.manebot.plugin.memory.fingerprint.Fingerprinter;
+import io.manebot.plugin.music.database.model.Community;
+import io.manebot.plugin.music.database.model.Track;
+
+import java.util.*;
+import java.util.stream.Collectors;
 
 public final class MemoryManager {
+    /**
+     * Number of hashes looked up per query when finding memories by fingerprint
+     */
+    private static final int LOOKUP_BATCH_SIZE = 512;
+
+    /**
+     * Number of landmarks inserted per JDBC batch when creating a memory
+     */
+    private static final int INSERT_BATCH_SIZE = 256;
+
     private final Database database;
 
+    /**
+     * Recently loaded memories, keyed by memoryId, least recently used first
+     */
+    private final Map<Integer, Memory> cache;
+
     public MemoryManager(Database database) {
+        this(database, 256);
+    }
+
+    public MemoryManager(Database database, int cacheSize) {
         this.database = database;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Memory> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Gets a memory by its ID, from the cache of recently loaded memories if possible.
+     * @param memoryId memory ID.
+     * @return memory, or null if it does not exist.
+     */
+    public Memory getMemory(int memoryId) {
+        synchronized (cache) {
+            Memory cached = cache.get(memoryId);
+            if (cached != null)
+                return cached;
+        }
+
+        List<Memory> memories = database.execute(s -> {
+            return s.createQuery(
+                    "SELECT x FROM " + Memory.class.getName() + " x "
+                            + "JOIN FETCH x.track "
+                            + "WHERE x.memoryId = :memoryId",
+                    Memory.class
+            ).setParameter("memoryId", memoryId).getResultList();
+        });
+
+        return memories.isEmpty() ? null : loaded(memories).get(0);
+    }
+
+    /**
+     * Finds a user by identifier.
+     * @param userId user identifier.
+     * @return user, or null if there is no such user.
+     */
+    public User getUser(int userId) {
+        return database.execute(s -> s.find(User.class, userId));
+    }
+
+    /**
+     * Creates a memory of a saved track, with its participants and their stem segments, in a single transaction.
+     * @param track saved track.
+     * @param participants participants of the memory.
+     * @return created memory.
+     */
+    public Memory createMemory(Track track, Collection<Participant.Draft> participants) {
+        return createMemory(track, participants, null);
     }
 
+    /**
+     * Creates a memory of a saved track, with its participants, their stem segments and the landmarks of its audio,
+     * in a single transaction.
+     * @param track saved track.
+     * @param participants participants of the memory.
+     * @param fingerprint fingerprint of the saved audio, or null if it is not indexed.
+     * @return created memory.
+     */
+    public Memory createMemory(Track track, Collection<Participant.Draft> participants, Fingerprint fingerprint) {
+        Memory memory = database.executeTransaction(s -> {
+            Memory created = new Memory(database, track);
+            s.persist(created);
 
+            List<Participant> persisted = new ArrayList<>(participants.size());
+            for (Participant.Draft draft : participants) {
+                Participant participant = new Participant(database, created, draft.getUser(), draft.getStem());
+                s.persist(participant);
+                persisted.add(participant);
+
+                for (Segment.Draft segment : draft.getSegments())
+                    s.persist(new Segment(database, participant,
+                            segment.getPosition(), segment.getStemPosition(), segment.getLength()));
+            }
+
+            if (fingerprint != null && fingerprint.size() > 0) {
+                Integer batchSize = s.getJdbcBatchSize();
+                s.setJdbcBatchSize(INSERT_BATCH_SIZE);
+                try {
+                    List<Landmark> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+                    for (int i = 0; i < fingerprint.size(); i ++) {
+                        Landmark landmark = new Landmark(database, created,
+                                fingerprint.getHash(i), fingerprint.getFrame(i));
+                        s.persist(landmark);
+                        batch.add(landmark);
+
+                        if (batch.size() == INSERT_BATCH_SIZE || i == fingerprint.size() - 1) {
+                            // Sends the batch and keeps the session from holding every landmark of the memory
+                            s.flush();
+                            batch.forEach(s::detach);
+                            batch.clear();
+                        }
+                    }
+                } finally {
+                    s.setJdbcBatchSize(batchSize);
+                }
+            }
+
+            created.setParticipants(persisted);
+            return created;
+        });
+
+        synchronized (cache) {
+            cache.put(memory.getMemoryId(), memory);
+        }
+
+        return memory;
+    }
+
+    /**
+     * Creates a memory referring to a region of an existing memory's track, e.g. for a save that overlapped it.
+     * @param source memory whose track is referred to.
+     * @param position seconds into the track the region starts at.
+     * @param length length of the region, in seconds.
+     * @param participants participants of the new memory; their stems are not saved again.
+     * @return created memory.
+     */
+    public Memory createReference(Memory source, float position, float length,
+                                  Collection<Participant.Draft> participants) {
+        Memory memory = database.executeTransaction(s -> {
+            Memory created = new Memory(database, source, position, length);
+            s.persist(created);
+
+            List<Participant> persisted = new ArrayList<>(participants.size());
+            for (Participant.Draft draft : participants) {
+                Participant participant = new Participant(database, created, draft.getUser());
+                s.persist(participant);
+                persisted.add(participant);
+            }
+
+            created.setParticipants(persisted);
+            return created;
+        });
+
+        synchronized (cache) {
+            cache.put(memory.getMemoryId(), memory);
+        }
+
+        return memory;
+    }
+
+    /**
+     * Gets a page of the memories saved into a music community, newest first.
+     * @param community music community.
+     * @param page zero-based page number.
+     * @param pageSize memories per page.
+     * @return page of memories, with their participants loaded.
+     */
+    public List<Memory> getMemories(Community community, int page, int pageSize) {
+        return loaded(database.execute(s -> {
+            return s.createQuery(
+                    "SELECT x FROM " + Memory.class.getName() + " x "
+                            + "JOIN FETCH x.track t "
+                            + "WHERE t.community = :community "
+                            + "ORDER BY x.created DESC, x.memoryId DESC",
+                    Memory.class
+            ).setParameter("community", community)
+                    .setFirstResult(page * pageSize)
+                    .setMaxResults(pageSize)
+                    .getResultList();
+        }));
+    }
+
+    /**
+     * Gets a page of the memories a user participated in, newest first.
+     * @param user participant.
+     * @param page zero-based page number.
+     * @param pageSize memories per page.
+     * @return page of memories, with their participants loaded.
+     */
+    public List<Memory> getMemories(User user, int page, int pageSize) {
+        return loaded(database.execute(s -> {
+            return s.createQuery(
+                    "SELECT x FROM " + Memory.class.getName() + " x "
+                            + "JOIN FETCH x.track "
+                            + "WHERE x IN (SELECT p.memory FROM " + Participant.class.getName() + " p "
+                            + "WHERE p.user = :user) "
+                            + "ORDER BY x.created DESC, x.memoryId DESC",
+                    Memory.class
+            ).setParameter("user", user)
+                    .setFirstResult(page * pageSize)
+                    .setMaxResults(pageSize)
+                    .getResultList();
+        }));
+    }
+
+    /**
+     * Gets a page of the memories saved within a time range, newest first.
+     * @param from start of the range (inclusive).
+     * @param to end of the range (exclusive).
+     * @param page zero-based page number.
+     * @param pageSize memories per page.
+     * @return page of memories, with their participants loaded.
+     */
+    public List<Memory> getMemories(Date from, Date to, int page, int pageSize) {
+        return loaded(database.execute(s -> {
+            return s.createQuery(
+                    "SELECT x FROM " + Memory.class.getName() + " x "
+                            + "JOIN FETCH x.track "
+                            + "WHERE x.created >= :from AND x.created < :to "
+                            + "ORDER BY x.created DESC, x.memoryId DESC",
+                    Memory.class
+            ).setParameter("from", (int) (from.getTime() / 1000L))
+                    .setParameter("to", (int) (to.getTime() / 1000L))
+                    .setFirstResult(page * pageSize)
+                    .setMaxResults(pageSize)
+                    .getResultList();
+        }));
+    }
+
+    /**
+     * Finds the memories containing a clip, by looking up the clip's landmarks and counting, for each memory, how
+     * many landmarks line up at the same offset.
+     * @param clip fingerprint of the clip.
+     * @param minScore fewest aligned landmarks a memory must share with the clip.
+     * @param maxResults maximum number of memories to return.
+     * @return matching memories, best match first, with their participants loaded.
+     */
+    public List<FingerprintMatch> findMemories(Fingerprint clip, int minScore, int maxResults) {
+        // Frames of each hash in the clip
+        Map<Integer, List<Integer>> clipFrames = new HashMap<>();
+        for (int i = 0; i < clip.size(); i ++)
+            clipFrames.computeIfAbsent(clip.getHash(i), (hash) -> new ArrayList<>()).add(clip.getFrame(i));
+
+        // Votes for each (memory, offset) pair, keyed by memoryId in the high half and offset in the low half
+        Map<Long, Integer> votes = new HashMap<>();
+        List<Integer> hashes = new ArrayList<>(clipFrames.keySet());
+        for (int from = 0; from < hashes.size(); from += LOOKUP_BATCH_SIZE) {
+            List<Integer> batch = hashes.subList(from, Math.min(hashes.size(), from + LOOKUP_BATCH_SIZE));
+            List<Object[]> rows = database.execute(s -> {
+                return s.createQuery(
+                        "SELECT l.memory.memoryId, l.hash, l.frame FROM " + Landmark.class.getName() + " l "
+                                + "WHERE l.hash IN :hashes",
+                        Object[].class
+                ).setParameter("hashes", batch).getResultList();
+            });
+
+            for (Object[] row : rows) {
+                int memoryId = (Integer) row[0];
+                int frame = (Integer) row[2];
+                for (int clipFrame : clipFrames.get((Integer) row[1])) {
+                    long key = ((long) memoryId << 32) | ((frame - clipFrame) & 0xFFFFFFFFL);
+                    votes.merge(key, 1, Integer::sum);
+                }
+            }
+        }
+
+        // Best offset of each memory
+        Map<Integer, long[]> best = new HashMap<>();
+        for (Map.Entry<Long, Integer> vote : votes.entrySet()) {
+            if (vote.getValue() < minScore)
+                continue;
+
+            int memoryId = (int) (vote.getKey() >>> 32);
+            long[] current = best.get(memoryId);
+            if (current == null || vote.getValue() > current[0])
+                best.put(memoryId, new long[] { vote.getValue(), (int) (long) vote.getKey() });
+        }
+
+        List<Map.Entry<Integer, long[]>> ranked = new ArrayList<>(best.entrySet());
+        ranked.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        if (ranked.size() > maxResults)
+            ranked = ranked.subList(0, maxResults);
+        if (ranked.isEmpty())
+            return Collections.emptyList();
+
+        List<Integer> memoryIds = ranked.stream().map(Map.Entry::getKey).collect(Collectors.toList());
+        Map<Integer, Memory> memories = loaded(database.execute(s -> {
+            return s.createQuery(
+                    "SELECT x FROM " + Memory.class.getName() + " x "
+                            + "JOIN FETCH x.track "
+                            + "WHERE x.memoryId IN :memoryIds",
+                    Memory.class
+            ).setParameter("memoryIds", memoryIds).getResultList();
+        })).stream().collect(Collectors.toMap(Memory::getMemoryId, memory -> memory));
+
+        List<FingerprintMatch> matches = new ArrayList<>(ranked.size());
+        for (Map.Entry<Integer, long[]> entry : ranked) {
+            Memory memory = memories.get(entry.getKey());
+            if (memory == null)
+                continue;
+
+            matches.add(new FingerprintMatch(memory, (int) entry.getValue()[0],
+                    Math.max(0L, entry.getValue()[1]) * Fingerprinter.FRAME_SECONDS));
+        }
+
+        return matches;
+    }
+
+    /**
+     * Loads the participants of a batch of memories with a single IN query and caches the memories.  Memories
+     * already in the cache are replaced by the cached instance, so their participants are not loaded again.
+     * @param memories memories just loaded from the database.
+     * @return the same memories, in the same order, with participants loaded.
+     */
+    private List<Memory> loaded(List<Memory> memories) {
+        List<Memory> result = new ArrayList<>(memories.size());
+        List<Memory> missing = new ArrayList<>();
+
+        synchronized (cache) {
+            for (Memory memory : memories) {
+                Memory cached = cache.get(memory.getMemoryId());
+                if (cached != null && cached.isParticipantsLoaded()) {
+                    result.add(cached);
+                } else {
+                    result.add(memory);
+                    missing.add(memory);
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            Map<Integer, List<Participant>> participants = database.execute(s -> {
+                return s.createQuery(
+                        "SELECT p FROM " + Participant.class.getName() + " p "
+                                + "JOIN FETCH p.user "
+                                + "WHERE p.memory IN :memories",
+                        Participant.class
+                ).setParameter("memories", missing).getResultList();
+            }).stream().collect(Collectors.groupingBy(p -> p.getMemory().getMemoryId()));
+
+            for (Memory memory : missing)
+                memory.setParticipants(participants.getOrDefault(memory.getMemoryId(), Collections.emptyList()));
+
+            synchronized (cache) {
+                for (Memory memory : missing)
+                    cache.put(memory.getMemoryId(), memory);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Drops a memory from the cache, e.g. after its participants changed.
+     * @param memoryId memory ID.
+     */
+    public void invalidate(int memoryId) {
+        synchronized (cache) {
+            cache.remove(memoryId);
+        }
+    }
 }
@@ -5,7 +5,18 @@ import io.manebot.database.model.TimedRow;
 import io.manebot.database.model.User;
 
 import javax.persistence.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
+@Entity
+@Table(
+        indexes = {
+                @Index(columnList = "memoryId"),
+                @Index(columnList = "userId")
+        },
+        uniqueConstraints = {@UniqueConstraint(columnNames = {"memoryId", "userId"})}
+)
 public class Participant extends TimedRow {
     @Transient
     private final Database database;
@@ -23,6 +34,12 @@ public class Participant extends TimedRow {
     @JoinColumn(name = "userId")
     private User user;
 
+    /**
+     * Repository UUID of this participant's stem (their own voiced audio); null if the memory has no stems
+     */
+    @Column(nullable = true)
+    private String stem;
+
     public Participant(Database database) {
         this.database = database;
     }
@@ -33,6 +50,11 @@ public class Participant extends TimedRow {
         this.user = user;
     }
 
+    public Participant(Database database, Memory memory, User user, String stem) {
+        this(database, memory, user);
+        this.stem = stem;
+    }
+
     public Memory getMemory() {
         return memory;
     }
@@ -44,4 +66,69 @@ public class Participant extends TimedRow {
     public void setUser(User user) {
         this.user = user;
     }
+
+    /**
+     * Gets the repository UUID of this participant's stem.
+     * @return stem UUID, or null if no stem was saved for this participant.
+     */
+    public String getStem() {
+        return stem;
+    }
+
+    /**
+     * Gets the voiced segments of this participant's stem.
+     * @return segments, in timeline order.
+     */
+    public List<Segment> getSegments() {
+        return database.execute(s -> {
+            return s.createQuery(
+                    "SELECT x FROM " + Segment.class.getName() + " x "
+                            + "WHERE x.participant = :participant "
+                            + "ORDER BY x.position ASC",
+                    Segment.class
+            ).setParameter("participant", this).getResultList();
+        });
+    }
+
+    /**
+     * A participant of a memory that has not been saved yet.
+     */
+    public static final class Draft {
+        private final User user;
+        private final String stem;
+        private final List<Segment.Draft> segments = new ArrayList<>();
+
+        /**
+         * @param user participating user.
+         * @param stem repository UUID of the participant's stem, or null.
+         */
+        public Draft(User user, String stem) {
+            this.user = user;
+            this.stem = stem;
+        }
+
+        public User getUser() {
+            return user;
+        }
+
+        public String getStem() {
+            return stem;
+        }
+
+        public List<Segment.Draft> getSegments() {
+            return Collections.unmodifiableList(segments);
+        }
+
+        /**
+         * Adds a voiced segment of the participant's stem.
+         * @param position seconds into the memory the segment starts at.
+         * @param stemPosition seconds into the stem the segment starts at.
+         * @param length length of the segment, in seconds.
+         * @return this draft.
+         */
+        public Draft addSegment(float position, float stemPosition, float length) {
+            segments.add(new Segment.Draft(position, stemPosition, length));
+            return this;
+        }
+    }
 }
@@ -0,0 +1,111 @@
+package io.manebot.plugin.memory.database.model;
+
+import io.manebot.database.Database;
+import io.manebot.database.model.TimedRow;
+
+import javax.persistence.*;
+
+/**
+ * A run of voiced audio in a participant's stem, placed on the memory's timeline.
+ */
+@Entity
+@Table(
+        indexes = {
+                @Index(columnList = "participantId")
+        }
+)
+public class Segment extends TimedRow {
+    @Transient
+    private final Database database;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column()
+    private int segmentId;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "participantId")
+    private Participant participant;
+
+    /**
+     * Seconds into the memory this segment starts at
+     */
+    @Column(nullable = false)
+    private float position;
+
+    /**
+     * Seconds into the participant's stem this segment starts at
+     */
+    @Column(nullable = false)
+    private float stemPosition;
+
+    @Column(nullable = false)
+    private float length;
+
+    public Segment(Database database) {
+        this.database = database;
+    }
+
+    public Segment(Database database, Participant participant, float position, float stemPosition, float length) {
+        this.database = database;
+        this.participant = participant;
+        this.position = position;
+        this.stemPosition = stemPosition;
+        this.length = length;
+    }
+
+    public Participant getParticipant() {
+        return participant;
+    }
+
+    /**
+     * Gets where this segment starts on the memory's timeline.
+     * @return seconds into the memory.
+     */
+    public float getPosition() {
+        return position;
+    }
+
+    /**
+     * Gets where this segment starts in the participant's stem.
+     * @return seconds into the stem.
+     */
+    public float getStemPosition() {
+        return stemPosition;
+    }
+
+    /**
+     * Gets the length of this segment.
+     * @return length, in seconds.
+     */
+    public float getLength() {
+        return length;
+    }
+
+    /**
+     * A segment of a participant that has not been saved yet.
+     */
+    public static final class Draft {
+        private final float position;
+        private final float stemPosition;
+        private final float length;
+
+        Draft(float position, float stemPosition, float length) {
+            this.position = position;
+            this.stemPosition = stemPosition;
+            this.length = length;
+        }
+
+        public float getPosition() {
+            return position;
+        }
+
+        public float getStemPosition() {
+            return stemPosition;
+        }
+
+        public float getLength() {
+            return length;
+        }
+    }
+}
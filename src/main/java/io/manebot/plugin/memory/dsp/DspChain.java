@@ -0,0 +1,81 @@
+package io.manebot.plugin.memory.dsp;
+
+import io.manebot.plugin.audio.mixer.filter.MultiChannelFilter;
+
+import java.util.function.Supplier;
+
+/**
+ * The DSP chain of a single memory mixer.  Follows the shared configuration: when the configuration is swapped, the
+ * filters are rebuilt on the next buffer, so the chain changes without the mixer being re-registered.  Buffers that
+ * are silent on every channel skip the filters entirely.
+ */
+public final class DspChain implements MultiChannelFilter {
+    /**
+     * Peak level (about -100 dBFS) at or below which a buffer counts as silent
+     */
+    private static final float SILENCE = 0.00001f;
+
+    private final Supplier<DspConfig> config;
+    private final float sampleRate;
+    private final int channels;
+
+    /**
+     * Configuration the filters were built from; only touched by the mixer thread
+     */
+    private DspConfig built = null;
+    private MultiChannelFilter[] filters = new MultiChannelFilter[0];
+    private boolean silent = false;
+
+    /**
+     * @param config current shared configuration.
+     * @param sampleRate mixer sample rate.
+     * @param channels mixer channel count.
+     */
+    public DspChain(Supplier<DspConfig> config, float sampleRate, int channels) {
+        this.config = config;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+    }
+
+    @Override
+    public int process(float[][] buffer, int offs, int len) {
+        DspConfig current = config.get();
+        if (current != built) {
+            filters = current.create(sampleRate, channels);
+            built = current;
+            silent = false;
+        }
+
+        if (filters.length == 0)
+            return len;
+
+        if (isSilent(buffer, offs, len)) {
+            silent = true;
+            return len;
+        } else if (silent) {
+            // Real filter state would have decayed over the silence; start from rest instead
+            reset();
+            silent = false;
+        }
+
+        for (MultiChannelFilter filter : filters)
+            len = filter.process(buffer, offs, len);
+
+        return len;
+    }
+
+    private static boolean isSilent(float[][] buffer, int offs, int len) {
+        for (float[] channel : buffer)
+            for (int i = offs; i < offs + len; i ++)
+                if (Math.abs(channel[i]) > SILENCE)
+                    return false;
+
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        for (MultiChannelFilter filter : filters)
+            filter.reset();
+    }
+}
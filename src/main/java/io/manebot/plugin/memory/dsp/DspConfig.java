@@ -0,0 +1,122 @@
+package io.manebot.plugin.memory.dsp;
+
+import io.manebot.plugin.audio.mixer.filter.MultiChannelFilter;
+import io.manebot.plugin.audio.mixer.filter.MuxedMultiChannelFilter;
+import io.manebot.plugin.audio.mixer.filter.type.FilterGain;
+import io.manebot.plugin.audio.mixer.filter.type.FilterLimiter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable DSP chain configuration for memory mixers, parsed once and shared by every memorizer.
+ *
+ * A chain is written as comma-separated stages, each a filter name followed by colon-separated parameters; omitted
+ * trailing parameters take their defaults:
+ * <ul>
+ *     <li><code>highpass:cutoffHz</code> (80)</li>
+ *     <li><code>gate:thresholdDbfs:holdSeconds</code> (-60, 0.1)</li>
+ *     <li><code>gain:gain</code> (1, linear)</li>
+ *     <li><code>limiter:threshold:attack:release:slope</code> (0.7, 1, 0.0001, 0.5)</li>
+ *     <li><code>mono</code>, averaging all channels</li>
+ * </ul>
+ * For example <code>highpass:100,gate:-55,limiter</code>.
+ */
+public final class DspConfig {
+    /**
+     * Chain with no stages
+     */
+    public static final DspConfig EMPTY = new DspConfig(Collections.emptyList());
+
+    private final List<DspStage> stages;
+
+    private DspConfig(List<DspStage> stages) {
+        this.stages = Collections.unmodifiableList(stages);
+    }
+
+    public List<DspStage> getStages() {
+        return stages;
+    }
+
+    /**
+     * Creates the filters of every stage for a mixer.
+     * @param sampleRate mixer sample rate.
+     * @param channels mixer channel count.
+     * @return new filter instances, in chain order.
+     */
+    public MultiChannelFilter[] create(float sampleRate, int channels) {
+        MultiChannelFilter[] filters = new MultiChannelFilter[stages.size()];
+        for (int i = 0; i < filters.length; i ++)
+            filters[i] = stages.get(i).create(sampleRate, channels);
+        return filters;
+    }
+
+    @Override
+    public String toString() {
+        return stages.stream().map(DspStage::toString).collect(Collectors.joining(","));
+    }
+
+    /**
+     * Parses a DSP chain.
+     * @param chain chain, as comma-separated stages; empty for no stages.
+     * @return parsed configuration.
+     * @throws IllegalArgumentException if a stage is unknown or has malformed parameters.
+     */
+    public static DspConfig parse(String chain) {
+        List<DspStage> stages = new ArrayList<>();
+        for (String stage : chain.split(",")) {
+            stage = stage.trim();
+            if (stage.isEmpty())
+                continue;
+
+            String[] parts = stage.split(":");
+            stages.add(createStage(parts[0].trim().toLowerCase(), parts));
+        }
+
+        return stages.isEmpty() ? EMPTY : new DspConfig(stages);
+    }
+
+    private static DspStage createStage(String name, String[] parts) {
+        switch (name) {
+            case "highpass":
+                return new DspStage(name, parameters(name, parts, 80f),
+                        (sampleRate, channels, p) -> MuxedMultiChannelFilter.from(channels,
+                                (ch) -> new HighPassFilter(sampleRate, p[0])));
+            case "gate":
+                return new DspStage(name, parameters(name, parts, -60f, 0.1f),
+                        (sampleRate, channels, p) -> MuxedMultiChannelFilter.from(channels,
+                                (ch) -> new NoiseGateFilter(sampleRate, p[0], p[1])));
+            case "gain":
+                return new DspStage(name, parameters(name, parts, 1f),
+                        (sampleRate, channels, p) -> MuxedMultiChannelFilter.from(channels,
+                                (ch) -> new FilterGain(sampleRate, p[0])));
+            case "limiter":
+                return new DspStage(name, parameters(name, parts, 0.7f, 1f, 0.0001f, 0.5f),
+                        (sampleRate, channels, p) -> MuxedMultiChannelFilter.from(channels,
+                                (ch) -> new FilterLimiter(sampleRate, p[0], p[1], p[2], p[3])));
+            case "mono":
+                return new DspStage(name, parameters(name, parts),
+                        (sampleRate, channels, p) -> new MonoDownmixFilter(channels));
+            default:
+                throw new IllegalArgumentException("Unknown DSP stage: " + name);
+        }
+    }
+
+    private static float[] parameters(String name, String[] parts, float... defaults) {
+        if (parts.length - 1 > defaults.length)
+            throw new IllegalArgumentException("Too many parameters for DSP stage " + name + ": " + (parts.length - 1));
+
+        float[] parameters = defaults.clone();
+        for (int i = 1; i < parts.length; i ++) {
+            try {
+                parameters[i - 1] = Float.parseFloat(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed parameter for DSP stage " + name + ": " + parts[i], e);
+            }
+        }
+
+        return parameters;
+    }
+}
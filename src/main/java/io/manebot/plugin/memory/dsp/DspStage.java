@@ -0,0 +1,45 @@
+package io.manebot.plugin.memory.dsp;
+
+import io.manebot.plugin.audio.mixer.filter.MultiChannelFilter;
+
+/**
+ * A single stage of a DSP chain: a filter type and its parameters.  Stages are immutable; each memorizer creates its
+ * own filter instances from them.
+ */
+public final class DspStage {
+    private final String name;
+    private final float[] parameters;
+    private final Factory factory;
+
+    DspStage(String name, float[] parameters, Factory factory) {
+        this.name = name;
+        this.parameters = parameters;
+        this.factory = factory;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Creates the filter of this stage for a mixer.
+     * @param sampleRate mixer sample rate.
+     * @param channels mixer channel count.
+     * @return new filter instance.
+     */
+    public MultiChannelFilter create(float sampleRate, int channels) {
+        return factory.create(sampleRate, channels, parameters.clone());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(name);
+        for (float parameter : parameters)
+            builder.append(':').append(parameter);
+        return builder.toString();
+    }
+
+    interface Factory {
+        MultiChannelFilter create(float sampleRate, int channels, float[] parameters);
+    }
+}
@@ -0,0 +1,47 @@
+package io.manebot.plugin.memory.dsp;
+
+import io.manebot.plugin.audio.mixer.filter.SingleChannelFilter;
+
+/**
+ * Second-order Butterworth high-pass filter, for removing rumble and DC offset from voice.
+ */
+public class HighPassFilter implements SingleChannelFilter {
+    private final float b0, b1, b2, a1, a2;
+
+    private float x1, x2, y1, y2;
+
+    public HighPassFilter(float sampleRate, float cutoff) {
+        double omega = 2d * Math.PI * Math.min(cutoff, sampleRate * 0.49f) / sampleRate;
+        double alpha = Math.sin(omega) / Math.sqrt(2d);
+        double cos = Math.cos(omega);
+        double a0 = 1d + alpha;
+
+        this.b0 = (float) (((1d + cos) / 2d) / a0);
+        this.b1 = (float) (-(1d + cos) / a0);
+        this.b2 = b0;
+        this.a1 = (float) ((-2d * cos) / a0);
+        this.a2 = (float) ((1d - alpha) / a0);
+    }
+
+    @Override
+    public int process(float[] samples, int offs, int len) {
+        for (int i = offs; i < offs + len; i ++) {
+            float x = samples[i];
+            float y = b0 * x + b1 * x1 + b2 * x2 - a1 * y1 - a2 * y2;
+
+            x2 = x1;
+            x1 = x;
+            y2 = y1;
+            y1 = y;
+
+            samples[i] = y;
+        }
+
+        return len;
+    }
+
+    @Override
+    public void reset() {
+        x1 = x2 = y1 = y2 = 0f;
+    }
+}
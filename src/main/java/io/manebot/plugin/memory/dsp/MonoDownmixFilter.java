@@ -0,0 +1,39 @@
+package io.manebot.plugin.memory.dsp;
+
+import io.manebot.plugin.audio.mixer.filter.MultiChannelFilter;
+
+/**
+ * Downmixes to mono by replacing every channel with the average of all channels.  The channel count is unchanged, so
+ * the filter fits any mixer; downstream encoders simply see identical channels.
+ */
+public class MonoDownmixFilter implements MultiChannelFilter {
+    private final int channels;
+
+    public MonoDownmixFilter(int channels) {
+        this.channels = channels;
+    }
+
+    @Override
+    public int process(float[][] buffer, int offs, int len) {
+        if (channels < 2)
+            return len;
+
+        float scale = 1f / channels;
+        for (int i = offs; i < offs + len; i ++) {
+            float sum = 0f;
+            for (int ch = 0; ch < channels; ch ++)
+                sum += buffer[ch][i];
+
+            float mono = sum * scale;
+            for (int ch = 0; ch < channels; ch ++)
+                buffer[ch][i] = mono;
+        }
+
+        return len;
+    }
+
+    @Override
+    public void reset() {
+        // Stateless
+    }
+}
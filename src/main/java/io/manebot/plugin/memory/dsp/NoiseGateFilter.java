@@ -0,0 +1,54 @@
+package io.manebot.plugin.memory.dsp;
+
+import io.manebot.plugin.audio.mixer.filter.SingleChannelFilter;
+
+/**
+ * Noise gate: mutes the channel while its envelope stays below a threshold for longer than the hold time, with short
+ * ramps so opening and closing do not click.
+ */
+public class NoiseGateFilter implements SingleChannelFilter {
+    private static final float RAMP_SECONDS = 0.005f;
+    private static final float ENVELOPE_SECONDS = 0.01f;
+
+    private final float threshold;
+    private final int holdSamples;
+    private final float ramp;
+    private final float envelopeDecay;
+
+    private float envelope = 0f;
+    private float gain = 0f;
+    private int held = 0;
+
+    public NoiseGateFilter(float sampleRate, float thresholdDbfs, float holdSeconds) {
+        this.threshold = (float) Math.pow(10d, thresholdDbfs / 20d);
+        this.holdSamples = Math.max(0, (int) (sampleRate * holdSeconds));
+        this.ramp = 1f / Math.max(1f, sampleRate * RAMP_SECONDS);
+        this.envelopeDecay = (float) Math.exp(-1d / Math.max(1f, sampleRate * ENVELOPE_SECONDS));
+    }
+
+    @Override
+    public int process(float[] samples, int offs, int len) {
+        for (int i = offs; i < offs + len; i ++) {
+            float level = Math.abs(samples[i]);
+            envelope = Math.max(level, envelope * envelopeDecay);
+
+            if (envelope >= threshold)
+                held = holdSamples;
+            else if (held > 0)
+                held--;
+
+            boolean open = envelope >= threshold || held > 0;
+            gain = open ? Math.min(1f, gain + ramp) : Math.max(0f, gain - ramp);
+            samples[i] *= gain;
+        }
+
+        return len;
+    }
+
+    @Override
+    public void reset() {
+        envelope = 0f;
+        gain = 0f;
+        held = 0;
+    }
+}
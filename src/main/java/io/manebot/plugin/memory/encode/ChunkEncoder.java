@@ -0,0 +1,25 @@
+package io.manebot.plugin.memory.encode;
+
+import io.manebot.plugin.audio.mixer.output.AudioConsumer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Opens encoders writing a repository format, for encoding chunks.
+ */
+public interface ChunkEncoder {
+    /**
+     * Gets the container format chunks are encoded in.
+     * @return container format, as named by the repository.
+     */
+    String getContainerFormat();
+
+    /**
+     * Opens an encoder.
+     * @param outputStream stream to write encoded bytes to.
+     * @return encoder accepting audio in the memorizer's capture format.
+     * @throws IOException if the encoder could not be opened.
+     */
+    AudioConsumer open(OutputStream outputStream) throws IOException;
+}
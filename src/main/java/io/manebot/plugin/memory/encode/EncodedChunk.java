@@ -0,0 +1,44 @@
+package io.manebot.plugin.memory.encode;
+
+/**
+ * A fixed-length piece of memorized audio, already encoded into the repository's format.
+ */
+public final class EncodedChunk {
+    private final long position;
+    private final int length;
+    private final byte[] data;
+
+    public EncodedChunk(long position, int length, byte[] data) {
+        this.position = position;
+        this.length = length;
+        this.data = data;
+    }
+
+    /**
+     * Gets the absolute ring position of the first sample encoded in this chunk.
+     * @return start position.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public long getEndPosition() {
+        return position + length;
+    }
+
+    /**
+     * Gets the number of samples encoded in this chunk.
+     * @return sample count.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Gets the encoded bytes of this chunk, a complete file in the repository's format.
+     * @return encoded bytes; not copied, and must not be modified.
+     */
+    public byte[] getData() {
+        return data;
+    }
+}
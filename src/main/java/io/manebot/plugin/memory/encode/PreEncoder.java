@@ -0,0 +1,173 @@
+package io.manebot.plugin.memory.encode;
+
+import io.manebot.plugin.audio.mixer.output.AudioConsumer;
+import io.manebot.plugin.memory.buffer.MemoryRing;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Encodes a memory ring in the background, a fixed-length chunk at a time, keeping the chunks covering the ring.
+ * Saving then only concatenates chunks instead of encoding the whole memory after the user asks for it.
+ *
+ * Each chunk is encoded as a complete file of its own, so chunks are only concatenated for containers where a
+ * sequence of complete files plays back as one file without a gap at each seam.  That holds for chained Ogg Vorbis
+ * streams, whose links decode back to back.  It does not hold for MP3 or AAC, whose encoders pad the start and end of
+ * every file with priming and flush frames, nor for Opus, whose streams each begin with a pre-skip; those formats are
+ * encoded when the memory is saved instead.  The encoder runs on a background thread and reads the ring the same
+ * lock-free way saves do; the mixer thread is not involved.
+ */
+public final class PreEncoder implements Runnable {
+    private static final Set<String> CONCATENABLE_FORMATS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "ogg", "oga"
+    )));
+
+    private final Supplier<MemoryRing> ring;
+    private final ChunkEncoder encoder;
+    private final int chunkSize;
+    private final float[] chunk;
+
+    /**
+     * Encoded chunks, oldest first; guarded by this
+     */
+    private final ArrayDeque<EncodedChunk> chunks = new ArrayDeque<>();
+
+    /**
+     * Ring the chunks belong to, and the position of the next chunk to encode; only touched by the encoding thread
+     */
+    private MemoryRing encodedRing = null;
+    private long nextPosition = 0L;
+
+    /**
+     * @param ring memory ring to encode; may supply null while the ring is released.
+     * @param encoder encoder of the repository format.
+     * @param chunkSize samples per chunk, a whole number of frames.
+     */
+    public PreEncoder(Supplier<MemoryRing> ring, ChunkEncoder encoder, int chunkSize) {
+        this.ring = ring;
+        this.encoder = encoder;
+        this.chunkSize = chunkSize;
+        this.chunk = new float[chunkSize];
+    }
+
+    /**
+     * Finds if chunks of a container format can be saved by concatenation.
+     * @param containerFormat container format.
+     * @return true if a sequence of complete files in this format plays back gaplessly as one file.
+     */
+    public static boolean isConcatenable(String containerFormat) {
+        return containerFormat != null && CONCATENABLE_FORMATS.contains(containerFormat.toLowerCase(Locale.ROOT));
+    }
+
+    public String getContainerFormat() {
+        return encoder.getContainerFormat();
+    }
+
+    /**
+     * Encodes every chunk the ring has completed since the last run.
+     */
+    @Override
+    public void run() {
+        MemoryRing ring = this.ring.get();
+        if (ring != encodedRing) {
+            // Released or replaced; chunks of the old ring no longer match any ring positions
+            synchronized (this) {
+                chunks.clear();
+            }
+
+            encodedRing = ring;
+            if (ring != null)
+                nextPosition = align(ring.getStartPosition());
+        }
+
+        if (ring == null)
+            return;
+
+        while (ring.getPosition() >= nextPosition + chunkSize) {
+            if (nextPosition < ring.getValidPosition())
+                nextPosition = align(ring.getValidPosition());
+
+            int read = ring.read(nextPosition, chunk, 0, chunkSize);
+            if (read < chunkSize)
+                continue; // Overwritten while reading (or not committed yet); try again from the oldest intact audio
+
+            byte[] data;
+            try {
+                data = encode();
+            } catch (Exception e) {
+                Logger.getGlobal().log(Level.WARNING, "Problem pre-encoding memory chunk", e);
+                return;
+            }
+
+            add(new EncodedChunk(nextPosition, chunkSize, data), ring.getStartPosition());
+            nextPosition += chunkSize;
+        }
+    }
+
+    private byte[] encode() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (AudioConsumer consumer = encoder.open(outputStream)) {
+            consumer.write(chunk, chunkSize);
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    private synchronized void add(EncodedChunk encoded, long startPosition) {
+        chunks.addLast(encoded);
+        while (!chunks.isEmpty() && chunks.peekFirst().getPosition() < startPosition)
+            chunks.pollFirst();
+    }
+
+    /**
+     * Aligns a position to the next chunk boundary, so chunks keep the same boundaries after skipping ahead.
+     */
+    private long align(long position) {
+        return ((position + chunkSize - 1) / chunkSize) * chunkSize;
+    }
+
+    /**
+     * Gets the contiguous run of encoded chunks lying entirely within a region of the ring, ending with the newest.
+     * @param start absolute ring position of the start of the region.
+     * @param end absolute ring position of the end of the region.
+     * @return chunks, oldest first; empty if none fit.
+     */
+    public synchronized List<EncodedChunk> getChunks(long start, long end) {
+        List<EncodedChunk> covering = new ArrayList<>();
+        long expected = -1L;
+        for (EncodedChunk encoded : chunks) {
+            if (encoded.getPosition() < start || encoded.getEndPosition() > end)
+                continue;
+
+            // Start again after any gap, so the result is a single contiguous run
+            if (expected >= 0L && encoded.getPosition() != expected)
+                covering.clear();
+
+            covering.add(encoded);
+            expected = encoded.getEndPosition();
+        }
+
+        return covering;
+    }
+
+    /**
+     * Gets the memory held by encoded chunks.
+     * @return encoded bytes held.
+     */
+    public synchronized long getEncodedBytes() {
+        long bytes = 0L;
+        for (EncodedChunk encoded : chunks)
+            bytes += encoded.getData().length;
+        return bytes;
+    }
+}
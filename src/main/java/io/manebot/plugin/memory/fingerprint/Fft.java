@@ -0,0 +1,61 @@
+package io.manebot.plugin.memory.fingerprint;
+
+/**
+ * In-place iterative radix-2 FFT of a fixed size, with precomputed twiddle factors.
+ */
+final class Fft {
+    private final int size;
+    private final int[] reversed;
+    private final float[] cos;
+    private final float[] sin;
+
+    Fft(int size) {
+        if (Integer.bitCount(size) != 1)
+            throw new IllegalArgumentException("size must be a power of two: " + size);
+
+        this.size = size;
+        this.reversed = new int[size];
+        int bits = Integer.numberOfTrailingZeros(size);
+        for (int i = 0; i < size; i ++)
+            reversed[i] = Integer.reverse(i) >>> (32 - bits);
+
+        this.cos = new float[size / 2];
+        this.sin = new float[size / 2];
+        for (int i = 0; i < size / 2; i ++) {
+            cos[i] = (float) Math.cos(-2d * Math.PI * i / size);
+            sin[i] = (float) Math.sin(-2d * Math.PI * i / size);
+        }
+    }
+
+    /**
+     * Transforms a signal in place.
+     * @param re real parts.
+     * @param im imaginary parts.
+     */
+    void transform(float[] re, float[] im) {
+        for (int i = 0; i < size; i ++) {
+            int j = reversed[i];
+            if (j > i) {
+                float t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+
+        for (int length = 2; length <= size; length <<= 1) {
+            int half = length >> 1;
+            int step = size / length;
+            for (int start = 0; start < size; start += length) {
+                for (int k = 0; k < half; k ++) {
+                    float wr = cos[k * step], wi = sin[k * step];
+                    int a = start + k, b = a + half;
+                    float xr = re[b] * wr - im[b] * wi;
+                    float xi = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                }
+            }
+        }
+    }
+}
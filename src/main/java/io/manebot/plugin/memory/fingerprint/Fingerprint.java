@@ -0,0 +1,50 @@
+package io.manebot.plugin.memory.fingerprint;
+
+import java.util.Arrays;
+
+/**
+ * Landmark hashes of a piece of audio: each hash describes a pair of nearby spectral peaks, and is placed at the frame
+ * of the first peak.  Two recordings of the same audio share many hashes at a constant frame offset.
+ */
+public final class Fingerprint {
+    private int[] hashes;
+    private int[] frames;
+    private int size = 0;
+
+    Fingerprint() {
+        this.hashes = new int[256];
+        this.frames = new int[256];
+    }
+
+    void add(int hash, int frame) {
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, size * 2);
+            frames = Arrays.copyOf(frames, size * 2);
+        }
+
+        hashes[size] = hash;
+        frames[size] = frame;
+        size++;
+    }
+
+    /**
+     * Gets the number of hashes.
+     * @return hash count.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getHash(int index) {
+        return hashes[index];
+    }
+
+    /**
+     * Gets the frame a hash is placed at.
+     * @param index hash index.
+     * @return analysis frame, counted from the start of the audio; see Fingerprinter.FRAME_SECONDS.
+     */
+    public int getFrame(int index) {
+        return frames[index];
+    }
+}
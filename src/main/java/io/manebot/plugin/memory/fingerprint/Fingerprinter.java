@@ -0,0 +1,261 @@
+package io.manebot.plugin.memory.fingerprint;
+
+import io.manebot.plugin.memory.buffer.MemorySource;
+
+import java.util.Arrays;
+
+/**
+ * Computes landmark fingerprints of memorized audio.
+ *
+ * Audio is mixed down to mono and decimated to 8 kHz, then cut into overlapping Hann-windowed frames.  The strongest
+ * local peak of each of a few frequency bands is kept per frame, and every peak is paired with the next few peaks up
+ * to a second later; each pair is hashed from the first peak's frequency, the frequency difference and the frame
+ * difference.  Hashes do not depend on loudness or on where the audio starts, so a clip can be found inside a longer
+ * memory by looking for many shared hashes at the same frame offset.
+ *
+ * Not thread-safe; each fingerprint needs its own fingerprinter.
+ */
+public final class Fingerprinter {
+    public static final float ANALYSIS_RATE = 8000f;
+    private static final int FFT_SIZE = 512;
+    private static final int HOP_SIZE = 256;
+
+    /**
+     * Length of an analysis frame, the unit hashes are placed in
+     */
+    public static final float FRAME_SECONDS = HOP_SIZE / ANALYSIS_RATE;
+
+    /**
+     * Edges of the bands peaks are picked in, in FFT bins
+     */
+    private static final int[] BANDS = {2, 10, 20, 40, 80, 160, FFT_SIZE / 2};
+
+    /**
+     * Peaks quieter than this (in power, relative to full scale) are ignored, so silence makes no hashes
+     */
+    private static final float MIN_POWER = 1e-7f;
+
+    /**
+     * How many times the mean power of its band a peak must have, so noise makes few hashes
+     */
+    private static final float PROMINENCE = 8f;
+
+    /**
+     * How far ahead (in frames and bins) a peak is paired, and with how many peaks at most
+     */
+    private static final int MAX_FRAME_DELTA = 31;
+    private static final int MAX_BIN_DELTA = 63;
+    private static final int FAN_OUT = 3;
+
+    private final int channels;
+    private final double step;
+    private final Fft fft = new Fft(FFT_SIZE);
+    private final float[] window = new float[FFT_SIZE];
+    private final float[] frame = new float[FFT_SIZE];
+    private final float[] re = new float[FFT_SIZE];
+    private final float[] im = new float[FFT_SIZE];
+    private final float[] power = new float[FFT_SIZE / 2];
+
+    /**
+     * Peak of each band in the previous frame; -1 if there was none
+     */
+    private final int[] bandPeaks = new int[BANDS.length - 1];
+
+    /**
+     * Recent peaks still waiting to be paired: the bin, frame and pair count of each, in a ring
+     */
+    private static final int MAX_PEAKS = (MAX_FRAME_DELTA + 1) * (BANDS.length - 1);
+    private final int[] peakBins = new int[MAX_PEAKS];
+    private final int[] peakFrames = new int[MAX_PEAKS];
+    private final int[] peakPairs = new int[MAX_PEAKS];
+    private int peakHead = 0;
+    private int peakCount = 0;
+
+    /**
+     * Decimation state: the source sample being accumulated, and the fill of the current frame
+     */
+    private double phase = 0d;
+    private float accumulator = 0f;
+    private int accumulated = 0;
+    private int fill = 0;
+    private int frameIndex = 0;
+
+    private Fingerprint fingerprint = new Fingerprint();
+
+    /**
+     * @param sampleRate sample rate of the audio.
+     * @param channels channel count of the audio.
+     */
+    public Fingerprinter(float sampleRate, int channels) {
+        this.channels = channels;
+        Arrays.fill(bandPeaks, -1);
+        this.step = Math.max(1d, sampleRate / ANALYSIS_RATE);
+        for (int i = 0; i < FFT_SIZE; i ++)
+            window[i] = (float) (0.5d - 0.5d * Math.cos(2d * Math.PI * i / (FFT_SIZE - 1)));
+    }
+
+    /**
+     * Fingerprints a region of memorized audio.
+     * @param source memorized audio.
+     * @param start absolute position of the first sample.
+     * @param end absolute position just past the last sample.
+     * @return fingerprint, with frames counted from the start of the region.
+     */
+    public Fingerprint fingerprint(MemorySource source, long start, long end) {
+        float[] chunk = new float[FFT_SIZE * channels];
+        long position = start;
+        while (position < end) {
+            int read = source.read(position, chunk, 0, (int) Math.min(chunk.length, end - position));
+            if (read < 0) {
+                // Overwritten before we got to it; keep the frame timeline by skipping ahead
+                long valid = Math.max(position + channels, source.getValidPosition());
+                valid -= (valid - start) % channels;
+                skip(valid - position);
+                position = valid;
+                continue;
+            } else if (read == 0) {
+                break;
+            }
+
+            process(chunk, read);
+            position += read;
+        }
+
+        return finish();
+    }
+
+    /**
+     * Feeds interleaved samples to the fingerprinter.
+     * @param samples samples, a whole number of frames.
+     * @param len number of samples.
+     */
+    public void process(float[] samples, int len) {
+        for (int i = 0; i + channels <= len; i += channels) {
+            float mono = 0f;
+            for (int c = 0; c < channels; c ++)
+                mono += samples[i + c];
+
+            accumulator += mono / channels;
+            accumulated++;
+            phase += 1d;
+            if (phase >= step) {
+                phase -= step;
+                push(accumulator / accumulated);
+                accumulator = 0f;
+                accumulated = 0;
+            }
+        }
+    }
+
+    /**
+     * Stands in for audio that could not be read, keeping the frames of what follows where they belong.
+     * @param samples number of samples missed, a whole number of frames.
+     */
+    public void skip(long samples) {
+        long sampleFrames = samples / channels;
+        long analysisSamples = (long) ((sampleFrames + phase) / step);
+        phase = (sampleFrames + phase) - analysisSamples * step;
+        accumulator = 0f;
+        accumulated = 0;
+        for (long i = 0; i < analysisSamples; i ++)
+            push(0f);
+    }
+
+    private void push(float sample) {
+        frame[fill++] = sample;
+        if (fill < FFT_SIZE)
+            return;
+
+        analyze();
+        System.arraycopy(frame, HOP_SIZE, frame, 0, FFT_SIZE - HOP_SIZE);
+        fill = FFT_SIZE - HOP_SIZE;
+        frameIndex++;
+    }
+
+    private void analyze() {
+        for (int i = 0; i < FFT_SIZE; i ++) {
+            re[i] = frame[i] * window[i];
+            im[i] = 0f;
+        }
+
+        fft.transform(re, im);
+
+        float scale = 4f / ((float) FFT_SIZE * FFT_SIZE);
+        for (int i = 0; i < power.length; i ++)
+            power[i] = (re[i] * re[i] + im[i] * im[i]) * scale;
+
+        // Forget peaks too old to pair with anything from this frame on
+        while (peakCount > 0 && frameIndex - peakFrames[peakHead] > MAX_FRAME_DELTA) {
+            peakHead = (peakHead + 1) % MAX_PEAKS;
+            peakCount--;
+        }
+
+        for (int band = 0; band < BANDS.length - 1; band ++) {
+            int from = Math.max(1, BANDS[band]);
+            int to = Math.min(power.length - 1, BANDS[band + 1]);
+
+            int best = -1;
+            float total = 0f;
+            for (int bin = from; bin < to; bin ++) {
+                total += power[bin];
+                if (power[bin] > power[bin - 1] && power[bin] >= power[bin + 1]
+                        && (best < 0 || power[bin] > power[best]))
+                    best = bin;
+            }
+
+            int previous = bandPeaks[band];
+            bandPeaks[band] = -1;
+            if (best < 0 || power[best] <= MIN_POWER || power[best] * (to - from) < PROMINENCE * total)
+                continue;
+
+            bandPeaks[band] = best;
+
+            // A peak that was already there a frame ago is the same sustained partial; only its onset is a landmark
+            if (previous < 0 || Math.abs(previous - best) > 1)
+                peak(best);
+        }
+    }
+
+    private void peak(int bin) {
+        for (int i = 0; i < peakCount; i ++) {
+            int index = (peakHead + i) % MAX_PEAKS;
+            int frameDelta = frameIndex - peakFrames[index];
+            int binDelta = bin - peakBins[index];
+            if (frameDelta < 1 || peakPairs[index] >= FAN_OUT || Math.abs(binDelta) > MAX_BIN_DELTA)
+                continue;
+
+            int hash = (peakBins[index] << 12) | ((binDelta + MAX_BIN_DELTA) << 5) | frameDelta;
+            fingerprint.add(hash, peakFrames[index]);
+            peakPairs[index]++;
+        }
+
+        if (peakCount == MAX_PEAKS) {
+            peakHead = (peakHead + 1) % MAX_PEAKS;
+            peakCount--;
+        }
+
+        int index = (peakHead + peakCount) % MAX_PEAKS;
+        peakBins[index] = bin;
+        peakFrames[index] = frameIndex;
+        peakPairs[index] = 0;
+        peakCount++;
+    }
+
+    /**
+     * Finishes the fingerprint of everything fed so far, and starts a new one.
+     * @return fingerprint.
+     */
+    public Fingerprint finish() {
+        Fingerprint finished = fingerprint;
+        fingerprint = new Fingerprint();
+        phase = 0d;
+        accumulator = 0f;
+        accumulated = 0;
+        fill = 0;
+        frameIndex = 0;
+        peakHead = 0;
+        peakCount = 0;
+        Arrays.fill(bandPeaks, -1);
+        return finished;
+    }
+}
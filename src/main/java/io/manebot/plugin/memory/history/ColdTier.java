@@ -0,0 +1,230 @@
+package io.manebot.plugin.memory.history;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compressed history of a memorizer, reaching further back than its memory ring.
+ *
+ * The archiver appends fixed-size blocks of the ring as they complete, so the tier overlaps the newest audio of the
+ * ring and keeps going where the ring has wrapped around.  Blocks are always contiguous: appending anything that does
+ * not continue the tier (the ring restarted) forgets the tier first.  The oldest blocks are evicted when the tier
+ * reaches its own length, or when the global history budget needs the space for a more recently used tier.
+ */
+public final class ColdTier {
+    private final String name;
+    private final HistoryStore store;
+    private final HistoryBudget budget;
+    private final int blockSize;
+    private final long maxSamples;
+
+    /**
+     * Codec for reads; the archiver compresses with its own
+     */
+    private final HistoryCodec codec;
+
+    /**
+     * Contiguous blocks, oldest first; guarded by this
+     */
+    private final List<Block> blocks = new ArrayList<>();
+    private long bytes = 0L;
+
+    /**
+     * Most recently read block, decoded; guarded by this
+     */
+    private final float[] decoded;
+    private long decodedPosition = -1L;
+
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    /**
+     * @param name name of the tier, for logging.
+     * @param store store to keep compressed blocks in.
+     * @param codec codec blocks are compressed with.
+     * @param budget global budget the tier's blocks count against.
+     * @param blockSize samples per block, a whole number of frames.
+     * @param maxSamples maximum number of samples the tier remembers.
+     */
+    public ColdTier(String name, HistoryStore store, HistoryCodec codec, HistoryBudget budget,
+                    int blockSize, long maxSamples) {
+        this.name = name;
+        this.store = store;
+        this.codec = codec;
+        this.budget = budget;
+        this.blockSize = blockSize;
+        this.maxSamples = Math.max(blockSize, maxSamples);
+        this.decoded = new float[blockSize];
+
+        budget.register(this);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Gets the oldest position still remembered.
+     * @return absolute ring position of the oldest block; the end position if the tier is empty.
+     */
+    public synchronized long getStartPosition() {
+        return blocks.isEmpty() ? getEndPosition() : blocks.get(0).position;
+    }
+
+    /**
+     * Gets the position just past the newest audio remembered.
+     * @return absolute ring position.
+     */
+    public synchronized long getEndPosition() {
+        return blocks.isEmpty() ? 0L : blocks.get(blocks.size() - 1).position + blockSize;
+    }
+
+    /**
+     * Gets the compressed size of the tier.
+     * @return bytes held by the tier.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Gets the last time the tier was appended to or read from, for choosing which tier to evict from.
+     * @return time, in milliseconds.
+     */
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * Marks the tier as used, so the budget evicts from other tiers first.
+     */
+    public void touch() {
+        lastUsed = System.currentTimeMillis();
+    }
+
+    /**
+     * Appends a compressed block.  Must only be called from the archiver.
+     * @param position absolute ring position of the block.
+     * @param data block, compressed with the tier's codec.
+     * @throws IOException if the block could not be stored.
+     */
+    void append(long position, byte[] data) throws IOException {
+        long released = 0L;
+        synchronized (this) {
+            if (!blocks.isEmpty() && position != getEndPosition())
+                released += clearBlocks();
+        }
+
+        store.put(position, data);
+
+        synchronized (this) {
+            blocks.add(new Block(position, data.length));
+            bytes += data.length;
+
+            while (getEndPosition() - getStartPosition() > maxSamples)
+                released += evictBlock();
+        }
+
+        touch();
+        budget.released(released);
+        budget.allocated(data.length);
+    }
+
+    /**
+     * Evicts the oldest block.  Called by the budget, which accounts for the bytes released.
+     * @return bytes released.
+     */
+    synchronized long evictOldest() {
+        return blocks.isEmpty() ? 0L : evictBlock();
+    }
+
+    private long evictBlock() {
+        Block block = blocks.remove(0);
+        store.remove(block.position);
+        if (block.position == decodedPosition)
+            decodedPosition = -1L;
+
+        bytes -= block.size;
+        return block.size;
+    }
+
+    private long clearBlocks() {
+        long released = bytes;
+        blocks.clear();
+        store.clear();
+        bytes = 0L;
+        decodedPosition = -1L;
+        return released;
+    }
+
+    /**
+     * Forgets everything in the tier.
+     */
+    public void clear() {
+        long released;
+        synchronized (this) {
+            released = clearBlocks();
+        }
+
+        budget.released(released);
+    }
+
+    /**
+     * Forgets everything in the tier and stops counting it against the budget.
+     */
+    public void close() {
+        clear();
+        budget.unregister(this);
+    }
+
+    /**
+     * Reads samples out of the tier, from at most one block.
+     * @param position absolute position of the first sample to read.
+     * @param samples destination array.
+     * @param offs offset into the destination array.
+     * @param len maximum number of samples to read.
+     * @return number of samples read; 0 past the end of the tier, or -1 if the position was evicted (or could not be
+     * loaded).
+     */
+    public synchronized int read(long position, float[] samples, int offs, int len) {
+        long start = getStartPosition();
+        if (position < start)
+            return -1;
+        else if (position >= getEndPosition())
+            return 0;
+
+        int index = (int) ((position - start) / blockSize);
+        Block block = blocks.get(index);
+        if (decodedPosition != block.position) {
+            try {
+                codec.decompress(store.get(block.position), decoded, blockSize);
+            } catch (IOException e) {
+                Logger.getGlobal().log(Level.WARNING, "Problem reading history block of " + name, e);
+                return -1;
+            }
+
+            decodedPosition = block.position;
+        }
+
+        int offset = (int) (position - block.position);
+        int n = Math.min(len, blockSize - offset);
+        System.arraycopy(decoded, offset, samples, offs, n);
+        return n;
+    }
+
+    private static final class Block {
+        private final long position;
+        private final int size;
+
+        private Block(long position, int size) {
+            this.position = position;
+            this.size = size;
+        }
+    }
+}
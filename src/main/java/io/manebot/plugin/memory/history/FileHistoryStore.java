@@ -0,0 +1,58 @@
+package io.manebot.plugin.memory.history;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps history blocks on disk, one file per block, so long histories cost no heap.
+ */
+public final class FileHistoryStore implements HistoryStore {
+    private final Path directory;
+
+    /**
+     * @param directory directory to keep blocks in; created if it does not exist, and emptied of stale blocks.
+     * @throws IOException if the directory could not be created.
+     */
+    public FileHistoryStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        clear();
+    }
+
+    private Path getPath(long position) {
+        return directory.resolve(position + ".blk");
+    }
+
+    @Override
+    public void put(long position, byte[] data) throws IOException {
+        Files.write(getPath(position), data);
+    }
+
+    @Override
+    public byte[] get(long position) throws IOException {
+        return Files.readAllBytes(getPath(position));
+    }
+
+    @Override
+    public void remove(long position) {
+        try {
+            Files.deleteIfExists(getPath(position));
+        } catch (IOException e) {
+            Logger.getGlobal().log(Level.WARNING, "Problem deleting history block " + getPath(position), e);
+        }
+    }
+
+    @Override
+    public void clear() {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.blk")) {
+            for (Path path : stream)
+                Files.deleteIfExists(path);
+        } catch (IOException e) {
+            Logger.getGlobal().log(Level.WARNING, "Problem clearing history directory " + directory, e);
+        }
+    }
+}
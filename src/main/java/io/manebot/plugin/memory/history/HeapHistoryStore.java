@@ -0,0 +1,31 @@
+package io.manebot.plugin.memory.history;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps history blocks on the Java heap.
+ */
+public final class HeapHistoryStore implements HistoryStore {
+    private final Map<Long, byte[]> blocks = new HashMap<>();
+
+    @Override
+    public synchronized void put(long position, byte[] data) {
+        blocks.put(position, data);
+    }
+
+    @Override
+    public synchronized byte[] get(long position) {
+        return blocks.get(position);
+    }
+
+    @Override
+    public synchronized void remove(long position) {
+        blocks.remove(position);
+    }
+
+    @Override
+    public synchronized void clear() {
+        blocks.clear();
+    }
+}
@@ -0,0 +1,80 @@
+package io.manebot.plugin.memory.history;
+
+import io.manebot.plugin.memory.buffer.MemoryRing;
+
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compresses a memory ring into its cold tier in the background, a block at a time, before the ring wraps around.
+ * Runs on a background thread and reads the ring the same lock-free way saves do; the mixer thread is not involved.
+ */
+public final class HistoryArchiver implements Runnable {
+    private final Supplier<MemoryRing> ring;
+    private final ColdTier tier;
+    private final HistoryCodec codec;
+    private final int blockSize;
+    private final float[] block;
+
+    /**
+     * Ring being archived, and the position of the next block to archive; only touched by the archiving thread
+     */
+    private MemoryRing archivedRing = null;
+    private long nextPosition = 0L;
+
+    /**
+     * @param ring memory ring to archive; may supply null while the ring is released.
+     * @param tier tier to archive into.
+     * @param codec codec to compress blocks with; used only by this archiver.
+     */
+    public HistoryArchiver(Supplier<MemoryRing> ring, ColdTier tier, HistoryCodec codec) {
+        this.ring = ring;
+        this.tier = tier;
+        this.codec = codec;
+        this.blockSize = tier.getBlockSize();
+        this.block = new float[blockSize];
+    }
+
+    /**
+     * Archives every block the ring has completed since the last run.
+     */
+    @Override
+    public void run() {
+        MemoryRing ring = this.ring.get();
+        if (ring == null)
+            return; // Released; the tier keeps what it has until the budget needs it
+
+        if (ring != archivedRing) {
+            archivedRing = ring;
+
+            // A restored persistent ring continues the tier; anything else starts it over on the next append
+            long end = tier.getEndPosition();
+            nextPosition = end >= ring.getStartPosition() && end <= ring.getPosition()
+                    ? end
+                    : align(ring.getStartPosition());
+        }
+
+        while (ring.getPosition() >= nextPosition + blockSize) {
+            if (nextPosition < ring.getValidPosition())
+                nextPosition = align(ring.getValidPosition());
+
+            int read = ring.read(nextPosition, block, 0, blockSize);
+            if (read < blockSize)
+                continue; // Overwritten while reading; skip to the oldest intact audio
+
+            try {
+                tier.append(nextPosition, codec.compress(block, blockSize));
+            } catch (Exception e) {
+                Logger.getGlobal().log(Level.WARNING, "Problem archiving memory history of " + tier.getName(), e);
+                return;
+            }
+
+            nextPosition += blockSize;
+        }
+    }
+
+    private long align(long position) {
+        return ((position + blockSize - 1) / blockSize) * blockSize;
+    }
+}
@@ -0,0 +1,21 @@
+package io.manebot.plugin.memory.history;
+
+import java.io.IOException;
+
+/**
+ * Creates the stores cold history tiers keep their blocks in.
+ */
+public interface HistoryBackend {
+    /**
+     * Keeps blocks on the Java heap
+     */
+    HistoryBackend HEAP = (name) -> new HeapHistoryStore();
+
+    /**
+     * Creates a store for a history tier.
+     * @param name unique name of the tier, typically derived from the audio channel it captures.
+     * @return history store.
+     * @throws IOException if the store could not be created.
+     */
+    HistoryStore create(String name) throws IOException;
+}
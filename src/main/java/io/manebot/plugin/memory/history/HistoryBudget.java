@@ -0,0 +1,70 @@
+package io.manebot.plugin.memory.history;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Global limit on the compressed history kept across all memorizers.  When the limit is exceeded, the oldest blocks of
+ * the least recently used tier are evicted first, so quiet channels give up their history before busy ones.
+ */
+public final class HistoryBudget {
+    private final long maxBytes;
+
+    /**
+     * Tiers counted against this budget; guarded by this
+     */
+    private final Set<ColdTier> tiers = new LinkedHashSet<>();
+    private long usedBytes = 0L;
+
+    /**
+     * @param maxBytes maximum number of compressed bytes kept across all tiers.
+     */
+    public HistoryBudget(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized int getTierCount() {
+        return tiers.size();
+    }
+
+    synchronized void register(ColdTier tier) {
+        tiers.add(tier);
+    }
+
+    synchronized void unregister(ColdTier tier) {
+        tiers.remove(tier);
+    }
+
+    synchronized void released(long bytes) {
+        usedBytes -= bytes;
+    }
+
+    /**
+     * Counts newly stored bytes, evicting from the least recently used tiers until the budget is met again.
+     * @param bytes bytes stored.
+     */
+    synchronized void allocated(long bytes) {
+        usedBytes += bytes;
+
+        while (usedBytes > maxBytes) {
+            ColdTier victim = null;
+            for (ColdTier tier : tiers) {
+                if (tier.getBytes() > 0L && (victim == null || tier.getLastUsed() < victim.getLastUsed()))
+                    victim = tier;
+            }
+
+            if (victim == null)
+                break;
+
+            usedBytes -= victim.evictOldest();
+        }
+    }
+}
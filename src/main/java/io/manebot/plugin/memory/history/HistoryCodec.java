@@ -0,0 +1,107 @@
+package io.manebot.plugin.memory.history;
+
+import io.manebot.plugin.memory.buffer.SampleCodec;
+import io.manebot.plugin.memory.buffer.SampleEncoding;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses blocks of history: samples are quantized to a compact sample encoding, then deflated, which mostly pays
+ * off on the silence between speech.  Not thread-safe; each thread compressing or decompressing needs its own codec.
+ */
+public final class HistoryCodec {
+    private final SampleEncoding encoding;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+    private final byte[] buffer = new byte[8192];
+    private byte[] raw = new byte[0];
+
+    /**
+     * @param encoding encoding to quantize samples to; PCM16 or MULAW.
+     */
+    public HistoryCodec(SampleEncoding encoding) {
+        if (encoding == SampleEncoding.FLOAT32)
+            throw new IllegalArgumentException("History cannot be kept as " + encoding);
+
+        this.encoding = encoding;
+    }
+
+    public SampleEncoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Compresses samples.
+     * @param samples samples to compress.
+     * @param len number of samples to compress.
+     * @return compressed block.
+     */
+    public byte[] compress(float[] samples, int len) {
+        int size = len * encoding.getBytesPerSample();
+        if (raw.length < size)
+            raw = new byte[size];
+
+        if (encoding == SampleEncoding.MULAW) {
+            for (int i = 0; i < len; i ++)
+                raw[i] = SampleCodec.toMuLaw(samples[i]);
+        } else {
+            for (int i = 0; i < len; i ++) {
+                short sample = SampleCodec.toPcm16(samples[i]);
+                raw[i * 2] = (byte) sample;
+                raw[i * 2 + 1] = (byte) (sample >> 8);
+            }
+        }
+
+        deflater.reset();
+        deflater.setInput(raw, 0, size);
+        deflater.finish();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(size / 2);
+        while (!deflater.finished())
+            outputStream.write(buffer, 0, deflater.deflate(buffer));
+
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Decompresses a block.
+     * @param data compressed block.
+     * @param samples destination array, at least as long as the block.
+     * @param len number of samples in the block.
+     * @throws IOException if the block is corrupt.
+     */
+    public void decompress(byte[] data, float[] samples, int len) throws IOException {
+        int size = len * encoding.getBytesPerSample();
+        if (raw.length < size)
+            raw = new byte[size];
+
+        inflater.reset();
+        inflater.setInput(data);
+        try {
+            int read = 0;
+            while (read < size && !inflater.finished()) {
+                int n = inflater.inflate(raw, read, size - read);
+                if (n == 0 && inflater.needsInput())
+                    break;
+                read += n;
+            }
+
+            if (read < size)
+                throw new IOException("History block is truncated: " + read + " < " + size + " bytes");
+        } catch (DataFormatException e) {
+            throw new IOException("History block is corrupt", e);
+        }
+
+        if (encoding == SampleEncoding.MULAW) {
+            for (int i = 0; i < len; i ++)
+                samples[i] = SampleCodec.fromMuLaw(raw[i]);
+        } else {
+            for (int i = 0; i < len; i ++)
+                samples[i] = SampleCodec.fromPcm16((short) ((raw[i * 2] & 0xFF) | (raw[i * 2 + 1] << 8)));
+        }
+    }
+}
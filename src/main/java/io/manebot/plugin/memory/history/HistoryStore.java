@@ -0,0 +1,35 @@
+package io.manebot.plugin.memory.history;
+
+import java.io.IOException;
+
+/**
+ * Keeps the compressed blocks of a cold history tier, keyed by the ring position they start at.
+ */
+public interface HistoryStore {
+    /**
+     * Stores a block.
+     * @param position absolute ring position of the block.
+     * @param data compressed block.
+     * @throws IOException if the block could not be stored.
+     */
+    void put(long position, byte[] data) throws IOException;
+
+    /**
+     * Loads a block.
+     * @param position absolute ring position of the block.
+     * @return compressed block.
+     * @throws IOException if the block could not be loaded.
+     */
+    byte[] get(long position) throws IOException;
+
+    /**
+     * Forgets a block.
+     * @param position absolute ring position of the block.
+     */
+    void remove(long position);
+
+    /**
+     * Forgets every block.
+     */
+    void clear();
+}
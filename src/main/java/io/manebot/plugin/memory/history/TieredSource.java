@@ -0,0 +1,71 @@
+package io.manebot.plugin.memory.history;
+
+import io.manebot.plugin.memory.buffer.MemoryRing;
+import io.manebot.plugin.memory.buffer.MemorySource;
+
+/**
+ * A region of memorized audio reaching past the memory ring into its cold tier.  Audio still in the ring is read from
+ * the ring; older audio is decompressed from the tier.  Both are read in place, so the oldest audio may be evicted
+ * before it is read, and reads of it fail like reads of overwritten ring audio do.
+ */
+public final class TieredSource implements MemorySource {
+    private final ColdTier tier;
+    private final MemoryRing ring;
+    private final long position;
+    private final long endPosition;
+
+    /**
+     * @param tier cold tier.
+     * @param ring memory ring, or null if it is released.
+     * @param position absolute position of the start of the region.
+     * @param endPosition absolute position of the end of the region.
+     */
+    public TieredSource(ColdTier tier, MemoryRing ring, long position, long endPosition) {
+        this.tier = tier;
+        this.ring = ring;
+        this.position = position;
+        this.endPosition = endPosition;
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public long getEndPosition() {
+        return endPosition;
+    }
+
+    @Override
+    public long getValidPosition() {
+        if (ring == null)
+            return Math.max(position, tier.getStartPosition());
+
+        // The tier only helps if it reaches the ring; otherwise there is a hole before the ring's audio
+        long ringValid = ring.getValidPosition();
+        long valid = tier.getEndPosition() >= ringValid ? Math.min(tier.getStartPosition(), ringValid) : ringValid;
+        return Math.max(position, valid);
+    }
+
+    @Override
+    public int read(long position, float[] samples, int offs, int len) {
+        if (position < this.position)
+            return -1;
+
+        len = (int) Math.min(len, endPosition - position);
+        if (len <= 0)
+            return 0;
+
+        if (ring != null && position >= ring.getValidPosition()) {
+            int read = ring.read(position, samples, offs, len);
+            if (read >= 0)
+                return read;
+        }
+
+        int read = tier.read(position, samples, offs, len);
+        if (read == 0 && ring != null && position < ring.getPosition())
+            return -1; // Between the end of the tier and the ring
+        return read;
+    }
+}
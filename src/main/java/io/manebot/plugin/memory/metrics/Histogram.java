@@ -0,0 +1,76 @@
+package io.manebot.plugin.memory.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative values in power-of-two buckets.  Recording is a couple of striped adds, so concurrent
+ * recorders never contend; percentiles are estimated from bucket bounds.
+ */
+public final class Histogram {
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    public Histogram() {
+        for (int i = 0; i < BUCKETS; i ++)
+            buckets[i] = new LongAdder();
+    }
+
+    /**
+     * Records a value.
+     * @param value value to record; negative values are recorded as 0.
+     */
+    public void record(long value) {
+        value = Math.max(0L, value);
+        buckets[BUCKETS - Long.numberOfLeadingZeros(value)].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets the mean of the recorded values.
+     * @return mean, or 0 if nothing was recorded.
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0L ? 0d : (double) getSum() / count;
+    }
+
+    /**
+     * Estimates a percentile of the recorded values.
+     * @param percentile percentile, between 0 and 1.
+     * @return upper bound of the bucket the percentile falls in, capped at the maximum; 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0L)
+            return 0L;
+
+        long rank = (long) Math.ceil(percentile * count);
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; i ++) {
+            seen += buckets[i].sum();
+            if (seen >= rank)
+                return Math.min(getMax(), i == 0 ? 0L : (1L << i) - 1L);
+        }
+
+        return getMax();
+    }
+}
@@ -0,0 +1,132 @@
+package io.manebot.plugin.memory.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timings of a single memorizer.  Everything recorded on the mixer thread is a striped add, so
+ * instrumentation never makes the mixer thread wait on readers or other writers.
+ */
+public final class MemorizerMetrics {
+    private final long created = System.nanoTime();
+
+    /**
+     * Samples written to the memory ring
+     */
+    private final LongAdder samplesWritten = new LongAdder();
+
+    /**
+     * Samples the mixer produced while the ring was released
+     */
+    private final LongAdder samplesDropped = new LongAdder();
+
+    /**
+     * Samples a streaming save skipped because the mixer overwrote them first
+     */
+    private final LongAdder samplesLost = new LongAdder();
+
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder saves = new LongAdder();
+    private final LongAdder failedSaves = new LongAdder();
+    private final LongAdder coalescedSaves = new LongAdder();
+
+    private final Histogram flushNanos = new Histogram();
+    private final Histogram snapshotNanos = new Histogram();
+    private final Histogram trimNanos = new Histogram();
+    private final Histogram encodeNanos = new Histogram();
+    private final Histogram fingerprintNanos = new Histogram();
+
+    /**
+     * Sample count and time of the last rate measurement
+     */
+    private long rateSamples = 0L;
+    private long rateNanos = created;
+
+    public void samplesWritten(int samples) {
+        samplesWritten.add(samples);
+    }
+
+    public void samplesDropped(int samples) {
+        samplesDropped.add(samples);
+    }
+
+    public void samplesLost(long samples) {
+        samplesLost.add(samples);
+    }
+
+    public void bytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    public void saved(boolean success) {
+        (success ? saves : failedSaves).increment();
+    }
+
+    public long getSamplesWritten() {
+        return samplesWritten.sum();
+    }
+
+    public long getSamplesDropped() {
+        return samplesDropped.sum();
+    }
+
+    public long getSamplesLost() {
+        return samplesLost.sum();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * Counts a save stored as a reference into an earlier save.
+     */
+    public void coalesced() {
+        coalescedSaves.increment();
+    }
+
+    public long getCoalescedSaves() {
+        return coalescedSaves.sum();
+    }
+
+    public long getSaves() {
+        return saves.sum();
+    }
+
+    public long getFailedSaves() {
+        return failedSaves.sum();
+    }
+
+    public Histogram getFlushNanos() {
+        return flushNanos;
+    }
+
+    public Histogram getSnapshotNanos() {
+        return snapshotNanos;
+    }
+
+    public Histogram getTrimNanos() {
+        return trimNanos;
+    }
+
+    public Histogram getEncodeNanos() {
+        return encodeNanos;
+    }
+
+    public Histogram getFingerprintNanos() {
+        return fingerprintNanos;
+    }
+
+    /**
+     * Measures the rate samples were written at since the last call.
+     * @return samples written per second.
+     */
+    public synchronized double measureWriteRate() {
+        long samples = getSamplesWritten();
+        long now = System.nanoTime();
+
+        double rate = now > rateNanos ? (samples - rateSamples) * 1_000_000_000d / (now - rateNanos) : 0d;
+        rateSamples = samples;
+        rateNanos = now;
+        return rate;
+    }
+}
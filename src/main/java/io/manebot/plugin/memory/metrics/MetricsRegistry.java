@@ -0,0 +1,38 @@
+package io.manebot.plugin.memory.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the metrics of every memorizer, keyed by channel ID.
+ */
+public final class MetricsRegistry {
+    private final ConcurrentMap<String, MemorizerMetrics> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Registers the metrics of a memorizer, replacing any previously registered under the same channel.
+     * @param channelId memorized channel ID.
+     * @param memorizerMetrics metrics of the memorizer.
+     */
+    public void register(String channelId, MemorizerMetrics memorizerMetrics) {
+        metrics.put(channelId, memorizerMetrics);
+    }
+
+    public void unregister(String channelId) {
+        metrics.remove(channelId);
+    }
+
+    public MemorizerMetrics get(String channelId) {
+        return metrics.get(channelId);
+    }
+
+    /**
+     * Gets the metrics of every registered memorizer.
+     * @return unmodifiable map of channel ID to memorizer metrics.
+     */
+    public Map<String, MemorizerMetrics> getMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+}
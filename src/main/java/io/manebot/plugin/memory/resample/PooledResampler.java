@@ -0,0 +1,93 @@
+package io.manebot.plugin.memory.resample;
+
+import io.manebot.plugin.audio.resample.Resampler;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * A resampler borrowed from a pool.  Closing it flushes out any state left from the previous stream and returns the
+ * underlying native resampler to the pool instead of destroying it.
+ */
+final class PooledResampler implements Resampler {
+    private static final int MAXIMUM_FLUSHES = 16;
+
+    private final ResamplerPool pool;
+    private final ResamplerPool.Key key;
+    private final Resampler delegate;
+
+    /**
+     * Scratch buffer flushed leftover samples are discarded into
+     */
+    private final float[] discard;
+
+    private volatile boolean checkedOut = false;
+    private volatile long returnedAt;
+
+    PooledResampler(ResamplerPool pool, ResamplerPool.Key key, Resampler delegate) {
+        this.pool = pool;
+        this.key = key;
+        this.delegate = delegate;
+        this.discard = new float[Math.max(1, delegate.getBufferSize())];
+    }
+
+    PooledResampler checkout() {
+        checkedOut = true;
+        return this;
+    }
+
+    long getReturnedAt() {
+        return returnedAt;
+    }
+
+    void destroy() {
+        ResamplerPool.closeQuietly(delegate);
+    }
+
+    @Override
+    public AudioFormat getInputFormat() {
+        return delegate.getInputFormat();
+    }
+
+    @Override
+    public AudioFormat getOutputFormat() {
+        return delegate.getOutputFormat();
+    }
+
+    @Override
+    public int resample(float[] in, int inLen, float[] out, int outOffs) {
+        return delegate.resample(in, inLen, out, outOffs);
+    }
+
+    @Override
+    public int flush(float[] out, int outOffs) {
+        return delegate.flush(out, outOffs);
+    }
+
+    @Override
+    public int getBufferSize() {
+        return delegate.getBufferSize();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (!checkedOut)
+                return;
+
+            checkedOut = false;
+        }
+
+        // Drain whatever the previous speaker left in the resampler so the next one starts clean
+        try {
+            for (int i = 0; i < MAXIMUM_FLUSHES && delegate.flush(discard, 0) > 0; i ++) {
+                // Discard
+            }
+        } catch (RuntimeException ex) {
+            pool.discard(this);
+            return;
+        }
+
+        returnedAt = System.currentTimeMillis();
+        pool.release(this, key);
+    }
+}
@@ -0,0 +1,204 @@
+package io.manebot.plugin.memory.resample;
+
+import io.manebot.plugin.audio.resample.FFmpegResampler;
+import io.manebot.plugin.audio.resample.Resampler;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of native resamplers shared by all memorizers, keyed by (source format, target format).
+ *
+ * Speakers toggling push-to-talk would otherwise construct and tear down a native resampler on every utterance.
+ * Resamplers handed out by this pool return themselves to it when closed; idle resamplers are capped in number and
+ * evicted least-recently-used first, or once they have been idle too long.
+ */
+public final class ResamplerPool implements AutoCloseable {
+    private final int maximumIdle;
+    private final long maximumIdleMillis;
+    private final Factory factory;
+
+    /**
+     * Idle resamplers, least recently returned first
+     */
+    private final LinkedHashMap<PooledResampler, Key> idle = new LinkedHashMap<>();
+
+    private int active = 0;
+    private boolean closed = false;
+
+    /**
+     * @param maximumIdle maximum number of idle resamplers kept across all format pairs.
+     * @param maximumIdleMillis time after which an idle resampler is closed.
+     */
+    public ResamplerPool(int maximumIdle, long maximumIdleMillis) {
+        this(maximumIdle, maximumIdleMillis, FFmpegResampler::new);
+    }
+
+    /**
+     * @param maximumIdle maximum number of idle resamplers kept across all format pairs.
+     * @param maximumIdleMillis time after which an idle resampler is closed.
+     * @param factory creates the resamplers this pool hands out.
+     */
+    ResamplerPool(int maximumIdle, long maximumIdleMillis, Factory factory) {
+        this.maximumIdle = Math.max(0, maximumIdle);
+        this.maximumIdleMillis = maximumIdleMillis;
+        this.factory = factory;
+    }
+
+    /**
+     * Gets the number of resamplers currently handed out.
+     * @return active resampler count.
+     */
+    public synchronized int getActiveCount() {
+        return active;
+    }
+
+    /**
+     * Gets the number of resamplers waiting in the pool.
+     * @return idle resampler count.
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Takes a resampler from the pool, or creates one if none is idle for the format pair.  Closing the returned
+     * resampler returns it to the pool.
+     * @param source source audio format.
+     * @param target target audio format.
+     * @param bufferSize buffer size of newly created resamplers.
+     * @return resampler.
+     */
+    public Resampler acquire(AudioFormat source, AudioFormat target, int bufferSize) {
+        Key key = new Key(source, target, bufferSize);
+
+        synchronized (this) {
+            evictExpired();
+
+            Iterator<Map.Entry<PooledResampler, Key>> iterator = idle.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<PooledResampler, Key> entry = iterator.next();
+                if (entry.getValue().equals(key)) {
+                    iterator.remove();
+                    active++;
+                    return entry.getKey().checkout();
+                }
+            }
+
+            active++;
+        }
+
+        return new PooledResampler(this, key, factory.create(source, target, bufferSize)).checkout();
+    }
+
+    /**
+     * Returns a resampler to the pool, closing it if the pool is full or closed.
+     */
+    void release(PooledResampler resampler, Key key) {
+        PooledResampler evicted = null;
+
+        synchronized (this) {
+            active--;
+
+            if (closed || maximumIdle == 0) {
+                evicted = resampler;
+            } else {
+                idle.put(resampler, key);
+                if (idle.size() > maximumIdle) {
+                    Iterator<PooledResampler> eldest = idle.keySet().iterator();
+                    evicted = eldest.next();
+                    eldest.remove();
+                }
+            }
+        }
+
+        if (evicted != null)
+            evicted.destroy();
+    }
+
+    /**
+     * Destroys a resampler that can no longer be reused.
+     */
+    void discard(PooledResampler resampler) {
+        synchronized (this) {
+            active--;
+        }
+
+        resampler.destroy();
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledResampler> iterator = idle.keySet().iterator();
+        while (iterator.hasNext()) {
+            PooledResampler resampler = iterator.next();
+            if (now - resampler.getReturnedAt() < maximumIdleMillis)
+                break; // Ordered by return time; everything after is younger
+
+            iterator.remove();
+            resampler.destroy();
+        }
+    }
+
+    /**
+     * Closes every idle resampler; resamplers still in use are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        List<PooledResampler> evicted;
+        synchronized (this) {
+            closed = true;
+            evicted = new ArrayList<>(idle.keySet());
+            idle.clear();
+        }
+
+        evicted.forEach(PooledResampler::destroy);
+    }
+
+    interface Factory {
+        Resampler create(AudioFormat source, AudioFormat target, int bufferSize);
+    }
+
+    static final class Key {
+        private final float sourceRate;
+        private final int sourceChannels;
+        private final float targetRate;
+        private final int targetChannels;
+        private final int bufferSize;
+
+        private Key(AudioFormat source, AudioFormat target, int bufferSize) {
+            this.sourceRate = source.getSampleRate();
+            this.sourceChannels = source.getChannels();
+            this.targetRate = target.getSampleRate();
+            this.targetChannels = target.getChannels();
+            this.bufferSize = bufferSize;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Float.compare(key.sourceRate, sourceRate) == 0 &&
+                    sourceChannels == key.sourceChannels &&
+                    Float.compare(key.targetRate, targetRate) == 0 &&
+                    targetChannels == key.targetChannels &&
+                    bufferSize == key.bufferSize;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sourceRate, sourceChannels, targetRate, targetChannels, bufferSize);
+        }
+    }
+
+    static void closeQuietly(Resampler resampler) {
+        try {
+            resampler.close();
+        } catch (Exception e) {
+            Logger.getGlobal().log(Level.WARNING, "Problem closing pooled resampler", e);
+        }
+    }
+}
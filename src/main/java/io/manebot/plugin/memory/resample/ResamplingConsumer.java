@@ -0,0 +1,68 @@
+package io.manebot.plugin.memory.resample;
+
+import io.manebot.plugin.audio.mixer.output.AudioConsumer;
+import io.manebot.plugin.audio.resample.Resampler;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+
+/**
+ * Audio consumer that converts audio into the format another consumer (an encoder) expects.
+ */
+public class ResamplingConsumer implements AudioConsumer {
+    /**
+     * Maximum number of times the resampler is flushed on close
+     */
+    private static final int MAXIMUM_FLUSHES = 16;
+
+    private final AudioConsumer consumer;
+    private final Resampler resampler;
+    private final int inputSize;
+    private final float[] output;
+
+    /**
+     * @param source format of the audio written to this consumer.
+     * @param target format the wrapped consumer expects.
+     * @param bufferSize largest number of samples written to this consumer at once.
+     * @param consumer consumer to pass converted audio on to.
+     * @param pool pool to borrow the resampler from.
+     */
+    public ResamplingConsumer(AudioFormat source, AudioFormat target, int bufferSize, AudioConsumer consumer,
+                              ResamplerPool pool) {
+        this.consumer = consumer;
+        this.inputSize = Math.max(source.getChannels(), bufferSize);
+
+        int outputSize = ResamplingMixerSink.getOutputSize(source, target, inputSize);
+        this.resampler = pool.acquire(source, target, outputSize);
+        this.output = new float[outputSize];
+    }
+
+    @Override
+    public void write(float[] buffer, int len) throws IOException {
+        if (len > inputSize)
+            throw new IllegalArgumentException("buffer larger than " + inputSize + " samples: " + len);
+
+        int converted = resampler.resample(buffer, len, output, 0);
+        if (converted > 0)
+            consumer.write(output, converted);
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            for (int i = 0; i < MAXIMUM_FLUSHES; i ++) {
+                int flushed = resampler.flush(output, 0);
+                if (flushed <= 0)
+                    break;
+
+                consumer.write(output, flushed);
+            }
+        } finally {
+            try {
+                resampler.close();
+            } finally {
+                consumer.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package io.manebot.plugin.memory.resample;
+
+import io.manebot.plugin.audio.mixer.output.MixerSink;
+import io.manebot.plugin.audio.resample.Resampler;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Mixer sink that converts everything written to it into another format before passing it on, so a mixer can feed a
+ * sink running at a different rate or channel count.  The conversion buffers are allocated once.
+ */
+public class ResamplingMixerSink implements MixerSink {
+    private final AudioFormat format;
+    private final MixerSink sink;
+    private final Resampler resampler;
+    private final int inputSize;
+    private final float[] output;
+
+    /**
+     * Staging buffer for writes larger than the sink was sized for
+     */
+    private final float[] piece;
+
+    /**
+     * @param format format of the audio written to this sink.
+     * @param bufferSize largest number of samples written to this sink at once.
+     * @param sink sink to pass converted audio on to.
+     * @param pool pool to borrow the resampler from.
+     */
+    public ResamplingMixerSink(AudioFormat format, int bufferSize, MixerSink sink, ResamplerPool pool) {
+        this.format = format;
+        this.sink = sink;
+        this.inputSize = Math.max(format.getChannels(), bufferSize);
+
+        int outputSize = getOutputSize(format, sink.getAudioFormat(), inputSize);
+        this.resampler = pool.acquire(format, sink.getAudioFormat(), outputSize);
+        this.output = new float[outputSize];
+        this.piece = new float[inputSize];
+    }
+
+    /**
+     * Finds how many samples converting a buffer can produce, with headroom for the resampler's own buffering.
+     * @param source format converted from.
+     * @param target format converted to.
+     * @param samples number of samples converted at once.
+     * @return output buffer size, in samples.
+     */
+    static int getOutputSize(AudioFormat source, AudioFormat target, int samples) {
+        double ratio = ((double) target.getSampleRate() * target.getChannels())
+                / ((double) source.getSampleRate() * source.getChannels());
+        return (int) Math.ceil(samples * ratio) + target.getChannels() * 64;
+    }
+
+    @Override
+    public AudioFormat getAudioFormat() {
+        return format;
+    }
+
+    @Override
+    public int availableInput() {
+        return sink.availableInput();
+    }
+
+    @Override
+    public int getBufferSize() {
+        return inputSize;
+    }
+
+    @Override
+    public void write(float[] buffer, int len) {
+        if (len <= inputSize) {
+            int converted = resampler.resample(buffer, len, output, 0);
+            if (converted > 0)
+                sink.write(output, converted);
+            return;
+        }
+
+        // Larger than we were sized for; convert in pieces through a copy
+        for (int offs = 0; offs < len; offs += inputSize) {
+            int n = Math.min(inputSize, len - offs);
+            System.arraycopy(buffer, offs, piece, 0, n);
+            int converted = resampler.resample(piece, n, output, 0);
+            if (converted > 0)
+                sink.write(output, converted);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return sink.isRunning();
+    }
+
+    @Override
+    public boolean start() {
+        return sink.start();
+    }
+
+    @Override
+    public boolean stop() {
+        return sink.stop();
+    }
+
+    @Override
+    public int getUnderflows() {
+        return sink.getUnderflows();
+    }
+
+    @Override
+    public int getOverflows() {
+        return sink.getOverflows();
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            resampler.close();
+        } catch (Exception e) {
+            Logger.getGlobal().log(Level.WARNING, "Problem releasing resampler", e);
+        }
+
+        sink.close();
+    }
+}
@@ -0,0 +1,33 @@
+package io.manebot.plugin.memory.save;
+
+import io.manebot.plugin.memory.metrics.MemorizerMetrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Counts the bytes an encoder writes to the repository into the memorizer metrics.
+ */
+class CountingOutputStream extends FilterOutputStream {
+    private final MemorizerMetrics metrics;
+
+    CountingOutputStream(OutputStream out, MemorizerMetrics metrics) {
+        super(out);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        if (metrics != null)
+            metrics.bytesWritten(1L);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        if (metrics != null)
+            metrics.bytesWritten(len);
+    }
+}
@@ -0,0 +1,559 @@
+package io.manebot.plugin.memory.save;
+
+import io.manebot.command.exception.CommandArgumentException;
+import io.manebot.database.model.User;
+import io.manebot.platform.PlatformUser;
+import io.manebot.plugin.Plugin;
+import io.manebot.plugin.audio.mixer.output.AudioConsumer;
+import io.manebot.plugin.memory.buffer.MemorySource;
+import io.manebot.plugin.memory.database.model.Memory;
+import io.manebot.plugin.memory.database.model.MemoryManager;
+import io.manebot.plugin.memory.database.model.Participant;
+import io.manebot.plugin.memory.encode.ChunkEncoder;
+import io.manebot.plugin.memory.encode.EncodedChunk;
+import io.manebot.plugin.memory.fingerprint.Fingerprint;
+import io.manebot.plugin.memory.fingerprint.Fingerprinter;
+import io.manebot.plugin.memory.metrics.MemorizerMetrics;
+import io.manebot.plugin.memory.resample.ResamplerPool;
+import io.manebot.plugin.memory.resample.ResamplingConsumer;
+import io.manebot.plugin.memory.stem.StemSegment;
+import io.manebot.plugin.memory.stem.StemView;
+import io.manebot.plugin.memory.trim.TrimRegion;
+import io.manebot.plugin.memory.trim.Trimmer;
+import io.manebot.plugin.music.Music;
+import io.manebot.plugin.music.config.AudioDownloadFormat;
+import io.manebot.plugin.music.database.model.Community;
+import io.manebot.plugin.music.database.model.Track;
+import io.manebot.plugin.music.repository.Repository;
+import io.manebot.plugin.music.source.AudioProtocol;
+import io.manebot.user.UserAssociation;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Trims, encodes and persists memory snapshots into a music community's track repository.  Speaker stems, when
+ * captured, are saved next to the track and linked to the memory's participants.  Memories with pre-encoded chunks
+ * are saved by concatenating the chunks, encoding only the audio at either end the chunks do not cover.
+ */
+public class MemoryWriter {
+    /**
+     * Length of the chunks audio is streamed to the encoder in
+     */
+    private static final float CHUNK_SECONDS = 0.02f;
+
+    private final Plugin musicPlugin;
+    private final MemoryManager memoryManager;
+    private final ResamplerPool resamplerPool;
+    private final Trimmer trimmer;
+
+    /**
+     * True if saved memories are fingerprinted, so they can be found by their audio
+     */
+    private final boolean fingerprinting;
+
+    public MemoryWriter(Plugin musicPlugin, MemoryManager memoryManager, ResamplerPool resamplerPool,
+                        Trimmer trimmer, boolean fingerprinting) {
+        this.musicPlugin = musicPlugin;
+        this.memoryManager = memoryManager;
+        this.resamplerPool = resamplerPool;
+        this.trimmer = trimmer;
+        this.fingerprinting = fingerprinting;
+    }
+
+    /**
+     * Writes memorized audio as a new track, streaming it from the source to the encoder in small chunks.  The source
+     * is trimmed first, unless the request names the region to save.
+     * @param request memory to save.
+     * @return saved memory.
+     * @throws CommandArgumentException if there is nothing to remember, or the memory could not be saved.
+     */
+    public SaveResult write(SaveRequest request) throws CommandArgumentException, MalformedURLException {
+        MemorizerMetrics metrics = request.getMetrics();
+        try {
+            SaveResult result = write(request, metrics);
+            if (metrics != null)
+                metrics.saved(true);
+            return result;
+        } catch (CommandArgumentException | MalformedURLException | RuntimeException ex) {
+            if (metrics != null)
+                metrics.saved(false);
+            throw ex;
+        }
+    }
+
+    private SaveResult write(SaveRequest request, MemorizerMetrics metrics)
+            throws CommandArgumentException, MalformedURLException {
+        float sampleRate = request.getSampleRate();
+        int channels = request.getChannels();
+        float[] chunk = createChunk(sampleRate, channels);
+
+        TrimRegion region = request.getRegion();
+        if (region == null) {
+            long started = System.nanoTime();
+            region = trimmer.trim(request.getSource(), sampleRate, channels, chunk);
+            if (metrics != null)
+                metrics.getTrimNanos().record(System.nanoTime() - started);
+        }
+
+        if (getTimeInSeconds(region.getLength(), sampleRate, channels) < 1F)
+            throw new CommandArgumentException("There is nothing to remember.");
+
+        Community community = request.getCommunity();
+        URL url = URI.create("file:/dev/null?memory=1&community=" +
+                URLEncoder.encode(community.getName())
+                + "&time=" + System.currentTimeMillis()).toURL();
+
+        UUID uuid = Repository.toUUID(url);
+        long written;
+        // Fingerprinted in the same pass as the encoding, so the landmarks describe exactly the audio saved
+        FingerprintPass fingerprintPass = fingerprinting
+                ? new FingerprintPass(new Fingerprinter(sampleRate, channels))
+                : null;
+        List<EncodedChunk> chunks = getCoveringChunks(request.getChunks(), region);
+        if (chunks.isEmpty()) {
+            written = encode(uuid, request, request.getSource(), region.getStart(), region.getEnd(), chunk,
+                    fingerprintPass);
+        } else {
+            // Chunks keep their boundaries, so the saved region grows out to the edges of the chunks used
+            region = new TrimRegion(
+                    Math.min(region.getStart(), chunks.get(0).getPosition()),
+                    Math.max(region.getEnd(), chunks.get(chunks.size() - 1).getEndPosition())
+            );
+            written = concatenate(uuid, request, chunks, region, chunk, fingerprintPass);
+        }
+        float seconds = getTimeInSeconds(written, sampleRate, channels);
+
+        Date date = Calendar.getInstance().getTime();
+        DateFormat dateFormat = new SimpleDateFormat("yyyy-mm-dd hh:mm:ss");
+        String strDate = dateFormat.format(date);
+
+        // Create a new track
+        Track track = community.getOrCreateTrack(url, (builder) -> {
+            builder.setLength((double) seconds);
+            builder.setName(community.getName() + " memory from " + strDate);
+            builder.setUser(request.getUser());
+            builder.setUrl(url);
+
+            builder.addTag("memory");
+            builder.addTag(community.getName());
+        });
+
+        // Speakers with a stem come first; everyone else who spoke is recorded without one
+        Map<Integer, Participant.Draft> drafts = new LinkedHashMap<>();
+        for (Participant.Draft draft : writeStems(url, request, region, chunk))
+            drafts.putIfAbsent(draft.getUser().getUserId(), draft);
+
+        for (PlatformUser platformUser : request.getParticipants()) {
+            UserAssociation association = platformUser.getAssociation();
+            if (association == null)
+                continue;
+
+            User participant = association.getUser();
+            drafts.putIfAbsent(participant.getUserId(), new Participant.Draft(participant, null));
+        }
+
+        Fingerprint fingerprint = null;
+        if (fingerprintPass != null) {
+            fingerprint = fingerprintPass.finish();
+            if (metrics != null)
+                metrics.getFingerprintNanos().record(fingerprintPass.getNanos());
+        }
+
+        Memory memory = memoryManager.createMemory(track, drafts.values(), fingerprint);
+        return new SaveResult(memory, region.getStart(), region.getEnd());
+    }
+
+    /**
+     * Saves a region of the memory ring that an earlier save already holds, as a reference into the earlier save's
+     * track instead of new audio.
+     * @param previous earlier save.
+     * @param start absolute ring position of the start of the region.
+     * @param end absolute ring position of the end of the region.
+     * @param sampleRate sample rate of the memory ring.
+     * @param channels channel count of the memory ring.
+     * @param participants users who spoke within the region.
+     * @param metrics metrics of the memorizer, or null if the save is not measured.
+     * @return saved memory, referring to the earlier save's track.
+     * @throws CommandArgumentException if the region does not overlap the earlier save.
+     */
+    public SaveResult writeReference(SaveResult previous, long start, long end, float sampleRate, int channels,
+                                     Collection<PlatformUser> participants, MemorizerMetrics metrics)
+            throws CommandArgumentException {
+        long from = Math.max(start, previous.getStart());
+        long to = Math.min(end, previous.getEnd());
+        if (to <= from)
+            throw new CommandArgumentException("There is nothing to remember.");
+
+        Map<Integer, Participant.Draft> drafts = new LinkedHashMap<>();
+        for (PlatformUser platformUser : participants) {
+            UserAssociation association = platformUser.getAssociation();
+            if (association == null)
+                continue;
+
+            User participant = association.getUser();
+            drafts.putIfAbsent(participant.getUserId(), new Participant.Draft(participant, null));
+        }
+
+        Memory memory = memoryManager.createReference(previous.getMemory(),
+                getTimeInSeconds(from - previous.getStart(), sampleRate, channels),
+                getTimeInSeconds(to - from, sampleRate, channels),
+                drafts.values());
+        if (metrics != null)
+            metrics.coalesced();
+
+        return new SaveResult(memory, from, to);
+    }
+
+    /**
+     * Saves the stem of each speaker who spoke within the saved region next to the memory track.
+     * @return participants of the memory, with the voiced segments of their stems.
+     */
+    private Collection<Participant.Draft> writeStems(URL url, SaveRequest request, TrimRegion region, float[] chunk)
+            throws MalformedURLException {
+        float sampleRate = request.getSampleRate();
+        int channels = request.getChannels();
+        List<StemView> stems = request.getStems();
+
+        List<Participant.Draft> participants = new ArrayList<>(stems.size());
+        for (int i = 0; i < stems.size(); i ++) {
+            StemView stem = stems.get(i).clip(region.getStart(), region.getEnd());
+            if (stem == null)
+                continue;
+
+            PlatformUser platformUser = stem.getUser();
+            UserAssociation association = platformUser.getAssociation();
+            if (association == null)
+                continue;
+
+            UUID uuid = Repository.toUUID(new URL(url.toExternalForm() + "&stem=" + i));
+            try {
+                encode(uuid, request, stem, stem.getPosition(), stem.getEndPosition(), chunk, null);
+            } catch (CommandArgumentException e) {
+                Logger.getGlobal().log(Level.WARNING, "Problem saving memory stem", e);
+                uuid = null;
+            }
+
+            Participant.Draft participant = new Participant.Draft(association.getUser(),
+                    uuid != null ? uuid.toString() : null);
+            for (StemSegment segment : stem.getSegments()) {
+                participant.addSegment(
+                        getTimeInSeconds(segment.getPosition() - region.getStart(), sampleRate, channels),
+                        getTimeInSeconds(segment.getStemPosition() - stem.getPosition(), sampleRate, channels),
+                        getTimeInSeconds(segment.getLength(), sampleRate, channels)
+                );
+            }
+
+            participants.add(participant);
+        }
+
+        return participants;
+    }
+
+    /**
+     * Encodes a region of memorized audio into a new file in the community's track repository.
+     * @param fingerprintPass fingerprint fed the audio as it is encoded, or null.
+     * @return number of samples encoded.
+     */
+    private long encode(UUID uuid, SaveRequest request, MemorySource source, long start, long end, float[] chunk,
+                        FingerprintPass fingerprintPass) throws CommandArgumentException {
+        Community community = request.getCommunity();
+        MemorizerMetrics metrics = request.getMetrics();
+
+        Repository.Resource resource;
+        try {
+            resource = community.getRepository().getInstance().get(uuid);
+        } catch (IOException e) {
+            throw new CommandArgumentException("Problem generating resource with uuid=" + uuid, e);
+        }
+
+        if (resource.exists())
+            throw new CommandArgumentException("Resource already exists.");
+
+        AudioProtocol protocol = musicPlugin.getInstance(Music.class).getProtocol();
+        AudioDownloadFormat format = community.getRepository().getFormat();
+        long started = System.nanoTime();
+        long written;
+        try (AudioConsumer consumer = openEncoder(protocol, format, request.getSampleRate(), request.getChannels(),
+                request.getTargetFormat(), chunk.length,
+                new CountingOutputStream(resource.openWrite(), metrics))) {
+            written = stream(source, start, end, chunk, consumer, fingerprintPass);
+        } catch (Exception ex) {
+            throw new CommandArgumentException("Problem saving memory to file", ex);
+        }
+
+        if (metrics != null) {
+            metrics.getEncodeNanos().record(System.nanoTime() - started);
+            metrics.samplesLost((end - start) - written);
+        }
+
+        // Create the file locally
+        community.getRepository().createFile(community.getRepository(), uuid, format.getContainerFormat());
+        return written;
+    }
+
+    /**
+     * Writes pre-encoded chunks into a new file in the community's track repository, encoding the parts of the region
+     * before and after the chunks as files of their own in between.
+     * @param fingerprintPass fingerprint fed the audio of the whole region, chunks included, or null.
+     * @return number of samples written.
+     */
+    private long concatenate(UUID uuid, SaveRequest request, List<EncodedChunk> chunks, TrimRegion region,
+                             float[] chunk, FingerprintPass fingerprintPass) throws CommandArgumentException {
+        Community community = request.getCommunity();
+        MemorizerMetrics metrics = request.getMetrics();
+
+        Repository.Resource resource;
+        try {
+            resource = community.getRepository().getInstance().get(uuid);
+        } catch (IOException e) {
+            throw new CommandArgumentException("Problem generating resource with uuid=" + uuid, e);
+        }
+
+        if (resource.exists())
+            throw new CommandArgumentException("Resource already exists.");
+
+        AudioDownloadFormat format = community.getRepository().getFormat();
+        long first = chunks.get(0).getPosition();
+        long last = chunks.get(chunks.size() - 1).getEndPosition();
+        long started = System.nanoTime();
+        long written = 0L;
+        try (OutputStream outputStream = new CountingOutputStream(resource.openWrite(), metrics)) {
+            if (region.getStart() < first)
+                written += encodePart(request, region.getStart(), first, chunk, outputStream, fingerprintPass);
+
+            // The chunks were encoded ahead of time, but their audio is still fingerprinted in order
+            if (fingerprintPass != null)
+                stream(request.getSource(), first, last, chunk, null, fingerprintPass);
+
+            for (EncodedChunk encoded : chunks) {
+                outputStream.write(encoded.getData());
+                written += encoded.getLength();
+            }
+
+            if (last < region.getEnd())
+                written += encodePart(request, last, region.getEnd(), chunk, outputStream, fingerprintPass);
+        } catch (Exception ex) {
+            throw new CommandArgumentException("Problem saving memory to file", ex);
+        }
+
+        if (metrics != null) {
+            metrics.getEncodeNanos().record(System.nanoTime() - started);
+            metrics.samplesLost(region.getLength() - written);
+        }
+
+        // Create the file locally
+        community.getRepository().createFile(community.getRepository(), uuid, format.getContainerFormat());
+        return written;
+    }
+
+    /**
+     * Encodes a region of the request's source as a complete file of its own, and appends it to a stream.
+     * @return number of samples encoded.
+     */
+    private long encodePart(SaveRequest request, long start, long end, float[] chunk, OutputStream outputStream,
+                            FingerprintPass fingerprintPass) throws IOException {
+        AudioProtocol protocol = musicPlugin.getInstance(Music.class).getProtocol();
+        AudioDownloadFormat format = request.getCommunity().getRepository().getFormat();
+
+        // Encoders close the stream they write to, so each part is encoded on its own first
+        ByteArrayOutputStream part = new ByteArrayOutputStream();
+        long written;
+        try (AudioConsumer consumer = openEncoder(protocol, format, request.getSampleRate(), request.getChannels(),
+                request.getTargetFormat(), chunk.length, part)) {
+            written = stream(request.getSource(), start, end, chunk, consumer, fingerprintPass);
+        } catch (IOException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IOException(ex);
+        }
+
+        part.writeTo(outputStream);
+        return written;
+    }
+
+    /**
+     * Finds the pre-encoded chunks that can stand in for a region: the newest contiguous run of chunks overlapping it.
+     * @param chunks pre-encoded chunks, oldest first.
+     * @param region region being saved.
+     * @return chunks to save, oldest first; empty if the region should be encoded.
+     */
+    private static List<EncodedChunk> getCoveringChunks(List<EncodedChunk> chunks, TrimRegion region) {
+        List<EncodedChunk> covering = new ArrayList<>();
+        for (EncodedChunk encoded : chunks) {
+            if (encoded.getEndPosition() <= region.getStart() || encoded.getPosition() >= region.getEnd())
+                continue;
+
+            if (!covering.isEmpty() && covering.get(covering.size() - 1).getEndPosition() != encoded.getPosition())
+                covering.clear();
+
+            covering.add(encoded);
+        }
+
+        return covering;
+    }
+
+    /**
+     * Creates an encoder of a community's repository format, for pre-encoding memorized audio.
+     * @param community community memories will be saved into.
+     * @param format format of the memorized audio.
+     * @param saveFormat format memories are saved in.
+     * @return chunk encoder.
+     */
+    public ChunkEncoder createChunkEncoder(Community community, AudioFormat format, AudioFormat saveFormat) {
+        AudioDownloadFormat downloadFormat = community.getRepository().getFormat();
+        int bufferSize = createChunk(format.getSampleRate(), format.getChannels()).length;
+
+        return new ChunkEncoder() {
+            @Override
+            public String getContainerFormat() {
+                return downloadFormat.getContainerFormat();
+            }
+
+            @Override
+            public AudioConsumer open(OutputStream outputStream) throws IOException {
+                AudioProtocol protocol = musicPlugin.getInstance(Music.class).getProtocol();
+                return openEncoder(protocol, downloadFormat, format.getSampleRate(), format.getChannels(),
+                        saveFormat, bufferSize, outputStream);
+            }
+        };
+    }
+
+    /**
+     * Opens an encoder, converting audio on its way if the encoder expects a different format than the memorizer
+     * captured.
+     */
+    private AudioConsumer openEncoder(AudioProtocol protocol, AudioDownloadFormat format,
+                                      float sampleRate, int channels, AudioFormat target, int bufferSize,
+                                      OutputStream outputStream) throws IOException {
+        AudioConsumer encoder = protocol.openConsumer(outputStream, format);
+        if (target == null || (target.getSampleRate() == sampleRate && target.getChannels() == channels))
+            return encoder;
+
+        AudioFormat source = new AudioFormat(target.getEncoding(), sampleRate,
+                target.getSampleSizeInBits(), channels,
+                target.getSampleSizeInBits() / 8 * channels, sampleRate,
+                target.isBigEndian());
+
+        return new ResamplingConsumer(source, target, bufferSize, encoder, resamplerPool);
+    }
+
+    /**
+     * Creates a buffer for streaming audio of the given format in chunks.
+     * @param sampleRate sample rate.
+     * @param channels channel count.
+     * @return chunk buffer, a whole number of frames long.
+     */
+    public static float[] createChunk(float sampleRate, int channels) {
+        return new float[Math.max(1, (int) (sampleRate * CHUNK_SECONDS)) * channels];
+    }
+
+    /**
+     * Streams a region of memorized audio to an encoder in chunks.
+     * @param source memorized audio.
+     * @param start absolute position of the first sample to stream.
+     * @param end absolute position just past the last sample to stream.
+     * @param chunk buffer to stream through; the chunk size.
+     * @param consumer encoder to stream to.
+     * @return number of samples streamed; less than the region if a live source was overwritten mid-stream.
+     * @throws IOException if the encoder failed.
+     */
+    public static long stream(MemorySource source, long start, long end, float[] chunk, AudioConsumer consumer)
+            throws IOException {
+        return stream(source, start, end, chunk, consumer, null);
+    }
+
+    /**
+     * Streams a region of memorized audio to an encoder and a fingerprint in the same pass.
+     * @param consumer encoder to stream to, or null to only fingerprint.
+     * @param fingerprintPass fingerprint to feed, or null.
+     */
+    private static long stream(MemorySource source, long start, long end, float[] chunk, AudioConsumer consumer,
+                               FingerprintPass fingerprintPass) throws IOException {
+        long written = 0L;
+        long position = start;
+        while (position < end) {
+            int read = source.read(position, chunk, 0, (int) Math.min(chunk.length, end - position));
+            if (read < 0) {
+                // The writer overtook us (live windows only); continue from the oldest audio still intact
+                long valid = source.getValidPosition();
+                if (valid <= position)
+                    throw new IOException("Memorized audio at position " + position + " could not be read");
+
+                if (fingerprintPass != null)
+                    fingerprintPass.skip(Math.min(valid, end) - position);
+
+                position = valid;
+                continue;
+            } else if (read == 0) {
+                break;
+            }
+
+            if (fingerprintPass != null)
+                fingerprintPass.process(chunk, read);
+            if (consumer != null)
+                consumer.write(chunk, read);
+            position += read;
+            written += read;
+        }
+
+        return written;
+    }
+
+    public static float getTimeInSeconds(long samples, float sampleRate, int channels) {
+        return (float)samples / (sampleRate * channels);
+    }
+
+    /**
+     * Fingerprint of a save, fed alongside its encoder, and the time spent on it.
+     */
+    private static final class FingerprintPass {
+        private final Fingerprinter fingerprinter;
+        private long nanos = 0L;
+
+        private FingerprintPass(Fingerprinter fingerprinter) {
+            this.fingerprinter = fingerprinter;
+        }
+
+        private void process(float[] samples, int len) {
+            long started = System.nanoTime();
+            fingerprinter.process(samples, len);
+            nanos += System.nanoTime() - started;
+        }
+
+        private void skip(long samples) {
+            long started = System.nanoTime();
+            fingerprinter.skip(samples);
+            nanos += System.nanoTime() - started;
+        }
+
+        private Fingerprint finish() {
+            long started = System.nanoTime();
+            Fingerprint fingerprint = fingerprinter.finish();
+            nanos += System.nanoTime() - started;
+            return fingerprint;
+        }
+
+        private long getNanos() {
+            return nanos;
+        }
+    }
+}
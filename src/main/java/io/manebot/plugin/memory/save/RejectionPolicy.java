@@ -0,0 +1,36 @@
+package io.manebot.plugin.memory.save;
+
+/**
+ * What the save executor does with a save request when its queue is full.
+ */
+public enum RejectionPolicy {
+    /**
+     * Refuse the new request; the user is asked to try again later
+     */
+    ABORT,
+
+    /**
+     * Cancel the oldest queued request to make room for the new one
+     */
+    DISCARD_OLDEST,
+
+    /**
+     * Run the new request on the calling (command) thread
+     */
+    CALLER_RUNS;
+
+    /**
+     * Finds a policy by its (case-insensitive) name, as used in the plugin properties, e.g. "discard-oldest".
+     * @param name policy name.
+     * @return rejection policy.
+     */
+    public static RejectionPolicy fromName(String name) {
+        String normalized = name.trim().replace('-', '_');
+        for (RejectionPolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(normalized))
+                return policy;
+        }
+
+        throw new IllegalArgumentException("Unknown rejection policy: " + name);
+    }
+}
@@ -0,0 +1,75 @@
+package io.manebot.plugin.memory.save;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Coalesces saves of a single memorizer that would hold the same audio.  A save taken at the same ring position as
+ * the previous save of the memorizer, e.g. by several users at once in a channel that has gone quiet, does not
+ * snapshot or encode anything; it waits for the previous save and is stored as a reference into it instead.  A save
+ * with any audio past the previous one is written in full, so coalescing never leaves out audio that was asked for.
+ */
+public final class SaveCoalescer {
+    /**
+     * Most recent save written, and the ring position it was taken at; guarded by this
+     */
+    private CompletableFuture<SaveResult> last = null;
+    private long lastEnd = 0L;
+
+    /**
+     * Decides whether a new save is written or coalesced into the previous one.  Saves deciding at the same time are
+     * serialized, so only one of them writes.
+     * @param end absolute ring position the new save is taken at.
+     * @return slot of the new save.
+     */
+    public synchronized Slot claim(long end) {
+        // Failed saves are written again, not referenced
+        if (last != null && end == lastEnd && !last.isCompletedExceptionally() && !last.isCancelled())
+            return new Slot(last, true);
+
+        last = new CompletableFuture<>();
+        lastEnd = end;
+        return new Slot(last, false);
+    }
+
+    /**
+     * A save's place in the coalescer.
+     */
+    public static final class Slot {
+        private final CompletableFuture<SaveResult> future;
+        private final boolean reference;
+
+        private Slot(CompletableFuture<SaveResult> future, boolean reference) {
+            this.future = future;
+            this.reference = reference;
+        }
+
+        /**
+         * Finds if the save should be stored as a reference into an earlier save.
+         * @return true to reference the earlier save, false to write the save and complete this slot with it.
+         */
+        public boolean isReference() {
+            return reference;
+        }
+
+        /**
+         * Gets the save this slot stands for: the earlier save if this is a reference, or the save being written.
+         * @return saved memory.
+         */
+        public CompletableFuture<SaveResult> getFuture() {
+            return future;
+        }
+
+        /**
+         * Completes the slot of a written save, so saves coalesced into it can finish.
+         * @param written the save being written.
+         */
+        public void complete(CompletableFuture<SaveResult> written) {
+            written.whenComplete((result, ex) -> {
+                if (ex != null)
+                    future.completeExceptionally(ex);
+                else
+                    future.complete(result);
+            });
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package io.manebot.plugin.memory.save;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded executor that encodes and persists memories off the command threads.
+ */
+public final class SaveExecutor implements AutoCloseable {
+    private final ThreadPoolExecutor executor;
+
+    public SaveExecutor(int threads, int queueDepth, RejectionPolicy policy) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+
+        if (queueDepth <= 0 && policy == RejectionPolicy.DISCARD_OLDEST)
+            throw new IllegalArgumentException("discarding the oldest save needs a queue: " + queueDepth);
+
+        AtomicInteger threadId = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                threads, threads,
+                30L, TimeUnit.SECONDS,
+                queueDepth > 0 ? new ArrayBlockingQueue<>(queueDepth) : new SynchronousQueue<>(),
+                (runnable) -> {
+                    Thread thread = new Thread(runnable, "memory-save-" + threadId.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                createHandler(policy)
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    private static RejectedExecutionHandler createHandler(RejectionPolicy policy) {
+        switch (policy) {
+            case ABORT:
+                return new ThreadPoolExecutor.AbortPolicy();
+            case CALLER_RUNS:
+                return (runnable, executor) -> {
+                    // CallerRunsPolicy drops the save silently once shut down, leaving its future never completed
+                    if (executor.isShutdown())
+                        throw new RejectedExecutionException("Save executor is shut down");
+
+                    runnable.run();
+                };
+            case DISCARD_OLDEST:
+                return (runnable, executor) -> {
+                    if (executor.isShutdown())
+                        throw new RejectedExecutionException("Save executor is shut down");
+
+                    Runnable oldest = executor.getQueue().poll();
+                    if (oldest == null)
+                        // Nothing to make room for; retrying would only recurse
+                        throw new RejectedExecutionException("Save queue is full");
+
+                    if (oldest instanceof SaveTask)
+                        ((SaveTask<?>) oldest).cancel();
+
+                    executor.execute(runnable);
+                };
+            default:
+                throw new UnsupportedOperationException(policy.name());
+        }
+    }
+
+    /**
+     * Gets the number of save requests waiting for a free thread.
+     * @return queued request count.
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Gets the number of save requests currently being processed.
+     * @return active request count.
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Submits a save task.
+     * @param task task to run.
+     * @param <T> result type.
+     * @return future completed with the result of the task, or exceptionally if it failed or was cancelled.
+     * @throws RejectedExecutionException if the queue is full and the rejection policy refuses the request.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) throws RejectedExecutionException {
+        SaveTask<T> saveTask = new SaveTask<>(task);
+        executor.execute(saveTask);
+        return saveTask.future;
+    }
+
+    /**
+     * Stops accepting saves, cancels queued saves and interrupts running ones.
+     */
+    @Override
+    public void close() {
+        List<Runnable> pending = executor.shutdownNow();
+        for (Runnable runnable : pending) {
+            if (runnable instanceof SaveTask)
+                ((SaveTask<?>) runnable).cancel();
+        }
+    }
+
+    private static final class SaveTask<T> implements Runnable {
+        private final Callable<T> callable;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private SaveTask(Callable<T> callable) {
+            this.callable = callable;
+        }
+
+        private void cancel() {
+            future.completeExceptionally(new CancellationException("Save request was cancelled"));
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone())
+                return;
+
+            try {
+                future.complete(callable.call());
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        }
+    }
+}
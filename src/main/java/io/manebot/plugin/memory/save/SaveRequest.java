@@ -0,0 +1,160 @@
+package io.manebot.plugin.memory.save;
+
+import io.manebot.database.model.User;
+import io.manebot.platform.PlatformUser;
+import io.manebot.plugin.memory.encode.EncodedChunk;
+import io.manebot.plugin.memory.buffer.MemorySource;
+import io.manebot.plugin.memory.metrics.MemorizerMetrics;
+import io.manebot.plugin.memory.stem.StemView;
+import io.manebot.plugin.memory.trim.TrimRegion;
+import io.manebot.plugin.music.database.model.Community;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything the memory writer needs to save a memory.
+ */
+public final class SaveRequest {
+    private final User user;
+    private final MemorySource source;
+    private final float sampleRate;
+    private final int channels;
+    private final Community community;
+
+    private TrimRegion region = null;
+    private Collection<PlatformUser> participants = Collections.emptyList();
+    private List<StemView> stems = Collections.emptyList();
+    private MemorizerMetrics metrics = null;
+    private AudioFormat targetFormat = null;
+    private List<EncodedChunk> chunks = Collections.emptyList();
+
+    /**
+     * @param user user saving the memory.
+     * @param source memorized audio to save; a snapshot, a live ring window or collapsed speech.
+     * @param sampleRate sample rate of the source.
+     * @param channels channel count of the source.
+     * @param community community to save the memory into.
+     */
+    public SaveRequest(User user, MemorySource source, float sampleRate, int channels, Community community) {
+        this.user = user;
+        this.source = source;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.community = community;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public MemorySource getSource() {
+        return source;
+    }
+
+    public float getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public Community getCommunity() {
+        return community;
+    }
+
+    /**
+     * Gets the region of the source to save.
+     * @return region, or null if the source should be trimmed.
+     */
+    public TrimRegion getRegion() {
+        return region;
+    }
+
+    /**
+     * Saves a region of the source as-is instead of trimming it.
+     * @param region region of the source to save.
+     * @return this request.
+     */
+    public SaveRequest setRegion(TrimRegion region) {
+        this.region = region;
+        return this;
+    }
+
+    public Collection<PlatformUser> getParticipants() {
+        return participants;
+    }
+
+    /**
+     * Sets the users who spoke within the source.
+     * @param participants participating users.
+     * @return this request.
+     */
+    public SaveRequest setParticipants(Collection<PlatformUser> participants) {
+        this.participants = participants;
+        return this;
+    }
+
+    public List<StemView> getStems() {
+        return stems;
+    }
+
+    /**
+     * Sets the voiced audio of each speaker within the source.
+     * @param stems speaker stems, on the same timeline as the source.
+     * @return this request.
+     */
+    public SaveRequest setStems(List<StemView> stems) {
+        this.stems = stems;
+        return this;
+    }
+
+    /**
+     * Gets the metrics of the memorizer the memory came from.
+     * @return memorizer metrics, or null if the save is not measured.
+     */
+    public MemorizerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public SaveRequest setMetrics(MemorizerMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Gets the format the encoder expects audio in.
+     * @return target format, or null to encode the source as-is.
+     */
+    public AudioFormat getTargetFormat() {
+        return targetFormat;
+    }
+
+    /**
+     * Sets the format the encoder expects audio in; the source is converted on the way if it differs.
+     * @param targetFormat target format.
+     * @return this request.
+     */
+    public SaveRequest setTargetFormat(AudioFormat targetFormat) {
+        this.targetFormat = targetFormat;
+        return this;
+    }
+
+    public List<EncodedChunk> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Sets pre-encoded chunks of the source, in the community's repository format and the target format.  The writer
+     * concatenates them instead of encoding the audio they cover.
+     * @param chunks pre-encoded chunks, oldest first, on the same timeline as the source.
+     * @return this request.
+     */
+    public SaveRequest setChunks(List<EncodedChunk> chunks) {
+        this.chunks = chunks;
+        return this;
+    }
+}
@@ -0,0 +1,43 @@
+package io.manebot.plugin.memory.save;
+
+import io.manebot.plugin.memory.database.model.Memory;
+import io.manebot.plugin.music.database.model.Track;
+
+/**
+ * A saved memory, and the region of the memory ring its track holds.
+ */
+public final class SaveResult {
+    private final Memory memory;
+    private final long start;
+    private final long end;
+
+    public SaveResult(Memory memory, long start, long end) {
+        this.memory = memory;
+        this.start = start;
+        this.end = end;
+    }
+
+    public Memory getMemory() {
+        return memory;
+    }
+
+    public Track getTrack() {
+        return memory.getTrack();
+    }
+
+    /**
+     * Gets the absolute ring position the saved track starts at.
+     * @return start position.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the absolute ring position just past the end of the saved track.
+     * @return end position.
+     */
+    public long getEnd() {
+        return end;
+    }
+}
@@ -0,0 +1,162 @@
+package io.manebot.plugin.memory.stem;
+
+import io.manebot.platform.PlatformUser;
+import io.manebot.plugin.memory.buffer.SampleCodec;
+import io.manebot.plugin.memory.trim.SignalMath;
+import io.manebot.plugin.memory.vad.VoiceOptions;
+
+import javax.sound.sampled.AudioFormat;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the voiced audio of a single speaker.
+ *
+ * Only windows above the voice threshold (plus a short hold) are kept, appended back to back as 16-bit PCM in
+ * fixed-size blocks; each run of voiced audio is a segment mapping the memorizer timeline onto the stem.  Memory is
+ * proportional to how much the speaker said within the memorizer window, not to the window length: blocks are
+ * recycled as soon as every segment in them has aged out of the memorizer ring.
+ *
+ * Stem views read blocks without holding the lock, the same way ring readers do: a reader that finds its region
+ * was recycled while it was copying discards the copy.
+ */
+public final class StemRecorder {
+    private static final float BLOCK_SECONDS = 1f;
+    private static final int MAXIMUM_SPARE_BLOCKS = 2;
+
+    private final PlatformUser user;
+    private final int channels;
+    private final int blockSize;
+    private final int windowSize;
+    private final long holdSize;
+    private final float threshold;
+
+    private final ArrayDeque<short[]> blocks = new ArrayDeque<>();
+    private final ArrayDeque<short[]> spareBlocks = new ArrayDeque<>();
+    private final ArrayDeque<StemSegment> segments = new ArrayDeque<>();
+
+    /**
+     * Stem position of the first sample of the first block; everything before it may have been recycled
+     */
+    private volatile long blockPosition = 0L;
+
+    /**
+     * Total number of samples appended to the stem
+     */
+    private long stemPosition = 0L;
+
+    private long holdRemaining = 0L;
+
+    public StemRecorder(PlatformUser user, AudioFormat format, VoiceOptions options) {
+        this.user = user;
+        this.channels = format.getChannels();
+        this.blockSize = Math.max(1, (int) (format.getSampleRate() * BLOCK_SECONDS)) * channels;
+        this.windowSize = Math.max(1, (int) (format.getSampleRate() * options.getWindowSeconds())) * channels;
+        this.holdSize = Math.round(format.getSampleRate() * options.getHoldSeconds()) * channels;
+        this.threshold = options.getThreshold();
+    }
+
+    /**
+     * Gets the speaker this stem belongs to.
+     * @return platform user.
+     */
+    public PlatformUser getUser() {
+        return user;
+    }
+
+    /**
+     * Appends speaker audio that lands on the memorizer timeline at the given position, keeping only voiced windows.
+     * @param position absolute memorizer ring position of the first sample.
+     * @param samples speaker samples, in the memorizer format.
+     * @param offs offset of the first sample.
+     * @param len number of samples.
+     */
+    public synchronized void append(long position, float[] samples, int offs, int len) {
+        for (int i = 0; i < len; i += windowSize) {
+            int n = Math.min(windowSize, len - i);
+
+            boolean voiced = SignalMath.sumOfSquares(samples, offs + i, n) > threshold * threshold * n;
+            if (voiced) {
+                holdRemaining = holdSize;
+            } else if (holdRemaining > 0) {
+                holdRemaining -= n;
+                voiced = true;
+            }
+
+            if (voiced)
+                record(position + i, samples, offs + i, n);
+        }
+    }
+
+    private void record(long position, float[] samples, int offs, int len) {
+        StemSegment last = segments.peekLast();
+        if (last != null && last.getEndPosition() == position && last.getStemEndPosition() == stemPosition)
+            last.extend(len);
+        else
+            segments.addLast(new StemSegment(position, stemPosition, len));
+
+        for (int i = 0; i < len; i ++) {
+            long relative = stemPosition - blockPosition;
+            if (relative == (long) blocks.size() * blockSize)
+                blocks.addLast(spareBlocks.isEmpty() ? new short[blockSize] : spareBlocks.pollFirst());
+
+            blocks.peekLast()[(int) (relative % blockSize)] = SampleCodec.toPcm16(samples[offs + i]);
+            stemPosition++;
+        }
+    }
+
+    /**
+     * Drops segments that ended before the given memorizer position and recycles the blocks they occupied.
+     * @param position oldest absolute memorizer position still of interest.
+     * @return true if the stem is now empty.
+     */
+    public synchronized boolean prune(long position) {
+        while (!segments.isEmpty() && segments.peekFirst().getEndPosition() <= position)
+            segments.pollFirst();
+
+        long keepFrom = segments.isEmpty() ? stemPosition : segments.peekFirst().getStemPosition();
+        while (!blocks.isEmpty() && blockPosition + blockSize <= keepFrom) {
+            short[] block = blocks.pollFirst();
+            blockPosition += blockSize;
+            if (spareBlocks.size() < MAXIMUM_SPARE_BLOCKS)
+                spareBlocks.addLast(block);
+        }
+
+        // Stores into recycled blocks must not become visible before the new block position does
+        VarHandle.storeStoreFence();
+
+        return segments.isEmpty();
+    }
+
+    /**
+     * Captures the part of this stem overlapping a region of the memorizer timeline.
+     * @param start absolute memorizer position of the start of the region.
+     * @param end absolute memorizer position of the end of the region.
+     * @return stem view, or null if the speaker was silent throughout the region.
+     */
+    public synchronized StemView view(long start, long end) {
+        List<StemSegment> clipped = StemSegment.clip(segments, start, end);
+        if (clipped.isEmpty())
+            return null;
+
+        return new StemView(this, clipped, new ArrayList<>(blocks), blockPosition);
+    }
+
+    int getChannels() {
+        return channels;
+    }
+
+    int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Gets the oldest stem position whose block has not been recycled.
+     * @return oldest intact stem position.
+     */
+    long getValidPosition() {
+        return blockPosition;
+    }
+}
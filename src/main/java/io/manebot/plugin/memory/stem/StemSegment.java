@@ -0,0 +1,74 @@
+package io.manebot.plugin.memory.stem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A run of voiced audio from one speaker: where it sits on the memorizer timeline, and where it sits in the
+ * speaker's stem.  All positions are in samples.
+ */
+public final class StemSegment {
+    private final long position;
+    private final long stemPosition;
+    private long length;
+
+    StemSegment(long position, long stemPosition, long length) {
+        this.position = position;
+        this.stemPosition = stemPosition;
+        this.length = length;
+    }
+
+    /**
+     * Gets the absolute memorizer ring position this segment starts at.
+     * @return timeline position.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Gets the position in the speaker's stem this segment starts at.
+     * @return stem position.
+     */
+    public long getStemPosition() {
+        return stemPosition;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getEndPosition() {
+        return position + length;
+    }
+
+    public long getStemEndPosition() {
+        return stemPosition + length;
+    }
+
+    void extend(long samples) {
+        length += samples;
+    }
+
+    /**
+     * Clips segments to a region of the memorizer timeline.
+     * @param segments segments, in timeline order.
+     * @param start absolute memorizer position of the start of the region.
+     * @param end absolute memorizer position of the end of the region.
+     * @return copies of the segments overlapping the region, clipped to it.
+     */
+    static List<StemSegment> clip(Iterable<StemSegment> segments, long start, long end) {
+        List<StemSegment> clipped = new ArrayList<>();
+        for (StemSegment segment : segments) {
+            long from = Math.max(start, segment.getPosition());
+            long to = Math.min(end, segment.getEndPosition());
+            if (to <= from)
+                continue;
+
+            long skipped = from - segment.getPosition();
+            clipped.add(new StemSegment(from, segment.getStemPosition() + skipped, to - from));
+        }
+
+        return clipped;
+    }
+}
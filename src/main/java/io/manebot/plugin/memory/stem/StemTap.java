@@ -0,0 +1,61 @@
+package io.manebot.plugin.memory.stem;
+
+import io.manebot.plugin.audio.mixer.input.AudioProvider;
+import io.manebot.plugin.memory.buffer.MemoryRing;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * Passes a speaker's audio through to the memorizer mixer unchanged, recording a copy into the speaker's stem.
+ */
+public final class StemTap implements AudioProvider {
+    private final AudioProvider provider;
+    private final StemRecorder recorder;
+    private final Supplier<MemoryRing> ring;
+
+    /**
+     * @param provider speaker audio, already in the memorizer format.
+     * @param recorder stem recorder of the speaker.
+     * @param ring memorizer ring; its write cursor is where the audio being read will land once mixed.
+     */
+    public StemTap(AudioProvider provider, StemRecorder recorder, Supplier<MemoryRing> ring) {
+        this.provider = provider;
+        this.recorder = recorder;
+        this.ring = ring;
+    }
+
+    @Override
+    public int available() {
+        return provider.available();
+    }
+
+    @Override
+    public int read(float[] buffer, int offs, int len) throws IOException {
+        int read = provider.read(buffer, offs, len);
+
+        MemoryRing ring = this.ring.get();
+        if (read > 0 && ring != null) {
+            recorder.prune(ring.getStartPosition());
+            recorder.append(ring.getPosition(), buffer, offs, read);
+        }
+
+        return read;
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return provider.getFormat();
+    }
+
+    @Override
+    public int getChannels() {
+        return provider.getChannels();
+    }
+
+    @Override
+    public void close() throws Exception {
+        provider.close();
+    }
+}
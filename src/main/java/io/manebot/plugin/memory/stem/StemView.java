@@ -0,0 +1,91 @@
+package io.manebot.plugin.memory.stem;
+
+import io.manebot.platform.PlatformUser;
+import io.manebot.plugin.memory.buffer.MemorySource;
+import io.manebot.plugin.memory.buffer.SampleCodec;
+
+import java.lang.invoke.VarHandle;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The voiced audio of one speaker within a saved region, as a source addressed by stem position.  The stem is the
+ * speaker's voiced segments back to back, with the silence between them collapsed.
+ */
+public final class StemView implements MemorySource {
+    private final StemRecorder recorder;
+    private final List<StemSegment> segments;
+
+    /**
+     * Blocks of the recorder when this view was taken, starting at blockPosition
+     */
+    private final List<short[]> blocks;
+    private final long blockPosition;
+
+    StemView(StemRecorder recorder, List<StemSegment> segments, List<short[]> blocks, long blockPosition) {
+        this.recorder = recorder;
+        this.segments = segments;
+        this.blocks = blocks;
+        this.blockPosition = blockPosition;
+    }
+
+    public PlatformUser getUser() {
+        return recorder.getUser();
+    }
+
+    public int getChannels() {
+        return recorder.getChannels();
+    }
+
+    /**
+     * Gets the voiced segments in this view, in timeline order.
+     * @return unmodifiable list of segments.
+     */
+    public List<StemSegment> getSegments() {
+        return Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * Narrows this view to a region of the memorizer timeline, e.g. after the saved region was trimmed.
+     * @param start absolute memorizer position of the start of the region.
+     * @param end absolute memorizer position of the end of the region.
+     * @return narrowed view, or null if the speaker was silent throughout the region.
+     */
+    public StemView clip(long start, long end) {
+        List<StemSegment> clipped = StemSegment.clip(segments, start, end);
+        return clipped.isEmpty() ? null : new StemView(recorder, clipped, blocks, blockPosition);
+    }
+
+    @Override
+    public long getPosition() {
+        return segments.get(0).getStemPosition();
+    }
+
+    @Override
+    public long getEndPosition() {
+        return segments.get(segments.size() - 1).getStemEndPosition();
+    }
+
+    @Override
+    public long getValidPosition() {
+        return Math.max(getPosition(), recorder.getValidPosition());
+    }
+
+    @Override
+    public int read(long position, float[] samples, int offs, int len) {
+        if (position < getValidPosition())
+            return -1;
+
+        int blockSize = recorder.getBlockSize();
+        len = (int) Math.max(0L, Math.min(len, getEndPosition() - position));
+        for (int i = 0; i < len; i ++) {
+            long relative = position + i - blockPosition;
+            short[] block = blocks.get((int) (relative / blockSize));
+            samples[offs + i] = SampleCodec.fromPcm16(block[(int) (relative % blockSize)]);
+        }
+
+        // Sample loads above must complete before we look at whether the recorder recycled the blocks
+        VarHandle.loadLoadFence();
+        return position < getValidPosition() ? -1 : len;
+    }
+}
@@ -0,0 +1,118 @@
+package io.manebot.plugin.memory.trim;
+
+import io.manebot.plugin.memory.buffer.MemorySource;
+
+/**
+ * Trimmer scanning the source in blocks inward from both ends, stopping at the first block holding signal on either
+ * side instead of walking the whole source.
+ */
+public abstract class ScanningTrimmer implements Trimmer {
+    @Override
+    public TrimRegion trim(MemorySource source, float sampleRate, int channels, float[] buffer) {
+        int blockSize = getBlockSize(sampleRate, channels, buffer.length);
+
+        long start = findStart(source, channels, buffer, blockSize);
+        long end = findEnd(source, start, channels, buffer, blockSize);
+        if (end <= start)
+            return new TrimRegion(start, start);
+
+        // Pad the signal we found, keeping within the source and on frame boundaries
+        long hold = (long) Math.ceil(getHoldSeconds() * sampleRate) * channels;
+        long validStart = Math.max(source.getPosition(), source.getValidPosition());
+        return new TrimRegion(Math.max(validStart, start - hold), Math.min(source.getEndPosition(), end + hold));
+    }
+
+    /**
+     * Gets the number of samples to scan at a time.
+     * @param sampleRate sample rate of the source.
+     * @param channels channel count of the source.
+     * @param maximum size of the scratch buffer.
+     * @return block size, a whole number of frames no larger than the scratch buffer.
+     */
+    protected int getBlockSize(float sampleRate, int channels, int maximum) {
+        return maximum;
+    }
+
+    /**
+     * Gets the amount of audio kept around the signal found.
+     * @return hold window, in seconds.
+     */
+    protected float getHoldSeconds() {
+        return 0f;
+    }
+
+    /**
+     * Finds the first frame holding signal in a block.
+     * @param block block of samples.
+     * @param len number of samples in the block.
+     * @param channels channel count.
+     * @return sample index of the first signal frame, or -1 if the block is silent.
+     */
+    protected abstract int findFirstSignal(float[] block, int len, int channels);
+
+    /**
+     * Finds the end of the signal in a block.
+     * @param block block of samples.
+     * @param len number of samples in the block.
+     * @param channels channel count.
+     * @return sample index just past the last signal frame, or -1 if the block is silent.
+     */
+    protected abstract int findLastSignal(float[] block, int len, int channels);
+
+    private long findStart(MemorySource source, int channels, float[] buffer, int blockSize) {
+        long position = Math.max(source.getPosition(), source.getValidPosition());
+        long end = source.getEndPosition();
+
+        while (position < end) {
+            int read = source.read(position, buffer, 0, (int) Math.min(blockSize, end - position));
+            if (read < 0) {
+                // Overwritten by a live writer; skip to what is still intact, unless it is unreadable for good
+                long valid = source.getValidPosition();
+                if (valid <= position)
+                    break;
+
+                position = valid;
+                continue;
+            } else if (read == 0) {
+                break;
+            }
+
+            int signal = findFirstSignal(buffer, read - (read % channels), channels);
+            if (signal >= 0)
+                return position + signal;
+
+            position += read;
+        }
+
+        return end;
+    }
+
+    private long findEnd(MemorySource source, long start, int channels, float[] buffer, int blockSize) {
+        long end = source.getEndPosition();
+
+        while (end > start) {
+            int len = (int) Math.min(blockSize, end - start);
+            long position = end - len;
+            // Sources may return less than asked for (e.g. up to the end of a history block); fill the whole block
+            int read = 0;
+            while (read < len) {
+                int n = source.read(position + read, buffer, read, len - read);
+                if (n <= 0)
+                    break;
+
+                read += n;
+            }
+
+            if (read < len)
+                break;
+
+            int signal = findLastSignal(buffer, read, channels);
+            if (signal >= 0)
+                return position + signal;
+
+            end = position;
+        }
+
+        return start;
+    }
+}
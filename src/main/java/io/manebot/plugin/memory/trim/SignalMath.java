@@ -0,0 +1,36 @@
+package io.manebot.plugin.memory.trim;
+
+/**
+ * Scalar signal kernels unrolled into independent accumulators, so consecutive additions do not wait on each other and
+ * the CPU can overlap them.  The JIT does not vectorize these float reductions, as that would reorder the additions.
+ */
+public final class SignalMath {
+    private SignalMath() {
+    }
+
+    /**
+     * Sums the squares of a range of samples.
+     * @param samples samples.
+     * @param offs offset of the first sample.
+     * @param len number of samples.
+     * @return sum of squares.
+     */
+    public static float sumOfSquares(float[] samples, int offs, int len) {
+        float a = 0f, b = 0f, c = 0f, d = 0f;
+
+        int i = offs;
+        int end = offs + len;
+        for (int unrolled = end - 3; i < unrolled; i += 4) {
+            float s0 = samples[i], s1 = samples[i + 1], s2 = samples[i + 2], s3 = samples[i + 3];
+            a += s0 * s0;
+            b += s1 * s1;
+            c += s2 * s2;
+            d += s3 * s3;
+        }
+
+        for (; i < end; i ++)
+            a += samples[i] * samples[i];
+
+        return (a + b) + (c + d);
+    }
+}
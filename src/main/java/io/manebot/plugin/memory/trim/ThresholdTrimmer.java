@@ -0,0 +1,55 @@
+package io.manebot.plugin.memory.trim;
+
+/**
+ * Trims audio quieter than an RMS threshold, so dither and limiter noise count as silence.  Signal is detected in
+ * short analysis windows, and a hold window of audio is kept around the signal found so speech onsets and tails are
+ * not clipped.
+ */
+public final class ThresholdTrimmer extends ScanningTrimmer {
+    private final float threshold;
+    private final float windowSeconds;
+    private final float holdSeconds;
+
+    /**
+     * @param thresholdDbfs RMS level, in dBFS, below which a window is silence.
+     * @param windowSeconds length of each analysis window.
+     * @param holdSeconds amount of audio kept on either side of the signal found.
+     */
+    public ThresholdTrimmer(float thresholdDbfs, float windowSeconds, float holdSeconds) {
+        if (windowSeconds <= 0f)
+            throw new IllegalArgumentException("windowSeconds must be positive: " + windowSeconds);
+
+        this.threshold = (float) Math.pow(10d, thresholdDbfs / 20d);
+        this.windowSeconds = windowSeconds;
+        this.holdSeconds = Math.max(0f, holdSeconds);
+    }
+
+    @Override
+    protected int getBlockSize(float sampleRate, int channels, int maximum) {
+        int frames = Math.max(1, (int) (sampleRate * windowSeconds));
+        return Math.max(channels, Math.min(maximum - (maximum % channels), frames * channels));
+    }
+
+    @Override
+    protected float getHoldSeconds() {
+        return holdSeconds;
+    }
+
+    @Override
+    protected int findFirstSignal(float[] block, int len, int channels) {
+        return isSignal(block, len) ? 0 : -1;
+    }
+
+    @Override
+    protected int findLastSignal(float[] block, int len, int channels) {
+        return isSignal(block, len) ? len : -1;
+    }
+
+    private boolean isSignal(float[] block, int len) {
+        if (len <= 0)
+            return false;
+
+        // Compare mean squares rather than taking a square root per window
+        return SignalMath.sumOfSquares(block, 0, len) > threshold * threshold * len;
+    }
+}
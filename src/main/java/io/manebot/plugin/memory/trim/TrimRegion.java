@@ -0,0 +1,38 @@
+package io.manebot.plugin.memory.trim;
+
+/**
+ * A region of a memory source, in absolute ring positions.
+ */
+public final class TrimRegion {
+    private final long start;
+    private final long end;
+
+    public TrimRegion(long start, long end) {
+        this.start = start;
+        this.end = Math.max(start, end);
+    }
+
+    /**
+     * Gets the absolute position of the first sample kept.
+     * @return start position.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the absolute position just past the last sample kept.
+     * @return end position (exclusive).
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Gets the number of samples kept.
+     * @return sample count.
+     */
+    public long getLength() {
+        return end - start;
+    }
+}
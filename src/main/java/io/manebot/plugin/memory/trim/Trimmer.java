@@ -0,0 +1,18 @@
+package io.manebot.plugin.memory.trim;
+
+import io.manebot.plugin.memory.buffer.MemorySource;
+
+/**
+ * Finds the region of memorized audio worth keeping, dropping silence from the start and end.
+ */
+public interface Trimmer {
+    /**
+     * Finds the trimmed region of a memory source.
+     * @param source source to trim.
+     * @param sampleRate sample rate of the source.
+     * @param channels channel count of the source.
+     * @param buffer scratch buffer to read the source through; a whole number of frames long.
+     * @return trimmed region, empty if the source holds nothing worth keeping.
+     */
+    TrimRegion trim(MemorySource source, float sampleRate, int channels, float[] buffer);
+}
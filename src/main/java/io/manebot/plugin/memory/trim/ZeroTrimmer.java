@@ -0,0 +1,35 @@
+package io.manebot.plugin.memory.trim;
+
+/**
+ * Trims exact digital silence (all-zero frames) only.
+ */
+public final class ZeroTrimmer extends ScanningTrimmer {
+    @Override
+    protected int findFirstSignal(float[] block, int len, int channels) {
+        for (int frame = 0; frame + channels <= len; frame += channels) {
+            if (isNoise(block, frame, channels))
+                return frame;
+        }
+
+        return -1;
+    }
+
+    @Override
+    protected int findLastSignal(float[] block, int len, int channels) {
+        for (int frame = len - channels; frame >= 0; frame -= channels) {
+            if (isNoise(block, frame, channels))
+                return frame + channels;
+        }
+
+        return -1;
+    }
+
+    private static boolean isNoise(float[] samples, int offs, int channels) {
+        for (int sampleIndex = 0; sampleIndex < channels; sampleIndex ++) {
+            if (samples[offs + sampleIndex] != 0f)
+                return true;
+        }
+
+        return false;
+    }
+}
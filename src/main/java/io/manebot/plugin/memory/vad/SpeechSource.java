@@ -0,0 +1,91 @@
+package io.manebot.plugin.memory.vad;
+
+import io.manebot.plugin.memory.buffer.MemorySource;
+
+import java.util.List;
+
+/**
+ * Speech segments of a memory source played back to back, with the silence between them collapsed.  Positions
+ * start at 0 and count samples of speech.
+ */
+public final class SpeechSource implements MemorySource {
+    private final MemorySource source;
+
+    /**
+     * Source position of each segment
+     */
+    private final long[] starts;
+
+    /**
+     * Speech position of each segment, plus the total length at the end
+     */
+    private final long[] offsets;
+
+    /**
+     * @param source memory source the segments are in.
+     * @param segments speech segments, oldest first and not overlapping.
+     */
+    public SpeechSource(MemorySource source, List<VoiceSegment> segments) {
+        this.source = source;
+        this.starts = new long[segments.size()];
+        this.offsets = new long[segments.size() + 1];
+
+        for (int i = 0; i < segments.size(); i ++) {
+            starts[i] = segments.get(i).getStart();
+            offsets[i + 1] = offsets[i] + segments.get(i).getLength();
+        }
+    }
+
+    @Override
+    public long getPosition() {
+        return 0L;
+    }
+
+    @Override
+    public long getEndPosition() {
+        return offsets[offsets.length - 1];
+    }
+
+    @Override
+    public long getValidPosition() {
+        long valid = source.getValidPosition();
+        for (int i = 0; i < starts.length; i ++) {
+            long length = offsets[i + 1] - offsets[i];
+            if (valid < starts[i] + length)
+                return offsets[i] + Math.max(0L, valid - starts[i]);
+        }
+
+        return getEndPosition();
+    }
+
+    @Override
+    public int read(long position, float[] samples, int offs, int len) {
+        int segment = find(position);
+        if (segment < 0)
+            return 0;
+
+        long skipped = position - offsets[segment];
+        len = (int) Math.min(len, offsets[segment + 1] - position);
+        return source.read(starts[segment] + skipped, samples, offs, len);
+    }
+
+    /**
+     * Finds the segment a speech position falls in.
+     * @return segment index, or -1 if the position is past the end.
+     */
+    private int find(long position) {
+        int low = 0;
+        int high = starts.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (offsets[middle + 1] <= position)
+                low = middle + 1;
+            else if (offsets[middle] > position)
+                high = middle - 1;
+            else
+                return middle;
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,188 @@
+package io.manebot.plugin.memory.vad;
+
+import io.manebot.plugin.memory.trim.SignalMath;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Index of the speech in a memory ring, built as audio arrives.
+ *
+ * The mixer thread feeds every write through process(), which measures the energy of fixed windows and records
+ * voiced windows as segments, merging gaps no longer than the hold time.  Segments live in a fixed-size circular
+ * table, so the index never allocates after construction; when it is full the oldest segment is forgotten.  Readers
+ * take the lock only to copy the few segments they need, and the mixer thread only takes it once per voiced window.
+ */
+public final class VoiceIndex {
+    private final int windowSize;
+    private final long holdSize;
+    private final float threshold;
+
+    private final long[] starts;
+    private final long[] ends;
+    private final double[] energies;
+
+    /**
+     * Table index of the oldest segment
+     */
+    private int head = 0;
+    private int count = 0;
+
+    /**
+     * Window being measured; only touched by the mixer thread
+     */
+    private long windowStart = 0L;
+    private int windowFill = 0;
+    private double windowEnergy = 0d;
+
+    /**
+     * @param format audio format of the ring.
+     * @param options voice detection settings.
+     * @param capacity maximum number of segments remembered.
+     */
+    public VoiceIndex(AudioFormat format, VoiceOptions options, int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+
+        this.windowSize = Math.max(1, (int) (format.getSampleRate() * options.getWindowSeconds()))
+                * format.getChannels();
+        this.holdSize = Math.round(format.getSampleRate() * options.getHoldSeconds()) * format.getChannels();
+        this.threshold = options.getThreshold();
+
+        this.starts = new long[capacity];
+        this.ends = new long[capacity];
+        this.energies = new double[capacity];
+    }
+
+    /**
+     * Gets the number of samples speech is padded and merged by.
+     * @return hold size, in samples.
+     */
+    public long getHoldSize() {
+        return holdSize;
+    }
+
+    /**
+     * Measures samples just written to the ring.  Must only be called from the ring's writer thread.
+     * @param position absolute ring position the samples were written at.
+     * @param samples samples written.
+     * @param len number of samples written.
+     */
+    public void process(long position, float[] samples, int len) {
+        if (position != windowStart + windowFill) {
+            // The ring was replaced or skipped ahead; start measuring afresh
+            windowStart = position;
+            windowFill = 0;
+            windowEnergy = 0d;
+        }
+
+        for (int i = 0; i < len; ) {
+            int n = Math.min(windowSize - windowFill, len - i);
+            windowEnergy += SignalMath.sumOfSquares(samples, i, n);
+            windowFill += n;
+            i += n;
+
+            if (windowFill == windowSize) {
+                if (windowEnergy > (double) threshold * threshold * windowSize)
+                    voiced(windowStart, windowStart + windowSize, windowEnergy);
+
+                windowStart += windowSize;
+                windowFill = 0;
+                windowEnergy = 0d;
+            }
+        }
+    }
+
+    private synchronized void voiced(long start, long end, double energy) {
+        if (count > 0) {
+            int last = (head + count - 1) % starts.length;
+            if (start - ends[last] <= holdSize && start >= ends[last]) {
+                ends[last] = end;
+                energies[last] += energy;
+                return;
+            }
+        }
+
+        int index;
+        if (count == starts.length) {
+            index = head;
+            head = (head + 1) % starts.length;
+        } else {
+            index = (head + count) % starts.length;
+            count++;
+        }
+
+        starts[index] = start;
+        ends[index] = end;
+        energies[index] = energy;
+    }
+
+    /**
+     * Forgets every segment, e.g. when the ring is released.
+     */
+    public synchronized void clear() {
+        head = 0;
+        count = 0;
+    }
+
+    /**
+     * Gets the speech within a region of the ring.
+     * @param start absolute position of the start of the region.
+     * @param end absolute position of the end of the region.
+     * @return segments overlapping the region, clipped to it, oldest first.
+     */
+    public synchronized List<VoiceSegment> getSegments(long start, long end) {
+        List<VoiceSegment> segments = new ArrayList<>();
+        for (int i = 0; i < count; i ++) {
+            VoiceSegment segment = get((head + i) % starts.length, start, end);
+            if (segment != null)
+                segments.add(segment);
+        }
+
+        return segments;
+    }
+
+    /**
+     * Gets the most recent speech within a region of the ring, padded by the hold time at both ends and cut down to
+     * the given length by dropping the oldest audio.
+     * @param start absolute position of the start of the region.
+     * @param end absolute position of the end of the region.
+     * @param length number of samples of speech wanted.
+     * @return segments, oldest first, never overlapping and totalling at most the given length.
+     */
+    public synchronized List<VoiceSegment> getLatestSpeech(long start, long end, long length) {
+        List<VoiceSegment> segments = new ArrayList<>();
+        long total = 0L;
+        long limit = end;
+
+        for (int i = count - 1; i >= 0 && total < length; i --) {
+            int index = (head + i) % starts.length;
+
+            // Pad both ends of each segment so onsets and word endings below the threshold are kept; segments are
+            // further apart than the hold, so padding never reaches into the speech of the neighbouring segment
+            long to = Math.min(limit, ends[index] + holdSize);
+            long from = Math.max(start, starts[index] - holdSize);
+            if (to <= from)
+                continue;
+
+            from = Math.max(from, to - (length - total));
+            segments.add(new VoiceSegment(from, to, (float) (energies[index] / (ends[index] - starts[index]))));
+            total += to - from;
+            limit = from;
+        }
+
+        Collections.reverse(segments);
+        return segments;
+    }
+
+    private VoiceSegment get(int index, long start, long end) {
+        long from = Math.max(start, starts[index]);
+        long to = Math.min(end, ends[index]);
+        if (to <= from)
+            return null;
+
+        return new VoiceSegment(from, to, (float) (energies[index] / (ends[index] - starts[index])));
+    }
+}
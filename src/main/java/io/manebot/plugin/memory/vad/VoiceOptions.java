@@ -0,0 +1,40 @@
+package io.manebot.plugin.memory.vad;
+
+/**
+ * Voice detection settings, shared by the voice index and per-speaker stem capture.
+ */
+public final class VoiceOptions {
+    private final float threshold;
+    private final float windowSeconds;
+    private final float holdSeconds;
+
+    /**
+     * @param thresholdDbfs RMS level, in dBFS, above which a speaker's audio counts as voiced.
+     * @param windowSeconds length of each voice detection window.
+     * @param holdSeconds audio kept after voice stops, so word endings and short pauses are not cut.
+     */
+    public VoiceOptions(float thresholdDbfs, float windowSeconds, float holdSeconds) {
+        if (windowSeconds <= 0f)
+            throw new IllegalArgumentException("windowSeconds must be positive: " + windowSeconds);
+
+        this.threshold = (float) Math.pow(10d, thresholdDbfs / 20d);
+        this.windowSeconds = windowSeconds;
+        this.holdSeconds = Math.max(0f, holdSeconds);
+    }
+
+    /**
+     * Gets the linear RMS threshold.
+     * @return threshold, as a linear amplitude.
+     */
+    public float getThreshold() {
+        return threshold;
+    }
+
+    public float getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public float getHoldSeconds() {
+        return holdSeconds;
+    }
+}
@@ -0,0 +1,44 @@
+package io.manebot.plugin.memory.vad;
+
+/**
+ * A run of speech in the memory ring, in absolute ring positions.
+ */
+public final class VoiceSegment {
+    private final long start;
+    private final long end;
+    private final float energy;
+
+    public VoiceSegment(long start, long end, float energy) {
+        this.start = start;
+        this.end = Math.max(start, end);
+        this.energy = energy;
+    }
+
+    /**
+     * Gets the absolute position of the first sample of speech.
+     * @return start position.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the absolute position just past the last sample of speech.
+     * @return end position (exclusive).
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    public long getLength() {
+        return end - start;
+    }
+
+    /**
+     * Gets the mean energy of this segment.
+     * @return mean square of the samples in this segment.
+     */
+    public float getEnergy() {
+        return energy;
+    }
+}
@@ -0,0 +1,32 @@
+package io.manebot.plugin.memory;
+
+import io.manebot.command.exception.CommandArgumentException;
+import org.junit.Test;
+
+public class MemoryTest {
+    @Test
+    public void testRunningMemorizerSaves() throws CommandArgumentException {
+        Memory.checkSaveable(false, true, true, false);
+    }
+
+    @Test
+    public void testSuspendedMemorizerSavesKeptRing() throws CommandArgumentException {
+        // Suspended while idle: the mixer is stopped, yet the ring still holds the audio
+        Memory.checkSaveable(true, false, true, false);
+    }
+
+    @Test(expected = CommandArgumentException.class)
+    public void testSuspendedMemorizerWithoutRing() throws CommandArgumentException {
+        Memory.checkSaveable(true, false, false, false);
+    }
+
+    @Test
+    public void testSuspendedMemorizerSavesHistory() throws CommandArgumentException {
+        Memory.checkSaveable(true, false, false, true);
+    }
+
+    @Test(expected = CommandArgumentException.class)
+    public void testStoppedMemorizer() throws CommandArgumentException {
+        Memory.checkSaveable(false, false, true, false);
+    }
+}
@@ -0,0 +1,147 @@
+package io.manebot.plugin.memory.buffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class MappedRingStorageTest {
+    private static final AudioFormat FORMAT = new AudioFormat(48000f, 16, 2, true, false);
+    private static final int CAPACITY = 100;
+
+    private Path directory;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("mapped-ring");
+        file = directory.resolve("ring.bin");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private MappedRingStorage open() throws IOException {
+        return MappedRingStorage.open(file, FORMAT, SampleEncoding.FLOAT32, CAPACITY);
+    }
+
+    private static void writeCounting(MemoryRing ring, int len) {
+        float[] samples = new float[len];
+        long position = ring.getPosition();
+        for (int i = 0; i < len; i ++)
+            samples[i] = position + i;
+
+        ring.write(samples, len);
+    }
+
+    private static void assertCounting(MemorySnapshot snapshot, long position, int length) {
+        assertEquals(position, snapshot.getPosition());
+        assertEquals(length, snapshot.getLength());
+        for (int i = 0; i < length; i ++)
+            assertEquals("sample " + i, (float) (position + i), snapshot.getSamples()[i], 0f);
+    }
+
+    @Test
+    public void testFreshFile() throws IOException {
+        MappedRingStorage storage = open();
+        assertEquals(0L, storage.getPosition());
+        assertEquals(0L, storage.getStartPosition());
+        assertEquals(CAPACITY, storage.getCapacity());
+        assertEquals(SampleEncoding.FLOAT32, storage.getEncoding());
+        storage.close();
+    }
+
+    @Test
+    public void testRestoresRing() throws IOException {
+        MappedRingStorage storage = open();
+        writeCounting(new MemoryRing(storage), 150);
+        storage.close();
+
+        MemoryRing ring = new MemoryRing(open());
+        assertEquals(150L, ring.getPosition());
+        assertEquals(50L, ring.getStartPosition());
+        assertCounting(ring.snapshot(), 50L, 100);
+
+        // Writing carries on from the restored cursor
+        writeCounting(ring, 10);
+        assertCounting(ring.snapshot(), 60L, 100);
+    }
+
+    @Test
+    public void testRestoresReset() throws IOException {
+        MappedRingStorage storage = open();
+        MemoryRing ring = new MemoryRing(storage);
+        writeCounting(ring, 80);
+        ring.reset();
+        writeCounting(ring, 10);
+        storage.close();
+
+        // Audio forgotten before the restart stays forgotten
+        ring = new MemoryRing(open());
+        assertEquals(80L, ring.getStartPosition());
+        assertCounting(ring.snapshot(), 80L, 10);
+    }
+
+    @Test
+    public void testInterruptedWrite() throws IOException {
+        MappedRingStorage storage = open();
+        writeCounting(new MemoryRing(storage), 150);
+        // The writer claimed more samples but never committed them
+        storage.claim(180L);
+        storage.close();
+
+        storage = open();
+        assertEquals(150L, storage.getPosition());
+        assertEquals(80L, storage.getStartPosition());
+        assertCounting(new MemoryRing(storage).snapshot(), 80L, 70);
+    }
+
+    @Test
+    public void testInconsistentCursors() throws IOException {
+        MappedRingStorage storage = open();
+        writeCounting(new MemoryRing(storage), 50);
+        storage.claim(20L);
+        storage.close();
+
+        storage = open();
+        assertEquals(0L, storage.getPosition());
+        assertEquals(0L, storage.getStartPosition());
+    }
+
+    @Test
+    public void testLayoutMismatch() throws IOException {
+        MappedRingStorage storage = open();
+        writeCounting(new MemoryRing(storage), 50);
+        storage.close();
+
+        // Same file size, different encoding
+        storage = MappedRingStorage.open(file, FORMAT, SampleEncoding.PCM16, CAPACITY * 2);
+        assertEquals(0L, storage.getPosition());
+        writeCounting(new MemoryRing(storage), 50);
+        storage.close();
+
+        // Different sample rate
+        storage = MappedRingStorage.open(file, new AudioFormat(44100f, 16, 2, true, false),
+                SampleEncoding.PCM16, CAPACITY * 2);
+        assertEquals(0L, storage.getPosition());
+        storage.close();
+
+        // Different capacity, and so a different file size
+        storage = MappedRingStorage.open(file, FORMAT, SampleEncoding.FLOAT32, CAPACITY / 2);
+        assertEquals(0L, storage.getPosition());
+        assertEquals(0, new MemoryRing(storage).snapshot().getLength());
+        storage.close();
+    }
+}
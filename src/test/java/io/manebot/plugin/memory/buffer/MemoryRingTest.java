@@ -0,0 +1,186 @@
+package io.manebot.plugin.memory.buffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MemoryRingTest {
+    private static final int CAPACITY = 100;
+
+    /**
+     * Writes samples whose values are their own absolute positions, so any sample read back can be checked.
+     */
+    private static void writeCounting(MemoryRing ring, int len) {
+        float[] samples = new float[len];
+        long position = ring.getPosition();
+        for (int i = 0; i < len; i ++)
+            samples[i] = position + i;
+
+        ring.write(samples, len);
+    }
+
+    private static void assertCounting(MemorySnapshot snapshot) {
+        float[] samples = snapshot.getSamples();
+        for (int i = 0; i < snapshot.getLength(); i ++)
+            assertEquals("sample " + i, (float) (snapshot.getPosition() + i), samples[i], 0f);
+    }
+
+    @Test
+    public void testReadAcrossWrap() {
+        MemoryRing ring = new MemoryRing(CAPACITY);
+        writeCounting(ring, 70);
+        writeCounting(ring, 70);
+
+        float[] samples = new float[60];
+        assertEquals(60, ring.read(80, samples, 0, 60));
+        for (int i = 0; i < 60; i ++)
+            assertEquals(80f + i, samples[i], 0f);
+    }
+
+    @Test
+    public void testReadOnlyCommitted() {
+        MemoryRing ring = new MemoryRing(CAPACITY);
+        writeCounting(ring, 30);
+
+        assertEquals(10, ring.read(20, new float[50], 0, 50));
+        assertEquals(0, ring.read(30, new float[50], 0, 50));
+    }
+
+    @Test
+    public void testReadOverwritten() {
+        MemoryRing ring = new MemoryRing(CAPACITY);
+        writeCounting(ring, 250);
+
+        assertEquals(150, ring.getValidPosition());
+        assertEquals(-1, ring.read(149, new float[10], 0, 10));
+        assertEquals(10, ring.read(150, new float[10], 0, 10));
+    }
+
+    @Test
+    public void testWriteLargerThanCapacity() {
+        MemoryRing ring = new MemoryRing(CAPACITY);
+        writeCounting(ring, 10);
+        writeCounting(ring, 333);
+
+        MemorySnapshot snapshot = ring.snapshot();
+        assertEquals(CAPACITY, snapshot.getLength());
+        assertEquals(343 - CAPACITY, snapshot.getPosition());
+        assertCounting(snapshot);
+    }
+
+    @Test
+    public void testSnapshotOrdered() {
+        MemoryRing ring = new MemoryRing(CAPACITY);
+        writeCounting(ring, 40);
+
+        MemorySnapshot snapshot = ring.snapshot();
+        assertEquals(40, snapshot.getLength());
+        assertEquals(0, snapshot.getPosition());
+        assertCounting(snapshot);
+
+        writeCounting(ring, 135);
+        snapshot = ring.snapshot();
+        assertEquals(CAPACITY, snapshot.getLength());
+        assertEquals(75, snapshot.getPosition());
+        assertCounting(snapshot);
+    }
+
+    @Test
+    public void testSnapshotAfterReset() {
+        MemoryRing ring = new MemoryRing(CAPACITY);
+        writeCounting(ring, 60);
+        ring.reset();
+        writeCounting(ring, 15);
+
+        MemorySnapshot snapshot = ring.snapshot();
+        assertEquals(15, snapshot.getLength());
+        assertEquals(60, snapshot.getPosition());
+        assertCounting(snapshot);
+    }
+
+    @Test
+    public void testSnapshotWriterAdvancesDuringCopy() {
+        for (int advance : new int[] { 1, 30, 99, 100, 101, 150 }) {
+            InterferingStorage storage = new InterferingStorage(CAPACITY);
+            MemoryRing ring = new MemoryRing(storage);
+            writeCounting(ring, 130);
+
+            storage.interfere(() -> writeCounting(ring, advance));
+            MemorySnapshot snapshot = ring.snapshot();
+
+            assertTrue("advance " + advance, snapshot.getLength() > 0);
+            assertEquals("advance " + advance, 130 + advance, snapshot.getEndPosition());
+            assertCounting(snapshot);
+        }
+    }
+
+    @Test
+    public void testSnapshotWriterLapsDuringCopy() {
+        // The writer gets more than a whole ring ahead while the snapshot copies, on every copy
+        InterferingStorage storage = new InterferingStorage(CAPACITY);
+        MemoryRing ring = new MemoryRing(storage);
+        writeCounting(ring, 50);
+
+        storage.interfereAlways(() -> writeCounting(ring, 3 * CAPACITY + 7));
+        MemorySnapshot snapshot = ring.snapshot();
+
+        assertTrue(snapshot.getLength() <= CAPACITY);
+        assertCounting(snapshot);
+    }
+
+    /**
+     * Heap storage that runs a writer in the middle of a reader's copy.
+     */
+    private static final class InterferingStorage implements RingStorage {
+        private final FloatRingStorage storage;
+        private Runnable writer;
+        private boolean always;
+        private boolean writing;
+
+        private InterferingStorage(int capacity) {
+            this.storage = new FloatRingStorage(capacity);
+        }
+
+        private void interfere(Runnable writer) {
+            this.writer = writer;
+            this.always = false;
+        }
+
+        private void interfereAlways(Runnable writer) {
+            this.writer = writer;
+            this.always = true;
+        }
+
+        @Override
+        public SampleEncoding getEncoding() {
+            return storage.getEncoding();
+        }
+
+        @Override
+        public int getCapacity() {
+            return storage.getCapacity();
+        }
+
+        @Override
+        public void write(int index, float[] samples, int offs, int len) {
+            storage.write(index, samples, offs, len);
+        }
+
+        @Override
+        public void read(int index, float[] samples, int offs, int len) {
+            storage.read(index, samples, offs, len);
+            if (writer != null && !writing) {
+                Runnable writer = this.writer;
+                if (!always)
+                    this.writer = null;
+
+                writing = true;
+                try {
+                    writer.run();
+                } finally {
+                    writing = false;
+                }
+            }
+        }
+    }
+}
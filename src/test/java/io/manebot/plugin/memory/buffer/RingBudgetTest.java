@@ -0,0 +1,96 @@
+package io.manebot.plugin.memory.buffer;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RingBudgetTest {
+    @Test
+    public void testAdmitsInFullWhileThereIsRoom() {
+        AtomicInteger reclaims = new AtomicInteger();
+        RingBudget budget = new RingBudget(1000L, reclaims::incrementAndGet);
+
+        assertEquals(100, budget.admit("a", 100, 10, 1, SampleEncoding.FLOAT32));
+        assertEquals(400L, budget.getUsedBytes());
+        assertEquals(400L, budget.getAllocation("a"));
+        assertEquals(0, reclaims.get());
+    }
+
+    @Test
+    public void testShrinksWhenShort() {
+        AtomicInteger reclaims = new AtomicInteger();
+        RingBudget budget = new RingBudget(1000L, reclaims::incrementAndGet);
+        budget.admit("a", 200, 10, 1, SampleEncoding.FLOAT32);
+
+        // 200 bytes left: 50 float samples
+        assertEquals(50, budget.admit("b", 200, 10, 1, SampleEncoding.FLOAT32));
+        assertEquals(1000L, budget.getUsedBytes());
+        assertEquals(1, reclaims.get());
+    }
+
+    @Test
+    public void testKeepsWholeFrames() {
+        RingBudget budget = new RingBudget(1000L, () -> { });
+        budget.admit("a", 949, 10, 1, SampleEncoding.MULAW);
+
+        // 51 bytes left, trimmed to whole stereo frames
+        assertEquals(50, budget.admit("b", 200, 10, 2, SampleEncoding.MULAW));
+    }
+
+    @Test
+    public void testGrantsFloorWhenExhausted() {
+        AtomicInteger reclaims = new AtomicInteger();
+        RingBudget budget = new RingBudget(1000L, reclaims::incrementAndGet);
+        budget.admit("a", 1000, 10, 1, SampleEncoding.MULAW);
+
+        assertEquals(40, budget.admit("b", 200, 40, 1, SampleEncoding.MULAW));
+        assertEquals(1040L, budget.getUsedBytes());
+        assertEquals(2, reclaims.get());
+    }
+
+    @Test
+    public void testReclaimsAboveWatermark() {
+        AtomicInteger reclaims = new AtomicInteger();
+        RingBudget budget = new RingBudget(1000L, reclaims::incrementAndGet);
+        assertEquals(900L, budget.getReclaimBytes());
+
+        budget.admit("a", 900, 10, 1, SampleEncoding.MULAW);
+        assertEquals(0, reclaims.get());
+
+        // Admitted in full, but past the watermark; the reclaimer makes room for the next ring
+        assertEquals(50, budget.admit("b", 50, 10, 1, SampleEncoding.MULAW));
+        assertEquals(1, reclaims.get());
+    }
+
+    @Test
+    public void testReadmissionReplacesAllocation() {
+        RingBudget budget = new RingBudget(1000L, () -> { });
+        budget.admit("a", 800, 10, 1, SampleEncoding.MULAW);
+
+        // The owner's old ring does not count against its new one
+        assertEquals(900, budget.admit("a", 900, 10, 1, SampleEncoding.MULAW));
+        assertEquals(900L, budget.getUsedBytes());
+        assertEquals(900L, budget.getAllocation("a"));
+    }
+
+    @Test
+    public void testRelease() {
+        RingBudget budget = new RingBudget(1000L, () -> { });
+        budget.admit("a", 300, 10, 1, SampleEncoding.PCM16);
+        budget.admit("b", 100, 10, 1, SampleEncoding.PCM16);
+        assertEquals(800L, budget.getUsedBytes());
+
+        budget.release("a");
+        assertEquals(200L, budget.getUsedBytes());
+        assertEquals(0L, budget.getAllocation("a"));
+
+        // Releasing twice, or an owner that was never admitted, changes nothing
+        budget.release("a");
+        budget.release("c");
+        assertEquals(200L, budget.getUsedBytes());
+
+        assertEquals(400, budget.admit("a", 400, 10, 1, SampleEncoding.PCM16));
+    }
+}
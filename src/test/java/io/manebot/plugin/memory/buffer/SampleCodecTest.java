@@ -0,0 +1,74 @@
+package io.manebot.plugin.memory.buffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SampleCodecTest {
+    @Test
+    public void testPcm16RoundTrip() {
+        for (int i = -1000; i <= 1000; i ++) {
+            float sample = i / 1000f * 0.999f;
+            assertEquals(sample, SampleCodec.fromPcm16(SampleCodec.toPcm16(sample)), 2f / 32768f);
+        }
+    }
+
+    @Test
+    public void testPcm16Clips() {
+        assertEquals(Short.MAX_VALUE, SampleCodec.toPcm16(1.5f));
+        assertEquals(Short.MIN_VALUE, SampleCodec.toPcm16(-1.5f));
+        assertEquals(0, SampleCodec.toPcm16(0f));
+        assertEquals(-1f, SampleCodec.fromPcm16(Short.MIN_VALUE), 0f);
+    }
+
+    @Test
+    public void testMuLawSilence() {
+        assertEquals(SampleCodec.MULAW_SILENCE, SampleCodec.toMuLaw(0f));
+        assertEquals(0f, SampleCodec.fromMuLaw(SampleCodec.MULAW_SILENCE), 0f);
+    }
+
+    @Test
+    public void testMuLawCodesRoundTrip() {
+        for (int i = 0; i < 256; i ++) {
+            byte code = (byte) i;
+            if (code == (byte) 0x7F)
+                // Negative zero; encodes back as (positive) silence
+                continue;
+
+            assertEquals("code " + i, code, SampleCodec.toMuLaw(SampleCodec.fromMuLaw(code)));
+        }
+
+        assertEquals(SampleCodec.MULAW_SILENCE, SampleCodec.toMuLaw(SampleCodec.fromMuLaw((byte) 0x7F)));
+    }
+
+    @Test
+    public void testMuLawRoundTrip() {
+        for (int i = -1000; i <= 1000; i ++) {
+            float sample = i / 1000f * 0.99f;
+            float decoded = SampleCodec.fromMuLaw(SampleCodec.toMuLaw(sample));
+
+            // Steps grow with the magnitude: about 1/16 of it, and never coarser than 8 LSB near silence
+            float tolerance = Math.max(Math.abs(sample) / 16f, 8f / 32768f);
+            assertEquals("sample " + sample, sample, decoded, tolerance);
+            assertTrue("sign of " + sample, decoded == 0f || Math.signum(decoded) == Math.signum(sample));
+        }
+    }
+
+    @Test
+    public void testMuLawIsMonotonic() {
+        float previous = -1f;
+        for (int i = -1000; i <= 1000; i ++) {
+            float decoded = SampleCodec.fromMuLaw(SampleCodec.toMuLaw(i / 1000f));
+            assertTrue(decoded + " after " + previous, decoded >= previous);
+            previous = decoded;
+        }
+    }
+
+    @Test
+    public void testMuLawClips() {
+        assertEquals(SampleCodec.toMuLaw(0.999f), SampleCodec.toMuLaw(1.5f));
+        assertEquals(SampleCodec.toMuLaw(-0.999f), SampleCodec.toMuLaw(-1.5f));
+        assertEquals(-SampleCodec.fromMuLaw(SampleCodec.toMuLaw(1f)),
+                SampleCodec.fromMuLaw(SampleCodec.toMuLaw(-1f)), 0f);
+    }
+}
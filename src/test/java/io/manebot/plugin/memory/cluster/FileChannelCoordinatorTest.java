@@ -0,0 +1,126 @@
+package io.manebot.plugin.memory.cluster;
+
+import io.manebot.command.exception.CommandArgumentException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class FileChannelCoordinatorTest {
+    private Path directory;
+    private FileChannelCoordinator a;
+    private FileChannelCoordinator b;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("memory-coordinator");
+        a = new FileChannelCoordinator(directory, "a", 10L, 1000L);
+        b = new FileChannelCoordinator(directory, "b", 10L, 1000L);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        a.close();
+        b.close();
+
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testFirstClaimWins() {
+        assertNull(b.getOwner("channel"));
+        assertEquals("a", a.acquire("channel"));
+        assertEquals("a", a.acquire("channel"));
+        assertEquals("a", b.acquire("channel"));
+        assertEquals("a", b.getOwner("channel"));
+    }
+
+    @Test
+    public void testChannelIdsAreEscaped() {
+        assertEquals("a", a.acquire("../platform/channel 1"));
+        assertEquals("b", b.acquire("../platform/channel 2"));
+        assertEquals("a", b.acquire("../platform/channel 1"));
+    }
+
+    @Test
+    public void testReleaseHandsOver() {
+        a.acquire("channel");
+        a.release("channel");
+
+        assertNull(b.getOwner("channel"));
+        assertEquals("b", b.acquire("channel"));
+        assertEquals("b", a.getOwner("channel"));
+    }
+
+    @Test
+    public void testCloseReleasesEverything() {
+        a.acquire("one");
+        a.acquire("two");
+        a.close();
+
+        assertEquals("b", b.acquire("one"));
+        assertEquals("b", b.acquire("two"));
+    }
+
+    @Test
+    public void testForward() throws Exception {
+        a.setSaveHandler(save -> CompletableFuture.completedFuture(
+                save.getChannelId() + "/" + save.getUserId() + "/" + save.getSpeechSeconds() + "/"
+                        + save.getHistorySeconds()));
+
+        assertEquals("channel/7/3.0/0.0",
+                b.forward("a", new ForwardedSave("channel", 7, 3f, 0f)).get(5L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testForwardRelaysArgumentErrors() throws Exception {
+        a.setSaveHandler(save -> {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            future.completeExceptionally(new CommandArgumentException("There is nothing to remember."));
+            return future;
+        });
+
+        try {
+            b.forward("a", new ForwardedSave("channel", 7, 0f, 0f)).get(5L, TimeUnit.SECONDS);
+            fail("save succeeded");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof CommandArgumentException);
+            assertEquals("There is nothing to remember.", ex.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testForwardToUnknownNode() throws Exception {
+        try {
+            b.forward("c", new ForwardedSave("channel", 7, 0f, 0f)).get(5L, TimeUnit.SECONDS);
+            fail("forwarded to an unknown node");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testForwardTimesOut() throws Exception {
+        a.setSaveHandler(save -> new CompletableFuture<>());
+
+        try {
+            b.forward("a", new ForwardedSave("channel", 7, 0f, 0f)).get(5L, TimeUnit.SECONDS);
+            fail("save never answered, yet completed");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof TimeoutException);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package io.manebot.plugin.memory.cluster;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.*;
+
+public class LocalChannelCoordinatorTest {
+    private static LocalChannelCoordinator.Group newGroup() {
+        return new LocalChannelCoordinator.Group();
+    }
+
+    @Test
+    public void testFirstClaimWins() {
+        LocalChannelCoordinator.Group group = newGroup();
+        LocalChannelCoordinator a = new LocalChannelCoordinator(group, "a");
+        LocalChannelCoordinator b = new LocalChannelCoordinator(group, "b");
+
+        assertNull(a.getOwner("channel"));
+        assertEquals("a", a.acquire("channel"));
+        assertEquals("a", b.acquire("channel"));
+        assertEquals("a", b.getOwner("channel"));
+        assertEquals("b", b.acquire("other"));
+    }
+
+    @Test
+    public void testReleaseHandsOver() {
+        LocalChannelCoordinator.Group group = newGroup();
+        LocalChannelCoordinator a = new LocalChannelCoordinator(group, "a");
+        LocalChannelCoordinator b = new LocalChannelCoordinator(group, "b");
+
+        a.acquire("channel");
+        b.release("channel");
+        assertEquals("a", b.getOwner("channel"));
+
+        a.release("channel");
+        assertNull(b.getOwner("channel"));
+        assertEquals("b", b.acquire("channel"));
+    }
+
+    @Test
+    public void testCloseReleasesEverything() {
+        LocalChannelCoordinator.Group group = newGroup();
+        LocalChannelCoordinator a = new LocalChannelCoordinator(group, "a");
+        LocalChannelCoordinator b = new LocalChannelCoordinator(group, "b");
+
+        a.acquire("one");
+        a.acquire("two");
+        a.close();
+
+        assertEquals("b", b.acquire("one"));
+        assertEquals("b", b.acquire("two"));
+    }
+
+    @Test
+    public void testForward() throws Exception {
+        LocalChannelCoordinator.Group group = newGroup();
+        LocalChannelCoordinator a = new LocalChannelCoordinator(group, "a");
+        LocalChannelCoordinator b = new LocalChannelCoordinator(group, "b");
+
+        a.setSaveHandler(save -> CompletableFuture.completedFuture(
+                save.getChannelId() + "/" + save.getUserId() + "/" + save.getSpeechSeconds()));
+        assertEquals("channel/7/3.0", b.forward("a", new ForwardedSave("channel", 7, 3f, 0f)).get());
+    }
+
+    @Test
+    public void testForwardToNodeWithoutHandler() throws Exception {
+        LocalChannelCoordinator.Group group = newGroup();
+        LocalChannelCoordinator b = new LocalChannelCoordinator(group, "b");
+
+        try {
+            b.forward("a", new ForwardedSave("channel", 7, 0f, 0f)).get();
+            fail("forwarded to a node that takes no saves");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testGroupsByName() {
+        assertSame(LocalChannelCoordinator.getGroup("test-groups"), LocalChannelCoordinator.getGroup("test-groups"));
+    }
+}
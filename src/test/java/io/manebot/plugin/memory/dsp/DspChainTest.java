@@ -0,0 +1,88 @@
+package io.manebot.plugin.memory.dsp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class DspChainTest {
+    private static final float SAMPLE_RATE = 48000f;
+
+    private static float[][] buffer(float left, float right, int len) {
+        float[][] buffer = new float[2][len];
+        Arrays.fill(buffer[0], left);
+        Arrays.fill(buffer[1], right);
+        return buffer;
+    }
+
+    @Test
+    public void testProcessesAudio() {
+        DspChain chain = new DspChain(() -> DspConfig.parse("mono"), SAMPLE_RATE, 2);
+        float[][] buffer = buffer(0.5f, 0f, 16);
+
+        assertEquals(16, chain.process(buffer, 0, 16));
+        assertEquals(0.25f, buffer[0][0], 0f);
+        assertEquals(0.25f, buffer[1][15], 0f);
+    }
+
+    @Test
+    public void testSkipsSilence() {
+        DspChain chain = new DspChain(() -> DspConfig.parse("mono"), SAMPLE_RATE, 2);
+
+        // Below -100 dBFS on every channel: left exactly as it was, where a downmix would have changed it
+        float[][] buffer = buffer(0.000008f, -0.000008f, 16);
+        assertEquals(16, chain.process(buffer, 0, 16));
+        assertEquals(0.000008f, buffer[0][0], 0f);
+        assertEquals(-0.000008f, buffer[1][0], 0f);
+    }
+
+    @Test
+    public void testSilenceIsPerBuffer() {
+        DspChain chain = new DspChain(() -> DspConfig.parse("mono"), SAMPLE_RATE, 2);
+
+        // One loud sample is enough for the whole buffer to be filtered
+        float[][] buffer = buffer(0f, 0f, 16);
+        buffer[1][8] = 0.5f;
+        chain.process(buffer, 0, 16);
+        assertEquals(0.25f, buffer[0][8], 0f);
+
+        // Only the processed region is looked at
+        buffer = buffer(0f, 0f, 16);
+        buffer[1][0] = 0.5f;
+        chain.process(buffer, 8, 8);
+        assertEquals(0f, buffer[0][0], 0f);
+    }
+
+    @Test
+    public void testResetsAfterSilence() {
+        DspChain chain = new DspChain(() -> DspConfig.parse("highpass:200"), SAMPLE_RATE, 2);
+        chain.process(buffer(0.5f, -0.5f, 64), 0, 64);
+        chain.process(buffer(0f, 0f, 64), 0, 64);
+        float[][] after = buffer(0.3f, 0.3f, 64);
+        chain.process(after, 0, 64);
+
+        // Filters pick up from rest, as a fresh chain would
+        DspChain fresh = new DspChain(() -> DspConfig.parse("highpass:200"), SAMPLE_RATE, 2);
+        float[][] expected = buffer(0.3f, 0.3f, 64);
+        fresh.process(expected, 0, 64);
+
+        assertArrayEquals(expected[0], after[0], 0f);
+        assertArrayEquals(expected[1], after[1], 0f);
+    }
+
+    @Test
+    public void testFollowsConfiguration() {
+        AtomicReference<DspConfig> config = new AtomicReference<>(DspConfig.EMPTY);
+        DspChain chain = new DspChain(config::get, SAMPLE_RATE, 2);
+
+        float[][] buffer = buffer(0.5f, 0f, 16);
+        chain.process(buffer, 0, 16);
+        assertEquals(0.5f, buffer[0][0], 0f);
+
+        config.set(DspConfig.parse("mono"));
+        chain.process(buffer, 0, 16);
+        assertEquals(0.25f, buffer[0][0], 0f);
+    }
+}
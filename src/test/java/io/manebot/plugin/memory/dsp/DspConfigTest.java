@@ -0,0 +1,55 @@
+package io.manebot.plugin.memory.dsp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DspConfigTest {
+    @Test
+    public void testEmpty() {
+        assertSame(DspConfig.EMPTY, DspConfig.parse(""));
+        assertSame(DspConfig.EMPTY, DspConfig.parse(" , ,"));
+        assertEquals(0, DspConfig.EMPTY.create(48000f, 2).length);
+    }
+
+    @Test
+    public void testDefaults() {
+        DspConfig config = DspConfig.parse("highpass,gate,gain,limiter,mono");
+        assertEquals("highpass:80.0,gate:-60.0:0.1,gain:1.0,limiter:0.7:1.0:1.0E-4:0.5,mono", config.toString());
+        assertEquals(5, config.create(48000f, 2).length);
+    }
+
+    @Test
+    public void testParameters() {
+        DspConfig config = DspConfig.parse(" HighPass:100 , gate: -55 ,limiter:0.5:2");
+        assertEquals(3, config.getStages().size());
+        assertEquals("highpass", config.getStages().get(0).getName());
+        assertEquals("highpass:100.0,gate:-55.0:0.1,limiter:0.5:2.0:1.0E-4:0.5", config.toString());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        DspConfig config = DspConfig.parse("highpass:120,gate:-50:0.25,mono");
+        assertEquals(config.toString(), DspConfig.parse(config.toString()).toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownStage() {
+        DspConfig.parse("highpass,reverb");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyParameters() {
+        DspConfig.parse("highpass:80:2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParametersOnMono() {
+        DspConfig.parse("mono:1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedParameter() {
+        DspConfig.parse("gain:loud");
+    }
+}
@@ -0,0 +1,59 @@
+package io.manebot.plugin.memory.fingerprint;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FftTest {
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsOtherSizes() {
+        new Fft(48);
+    }
+
+    @Test
+    public void testMatchesDft() {
+        int size = 64;
+        Random random = new Random(1);
+        float[] re = new float[size];
+        float[] im = new float[size];
+        for (int i = 0; i < size; i ++) {
+            re[i] = random.nextFloat() * 2f - 1f;
+            im[i] = random.nextFloat() * 2f - 1f;
+        }
+
+        float[] expectedRe = new float[size];
+        float[] expectedIm = new float[size];
+        for (int k = 0; k < size; k ++) {
+            double sumRe = 0d, sumIm = 0d;
+            for (int n = 0; n < size; n ++) {
+                double angle = -2d * Math.PI * k * n / size;
+                sumRe += re[n] * Math.cos(angle) - im[n] * Math.sin(angle);
+                sumIm += re[n] * Math.sin(angle) + im[n] * Math.cos(angle);
+            }
+
+            expectedRe[k] = (float) sumRe;
+            expectedIm[k] = (float) sumIm;
+        }
+
+        new Fft(size).transform(re, im);
+        assertArrayEquals(expectedRe, re, 1e-3f);
+        assertArrayEquals(expectedIm, im, 1e-3f);
+    }
+
+    @Test
+    public void testToneLandsInItsBin() {
+        int size = 512;
+        float[] re = new float[size];
+        float[] im = new float[size];
+        for (int i = 0; i < size; i ++)
+            re[i] = (float) Math.cos(2d * Math.PI * 37 * i / size);
+
+        new Fft(size).transform(re, im);
+        assertEquals(size / 2f, re[37], 1e-2f);
+        assertEquals(size / 2f, re[size - 37], 1e-2f);
+        assertEquals(0f, re[36], 1e-2f);
+        assertEquals(0f, im[37], 1e-2f);
+    }
+}
@@ -0,0 +1,172 @@
+package io.manebot.plugin.memory.fingerprint;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FingerprinterTest {
+    private static final int SAMPLE_RATE = 8000;
+    private static final int HOP_SIZE = Math.round(Fingerprinter.FRAME_SECONDS * SAMPLE_RATE);
+
+    /**
+     * Makes a few seconds of tone bursts: every tenth of a second, a new chord of random pitches starts.
+     */
+    private static float[] bursts(long seed, int seconds) {
+        Random random = new Random(seed);
+        float[] samples = new float[SAMPLE_RATE * seconds];
+        int burst = SAMPLE_RATE / 10;
+        for (int start = 0; start < samples.length; start += burst) {
+            double[] frequencies = new double[3];
+            for (int i = 0; i < frequencies.length; i ++)
+                frequencies[i] = 100d + random.nextDouble() * 3500d;
+
+            for (int i = start; i < Math.min(samples.length, start + burst); i ++) {
+                float sample = 0f;
+                for (double frequency : frequencies)
+                    sample += (float) Math.sin(2d * Math.PI * frequency * i / SAMPLE_RATE) / frequencies.length;
+                samples[i] = sample * 0.5f;
+            }
+        }
+
+        return samples;
+    }
+
+    private static Fingerprint fingerprint(float[] samples, int from, int to) {
+        Fingerprinter fingerprinter = new Fingerprinter(SAMPLE_RATE, 1);
+        float[] chunk = new float[1000];
+        for (int position = from; position < to; position += chunk.length) {
+            int len = Math.min(chunk.length, to - position);
+            System.arraycopy(samples, position, chunk, 0, len);
+            fingerprinter.process(chunk, len);
+        }
+
+        return fingerprinter.finish();
+    }
+
+    /**
+     * Counts, for each frame offset, how many of the clip's hashes occur in the memory at that offset.
+     */
+    private static Map<Integer, Integer> vote(Fingerprint memory, Fingerprint clip) {
+        Map<Integer, List<Integer>> clipFrames = new HashMap<>();
+        for (int i = 0; i < clip.size(); i ++)
+            clipFrames.computeIfAbsent(clip.getHash(i), (hash) -> new ArrayList<>()).add(clip.getFrame(i));
+
+        Map<Integer, Integer> votes = new HashMap<>();
+        for (int i = 0; i < memory.size(); i ++)
+            for (int clipFrame : clipFrames.getOrDefault(memory.getHash(i), List.of()))
+                votes.merge(memory.getFrame(i) - clipFrame, 1, Integer::sum);
+
+        return votes;
+    }
+
+    private static int best(Map<Integer, Integer> votes) {
+        return votes.entrySet().stream().max(Map.Entry.comparingByValue()).map(Map.Entry::getKey).orElse(-1);
+    }
+
+    @Test
+    public void testSilenceMakesNoHashes() {
+        assertEquals(0, fingerprint(new float[SAMPLE_RATE * 2], 0, SAMPLE_RATE * 2).size());
+    }
+
+    @Test
+    public void testHashPacking() {
+        Fingerprint fingerprint = fingerprint(bursts(1L, 5), 0, SAMPLE_RATE * 5);
+        assertTrue(fingerprint.size() > 100);
+
+        for (int i = 0; i < fingerprint.size(); i ++) {
+            int hash = fingerprint.getHash(i);
+            int bin = hash >>> 12;
+            int binDelta = ((hash >>> 5) & 0x7F) - 63;
+            int frameDelta = hash & 0x1F;
+
+            assertTrue("bin " + bin, bin >= 1 && bin < 256);
+            assertTrue("bin delta " + binDelta, binDelta >= -63 && binDelta <= 63);
+            assertTrue("frame delta " + frameDelta, frameDelta >= 1 && frameDelta <= 31);
+            assertTrue("paired bin " + (bin + binDelta), bin + binDelta >= 1 && bin + binDelta < 256);
+            assertTrue(fingerprint.getFrame(i) >= 0);
+        }
+    }
+
+    @Test
+    public void testDeterministic() {
+        float[] samples = bursts(2L, 3);
+        Fingerprint a = fingerprint(samples, 0, samples.length);
+        Fingerprint b = fingerprint(samples, 0, samples.length);
+
+        assertEquals(a.size(), b.size());
+        for (int i = 0; i < a.size(); i ++) {
+            assertEquals(a.getHash(i), b.getHash(i));
+            assertEquals(a.getFrame(i), b.getFrame(i));
+        }
+    }
+
+    @Test
+    public void testClipVotesForItsOffset() {
+        float[] samples = bursts(3L, 10);
+        Fingerprint memory = fingerprint(samples, 0, samples.length);
+
+        int offset = 120;
+        int from = offset * HOP_SIZE;
+        Fingerprint clip = fingerprint(samples, from, from + SAMPLE_RATE * 3);
+
+        Map<Integer, Integer> votes = vote(memory, clip);
+        assertEquals(offset, best(votes));
+
+        // The true offset should stand well clear of chance agreement
+        int runnerUp = votes.entrySet().stream()
+                .filter(vote -> vote.getKey() != offset)
+                .mapToInt(Map.Entry::getValue).max().orElse(0);
+        assertTrue(votes.get(offset) + " vs " + runnerUp, votes.get(offset) > runnerUp * 4);
+    }
+
+    @Test
+    public void testSkipKeepsFramesInPlace() {
+        float[] samples = bursts(7L, 6);
+        Fingerprint memory = fingerprint(samples, 0, samples.length);
+
+        // The first two seconds were lost, e.g. overwritten before they could be read
+        int lost = SAMPLE_RATE * 2 + 123;
+        Fingerprinter fingerprinter = new Fingerprinter(SAMPLE_RATE, 1);
+        fingerprinter.skip(lost);
+        float[] rest = new float[samples.length - lost];
+        System.arraycopy(samples, lost, rest, 0, rest.length);
+        fingerprinter.process(rest, rest.length);
+        Fingerprint partial = fingerprinter.finish();
+
+        assertTrue(partial.size() > 0);
+        assertEquals(0, best(vote(memory, partial)));
+    }
+
+    @Test
+    public void testLouderClipStillMatches() {
+        float[] samples = bursts(4L, 6);
+        Fingerprint memory = fingerprint(samples, 0, samples.length);
+
+        int offset = 40;
+        float[] louder = samples.clone();
+        for (int i = 0; i < louder.length; i ++)
+            louder[i] *= 1.8f;
+
+        Fingerprint clip = fingerprint(louder, offset * HOP_SIZE, offset * HOP_SIZE + SAMPLE_RATE * 2);
+        assertEquals(offset, best(vote(memory, clip)));
+    }
+
+    @Test
+    public void testOtherAudioDoesNotMatch() {
+        float[] samples = bursts(5L, 6);
+        Fingerprint memory = fingerprint(samples, 0, samples.length);
+
+        float[] other = bursts(6L, 2);
+        Fingerprint clip = fingerprint(other, 0, other.length);
+        Map<Integer, Integer> votes = vote(memory, clip);
+
+        int top = votes.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+        assertTrue("top vote " + top + " of " + clip.size(), top < Math.max(5, clip.size() / 10));
+    }
+}
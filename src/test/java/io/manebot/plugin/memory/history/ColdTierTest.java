@@ -0,0 +1,154 @@
+package io.manebot.plugin.memory.history;
+
+import io.manebot.plugin.memory.buffer.SampleEncoding;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class ColdTierTest {
+    private static final int BLOCK_SIZE = 100;
+
+    /**
+     * Value of the sample at an absolute position, so any sample read back can be checked
+     */
+    static float valueAt(long position) {
+        return ((position * 7) % 1000) / 1000f - 0.5f;
+    }
+
+    private static byte[] block(HistoryCodec codec, long position) {
+        float[] samples = new float[BLOCK_SIZE];
+        for (int i = 0; i < BLOCK_SIZE; i ++)
+            samples[i] = valueAt(position + i);
+        return codec.compress(samples, BLOCK_SIZE);
+    }
+
+    private static ColdTier createTier(HistoryBudget budget, long maxSamples) {
+        return new ColdTier("test", new HeapHistoryStore(), new HistoryCodec(SampleEncoding.PCM16), budget,
+                BLOCK_SIZE, maxSamples);
+    }
+
+    @Test
+    public void testEmpty() {
+        ColdTier tier = createTier(new HistoryBudget(1_000_000L), 1000L);
+        assertEquals(0L, tier.getStartPosition());
+        assertEquals(0L, tier.getEndPosition());
+        assertEquals(0, tier.read(0L, new float[10], 0, 10));
+    }
+
+    @Test
+    public void testReadsWithinOneBlock() throws IOException {
+        HistoryCodec codec = new HistoryCodec(SampleEncoding.PCM16);
+        ColdTier tier = createTier(new HistoryBudget(1_000_000L), 1000L);
+        tier.append(200L, block(codec, 200L));
+        tier.append(300L, block(codec, 300L));
+
+        assertEquals(200L, tier.getStartPosition());
+        assertEquals(400L, tier.getEndPosition());
+        assertEquals(-1, tier.read(199L, new float[10], 0, 10));
+        assertEquals(0, tier.read(400L, new float[10], 0, 10));
+
+        // Reads stop at the end of the block they start in
+        float[] samples = new float[50];
+        assertEquals(20, tier.read(280L, samples, 0, 50));
+        for (int i = 0; i < 20; i ++)
+            assertEquals(valueAt(280L + i), samples[i], 2f / 32768f);
+
+        assertEquals(50, tier.read(300L, samples, 0, 50));
+        for (int i = 0; i < 50; i ++)
+            assertEquals(valueAt(300L + i), samples[i], 2f / 32768f);
+    }
+
+    @Test
+    public void testNonContiguousAppendStartsOver() throws IOException {
+        HistoryCodec codec = new HistoryCodec(SampleEncoding.PCM16);
+        HistoryBudget budget = new HistoryBudget(1_000_000L);
+        ColdTier tier = createTier(budget, 1000L);
+        tier.append(0L, block(codec, 0L));
+        tier.append(100L, block(codec, 100L));
+
+        // The ring restarted; the old blocks do not line up with the new timeline
+        byte[] data = block(codec, 500L);
+        tier.append(500L, data);
+        assertEquals(500L, tier.getStartPosition());
+        assertEquals(600L, tier.getEndPosition());
+        assertEquals(data.length, tier.getBytes());
+        assertEquals(data.length, budget.getUsedBytes());
+        assertEquals(-1, tier.read(100L, new float[10], 0, 10));
+    }
+
+    @Test
+    public void testEvictsPastItsLength() throws IOException {
+        HistoryBudget budget = new HistoryBudget(1_000_000L);
+        ColdTier tier = createTier(budget, 300L);
+        for (long position = 0L; position < 500L; position += BLOCK_SIZE)
+            tier.append(position, new byte[10]);
+
+        assertEquals(200L, tier.getStartPosition());
+        assertEquals(500L, tier.getEndPosition());
+        assertEquals(30L, tier.getBytes());
+        assertEquals(30L, budget.getUsedBytes());
+    }
+
+    @Test
+    public void testClearAndClose() throws IOException {
+        HistoryBudget budget = new HistoryBudget(1_000_000L);
+        ColdTier tier = createTier(budget, 1000L);
+        tier.append(0L, new byte[10]);
+        tier.append(100L, new byte[10]);
+        assertEquals(1, budget.getTierCount());
+
+        tier.clear();
+        assertEquals(0L, budget.getUsedBytes());
+        assertEquals(0L, tier.getBytes());
+
+        tier.append(100L, new byte[10]);
+        tier.close();
+        assertEquals(0L, budget.getUsedBytes());
+        assertEquals(0, budget.getTierCount());
+    }
+
+    @Test
+    public void testBudgetEvictsLeastRecentlyUsedTier() throws Exception {
+        HistoryBudget budget = new HistoryBudget(50L);
+        ColdTier quiet = createTier(budget, 10_000L);
+        ColdTier busy = createTier(budget, 10_000L);
+
+        quiet.append(0L, new byte[10]);
+        quiet.append(100L, new byte[10]);
+        quiet.append(200L, new byte[10]);
+        Thread.sleep(5L);
+        busy.append(0L, new byte[10]);
+        busy.append(100L, new byte[10]);
+        assertEquals(50L, budget.getUsedBytes());
+
+        // Over budget: the quiet tier gives up its oldest block
+        busy.append(200L, new byte[10]);
+        assertEquals(100L, quiet.getStartPosition());
+        assertEquals(0L, busy.getStartPosition());
+        assertEquals(50L, budget.getUsedBytes());
+
+        // Once the quiet tier is used again, the busy one is the least recently used
+        Thread.sleep(5L);
+        quiet.touch();
+        Thread.sleep(5L);
+        quiet.append(300L, new byte[10]);
+        assertEquals(100L, quiet.getStartPosition());
+        assertEquals(100L, busy.getStartPosition());
+        assertEquals(50L, budget.getUsedBytes());
+    }
+
+    @Test
+    public void testBudgetEvictsFromTheAppendingTierLast() throws IOException {
+        HistoryBudget budget = new HistoryBudget(25L);
+        ColdTier tier = createTier(budget, 10_000L);
+        tier.append(0L, new byte[10]);
+        tier.append(100L, new byte[10]);
+        tier.append(200L, new byte[10]);
+
+        // With no other tier to take from, the tier itself gives up its oldest audio
+        assertEquals(100L, tier.getStartPosition());
+        assertEquals(20L, budget.getUsedBytes());
+    }
+}
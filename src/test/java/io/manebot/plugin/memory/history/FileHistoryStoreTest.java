@@ -0,0 +1,62 @@
+package io.manebot.plugin.memory.history;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class FileHistoryStoreTest {
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("memory-history");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testPutGetRemove() throws IOException {
+        FileHistoryStore store = new FileHistoryStore(directory.resolve("tier"));
+        store.put(100L, new byte[] { 1, 2, 3 });
+        store.put(200L, new byte[] { 4 });
+
+        assertArrayEquals(new byte[] { 1, 2, 3 }, store.get(100L));
+        store.remove(100L);
+        try {
+            store.get(100L);
+            fail("removed block was read");
+        } catch (NoSuchFileException ex) {
+            // Removed
+        }
+
+        assertArrayEquals(new byte[] { 4 }, store.get(200L));
+    }
+
+    @Test
+    public void testForgetsStaleBlocks() throws IOException {
+        new FileHistoryStore(directory).put(100L, new byte[] { 1 });
+
+        // Positions of a previous run do not line up with the new ring
+        FileHistoryStore store = new FileHistoryStore(directory);
+        try {
+            store.get(100L);
+            fail("stale block was read");
+        } catch (NoSuchFileException ex) {
+            // Cleared
+        }
+    }
+}
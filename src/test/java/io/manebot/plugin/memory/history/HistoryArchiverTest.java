@@ -0,0 +1,92 @@
+package io.manebot.plugin.memory.history;
+
+import io.manebot.plugin.memory.buffer.MemoryRing;
+import io.manebot.plugin.memory.buffer.SampleEncoding;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistoryArchiverTest {
+    private static final int BLOCK_SIZE = 100;
+
+    static void write(MemoryRing ring, int len) {
+        float[] samples = new float[len];
+        long position = ring.getPosition();
+        for (int i = 0; i < len; i ++)
+            samples[i] = ColdTierTest.valueAt(position + i);
+        ring.write(samples, len);
+    }
+
+    static ColdTier createTier(long maxSamples) {
+        return new ColdTier("test", new HeapHistoryStore(), new HistoryCodec(SampleEncoding.PCM16),
+                new HistoryBudget(1_000_000L), BLOCK_SIZE, maxSamples);
+    }
+
+    static void assertTier(ColdTier tier, long from, long to) {
+        float[] samples = new float[BLOCK_SIZE];
+        for (long position = from; position < to; ) {
+            int read = tier.read(position, samples, 0, samples.length);
+            assertTrue("read at " + position + ": " + read, read > 0);
+            for (int i = 0; i < read; i ++)
+                assertEquals("sample " + (position + i), ColdTierTest.valueAt(position + i), samples[i], 2f / 32768f);
+            position += read;
+        }
+    }
+
+    @Test
+    public void testArchivesCompletedBlocks() {
+        MemoryRing ring = new MemoryRing(1000);
+        ColdTier tier = createTier(10_000L);
+        HistoryArchiver archiver = new HistoryArchiver(() -> ring, tier, new HistoryCodec(SampleEncoding.PCM16));
+
+        write(ring, 250);
+        archiver.run();
+        assertEquals(0L, tier.getStartPosition());
+        assertEquals(200L, tier.getEndPosition());
+
+        write(ring, 60);
+        archiver.run();
+        assertEquals(300L, tier.getEndPosition());
+        assertTier(tier, 0L, 300L);
+    }
+
+    @Test
+    public void testSkipsOverwrittenAudio() {
+        MemoryRing ring = new MemoryRing(1000);
+        ColdTier tier = createTier(10_000L);
+        HistoryArchiver archiver = new HistoryArchiver(() -> ring, tier, new HistoryCodec(SampleEncoding.PCM16));
+
+        write(ring, 200);
+        archiver.run();
+
+        // The archiver fell behind a whole ring; what was lost leaves a gap, so the tier starts over past it
+        write(ring, 1350);
+        archiver.run();
+        assertEquals(600L, tier.getStartPosition());
+        assertEquals(1500L, tier.getEndPosition());
+        assertTier(tier, 600L, 1500L);
+    }
+
+    @Test
+    public void testReleasedRingKeepsTier() {
+        MemoryRing[] ring = { new MemoryRing(1000) };
+        ColdTier tier = createTier(10_000L);
+        HistoryArchiver archiver = new HistoryArchiver(() -> ring[0], tier, new HistoryCodec(SampleEncoding.PCM16));
+
+        write(ring[0], 300);
+        archiver.run();
+
+        ring[0] = null;
+        archiver.run();
+        assertEquals(0L, tier.getStartPosition());
+        assertEquals(300L, tier.getEndPosition());
+
+        // A new heap ring restarts the timeline at 0, which does not continue the tier
+        ring[0] = new MemoryRing(1000);
+        write(ring[0], 150);
+        archiver.run();
+        assertEquals(0L, tier.getStartPosition());
+        assertEquals(100L, tier.getEndPosition());
+        assertTier(tier, 0L, 100L);
+    }
+}
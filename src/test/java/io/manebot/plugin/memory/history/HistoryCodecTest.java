@@ -0,0 +1,90 @@
+package io.manebot.plugin.memory.history;
+
+import io.manebot.plugin.memory.buffer.SampleEncoding;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HistoryCodecTest {
+    private static float[] noise(long seed, int len) {
+        Random random = new Random(seed);
+        float[] samples = new float[len];
+        for (int i = 0; i < len; i ++)
+            samples[i] = random.nextFloat() * 1.8f - 0.9f;
+        return samples;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsFloat32() {
+        new HistoryCodec(SampleEncoding.FLOAT32);
+    }
+
+    @Test
+    public void testPcm16RoundTrip() throws IOException {
+        HistoryCodec codec = new HistoryCodec(SampleEncoding.PCM16);
+        float[] samples = noise(1L, 1000);
+        float[] decoded = new float[1000];
+        codec.decompress(codec.compress(samples, 1000), decoded, 1000);
+
+        assertArrayEquals(samples, decoded, 2f / 32768f);
+    }
+
+    @Test
+    public void testMuLawRoundTrip() throws IOException {
+        HistoryCodec codec = new HistoryCodec(SampleEncoding.MULAW);
+        float[] samples = noise(2L, 1000);
+        float[] decoded = new float[1000];
+        codec.decompress(codec.compress(samples, 1000), decoded, 1000);
+
+        for (int i = 0; i < samples.length; i ++)
+            assertEquals(samples[i], decoded[i], Math.max(Math.abs(samples[i]) / 16f, 8f / 32768f));
+    }
+
+    @Test
+    public void testCompressesOnlyTheLengthGiven() throws IOException {
+        HistoryCodec codec = new HistoryCodec(SampleEncoding.PCM16);
+        float[] samples = noise(3L, 1000);
+
+        // A large block first, so the codec's scratch buffer is larger than the next block
+        codec.compress(noise(4L, 4000), 4000);
+        byte[] data = codec.compress(samples, 500);
+
+        float[] decoded = new float[1000];
+        Arrays.fill(decoded, 7f);
+        codec.decompress(data, decoded, 500);
+        assertArrayEquals(Arrays.copyOf(samples, 500), Arrays.copyOf(decoded, 500), 2f / 32768f);
+        assertEquals(7f, decoded[500], 0f);
+    }
+
+    @Test
+    public void testSilenceCompresses() {
+        HistoryCodec codec = new HistoryCodec(SampleEncoding.PCM16);
+        assertTrue(codec.compress(new float[48000], 48000).length < 48000 * 2 / 100);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedBlock() throws IOException {
+        HistoryCodec codec = new HistoryCodec(SampleEncoding.PCM16);
+        byte[] data = codec.compress(noise(5L, 1000), 1000);
+        codec.decompress(Arrays.copyOf(data, data.length / 2), new float[1000], 1000);
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptBlock() throws IOException {
+        HistoryCodec codec = new HistoryCodec(SampleEncoding.PCM16);
+        byte[] data = new byte[64];
+        Arrays.fill(data, (byte) 0x5A);
+        codec.decompress(data, new float[1000], 1000);
+    }
+
+    @Test(expected = IOException.class)
+    public void testShortBlock() throws IOException {
+        // A block of fewer samples than asked for is as bad as a truncated one
+        HistoryCodec codec = new HistoryCodec(SampleEncoding.PCM16);
+        codec.decompress(codec.compress(noise(6L, 500), 500), new float[1000], 1000);
+    }
+}
@@ -0,0 +1,89 @@
+package io.manebot.plugin.memory.history;
+
+import io.manebot.plugin.memory.buffer.MemoryRing;
+import io.manebot.plugin.memory.buffer.SampleEncoding;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TieredSourceTest {
+    private static void assertReads(TieredSource source, long from, long to) {
+        float[] samples = new float[64];
+        for (long position = from; position < to; ) {
+            int read = source.read(position, samples, 0, samples.length);
+            assertTrue("read at " + position + ": " + read, read > 0);
+            for (int i = 0; i < read; i ++)
+                assertEquals("sample " + (position + i), ColdTierTest.valueAt(position + i), samples[i], 2f / 32768f);
+            position += read;
+        }
+    }
+
+    @Test
+    public void testReadsAcrossTierAndRing() {
+        MemoryRing ring = new MemoryRing(1000);
+        ColdTier tier = HistoryArchiverTest.createTier(10_000L);
+        HistoryArchiver archiver = new HistoryArchiver(() -> ring, tier, new HistoryCodec(SampleEncoding.PCM16));
+        for (int i = 0; i < 30; i ++) {
+            HistoryArchiverTest.write(ring, 100);
+            archiver.run();
+        }
+
+        TieredSource source = new TieredSource(tier, ring, 500L, 3000L);
+        assertEquals(500L, source.getValidPosition());
+        assertEquals(-1, source.read(499L, new float[10], 0, 10));
+        assertReads(source, 500L, 3000L);
+        assertEquals(0, source.read(3000L, new float[10], 0, 10));
+    }
+
+    @Test
+    public void testHoleBetweenTierAndRing() {
+        MemoryRing ring = new MemoryRing(1000);
+        ColdTier tier = HistoryArchiverTest.createTier(10_000L);
+        HistoryArchiver archiver = new HistoryArchiver(() -> ring, tier, new HistoryCodec(SampleEncoding.PCM16));
+        HistoryArchiverTest.write(ring, 1000);
+        archiver.run();
+
+        // The archiver stalled while the ring moved on a whole ring and more
+        HistoryArchiverTest.write(ring, 2000);
+        assertEquals(1000L, tier.getEndPosition());
+        assertEquals(2000L, ring.getValidPosition());
+
+        TieredSource source = new TieredSource(tier, ring, 0L, 3000L);
+        assertEquals(2000L, source.getValidPosition());
+        assertEquals(-1, source.read(1500L, new float[10], 0, 10));
+        assertReads(source, 2000L, 3000L);
+    }
+
+    @Test
+    public void testReleasedRing() {
+        MemoryRing ring = new MemoryRing(1000);
+        ColdTier tier = HistoryArchiverTest.createTier(10_000L);
+        HistoryArchiver archiver = new HistoryArchiver(() -> ring, tier, new HistoryCodec(SampleEncoding.PCM16));
+        for (int i = 0; i < 15; i ++) {
+            HistoryArchiverTest.write(ring, 100);
+            archiver.run();
+        }
+
+        TieredSource source = new TieredSource(tier, null, 200L, tier.getEndPosition());
+        assertEquals(200L, source.getValidPosition());
+        assertReads(source, 200L, 1500L);
+        assertEquals(0, source.read(1500L, new float[10], 0, 10));
+    }
+
+    @Test
+    public void testEvictedTier() {
+        MemoryRing ring = new MemoryRing(1000);
+        ColdTier tier = HistoryArchiverTest.createTier(500L);
+        HistoryArchiver archiver = new HistoryArchiver(() -> ring, tier, new HistoryCodec(SampleEncoding.PCM16));
+        for (int i = 0; i < 20; i ++) {
+            HistoryArchiverTest.write(ring, 100);
+            archiver.run();
+        }
+
+        // The tier only remembers 500 samples, all still in the ring; the ring is the oldest readable audio
+        TieredSource source = new TieredSource(tier, ring, 0L, 2000L);
+        assertEquals(1000L, source.getValidPosition());
+        assertEquals(-1, source.read(900L, new float[10], 0, 10));
+        assertReads(source, 1000L, 2000L);
+    }
+}
@@ -0,0 +1,204 @@
+package io.manebot.plugin.memory.resample;
+
+import io.manebot.plugin.audio.resample.Resampler;
+
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ResamplerPoolTest {
+    private static final AudioFormat MONO = new AudioFormat(44100f, 16, 1, true, false);
+    private static final AudioFormat STEREO = new AudioFormat(48000f, 16, 2, true, false);
+
+    private static final class FakeResampler implements Resampler {
+        private final AudioFormat source;
+        private final AudioFormat target;
+        private final int bufferSize;
+
+        private int leftover;
+        private boolean failing;
+        private boolean closed;
+
+        private FakeResampler(AudioFormat source, AudioFormat target, int bufferSize) {
+            this.source = source;
+            this.target = target;
+            this.bufferSize = bufferSize;
+        }
+
+        @Override
+        public AudioFormat getInputFormat() {
+            return source;
+        }
+
+        @Override
+        public AudioFormat getOutputFormat() {
+            return target;
+        }
+
+        @Override
+        public int resample(float[] in, int inLen, float[] out, int outOffs) {
+            leftover += inLen;
+            return 0;
+        }
+
+        @Override
+        public int flush(float[] out, int outOffs) {
+            if (failing)
+                throw new IllegalStateException("flush failed");
+
+            int flushed = Math.min(leftover, out.length - outOffs);
+            leftover -= flushed;
+            return flushed;
+        }
+
+        @Override
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private final List<FakeResampler> created = new ArrayList<>();
+
+    private ResamplerPool createPool(int maximumIdle, long maximumIdleMillis) {
+        return new ResamplerPool(maximumIdle, maximumIdleMillis, (source, target, bufferSize) -> {
+            FakeResampler resampler = new FakeResampler(source, target, bufferSize);
+            created.add(resampler);
+            return resampler;
+        });
+    }
+
+    private static void close(Resampler resampler) {
+        ResamplerPool.closeQuietly(resampler);
+    }
+
+    @Test
+    public void testReusesPerFormatPair() {
+        ResamplerPool pool = createPool(4, 60_000L);
+
+        Resampler first = pool.acquire(MONO, STEREO, 64);
+        assertEquals(1, pool.getActiveCount());
+        close(first);
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+
+        assertSame(first, pool.acquire(MONO, STEREO, 64));
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(1, created.size());
+
+        // Another format pair, or buffer size, gets its own resampler
+        assertNotSame(first, pool.acquire(STEREO, MONO, 64));
+        assertNotSame(first, pool.acquire(MONO, STEREO, 128));
+        assertEquals(3, created.size());
+        assertEquals(3, pool.getActiveCount());
+    }
+
+    @Test
+    public void testDoesNotShareActive() {
+        ResamplerPool pool = createPool(4, 60_000L);
+        Resampler first = pool.acquire(MONO, STEREO, 64);
+        Resampler second = pool.acquire(MONO, STEREO, 64);
+
+        assertNotSame(first, second);
+        assertEquals(2, created.size());
+    }
+
+    @Test
+    public void testFlushesOnRelease() {
+        ResamplerPool pool = createPool(4, 60_000L);
+        Resampler resampler = pool.acquire(MONO, STEREO, 16);
+        resampler.resample(new float[100], 100, new float[16], 0);
+        close(resampler);
+
+        // Returned without the previous stream's leftovers, and without being destroyed
+        assertEquals(0, created.get(0).leftover);
+        assertFalse(created.get(0).closed);
+    }
+
+    @Test
+    public void testEvictsEldestAtCap() {
+        ResamplerPool pool = createPool(2, 60_000L);
+        List<Resampler> resamplers = new ArrayList<>();
+        for (int i = 0; i < 3; i ++)
+            resamplers.add(pool.acquire(MONO, STEREO, 64));
+
+        resamplers.forEach(ResamplerPoolTest::close);
+
+        assertEquals(2, pool.getIdleCount());
+        assertTrue(created.get(0).closed);
+        assertFalse(created.get(1).closed);
+        assertFalse(created.get(2).closed);
+
+        // The least recently returned of the survivors goes out first
+        assertSame(resamplers.get(1), pool.acquire(MONO, STEREO, 64));
+    }
+
+    @Test
+    public void testEvictsExpired() {
+        ResamplerPool pool = createPool(2, 0L);
+        Resampler first = pool.acquire(MONO, STEREO, 64);
+        close(first);
+
+        assertNotSame(first, pool.acquire(MONO, STEREO, 64));
+        assertTrue(created.get(0).closed);
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void testNoIdle() {
+        ResamplerPool pool = createPool(0, 60_000L);
+        close(pool.acquire(MONO, STEREO, 64));
+
+        assertTrue(created.get(0).closed);
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void testCloseTwice() {
+        ResamplerPool pool = createPool(2, 60_000L);
+        Resampler resampler = pool.acquire(MONO, STEREO, 64);
+        close(resampler);
+        close(resampler);
+
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void testDiscardsOnFlushFailure() {
+        ResamplerPool pool = createPool(2, 60_000L);
+        Resampler resampler = pool.acquire(MONO, STEREO, 64);
+        created.get(0).failing = true;
+        close(resampler);
+
+        assertTrue(created.get(0).closed);
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void testReleaseAfterClose() {
+        ResamplerPool pool = createPool(2, 60_000L);
+        Resampler idle = pool.acquire(MONO, STEREO, 64);
+        Resampler active = pool.acquire(MONO, STEREO, 64);
+        close(idle);
+
+        pool.close();
+        assertTrue(created.get(0).closed);
+        assertFalse(created.get(1).closed);
+
+        // Still-active resamplers are destroyed, not pooled, when they come back
+        close(active);
+        assertTrue(created.get(1).closed);
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(0, pool.getIdleCount());
+    }
+}
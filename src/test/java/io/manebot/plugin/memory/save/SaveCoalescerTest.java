@@ -0,0 +1,105 @@
+package io.manebot.plugin.memory.save;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SaveCoalescerTest {
+    @Test
+    public void testFirstSaveIsWritten() {
+        assertFalse(new SaveCoalescer().claim(1000L).isReference());
+    }
+
+    @Test
+    public void testSamePositionReferencesPreviousSave() {
+        SaveCoalescer coalescer = new SaveCoalescer();
+        SaveCoalescer.Slot written = coalescer.claim(1000L);
+        SaveCoalescer.Slot reference = coalescer.claim(1000L);
+
+        assertTrue(reference.isReference());
+        assertSame(written.getFuture(), reference.getFuture());
+    }
+
+    @Test
+    public void testNewAudioIsWritten() {
+        SaveCoalescer coalescer = new SaveCoalescer();
+        SaveCoalescer.Slot written = coalescer.claim(1000L);
+        SaveCoalescer.Slot next = coalescer.claim(1001L);
+
+        assertFalse(next.isReference());
+        assertNotSame(written.getFuture(), next.getFuture());
+
+        // The newer save is the one later saves are compared against
+        assertTrue(coalescer.claim(1001L).isReference());
+        assertFalse(coalescer.claim(1000L).isReference());
+    }
+
+    @Test
+    public void testNoReferenceAfterFailedSave() {
+        SaveCoalescer coalescer = new SaveCoalescer();
+        SaveCoalescer.Slot written = coalescer.claim(1000L);
+
+        CompletableFuture<SaveResult> save = new CompletableFuture<>();
+        written.complete(save);
+        save.completeExceptionally(new IllegalStateException("disk full"));
+
+        assertFalse(coalescer.claim(1000L).isReference());
+    }
+
+    @Test
+    public void testReferenceAfterSuccessfulSave() throws Exception {
+        SaveCoalescer coalescer = new SaveCoalescer();
+        SaveCoalescer.Slot written = coalescer.claim(1000L);
+
+        SaveResult result = new SaveResult(null, 0L, 1000L);
+        written.complete(CompletableFuture.completedFuture(result));
+
+        SaveCoalescer.Slot reference = coalescer.claim(1000L);
+        assertTrue(reference.isReference());
+        assertSame(result, reference.getFuture().get(1L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testConcurrentClaimsWriteOnce() throws Exception {
+        SaveCoalescer coalescer = new SaveCoalescer();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger writes = new AtomicInteger();
+        List<SaveCoalescer.Slot> slots = new ArrayList<>();
+        List<Thread> claimers = new ArrayList<>();
+        for (int i = 0; i < threads; i ++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                SaveCoalescer.Slot slot = coalescer.claim(1000L);
+                if (!slot.isReference())
+                    writes.incrementAndGet();
+                synchronized (slots) {
+                    slots.add(slot);
+                }
+            });
+            thread.start();
+            claimers.add(thread);
+        }
+
+        start.countDown();
+        for (Thread thread : claimers)
+            thread.join(5000L);
+
+        assertEquals(1, writes.get());
+        assertEquals(threads, slots.size());
+        for (SaveCoalescer.Slot slot : slots)
+            assertSame(slots.get(0).getFuture(), slot.getFuture());
+    }
+}
@@ -0,0 +1,85 @@
+package io.manebot.plugin.memory.save;
+
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SaveExecutorTest {
+    @Test(expected = IllegalArgumentException.class)
+    public void testDiscardOldestNeedsQueue() {
+        new SaveExecutor(1, 0, RejectionPolicy.DISCARD_OLDEST);
+    }
+
+    @Test
+    public void testDiscardOldestCancelsQueuedSave() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (SaveExecutor executor = new SaveExecutor(1, 1, RejectionPolicy.DISCARD_OLDEST)) {
+            CompletableFuture<String> running = executor.submit(() -> {
+                started.countDown();
+                release.await();
+                return "running";
+            });
+            assertTrue(started.await(5L, TimeUnit.SECONDS));
+
+            CompletableFuture<String> oldest = executor.submit(() -> "oldest");
+            CompletableFuture<String> newest = executor.submit(() -> "newest");
+            release.countDown();
+
+            assertEquals("running", running.get(5L, TimeUnit.SECONDS));
+            assertEquals("newest", newest.get(5L, TimeUnit.SECONDS));
+            try {
+                oldest.get(5L, TimeUnit.SECONDS);
+                fail("oldest save was not cancelled");
+            } catch (CancellationException ex) {
+                // Cancelled to make room for the newest save
+            }
+        }
+    }
+
+    @Test
+    public void testCallerRunsWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (SaveExecutor executor = new SaveExecutor(1, 0, RejectionPolicy.CALLER_RUNS)) {
+            executor.submit(() -> {
+                release.await();
+                return null;
+            });
+
+            Thread caller = Thread.currentThread();
+            CompletableFuture<Thread> ran = executor.submit(Thread::currentThread);
+            release.countDown();
+            assertSame(caller, ran.get(5L, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testCallerRunsRejectsAfterClose() {
+        SaveExecutor executor = new SaveExecutor(1, 1, RejectionPolicy.CALLER_RUNS);
+        executor.close();
+        executor.submit(() -> null);
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testAbortWithoutQueue() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (SaveExecutor executor = new SaveExecutor(1, 0, RejectionPolicy.ABORT)) {
+            executor.submit(() -> {
+                release.await();
+                return null;
+            });
+
+            try {
+                executor.submit(() -> null);
+            } finally {
+                release.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package io.manebot.plugin.memory.trim;
+
+import io.manebot.plugin.memory.buffer.MemorySnapshot;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ThresholdTrimmerTest {
+    private static final float SAMPLE_RATE = 1000f;
+
+    /**
+     * -50 dBFS threshold, 10 frame windows and 100 frames of hold at 1 kHz
+     */
+    private static TrimRegion trim(float[] samples, long position, int channels) {
+        return new ThresholdTrimmer(-50f, 0.01f, 0.1f)
+                .trim(new MemorySnapshot(samples, samples.length, position), SAMPLE_RATE, channels, new float[256]);
+    }
+
+    private static void tone(float[] samples, int from, int to, float amplitude) {
+        for (int i = from; i < to; i ++)
+            samples[i] = (float) (amplitude * Math.sin(2d * Math.PI * 50d * i / SAMPLE_RATE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsEmptyWindow() {
+        new ThresholdTrimmer(-50f, 0f, 0.1f);
+    }
+
+    @Test
+    public void testAllSilence() {
+        assertEquals(0L, trim(new float[2000], 0L, 1).getLength());
+    }
+
+    @Test
+    public void testDitherBelowThreshold() {
+        // About -80 dBFS of noise, well under the threshold
+        Random random = new Random(1);
+        float[] samples = new float[2000];
+        for (int i = 0; i < samples.length; i ++)
+            samples[i] = (random.nextFloat() * 2f - 1f) * 1e-4f;
+
+        assertEquals(0L, trim(samples, 0L, 1).getLength());
+    }
+
+    @Test
+    public void testHoldPadsSignal() {
+        float[] samples = new float[2000];
+        tone(samples, 800, 1000, 0.5f);
+
+        TrimRegion region = trim(samples, 10_000L, 1);
+        assertEquals(10_000L + 700L, region.getStart());
+        assertEquals(10_000L + 1100L, region.getEnd());
+    }
+
+    @Test
+    public void testHoldStaysWithinSource() {
+        float[] samples = new float[2000];
+        tone(samples, 0, 50, 0.5f);
+        tone(samples, 1950, 2000, 0.5f);
+
+        TrimRegion region = trim(samples, 0L, 1);
+        assertEquals(0L, region.getStart());
+        assertEquals(2000L, region.getEnd());
+    }
+
+    @Test
+    public void testKeepsSingleNoisyLastFrame() {
+        float[] samples = new float[2000];
+        samples[1999] = 0.5f;
+
+        TrimRegion region = trim(samples, 0L, 1);
+        assertEquals(1990L - 100L, region.getStart());
+        assertEquals(2000L, region.getEnd());
+    }
+
+    @Test
+    public void testMultichannelFrames() {
+        // Stereo with the tone in the left channel only; windows and hold are whole frames
+        float[] samples = new float[4000];
+        for (int frame = 800; frame < 1000; frame ++)
+            samples[frame * 2] = (float) (0.5d * Math.sin(2d * Math.PI * 50d * frame / SAMPLE_RATE));
+
+        TrimRegion region = trim(samples, 0L, 2);
+        assertEquals(700L * 2, region.getStart());
+        assertEquals(1100L * 2, region.getEnd());
+        assertEquals(0L, region.getStart() % 2);
+    }
+}
@@ -0,0 +1,72 @@
+package io.manebot.plugin.memory.trim;
+
+import io.manebot.plugin.memory.buffer.MemorySnapshot;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ZeroTrimmerTest {
+    private static TrimRegion trim(float[] samples, long position, int channels, int bufferSize) {
+        return new ZeroTrimmer().trim(new MemorySnapshot(samples, samples.length, position), 1000f, channels,
+                new float[bufferSize]);
+    }
+
+    @Test
+    public void testAllSilence() {
+        TrimRegion region = trim(new float[1000], 500L, 1, 64);
+        assertEquals(0L, region.getLength());
+    }
+
+    @Test
+    public void testSignalInTheMiddle() {
+        float[] samples = new float[1000];
+        samples[300] = 0.5f;
+        samples[700] = -0.5f;
+
+        TrimRegion region = trim(samples, 500L, 1, 64);
+        assertEquals(800L, region.getStart());
+        assertEquals(1201L, region.getEnd());
+    }
+
+    @Test
+    public void testKeepsLastNoisyFrame() {
+        float[] samples = new float[1000];
+        samples[999] = 0.25f;
+
+        TrimRegion region = trim(samples, 0L, 1, 64);
+        assertEquals(999L, region.getStart());
+        assertEquals(1000L, region.getEnd());
+    }
+
+    @Test
+    public void testKeepsFirstNoisyFrame() {
+        float[] samples = new float[1000];
+        samples[0] = 0.25f;
+
+        TrimRegion region = trim(samples, 0L, 1, 64);
+        assertEquals(0L, region.getStart());
+        assertEquals(1L, region.getEnd());
+    }
+
+    @Test
+    public void testMultichannelFrames() {
+        // Signal only in the right channel of frame 100; the whole frame is kept
+        float[] samples = new float[2000];
+        samples[201] = 0.1f;
+
+        TrimRegion region = trim(samples, 0L, 2, 64);
+        assertEquals(200L, region.getStart());
+        assertEquals(202L, region.getEnd());
+    }
+
+    @Test
+    public void testSignalAcrossBlocks() {
+        float[] samples = new float[1000];
+        for (int i = 60; i < 70; i ++)
+            samples[i] = 0.1f;
+
+        TrimRegion region = trim(samples, 0L, 1, 64);
+        assertEquals(60L, region.getStart());
+        assertEquals(70L, region.getEnd());
+    }
+}
@@ -0,0 +1,101 @@
+package io.manebot.plugin.memory.vad;
+
+import io.manebot.plugin.memory.buffer.MemoryRing;
+import io.manebot.plugin.memory.buffer.MemorySnapshot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SpeechSourceTest {
+    /**
+     * Snapshot at position 1000 whose samples are their own offsets
+     */
+    private static MemorySnapshot createSnapshot(int length) {
+        float[] samples = new float[length];
+        for (int i = 0; i < length; i ++)
+            samples[i] = i;
+
+        return new MemorySnapshot(samples, length, 1000L);
+    }
+
+    @Test
+    public void testCollapsesSilence() {
+        SpeechSource source = new SpeechSource(createSnapshot(200), Arrays.asList(
+                new VoiceSegment(1010L, 1020L, 0f),
+                new VoiceSegment(1050L, 1055L, 0f),
+                new VoiceSegment(1100L, 1130L, 0f)
+        ));
+
+        assertEquals(0L, source.getPosition());
+        assertEquals(45L, source.getEndPosition());
+        assertEquals(0L, source.getValidPosition());
+
+        float[] samples = new float[100];
+
+        // Reads stop at the end of a segment
+        assertEquals(10, source.read(0L, samples, 0, 100));
+        assertEquals(10f, samples[0], 0f);
+        assertEquals(19f, samples[9], 0f);
+
+        assertEquals(3, source.read(12L, samples, 0, 100));
+        assertArrayEquals(new float[] { 52f, 53f, 54f }, Arrays.copyOf(samples, 3), 0f);
+
+        assertEquals(30, source.read(15L, samples, 0, 100));
+        assertEquals(100f, samples[0], 0f);
+
+        assertEquals(1, source.read(44L, samples, 0, 100));
+        assertEquals(129f, samples[0], 0f);
+
+        assertEquals(0, source.read(45L, samples, 0, 100));
+    }
+
+    @Test
+    public void testFindsEverySegment() {
+        List<VoiceSegment> segments = new ArrayList<>();
+        for (int i = 0; i < 50; i ++)
+            segments.add(new VoiceSegment(1000L + i * 20, 1000L + i * 20 + (i % 3) + 1, 0f));
+
+        SpeechSource source = new SpeechSource(createSnapshot(1000), segments);
+
+        float[] sample = new float[1];
+        long position = 0L;
+        for (VoiceSegment segment : segments) {
+            for (long at = segment.getStart(); at < segment.getEnd(); at ++, position ++) {
+                assertEquals(1, source.read(position, sample, 0, 1));
+                assertEquals((float) (at - 1000L), sample[0], 0f);
+            }
+        }
+
+        assertEquals(position, source.getEndPosition());
+        assertEquals(0, source.read(position, sample, 0, 1));
+    }
+
+    @Test
+    public void testEmpty() {
+        SpeechSource source = new SpeechSource(createSnapshot(10), new ArrayList<>());
+        assertEquals(0L, source.getEndPosition());
+        assertEquals(0, source.read(0L, new float[1], 0, 1));
+    }
+
+    @Test
+    public void testValidPositionFollowsOverwrites() {
+        MemoryRing ring = new MemoryRing(100);
+        ring.write(new float[250], 250);
+
+        // The ring still holds [150, 250)
+        SpeechSource source = new SpeechSource(ring.window(0), Arrays.asList(
+                new VoiceSegment(120L, 140L, 0f),
+                new VoiceSegment(140L, 180L, 0f),
+                new VoiceSegment(200L, 220L, 0f)
+        ));
+
+        assertEquals(30L, source.getValidPosition());
+        assertEquals(-1, source.read(0L, new float[10], 0, 10));
+        assertEquals(30, source.read(30L, new float[30], 0, 30));
+    }
+}
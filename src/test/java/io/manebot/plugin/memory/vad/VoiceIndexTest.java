@@ -0,0 +1,157 @@
+package io.manebot.plugin.memory.vad;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class VoiceIndexTest {
+    private static final AudioFormat FORMAT = new AudioFormat(1000f, 16, 1, true, false);
+
+    /**
+     * -20 dBFS threshold, 10 sample windows and a 50 sample hold
+     */
+    private static final VoiceOptions OPTIONS = new VoiceOptions(-20f, 0.01f, 0.05f);
+
+    private VoiceIndex index;
+    private long position;
+
+    @Before
+    public void setUp() {
+        index = new VoiceIndex(FORMAT, OPTIONS, 16);
+        position = 0L;
+    }
+
+    private void write(int len, float level) {
+        float[] samples = new float[len];
+        Arrays.fill(samples, level);
+        index.process(position, samples, len);
+        position += len;
+    }
+
+    private static void assertSegment(long start, long end, VoiceSegment segment) {
+        assertEquals(start, segment.getStart());
+        assertEquals(end, segment.getEnd());
+    }
+
+    @Test
+    public void testMergesGapsWithinHold() {
+        write(100, 0.5f);
+        write(50, 0f);
+        write(100, 0.5f);
+
+        List<VoiceSegment> segments = index.getSegments(0L, position);
+        assertEquals(1, segments.size());
+        assertSegment(0L, 250L, segments.get(0));
+    }
+
+    @Test
+    public void testSplitsGapsBeyondHold() {
+        write(100, 0.5f);
+        write(60, 0f);
+        write(100, 0.5f);
+
+        List<VoiceSegment> segments = index.getSegments(0L, position);
+        assertEquals(2, segments.size());
+        assertSegment(0L, 100L, segments.get(0));
+        assertSegment(160L, 260L, segments.get(1));
+        assertEquals(0.25f, segments.get(0).getEnergy(), 1e-6f);
+    }
+
+    @Test
+    public void testClipsSegmentsToRegion() {
+        write(100, 0.5f);
+        write(100, 0f);
+        write(100, 0.5f);
+
+        List<VoiceSegment> segments = index.getSegments(50L, 250L);
+        assertEquals(2, segments.size());
+        assertSegment(50L, 100L, segments.get(0));
+        assertSegment(200L, 250L, segments.get(1));
+    }
+
+    @Test
+    public void testRestartsAfterSkip() {
+        write(5, 0.5f);
+        // The ring skipped ahead; the half-measured window is dropped rather than merged with the new audio
+        position = 1000L;
+        write(10, 0.5f);
+
+        List<VoiceSegment> segments = index.getSegments(0L, position);
+        assertEquals(1, segments.size());
+        assertSegment(1000L, 1010L, segments.get(0));
+    }
+
+    @Test
+    public void testWrapsSegmentTable() {
+        index = new VoiceIndex(FORMAT, OPTIONS, 3);
+        for (int i = 0; i < 5; i ++) {
+            write(100, 0.5f);
+            write(100, 0f);
+        }
+
+        // Only the newest three segments are remembered, still oldest first
+        List<VoiceSegment> segments = index.getSegments(0L, position);
+        assertEquals(3, segments.size());
+        assertSegment(400L, 500L, segments.get(0));
+        assertSegment(600L, 700L, segments.get(1));
+        assertSegment(800L, 900L, segments.get(2));
+
+        index.clear();
+        assertTrue(index.getSegments(0L, position).isEmpty());
+    }
+
+    @Test
+    public void testPadsLatestSpeech() {
+        write(200, 0f);
+        write(100, 0.5f);
+        write(200, 0f);
+
+        List<VoiceSegment> segments = index.getLatestSpeech(0L, position, 1000L);
+        assertEquals(1, segments.size());
+        assertSegment(150L, 350L, segments.get(0));
+    }
+
+    @Test
+    public void testPaddingStaysInRegion() {
+        write(20, 0f);
+        write(100, 0.5f);
+
+        List<VoiceSegment> segments = index.getLatestSpeech(10L, position, 1000L);
+        assertEquals(1, segments.size());
+        assertSegment(10L, 120L, segments.get(0));
+    }
+
+    @Test
+    public void testPaddingDoesNotOverlap() {
+        write(100, 0f);
+        write(100, 0.5f);
+        write(80, 0f);
+        write(100, 0.5f);
+        write(120, 0f);
+
+        // Speech at [100, 200) and [280, 380); the padding between them is shared, not repeated
+        List<VoiceSegment> segments = index.getLatestSpeech(0L, position, 1000L);
+        assertEquals(2, segments.size());
+        assertSegment(50L, 230L, segments.get(0));
+        assertSegment(230L, 430L, segments.get(1));
+    }
+
+    @Test
+    public void testDropsOldestSpeech() {
+        write(100, 0f);
+        write(100, 0.5f);
+        write(80, 0f);
+        write(100, 0.5f);
+        write(120, 0f);
+
+        List<VoiceSegment> segments = index.getLatestSpeech(0L, position, 250L);
+        assertEquals(2, segments.size());
+        assertSegment(180L, 230L, segments.get(0));
+        assertSegment(230L, 430L, segments.get(1));
+    }
+}